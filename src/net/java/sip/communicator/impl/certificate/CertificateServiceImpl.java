@@ -103,6 +103,13 @@ public class CertificateServiceImpl
     private Map<String, List<String>> sessionAllowedCertificates =
         new HashMap<String, List<String>>();
 
+    /**
+     * Caches the key managers of the client certificate configurations by
+     * their IDs so that the key stores are not loaded for every connection.
+     */
+    private final Map<String, KeyManager[]> clientAuthKeyManagers =
+        new HashMap<String, KeyManager[]>();
+
     /**
      * Caches retrievals of AIA information (downloaded certs or failures).
      */
@@ -167,6 +174,19 @@ public class CertificateServiceImpl
     public void propertyChange(PropertyChangeEvent evt)
     {
         setTrustStore();
+        clearClientAuthKeyManagers();
+    }
+
+    /**
+     * Drops the cached key managers of the client certificate configurations
+     * because the configurations have changed.
+     */
+    private void clearClientAuthKeyManagers()
+    {
+        synchronized (clientAuthKeyManagers)
+        {
+            clientAuthKeyManagers.clear();
+        }
     }
 
     private void setTrustStore()
@@ -278,6 +298,7 @@ public class CertificateServiceImpl
         else
             credService.removePassword(pn);
         config.setProperty(pn + ".keyStoreType", e.getKeyStoreType());
+        clearClientAuthKeyManagers();
     }
 
     /*
@@ -294,6 +315,7 @@ public class CertificateServiceImpl
             config.removeProperty(p);
         }
         config.removeProperty(PNAME_CLIENTAUTH_CERTCONFIG_BASE + "." + id);
+        clearClientAuthKeyManagers();
     }
 
     // ------------------------------------------------------------------------
@@ -482,11 +504,23 @@ public class CertificateServiceImpl
                     + "> not found."
                 );
 
-            final KeyManagerFactory kmf =
-                KeyManagerFactory.getInstance("NewSunX509");
-            kmf.init(new KeyStoreBuilderParameters(loadKeyStore(entry)));
+            KeyManager[] keyManagers;
+            synchronized (clientAuthKeyManagers)
+            {
+                keyManagers = clientAuthKeyManagers.get(clientCertConfig);
+                if (keyManagers == null)
+                {
+                    final KeyManagerFactory kmf =
+                        KeyManagerFactory.getInstance("NewSunX509");
+                    kmf.init(
+                        new KeyStoreBuilderParameters(loadKeyStore(entry)));
+
+                    keyManagers = kmf.getKeyManagers();
+                    clientAuthKeyManagers.put(clientCertConfig, keyManagers);
+                }
+            }
 
-            return getSSLContext(kmf.getKeyManagers(), trustManager);
+            return getSSLContext(keyManagers, trustManager);
         }
         catch (Exception e)
         {
@@ -878,9 +912,17 @@ public class CertificateServiceImpl
                                 InputStream is =
                                     HttpUtils.openURLConnection(uri.toString())
                                         .getContent();
-                                cert =
-                                    (X509Certificate) certFactory
-                                        .generateCertificate(is);
+                                try
+                                {
+                                    cert =
+                                        (X509Certificate) certFactory
+                                            .generateCertificate(is);
+                                }
+                                finally
+                                {
+                                    // returns the connection to the pool
+                                    is.close();
+                                }
                             }
                             catch (Exception e)
                             {
@@ -23,6 +23,12 @@ public class ConfigurationActivator
      */
     private static BundleContext bundleContext;
 
+    /**
+     * The <tt>SQLiteConfigurationStore</tt> which stores the properties of the
+     * <tt>ConfigurationService</tt> if any.
+     */
+    private static SQLiteConfigurationStore configurationStore;
+
     /**
      * Starts the configuration service
      *
@@ -40,6 +46,21 @@ public class ConfigurationActivator
 
         if (configurationService != null)
         {
+            SQLiteConfigurationStore configurationStore
+                = ConfigurationActivator.configurationStore;
+
+            /*
+             * Answer getPropertyNamesByPrefix from the property name index of
+             * the SQLiteConfigurationStore.
+             */
+            if (configurationStore != null)
+            {
+                configurationService
+                    = new IndexedConfigurationService(
+                            configurationService,
+                            configurationStore);
+            }
+
             bundleContext.registerService(
                     ConfigurationService.class.getName(),
                     configurationService,
@@ -59,6 +80,15 @@ public class ConfigurationActivator
     public void stop(BundleContext bundleContext)
         throws Exception
     {
+        SQLiteConfigurationStore configurationStore
+            = ConfigurationActivator.configurationStore;
+
+        /*
+         * SQLiteConfigurationStore writes the property changes in the
+         * background so make sure none of them is lost.
+         */
+        if (configurationStore != null)
+            configurationStore.flush();
     }
 
     /**
@@ -72,4 +102,17 @@ public class ConfigurationActivator
     {
         return bundleContext;
     }
+
+    /**
+     * Sets the <tt>SQLiteConfigurationStore</tt> which stores the properties of
+     * the <tt>ConfigurationService</tt>.
+     *
+     * @param configurationStore the <tt>SQLiteConfigurationStore</tt> which
+     * stores the properties of the <tt>ConfigurationService</tt>
+     */
+    static void setConfigurationStore(
+            SQLiteConfigurationStore configurationStore)
+    {
+        ConfigurationActivator.configurationStore = configurationStore;
+    }
 }
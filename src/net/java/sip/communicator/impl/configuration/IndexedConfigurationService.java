@@ -0,0 +1,214 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.configuration;
+
+import java.beans.*;
+import java.io.*;
+import java.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Implements <tt>ConfigurationService</tt> by delegating to the
+ * <tt>ConfigurationService</tt> of libjitsi with the exception of
+ * {@link #getPropertyNamesByPrefix(String, boolean)} which is answered by the
+ * sorted property name index of <tt>SQLiteConfigurationStore</tt> instead of
+ * enumerating all property names.
+ *
+ * @author agent
+ */
+public class IndexedConfigurationService
+    implements ConfigurationService
+{
+    /**
+     * The <tt>ConfigurationService</tt> to delegate to.
+     */
+    private final ConfigurationService configurationService;
+
+    /**
+     * The <tt>SQLiteConfigurationStore</tt> which stores the properties of
+     * {@link #configurationService}.
+     */
+    private final SQLiteConfigurationStore configurationStore;
+
+    /**
+     * Initializes a new <tt>IndexedConfigurationService</tt> instance.
+     *
+     * @param configurationService the <tt>ConfigurationService</tt> to
+     * delegate to
+     * @param configurationStore the <tt>SQLiteConfigurationStore</tt> which
+     * stores the properties of <tt>configurationService</tt>
+     */
+    public IndexedConfigurationService(
+            ConfigurationService configurationService,
+            SQLiteConfigurationStore configurationStore)
+    {
+        this.configurationService = configurationService;
+        this.configurationStore = configurationStore;
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener)
+    {
+        configurationService.addPropertyChangeListener(listener);
+    }
+
+    public void addPropertyChangeListener(
+            String propertyName,
+            PropertyChangeListener listener)
+    {
+        configurationService.addPropertyChangeListener(propertyName, listener);
+    }
+
+    public void addVetoableChangeListener(
+            ConfigVetoableChangeListener listener)
+    {
+        configurationService.addVetoableChangeListener(listener);
+    }
+
+    public void addVetoableChangeListener(
+            String propertyName,
+            ConfigVetoableChangeListener listener)
+    {
+        configurationService.addVetoableChangeListener(propertyName, listener);
+    }
+
+    public List<String> getAllPropertyNames()
+    {
+        return configurationService.getAllPropertyNames();
+    }
+
+    public boolean getBoolean(String propertyName, boolean defaultValue)
+    {
+        return configurationService.getBoolean(propertyName, defaultValue);
+    }
+
+    public int getInt(String propertyName, int defaultValue)
+    {
+        return configurationService.getInt(propertyName, defaultValue);
+    }
+
+    public long getLong(String propertyName, long defaultValue)
+    {
+        return configurationService.getLong(propertyName, defaultValue);
+    }
+
+    public Object getProperty(String propertyName)
+    {
+        return configurationService.getProperty(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Answered by the sorted property name index of
+     * <tt>SQLiteConfigurationStore</tt> in time logarithmic in the number of
+     * properties plus linear in the number of matching properties.
+     */
+    public List<String> getPropertyNamesByPrefix(
+            String prefix,
+            boolean exactPrefixMatch)
+    {
+        return
+            configurationStore.getPropertyNamesByPrefix(
+                    prefix,
+                    exactPrefixMatch);
+    }
+
+    public List<String> getPropertyNamesBySuffix(String suffix)
+    {
+        return configurationService.getPropertyNamesBySuffix(suffix);
+    }
+
+    public String getScHomeDirLocation()
+    {
+        return configurationService.getScHomeDirLocation();
+    }
+
+    public String getScHomeDirName()
+    {
+        return configurationService.getScHomeDirName();
+    }
+
+    public String getString(String propertyName)
+    {
+        return configurationService.getString(propertyName);
+    }
+
+    public String getString(String propertyName, String defaultValue)
+    {
+        return configurationService.getString(propertyName, defaultValue);
+    }
+
+    public void purgeStoredConfiguration()
+    {
+        configurationService.purgeStoredConfiguration();
+    }
+
+    public void reloadConfiguration()
+        throws IOException
+    {
+        configurationService.reloadConfiguration();
+    }
+
+    public void removeProperty(String propertyName)
+    {
+        configurationService.removeProperty(propertyName);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener)
+    {
+        configurationService.removePropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(
+            String propertyName,
+            PropertyChangeListener listener)
+    {
+        configurationService.removePropertyChangeListener(
+                propertyName,
+                listener);
+    }
+
+    public void removeVetoableChangeListener(
+            ConfigVetoableChangeListener listener)
+    {
+        configurationService.removeVetoableChangeListener(listener);
+    }
+
+    public void removeVetoableChangeListener(
+            String propertyName,
+            ConfigVetoableChangeListener listener)
+    {
+        configurationService.removeVetoableChangeListener(
+                propertyName,
+                listener);
+    }
+
+    public void setProperties(Map<String, Object> properties)
+    {
+        configurationService.setProperties(properties);
+    }
+
+    public void setProperty(String propertyName, Object property)
+    {
+        configurationService.setProperty(propertyName, property);
+    }
+
+    public void setProperty(
+            String propertyName,
+            Object property,
+            boolean isSystem)
+    {
+        configurationService.setProperty(propertyName, property, isSystem);
+    }
+
+    public void storeConfiguration()
+        throws IOException
+    {
+        configurationService.storeConfiguration();
+    }
+}
@@ -8,8 +8,10 @@ package net.java.sip.communicator.impl.configuration;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.jitsi.impl.configuration.*;
+import org.jitsi.service.configuration.*;
 import org.jitsi.service.osgi.*;
 import net.java.sip.communicator.util.*;
 
@@ -26,14 +28,62 @@ import android.database.sqlite.*;
 public class SQLiteConfigurationStore
     extends DatabaseConfigurationStore
 {
+    /**
+     * The <tt>Logger</tt> used by the <tt>SQLiteConfigurationStore</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(SQLiteConfigurationStore.class);
+
     private static final String NAME_COLUMN_NAME = "Name";
 
     private static final String TABLE_NAME = "Properties";
 
     private static final String VALUE_COLUMN_NAME = "Value";
 
+    /**
+     * The number of milliseconds to wait after a property has been changed
+     * before writing it into the database so that the changes which follow it
+     * are written in the same transaction.
+     */
+    private static final long WRITE_DELAY = 500;
+
+    /**
+     * The number of milliseconds for which the writer thread waits for
+     * property changes before it exits.
+     */
+    private static final long WRITER_KEEP_ALIVE_TIME = 60 * 1000;
+
+    /**
+     * The indicator which determines whether the table {@link #TABLE_NAME} has
+     * been read into {@link #properties}.
+     */
+    private volatile boolean loaded = false;
+
+    /**
+     * The names of the properties which have values associated in this
+     * <tt>ConfigurationStore</tt> in ascending order. Allows prefix queries
+     * without enumerating all property names.
+     */
+    private final NavigableSet<String> names
+        = new ConcurrentSkipListSet<String>();
+
     private final SQLiteOpenHelper openHelper;
 
+    /**
+     * The values of the properties which have been changed but have not been
+     * written into the database yet in the order of their changing. A
+     * <tt>null</tt> value signals that the property has been removed.
+     */
+    private final Map<String, String> pendingWrites
+        = new LinkedHashMap<String, String>();
+
+    /**
+     * The <tt>Thread</tt> which writes {@link #pendingWrites} into the
+     * database.
+     */
+    private Thread writerThread;
+
     /**
      * Initializes a new <tt>SQLiteConfigurationStore</tt> instance.
      */
@@ -67,100 +117,235 @@ public class SQLiteConfigurationStore
                     // TODO Auto-generated method stub
                 }
             };
+
+        ConfigurationActivator.setConfigurationStore(this);
     }
 
     /**
-     * Overrides {@link HashtableConfigurationStore#getProperty(String)}. If
-     * this <tt>ConfigurationStore</tt> contains a value associated with the
-     * specified property name, returns it. Otherwise, searches for a system
-     * property with the specified name and returns its value.
-     *
-     * @param name the name of the property to get the value of
-     * @return the value in this <tt>ConfigurationStore</tt> of the property
-     * with the specified name; <tt>null</tt> if the property with the specified
-     * name does not have an association with a value in this
-     * <tt>ConfigurationStore</tt>
-     * @see ConfigurationStore#getProperty(String)
+     * Reads the table {@link #TABLE_NAME} into {@link #properties} unless it
+     * has already been read.
      */
-    @Override
-    public Object getProperty(String name)
+    private void ensureLoaded()
     {
-        Object value = properties.get(name);
-
-        if (value == null)
+        if (!loaded)
         {
             synchronized (openHelper)
             {
-                SQLiteDatabase db = openHelper.getReadableDatabase();
-                Cursor cursor
-                    = db.query(
-                        TABLE_NAME,
-                        new String[] { VALUE_COLUMN_NAME },
-                        NAME_COLUMN_NAME + " = ?",
-                        new String[] { name },
-                        null /* groupBy */,
-                        null /* having */,
-                        null /* orderBy */,
-                        "1");
+                if (!loaded)
+                    load();
+            }
+        }
+    }
 
-                try
+    /**
+     * Writes the property changes which have not been written into the
+     * database yet. Blocks until they have been written.
+     */
+    public void flush()
+    {
+        synchronized (openHelper)
+        {
+            Map<String, String> writes;
+
+            synchronized (pendingWrites)
+            {
+                if (pendingWrites.isEmpty())
+                    return;
+
+                writes = new LinkedHashMap<String, String>(pendingWrites);
+                pendingWrites.clear();
+            }
+
+            SQLiteDatabase db = openHelper.getWritableDatabase();
+            boolean written = false;
+
+            db.beginTransaction();
+            try
+            {
+                ContentValues values = new ContentValues();
+
+                for (Map.Entry<String, String> e : writes.entrySet())
                 {
-                    if ((cursor.getCount() == 1) && cursor.moveToFirst())
-                        value = cursor.getString(0);
+                    String name = e.getKey();
+                    String value = e.getValue();
+
+                    if (value == null)
+                    {
+                        db.delete(
+                                TABLE_NAME,
+                                NAME_COLUMN_NAME + " = ?",
+                                new String[] { name });
+                    }
+                    else
+                    {
+                        values.clear();
+                        values.put(NAME_COLUMN_NAME, name);
+                        values.put(VALUE_COLUMN_NAME, value);
+                        if (db.replace(
+                                    TABLE_NAME,
+                                    null /* nullColumnHack */,
+                                    values)
+                                == -1)
+                        {
+                            throw new SQLException(
+                                    "Failed to set non-system property "
+                                        + name);
+                        }
+                    }
                 }
-                finally
+                db.setTransactionSuccessful();
+                written = true;
+            }
+            catch (SQLException sqle)
+            {
+                logger.error("Failed to write configuration", sqle);
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+
+            /*
+             * Retry the failed writes with the next flush unless they have
+             * been superseded in the meantime.
+             */
+            if (!written)
+            {
+                synchronized (pendingWrites)
                 {
-                    cursor.close();
+                    for (Map.Entry<String, String> e : writes.entrySet())
+                    {
+                        if (!pendingWrites.containsKey(e.getKey()))
+                            pendingWrites.put(e.getKey(), e.getValue());
+                    }
                 }
             }
-
-            if (value == null)
-                value = System.getProperty(name);
         }
-        return value;
     }
 
     /**
-     * Overrides {@link HashtableConfigurationStore#getPropertyNames()}. Gets
-     * the names of the properties which have values associated in this
-     * <tt>ConfigurationStore</tt>.
-     *
-     * @return an array of <tt>String</tt>s which specify the names of the
-     * properties that have values associated in this
-     * <tt>ConfigurationStore</tt>; an empty array if this instance contains no
-     * property values
-     * @see ConfigurationStore#getPropertyNames()
+     * Reads the whole table {@link #TABLE_NAME} into {@link #properties}. The
+     * property changes which have not been written into the database yet are
+     * written first.
      */
-    @Override
-    public String[] getPropertyNames()
+    private void load()
     {
-        List<String> propertyNames = new ArrayList<String>();
-
         synchronized (openHelper)
         {
+            flush();
+
             SQLiteDatabase db = openHelper.getReadableDatabase();
             Cursor cursor
                 = db.query(
                         TABLE_NAME,
-                        new String[] { NAME_COLUMN_NAME },
+                        new String[] { NAME_COLUMN_NAME, VALUE_COLUMN_NAME },
                         null /* selection */,
                         null /* selectionArgs */,
                         null /* groupBy */,
                         null /* having */,
-                        NAME_COLUMN_NAME + " ASC");
+                        null /* orderBy */);
 
             try
             {
                 while (cursor.moveToNext())
-                    propertyNames.add(cursor.getString(0));
+                {
+                    String name = cursor.getString(0);
+                    String value = cursor.getString(1);
+
+                    if ((name != null) && (value != null))
+                    {
+                        properties.put(name, value);
+                        names.add(name);
+                    }
+                }
             }
             finally
             {
                 cursor.close();
             }
+
+            loaded = true;
         }
+    }
 
-        return propertyNames.toArray(new String[propertyNames.size()]);
+    /**
+     * Overrides {@link HashtableConfigurationStore#getProperty(String)}. If
+     * this <tt>ConfigurationStore</tt> contains a value associated with the
+     * specified property name, returns it. Otherwise, searches for a system
+     * property with the specified name and returns its value.
+     *
+     * @param name the name of the property to get the value of
+     * @return the value in this <tt>ConfigurationStore</tt> of the property
+     * with the specified name; <tt>null</tt> if the property with the specified
+     * name does not have an association with a value in this
+     * <tt>ConfigurationStore</tt>
+     * @see ConfigurationStore#getProperty(String)
+     */
+    @Override
+    public Object getProperty(String name)
+    {
+        ensureLoaded();
+
+        return super.getProperty(name);
+    }
+
+    /**
+     * Overrides {@link HashtableConfigurationStore#getPropertyNames()}. Gets
+     * the names of the properties which have values associated in this
+     * <tt>ConfigurationStore</tt>.
+     *
+     * @return an array of <tt>String</tt>s which specify the names of the
+     * properties that have values associated in this
+     * <tt>ConfigurationStore</tt>; an empty array if this instance contains no
+     * property values
+     * @see ConfigurationStore#getPropertyNames()
+     */
+    @Override
+    public String[] getPropertyNames()
+    {
+        ensureLoaded();
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Gets the names of the properties which have values associated in this
+     * <tt>ConfigurationStore</tt> and which are descendants of a specific
+     * prefix i.e. which are the prefix followed by a dot and a non-empty name.
+     * A dot at the end of the prefix is taken as the separating one. Answered
+     * in time logarithmic in the number of properties plus linear in the
+     * number of matching properties.
+     *
+     * @param prefix the prefix of the property names to be returned
+     * @param exactPrefixMatch <tt>true</tt> to return only the names of the
+     * properties which are immediate children of <tt>prefix</tt> (i.e. whose
+     * name after the separating dot contains no further dot); <tt>false</tt>
+     * to return the names of all descendants of <tt>prefix</tt>. Neither
+     * includes <tt>prefix</tt> itself or siblings such as
+     * <tt>prefix + "4.x"</tt>.
+     * @return the names of the matching properties in ascending order
+     */
+    public List<String> getPropertyNamesByPrefix(
+            String prefix,
+            boolean exactPrefixMatch)
+    {
+        ensureLoaded();
+
+        List<String> propertyNames = new ArrayList<String>();
+        int separator
+            = prefix.endsWith(".") ? (prefix.length() - 1) : prefix.length();
+        String from = prefix.substring(0, separator) + '.';
+
+        for (String name : names.tailSet(from, false))
+        {
+            if (!name.startsWith(from))
+                break;
+            if (exactPrefixMatch && (name.lastIndexOf('.') != separator))
+                continue;
+
+            propertyNames.add(name);
+        }
+        return propertyNames;
     }
 
     /**
@@ -174,7 +359,22 @@ public class SQLiteConfigurationStore
     protected void reloadConfiguration()
         throws IOException
     {
-        // TODO Auto-generated method stub
+        synchronized (openHelper)
+        {
+            loaded = false;
+            names.clear();
+            try
+            {
+                load();
+            }
+            catch (SQLException sqle)
+            {
+                IOException ioe = new IOException();
+
+                ioe.initCause(sqle);
+                throw ioe;
+            }
+        }
     }
 
     /**
@@ -190,16 +390,130 @@ public class SQLiteConfigurationStore
      */
     public void removeProperty(String name)
     {
+        ensureLoaded();
+
         super.removeProperty(name);
+        names.remove(name);
 
-        synchronized (openHelper)
+        scheduleWrite(name, null);
+    }
+
+    /**
+     * Schedules the writing of the value of a specific property into the
+     * database.
+     *
+     * @param name the name of the property to be written
+     * @param value the value of the property to be written or <tt>null</tt>
+     * if the property is to be removed
+     */
+    private void scheduleWrite(String name, String value)
+    {
+        synchronized (pendingWrites)
         {
-            SQLiteDatabase db = openHelper.getWritableDatabase();
+            /* Keep pendingWrites in the order of the latest changes. */
+            pendingWrites.remove(name);
+            pendingWrites.put(name, value);
 
-            db.delete(
-                    TABLE_NAME,
-                    NAME_COLUMN_NAME + " = ?",
-                    new String[] { name });
+            if (writerThread == null)
+            {
+                writerThread
+                    = new Thread(getClass().getName() + ".writer")
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                runInWriterThread();
+                            }
+                            finally
+                            {
+                                synchronized (pendingWrites)
+                                {
+                                    if (Thread.currentThread().equals(
+                                            writerThread))
+                                    {
+                                        writerThread = null;
+                                    }
+                                }
+                            }
+                        }
+                    };
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            else
+                pendingWrites.notifyAll();
+        }
+    }
+
+    /**
+     * Runs in {@link #writerThread} and writes {@link #pendingWrites} into the
+     * database, coalescing the property changes made within
+     * {@link #WRITE_DELAY} milliseconds of each other into a single
+     * transaction. Interrupting the thread stops it once it has written the
+     * pending property changes without delay.
+     */
+    private void runInWriterThread()
+    {
+        boolean interrupted = false;
+
+        try
+        {
+            while (true)
+            {
+                synchronized (pendingWrites)
+                {
+                    if (pendingWrites.isEmpty())
+                    {
+                        if (!interrupted)
+                        {
+                            try
+                            {
+                                pendingWrites.wait(WRITER_KEEP_ALIVE_TIME);
+                            }
+                            catch (InterruptedException ie)
+                            {
+                                interrupted = true;
+                            }
+                        }
+
+                        if (pendingWrites.isEmpty())
+                        {
+                            writerThread = null;
+                            return;
+                        }
+                    }
+                }
+
+                if (!interrupted)
+                {
+                    try
+                    {
+                        Thread.sleep(WRITE_DELAY);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        interrupted = true;
+                    }
+                }
+
+                try
+                {
+                    flush();
+                }
+                catch (Throwable t)
+                {
+                    if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                    logger.error("Failed to write configuration", t);
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
     }
 
@@ -216,20 +530,25 @@ public class SQLiteConfigurationStore
     @Override
     public void setNonSystemProperty(String name, Object value)
     {
-        synchronized (openHelper)
-        {
-            ContentValues initialValues = new ContentValues();
-
-            initialValues.put(NAME_COLUMN_NAME, name);
-            initialValues.put(VALUE_COLUMN_NAME, value.toString());
+        ensureLoaded();
 
-            SQLiteDatabase db = openHelper.getWritableDatabase();
+        super.setNonSystemProperty(name, value);
+        names.add(name);
 
-            if (db.replace(TABLE_NAME, null /* nullColumnHack */, initialValues)
-                    == -1)
-                throw new RuntimeException("Failed to set non-system property");
-        }
+        scheduleWrite(name, value.toString());
+    }
 
-        super.setNonSystemProperty(name, value);
+    /**
+     * Overrides {@link DatabaseConfigurationStore#storeConfiguration()}. The
+     * property changes are written into the database by a background thread
+     * shortly after they are made so there is nothing to do here. Use
+     * {@link #flush()} to write them immediately.
+     *
+     * @throws IOException never
+     */
+    @Override
+    protected void storeConfiguration()
+        throws IOException
+    {
     }
 }
@@ -0,0 +1,166 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.netaddr;
+
+import java.io.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * Reports network configuration changes on Linux by listening to the link and
+ * address notifications of rtnetlink. Java cannot open netlink sockets so the
+ * notifications are read from the output of <tt>ip monitor</tt> which
+ * subscribes to the respective rtnetlink multicast groups.
+ *
+ * @author agent
+ */
+class NetlinkNetworkChangeSource
+    implements NetworkChangeSource,
+               Runnable
+{
+    /**
+     * Our class logger.
+     */
+    private static final Logger logger
+        = Logger.getLogger(NetlinkNetworkChangeSource.class);
+
+    /**
+     * The command which prints a line for every rtnetlink link or address
+     * notification.
+     */
+    private static final String[] MONITOR_COMMAND
+        = { "ip", "-o", "monitor", "link", "address" };
+
+    /**
+     * The listener to notify.
+     */
+    private Listener listener;
+
+    /**
+     * The <tt>ip monitor</tt> process.
+     */
+    private Process process;
+
+    /**
+     * Whether {@link #stop()} has been called.
+     */
+    private boolean stopped = false;
+
+    /**
+     * Starts <tt>ip monitor</tt> and a thread which reads its output.
+     *
+     * @param listener the listener to notify
+     * @return <tt>true</tt> if <tt>ip monitor</tt> has been started
+     */
+    public synchronized boolean start(Listener listener)
+    {
+        try
+        {
+            process
+                = new ProcessBuilder(MONITOR_COMMAND)
+                    .redirectErrorStream(true)
+                    .start();
+        }
+        catch (IOException e)
+        {
+            if (logger.isInfoEnabled())
+                logger.info("Cannot monitor rtnetlink: " + e.getMessage());
+            return false;
+        }
+
+        this.listener = listener;
+
+        try
+        {
+            process.getOutputStream().close();
+        }
+        catch (IOException e)
+        {
+            // We do not write to the process anyway.
+        }
+
+        Thread thread = new Thread(this, getClass().getName());
+
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stops <tt>ip monitor</tt>.
+     */
+    public synchronized void stop()
+    {
+        stopped = true;
+        if (process != null)
+        {
+            process.destroy();
+            process = null;
+        }
+    }
+
+    /**
+     * Reads the output of <tt>ip monitor</tt> and notifies {@link #listener}
+     * for every line.
+     */
+    public void run()
+    {
+        Process process;
+        Listener listener;
+
+        synchronized (this)
+        {
+            process = this.process;
+            listener = this.listener;
+        }
+        if (process == null)
+            return;
+
+        BufferedReader reader
+            = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()));
+
+        try
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (logger.isTraceEnabled())
+                    logger.trace("rtnetlink: " + line);
+                listener.networkChanged();
+            }
+        }
+        catch (IOException e)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Error reading rtnetlink notifications", e);
+        }
+        finally
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException e)
+            {
+            }
+
+            boolean failed;
+
+            synchronized (this)
+            {
+                failed = !stopped;
+            }
+            if (failed)
+            {
+                logger.warn("rtnetlink monitor has ended unexpectedly");
+                listener.changeSourceFailed(this);
+            }
+        }
+    }
+}
@@ -12,6 +12,8 @@ import java.lang.reflect.*;
 import java.net.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.java.sip.communicator.service.dns.*;
 import net.java.sip.communicator.service.netaddr.*;
@@ -57,6 +59,41 @@ public class NetworkAddressManagerServiceImpl
      */
     private static final int RANDOM_ADDR_DISC_PORT = 55721;
 
+    /**
+     * The maximum number of destinations for which the local host address is
+     * cached by {@link #getLocalHost(InetAddress)}.
+     */
+    private static final int MAX_LOCAL_HOST_CACHE_SIZE = 1024;
+
+    /**
+     * The local host addresses returned by {@link #getLocalHost(InetAddress)}
+     * keyed by the intended destinations they have been determined for. The
+     * cache is only used while a {@link NetworkConfigurationWatcher} tracks
+     * the network configuration and invalidates it on changes.
+     */
+    private final Map<InetAddress, InetAddress> localHostCache
+        = new ConcurrentHashMap<InetAddress, InetAddress>();
+
+    /**
+     * The number of {@link #getLocalHost(InetAddress)} calls answered by
+     * {@link #localHostCache}.
+     */
+    private final AtomicLong localHostCacheHits = new AtomicLong();
+
+    /**
+     * The number of {@link #getLocalHost(InetAddress)} calls which had to
+     * determine the local host address.
+     */
+    private final AtomicLong localHostCacheMisses = new AtomicLong();
+
+    /**
+     * The number of times {@link #localHostCache} has been invalidated. A
+     * local host address is only cached if the cache has not been invalidated
+     * while the address was being determined. Guarded by
+     * {@link #localHostCache}.
+     */
+    private long localHostCacheGeneration = 0;
+
     /**
      * The name of the property containing the number of binds that we should
      * should execute in case a port is already bound to (each retry would be on
@@ -127,8 +164,107 @@ public class NetworkAddressManagerServiceImpl
      * @return an InetAddress instance representing the local host, and that
      * a socket can bind upon or distribute to peers as a contact address.
      */
-    public synchronized InetAddress getLocalHost(
-            InetAddress intendedDestination)
+    public InetAddress getLocalHost(InetAddress intendedDestination)
+    {
+        InetAddress localHost = localHostCache.get(intendedDestination);
+
+        if (localHost != null)
+        {
+            localHostCacheHits.incrementAndGet();
+            return localHost;
+        }
+
+        localHostCacheMisses.incrementAndGet();
+
+        /*
+         * Only cache while the network configuration is being watched because
+         * nothing would invalidate the cache otherwise.
+         */
+        boolean cache;
+        long generation;
+
+        synchronized (localHostCache)
+        {
+            generation = localHostCacheGeneration;
+        }
+        synchronized (this)
+        {
+            localHost = findLocalHost(intendedDestination);
+            cache = (networkConfigurationWatcher != null);
+        }
+        if (cache && (localHost != null))
+        {
+            synchronized (localHostCache)
+            {
+                /*
+                 * The address may have been determined with the network
+                 * configuration before the latest change.
+                 */
+                if (generation == localHostCacheGeneration)
+                {
+                    if (localHostCache.size() >= MAX_LOCAL_HOST_CACHE_SIZE)
+                        localHostCache.clear();
+                    localHostCache.put(intendedDestination, localHost);
+                }
+            }
+        }
+        return localHost;
+    }
+
+    /**
+     * Gets the number of {@link #getLocalHost(InetAddress)} calls which have
+     * been answered from the cache of local host addresses.
+     *
+     * @return the number of local host cache hits
+     */
+    public long getLocalHostCacheHits()
+    {
+        return localHostCacheHits.get();
+    }
+
+    /**
+     * Gets the number of {@link #getLocalHost(InetAddress)} calls which have
+     * had to determine the local host address.
+     *
+     * @return the number of local host cache misses
+     */
+    public long getLocalHostCacheMisses()
+    {
+        return localHostCacheMisses.get();
+    }
+
+    /**
+     * Drops the cached local host addresses because the network configuration
+     * has changed and the routes to the destinations may have changed with it.
+     */
+    void invalidateLocalHostCache()
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Invalidating " + localHostCache.size()
+                        + " cached localhost addresses (hits: "
+                        + localHostCacheHits.get() + ", misses: "
+                        + localHostCacheMisses.get() + ")");
+        }
+        synchronized (localHostCache)
+        {
+            localHostCacheGeneration++;
+            localHostCache.clear();
+        }
+    }
+
+    /**
+     * Determines the local host address to use with a specific destination.
+     * Uses {@link #localHostFinderSocket} so the calls have to be serialized.
+     *
+     * @param intendedDestination the destination that we'd like to use the
+     * localhost address with.
+     *
+     * @return an InetAddress instance representing the local host, and that
+     * a socket can bind upon or distribute to peers as a contact address.
+     */
+    private InetAddress findLocalHost(InetAddress intendedDestination)
     {
         InetAddress localHost = null;
 
@@ -554,7 +690,12 @@ public class NetworkAddressManagerServiceImpl
          NetworkConfigurationChangeListener listener)
      {
          if(networkConfigurationWatcher == null)
-             networkConfigurationWatcher = new NetworkConfigurationWatcher();
+         {
+             networkConfigurationWatcher
+                 = new NetworkConfigurationWatcher(this);
+             // nothing invalidated the cache while nobody watched
+             invalidateLocalHostCache();
+         }
 
          networkConfigurationWatcher
              .addNetworkConfigurationChangeListener(listener);
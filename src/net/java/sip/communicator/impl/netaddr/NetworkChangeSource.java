@@ -0,0 +1,52 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.netaddr;
+
+/**
+ * A source of notifications that the network configuration (interfaces and
+ * their addresses) may have changed. Notifications carry no details, the
+ * <tt>NetworkConfigurationWatcher</tt> inspects the network interfaces when it
+ * receives them.
+ *
+ * @author agent
+ */
+interface NetworkChangeSource
+{
+    /**
+     * Receives the notifications of a <tt>NetworkChangeSource</tt>.
+     */
+    public interface Listener
+    {
+        /**
+         * Notifies this listener that the network configuration may have
+         * changed.
+         */
+        public void networkChanged();
+
+        /**
+         * Notifies this listener that a specific source has stopped working
+         * and will not deliver notifications anymore.
+         *
+         * @param source the <tt>NetworkChangeSource</tt> which has failed
+         */
+        public void changeSourceFailed(NetworkChangeSource source);
+    }
+
+    /**
+     * Starts delivering notifications to a specific listener.
+     *
+     * @param listener the listener to notify
+     * @return <tt>true</tt> if this source works on the current system and
+     * has been started; otherwise, <tt>false</tt>
+     */
+    public boolean start(Listener listener);
+
+    /**
+     * Stops delivering notifications.
+     */
+    public void stop();
+}
@@ -14,18 +14,25 @@ import net.java.sip.communicator.service.netaddr.event.*;
 import net.java.sip.communicator.service.sysactivity.*;
 import net.java.sip.communicator.service.sysactivity.event.*;
 import net.java.sip.communicator.util.*;
+import net.java.sip.communicator.util.Logger;
 
+import org.jitsi.util.*;
 import org.osgi.framework.*;
 
 /**
- * Periodically checks the current network interfaces to track changes
- * and fire events on those changes.
+ * Checks the current network interfaces to track changes and fire events on
+ * those changes. The checks are triggered by the network change notifications
+ * of the <tt>SystemActivityNotificationsService</tt> (e.g. the connectivity
+ * broadcasts on Android) or of a <tt>NetworkChangeSource</tt> (rtnetlink on
+ * Linux) and bursts of notifications are coalesced into a single check. Only
+ * when no source of notifications works are the interfaces polled.
  * 
  * @author Damian Minkov
  */
 public class NetworkConfigurationWatcher
     implements SystemActivityChangeListener,
                ServiceListener,
+               NetworkChangeSource.Listener,
                Runnable
 {
     /**
@@ -45,11 +52,54 @@ public class NetworkConfigurationWatcher
      */
     private static final int CHECK_INTERVAL = 3000; // 3 sec.
 
+    /**
+     * The time in milliseconds without further change notifications after
+     * which the network interfaces are checked.
+     */
+    private static final int DEBOUNCE_INTERVAL = 100;
+
+    /**
+     * The maximum time in milliseconds a check of the network interfaces is
+     * delayed by a burst of change notifications.
+     */
+    private static final int MAX_DEBOUNCE_DELAY = 1000;
+
     /**
      * Whether thread checking for network notifications is running.
      */
     private boolean isRunning = false;
 
+    /**
+     * Whether the thread checks the network interfaces upon change
+     * notifications or polls them every {@link #CHECK_INTERVAL}.
+     */
+    private volatile boolean isEventDriven = false;
+
+    /**
+     * Whether a change notification has been received and the network
+     * interfaces have not been checked since.
+     */
+    private boolean isChangePending = false;
+
+    /**
+     * The time of the first change notification which has not been handled
+     * yet.
+     */
+    private long firstPendingChange;
+
+    /**
+     * The time of the last change notification which has not been handled
+     * yet.
+     */
+    private long lastPendingChange;
+
+    /**
+     * The source of change notifications used when the
+     * <tt>SystemActivityNotificationsService</tt> does not report network
+     * changes.
+     */
+    private NetworkChangeSource changeSource = null;
+
     /**
      * Service we use to listen for network changes.
      */
@@ -62,11 +112,22 @@ public class NetworkConfigurationWatcher
     private NetworkEventDispatcher eventDispatcher =
             new NetworkEventDispatcher();
 
+    /**
+     * The network address manager whose cached local host addresses are
+     * invalidated on network configuration changes.
+     */
+    private final NetworkAddressManagerServiceImpl networkAddressManager;
+
     /**
      * Inits configuration watcher.
+     * @param networkAddressManager the network address manager whose cached
+     * local host addresses are to be invalidated on network changes.
      */
-    NetworkConfigurationWatcher()
+    NetworkConfigurationWatcher(
+            NetworkAddressManagerServiceImpl networkAddressManager)
     {
+        this.networkAddressManager = networkAddressManager;
+
         try
         {
             checkNetworkInterfaces(false, 0, true);
@@ -178,19 +239,88 @@ public class NetworkConfigurationWatcher
         {
             this.systemActivityNotificationsService
                 .addSystemActivityChangeListener(this);
+            startThread(true);
         }
         else
         {
-            if(!isRunning)
+            NetworkChangeSource source = null;
+
+            if(OSUtils.IS_LINUX && !OSUtils.IS_ANDROID)
+                source = new NetlinkNetworkChangeSource();
+
+            if(source != null && source.start(this))
+            {
+                synchronized(this)
+                {
+                    changeSource = source;
+                }
+                startThread(true);
+            }
+            else
+                startThread(false);
+        }
+    }
+
+    /**
+     * Starts the thread which checks the network interfaces if it is not
+     * running yet.
+     * @param eventDriven whether the thread is to check the interfaces upon
+     * change notifications or to poll them.
+     */
+    private synchronized void startThread(boolean eventDriven)
+    {
+        isEventDriven = eventDriven;
+        if(!isRunning)
+        {
+            isRunning = true;
+            Thread th = new Thread(this, getClass().getName());
+            th.setDaemon(true);
+            if(!eventDriven)
             {
-                isRunning = true;
-                Thread th = new Thread(this);
-                // set to max priority to prevent detecting sleep if the cpu is
-                // overloaded
+                // set to max priority to prevent detecting sleep if the cpu
+                // is overloaded
                 th.setPriority(Thread.MAX_PRIORITY);
-                th.start();
             }
+            th.start();
         }
+        else
+            notifyAll();
+    }
+
+    /**
+     * Notifies this watcher that the network configuration may have changed.
+     * The network interfaces are checked once the notifications have calmed
+     * down for {@link #DEBOUNCE_INTERVAL} but no later than
+     * {@link #MAX_DEBOUNCE_DELAY} after the first of them.
+     */
+    public synchronized void networkChanged()
+    {
+        long now = System.currentTimeMillis();
+
+        if(!isChangePending)
+        {
+            isChangePending = true;
+            firstPendingChange = now;
+        }
+        lastPendingChange = now;
+        notifyAll();
+    }
+
+    /**
+     * Falls back to polling the network interfaces because a specific source
+     * of change notifications has stopped working.
+     * @param source the <tt>NetworkChangeSource</tt> which has failed.
+     */
+    public void changeSourceFailed(NetworkChangeSource source)
+    {
+        synchronized(this)
+        {
+            if(changeSource != source)
+                return;
+            changeSource = null;
+        }
+        source.stop();
+        startThread(false);
     }
 
     /**
@@ -248,6 +378,16 @@ public class NetworkConfigurationWatcher
      */
     void stop()
     {
+        NetworkChangeSource source;
+
+        synchronized(this)
+        {
+            source = changeSource;
+            changeSource = null;
+        }
+        if(source != null)
+            source.stop();
+
         if(isRunning)
         {
             synchronized(this)
@@ -339,19 +479,13 @@ public class NetworkConfigurationWatcher
         }
         else if(event.getEventID() == SystemActivityEvent.EVENT_NETWORK_CHANGE)
         {
-            try
-            {
-                checkNetworkInterfaces(true, 0, true);
-            } catch (SocketException e)
-            {
-                logger.error("Error checking network interfaces", e);
-            }
+            networkChanged();
         }
         else if(event.getEventID() == SystemActivityEvent.EVENT_DNS_CHANGE)
         {
             try
             {
-                eventDispatcher.fireChangeEvent(
+                fireChangeEvent(
                     new ChangeEvent(event.getSource(), ChangeEvent.DNS_CHANGE));
             }
             catch(Throwable t)
@@ -370,7 +504,7 @@ public class NetworkConfigurationWatcher
         while (iter.hasNext())
         {
             String niface = iter.next();
-            eventDispatcher.fireChangeEvent(new ChangeEvent(niface,
+            fireChangeEvent(new ChangeEvent(niface,
                     ChangeEvent.IFACE_DOWN, true));
         }
         activeInterfaces.clear();
@@ -465,7 +599,7 @@ public class NetworkConfigurationWatcher
             if(!currentActiveInterfacesSet.contains(iface))
             {
                 if(fireEvents)
-                    eventDispatcher.fireChangeEvent(new ChangeEvent(iface,
+                    fireChangeEvent(new ChangeEvent(iface,
                         ChangeEvent.IFACE_DOWN));
 
                 activeInterfaces.remove(iface);
@@ -493,7 +627,7 @@ public class NetworkConfigurationWatcher
                 if(addresses != null && !addresses.contains(addr))
                 {
                     if(fireEvents)
-                        eventDispatcher.fireChangeEvent(
+                        fireChangeEvent(
                             new ChangeEvent(entry.getKey(),
                                     ChangeEvent.ADDRESS_DOWN, addr));
 
@@ -531,7 +665,7 @@ public class NetworkConfigurationWatcher
                 if(addresses != null && !addresses.contains(addr))
                 {
                     if(fireEvents)
-                        eventDispatcher.fireChangeEvent(
+                        fireChangeEvent(
                                 new ChangeEvent(entry.getKey(),
                                                 ChangeEvent.ADDRESS_UP,
                                                 addr));
@@ -559,7 +693,7 @@ public class NetworkConfigurationWatcher
             for(InetAddress addr : entry.getValue())
             {
                 if(fireEvents)
-                    eventDispatcher.fireChangeEvent(
+                    fireChangeEvent(
                             new ChangeEvent(entry.getKey(),
                                             ChangeEvent.ADDRESS_UP,
                                             addr));
@@ -576,7 +710,7 @@ public class NetworkConfigurationWatcher
                     wait = 500;
                 }
 
-                eventDispatcher.fireChangeEvent(
+                fireChangeEvent(
                         new ChangeEvent(entry.getKey(), ChangeEvent.IFACE_UP),
                         wait);
             }
@@ -585,6 +719,69 @@ public class NetworkConfigurationWatcher
         }
     }
 
+    /**
+     * Invalidates the cached local host addresses and fires a change event.
+     * @param evt the event to fire.
+     */
+    private void fireChangeEvent(ChangeEvent evt)
+    {
+        fireChangeEvent(evt, 0);
+    }
+
+    /**
+     * Invalidates the cached local host addresses and fires a change event.
+     * @param evt the event to fire.
+     * @param wait milliseconds to wait before dispatching the event.
+     */
+    private void fireChangeEvent(ChangeEvent evt, int wait)
+    {
+        networkAddressManager.invalidateLocalHostCache();
+        eventDispatcher.fireChangeEvent(evt, wait);
+    }
+
+    /**
+     * Waits for change notifications and then for them to calm down.
+     * @return <tt>true</tt> if the network interfaces are to be checked or
+     * <tt>false</tt> if this watcher has been stopped or has switched to
+     * polling.
+     */
+    private synchronized boolean waitForChanges()
+    {
+        while(isRunning && isEventDriven && !isChangePending)
+        {
+            try
+            {
+                wait();
+            }
+            catch(InterruptedException e)
+            {
+            }
+        }
+        if(!isRunning || !isEventDriven)
+            return false;
+
+        while(isRunning)
+        {
+            long delay
+                = Math.min(
+                        lastPendingChange + DEBOUNCE_INTERVAL,
+                        firstPendingChange + MAX_DEBOUNCE_DELAY)
+                    - System.currentTimeMillis();
+
+            if(delay <= 0)
+                break;
+            try
+            {
+                wait(delay);
+            }
+            catch(InterruptedException e)
+            {
+            }
+        }
+        isChangePending = false;
+        return isRunning;
+    }
+
     /**
      * Main loop of this thread.
      */
@@ -595,6 +792,26 @@ public class NetworkConfigurationWatcher
 
         while(isRunning)
         {
+            if(isEventDriven)
+            {
+                if(waitForChanges())
+                {
+                    try
+                    {
+                        checkNetworkInterfaces(true, 0, true);
+                    }
+                    catch (SocketException e)
+                    {
+                        logger.error("Error checking network interfaces", e);
+                    }
+                }
+
+                // do not mistake the time spent waiting for standby should
+                // we fall back to polling
+                last = 0;
+                continue;
+            }
+
             long curr = System.currentTimeMillis();
 
             // if time spent between checks is more than 4 times
@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.packetlogging;
 
+import java.util.concurrent.atomic.*;
+
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.packetlogging.*;
 
@@ -18,6 +20,74 @@ import org.jitsi.service.packetlogging.*;
 public class PacketLoggingConfigurationImpl
     extends PacketLoggingConfiguration
 {
+    /**
+     * The policy applied when packets are logged faster than they can be
+     * written and the queue of packets waiting to be written is full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * The packets which arrive while the queue is full are dropped.
+         */
+        DROP_NEWEST,
+
+        /**
+         * The oldest queued packets are dropped to make room for the packets
+         * which arrive while the queue is full.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Once the queue is half full only every
+         * <tt>PacketLoggingServiceImpl.SAMPLE_RATE</tt>-th packet is queued,
+         * the packets which arrive while the queue is full are dropped.
+         */
+        SAMPLE
+    }
+
+    /**
+     * The property which holds the maximum number of packets waiting to be
+     * written. Changes take effect when the packet logging is restarted.
+     */
+    public static final String PACKET_LOGGING_QUEUE_CAPACITY_PROPERTY_NAME
+        = "net.java.sip.communicator.packetlogging."
+            + "PACKET_LOGGING_QUEUE_CAPACITY";
+
+    /**
+     * The property which holds the name of the {@link OverflowPolicy}.
+     */
+    public static final String PACKET_LOGGING_OVERFLOW_POLICY_PROPERTY_NAME
+        = "net.java.sip.communicator.packetlogging."
+            + "PACKET_LOGGING_OVERFLOW_POLICY";
+
+    /**
+     * The default maximum number of packets waiting to be written.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The maximum number of packets waiting to be written.
+     */
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * The policy applied when the queue of packets waiting to be written is
+     * full.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    /**
+     * The number of packets which have not been logged because the queue of
+     * packets waiting to be written was full.
+     */
+    private final AtomicLong droppedPacketCount = new AtomicLong();
+
+    /**
+     * The number of bytes of the packets which have not been logged because
+     * the queue of packets waiting to be written was full.
+     */
+    private final AtomicLong droppedByteCount = new AtomicLong();
+
     /**
      * Creates new PacketLoggingConfiguration and load values from
      * configuration service and if missing uses already defined
@@ -57,6 +127,30 @@ public class PacketLoggingConfigurationImpl
             configService.getInt(
                 PACKET_LOGGING_FILE_COUNT_PROPERTY_NAME,
                 getLogfileCount()));
+
+        int queueCapacity
+            = configService.getInt(
+                    PACKET_LOGGING_QUEUE_CAPACITY_PROPERTY_NAME,
+                    DEFAULT_QUEUE_CAPACITY);
+
+        if(queueCapacity > 0)
+            this.queueCapacity = queueCapacity;
+
+        String overflowPolicy
+            = configService.getString(
+                    PACKET_LOGGING_OVERFLOW_POLICY_PROPERTY_NAME);
+
+        if(overflowPolicy != null)
+        {
+            try
+            {
+                this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // keep the default
+            }
+        }
     }
 
     /**
@@ -152,4 +246,87 @@ public class PacketLoggingConfigurationImpl
                 PACKET_LOGGING_FILE_COUNT_PROPERTY_NAME,
                 logfileCount);
     }
+
+    /**
+     * Returns the maximum number of packets waiting to be written.
+     * @return the maximum number of packets waiting to be written.
+     */
+    public int getQueueCapacity()
+    {
+        return queueCapacity;
+    }
+
+    /**
+     * Changes the maximum number of packets waiting to be written. The new
+     * value takes effect when the packet logging is restarted.
+     * @param queueCapacity the new maximum number of packets.
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+        if(queueCapacity <= 0)
+            throw new IllegalArgumentException("queueCapacity");
+
+        this.queueCapacity = queueCapacity;
+
+        PacketLoggingActivator.getConfigurationService().setProperty(
+                PACKET_LOGGING_QUEUE_CAPACITY_PROPERTY_NAME,
+                queueCapacity);
+    }
+
+    /**
+     * Returns the policy applied when the queue of packets waiting to be
+     * written is full.
+     * @return the overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    /**
+     * Changes the policy applied when the queue of packets waiting to be
+     * written is full.
+     * @param overflowPolicy the new overflow policy.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        if(overflowPolicy == null)
+            throw new NullPointerException("overflowPolicy");
+
+        this.overflowPolicy = overflowPolicy;
+
+        PacketLoggingActivator.getConfigurationService().setProperty(
+                PACKET_LOGGING_OVERFLOW_POLICY_PROPERTY_NAME,
+                overflowPolicy.name());
+    }
+
+    /**
+     * Returns the number of packets which have not been logged because the
+     * queue of packets waiting to be written was full.
+     * @return the number of dropped packets.
+     */
+    public long getDroppedPacketCount()
+    {
+        return droppedPacketCount.get();
+    }
+
+    /**
+     * Returns the number of bytes of the packets which have not been logged
+     * because the queue of packets waiting to be written was full.
+     * @return the number of dropped bytes.
+     */
+    public long getDroppedByteCount()
+    {
+        return droppedByteCount.get();
+    }
+
+    /**
+     * Records that a packet has not been logged.
+     * @param packetLength the length of the dropped packet.
+     */
+    void packetDropped(int packetLength)
+    {
+        droppedPacketCount.incrementAndGet();
+        droppedByteCount.addAndGet(packetLength);
+    }
 }
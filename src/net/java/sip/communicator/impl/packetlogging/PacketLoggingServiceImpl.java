@@ -7,6 +7,8 @@
 package net.java.sip.communicator.impl.packetlogging;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import net.java.sip.communicator.util.*;
@@ -29,9 +31,51 @@ public class PacketLoggingServiceImpl
             = Logger.getLogger(PacketLoggingServiceImpl.class);
 
     /**
-     * The OutputStream we are currently writing to.
+     * The size in bytes of the buffer the records are assembled in before
+     * they are written to the file.
      */
-    private FileOutputStream outputStream = null;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of buffered bytes which causes the buffer to be written to
+     * the file even if {@link #FLUSH_INTERVAL} has not passed yet.
+     */
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+
+    /**
+     * The maximum time in milliseconds the records may stay in the buffer
+     * before they are written to the file.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    /**
+     * The length in bytes of the pcap record header.
+     */
+    private static final int RECORD_HEADER_LENGTH = 16;
+
+    /**
+     * The share of packets queued with
+     * {@link PacketLoggingConfigurationImpl.OverflowPolicy#SAMPLE} once the
+     * queue is half full i.e. every <tt>SAMPLE_RATE</tt>-th packet.
+     */
+    private static final int SAMPLE_RATE = 4;
+
+    /**
+     * The channel of the file we are currently writing to.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * The buffer the records are assembled in before they are written to
+     * {@link #channel}. Accessed only with the lock of this instance held.
+     */
+    private final ByteBuffer buffer
+        = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * The time the buffer has last been written to the file.
+     */
+    private long lastFlushTime = 0;
 
     /**
      * The thread that queues packets and saves them to file.
@@ -41,7 +85,7 @@ public class PacketLoggingServiceImpl
     /**
      * The current configuration.
      */
-    private PacketLoggingConfiguration packetLoggingConfiguration = null;
+    private PacketLoggingConfigurationImpl packetLoggingConfiguration = null;
 
     /**
      * The fake ethernet header we use as template. 
@@ -117,6 +161,30 @@ public class PacketLoggingServiceImpl
                 (byte)0x6e, (byte)0xcc, (byte)0x76, (byte)0xbd  // options
             };
 
+    /**
+     * The ipv4 header patched in place for every packet. Only accessed by
+     * the saver thread.
+     */
+    private final byte[] ipHeader = ipHeaderTemplate.clone();
+
+    /**
+     * The ipv6 header patched in place for every packet. Only accessed by
+     * the saver thread.
+     */
+    private final byte[] ip6Header = ip6HeaderTemplate.clone();
+
+    /**
+     * The udp header patched in place for every packet. Only accessed by
+     * the saver thread.
+     */
+    private final byte[] udpHeader = udpHeaderTemplate.clone();
+
+    /**
+     * The tcp header patched in place for every packet. Only accessed by
+     * the saver thread.
+     */
+    private final byte[] tcpHeader = tcpHeaderTemplate.clone();
+
     /**
      * Using this object to lock and protectd the two counters
      * used for tcp seq and ack numbers.
@@ -182,10 +250,11 @@ public class PacketLoggingServiceImpl
     private void rotateFiles()
         throws IOException
     {
-        if(outputStream != null)
+        if(channel != null)
         {
-            outputStream.flush();
-            outputStream.close();
+            flushBuffer();
+            channel.close();
+            channel = null;
         }
 
         for (int i = getConfiguration().getLogfileCount() - 2; i >= 0; i--)
@@ -201,32 +270,84 @@ public class PacketLoggingServiceImpl
             }
         }
 
-        outputStream = new FileOutputStream(files[0]);
+        channel = new FileOutputStream(files[0]).getChannel();
         written = 0;
         createGlobalHeader();
     }
 
     /**
-     * Stops the packet logging.
+     * Writes the buffered records to the file.
+     * @throws IOException
      */
-    public void stop()
+    private void flushBuffer()
+        throws IOException
     {
-        saverThread.stopRunning();
+        buffer.flip();
+        try
+        {
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        finally
+        {
+            buffer.clear();
+        }
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes the buffered records to the file if there are enough of them or
+     * they have waited long enough.
+     *
+     * @return the time in milliseconds until the buffered records are to be
+     * written or <tt>-1</tt> if there are none.
+     */
+    private synchronized long flushIfNeeded()
+    {
+        if(channel == null || buffer.position() == 0)
+            return -1;
+
+        long wait = lastFlushTime + FLUSH_INTERVAL - System.currentTimeMillis();
 
-        if(outputStream != null)
+        if(wait <= 0 || buffer.position() >= FLUSH_THRESHOLD)
         {
             try
             {
-                outputStream.flush();
-                outputStream.close();
+                flushBuffer();
             }
             catch(IOException e)
             {
-                e.printStackTrace();
+                logger.error("Error writing packets to file", e);
             }
-            finally
+            return -1;
+        }
+        return wait;
+    }
+
+    /**
+     * Stops the packet logging.
+     */
+    public void stop()
+    {
+        saverThread.stopRunning();
+
+        synchronized(this)
+        {
+            if(channel != null)
             {
-                outputStream = null;
+                try
+                {
+                    flushBuffer();
+                    channel.close();
+                }
+                catch(IOException e)
+                {
+                    e.printStackTrace();
+                }
+                finally
+                {
+                    channel = null;
+                }
             }
         }
     }
@@ -238,43 +359,29 @@ public class PacketLoggingServiceImpl
     private void createGlobalHeader()
             throws IOException
     {
-        /* magic number(swapped) */
-        outputStream.write(0xd4);
-        outputStream.write(0xc3);
-        outputStream.write(0xb2);
-        outputStream.write(0xa1);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
 
-        /* major version number */
-        outputStream.write(0x02);
-        outputStream.write(0x00);
+        /* magic number */
+        buffer.putInt(0xa1b2c3d4);
 
-        /* minor version number */
-        outputStream.write(0x04);
-        outputStream.write(0x00);
+        /* major and minor version number */
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 4);
 
         /* GMT to local correction */
-        outputStream.write(0x00);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
+        buffer.putInt(0);
 
         /* accuracy of timestamps */
-        outputStream.write(0x00);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
+        buffer.putInt(0);
 
         /* max length of captured packets, in octets */
-        outputStream.write(0xff);
-        outputStream.write(0xff);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
+        buffer.putInt(0xffff);
 
         /* data link type(ethernet) */
-        outputStream.write(0x01);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
-        outputStream.write(0x00);
+        buffer.putInt(1);
+
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        flushBuffer();
     }
 
     /**
@@ -376,17 +483,16 @@ public class PacketLoggingServiceImpl
             int packetOffset,
             int packetLength)
     {
-        saverThread.queuePacket(
-            new Packet(protocol,
-                       sourceAddress,
-                       sourcePort,
-                       destinationAddress,
-                       destinationPort,
-                       transport,
-                       sender,
-                       packetContent,
-                       packetOffset,
-                       packetLength));
+        saverThread.queuePacket(protocol,
+                                sourceAddress,
+                                sourcePort,
+                                destinationAddress,
+                                destinationPort,
+                                transport,
+                                sender,
+                                packetContent,
+                                packetOffset,
+                                packetLength);
     }
 
     /**
@@ -394,7 +500,7 @@ public class PacketLoggingServiceImpl
      *
      * @return the Packet Logging Configuration.
      */
-    public PacketLoggingConfiguration getConfiguration()
+    public PacketLoggingConfigurationImpl getConfiguration()
     {
         if(packetLoggingConfiguration == null)
             packetLoggingConfiguration = new PacketLoggingConfigurationImpl();
@@ -422,9 +528,7 @@ public class PacketLoggingServiceImpl
 
         if(isIPv4)
         {
-            ipHeader = new byte[ipHeaderTemplate.length];
-            System.arraycopy(
-                    ipHeaderTemplate, 0, ipHeader, 0, ipHeader.length);
+            ipHeader = this.ipHeader;
             System.arraycopy(packet.sourceAddress,
                     0,
                     ipHeader,
@@ -438,9 +542,7 @@ public class PacketLoggingServiceImpl
         }
         else
         {
-            ipHeader = new byte[ip6HeaderTemplate.length];
-            System.arraycopy(
-                    ip6HeaderTemplate, 0, ipHeader, 0, ipHeader.length);
+            ipHeader = ip6Header;
             System.arraycopy(packet.sourceAddress,
                     0,
                     ipHeader,
@@ -458,10 +560,7 @@ public class PacketLoggingServiceImpl
         short len;
         if(packet.transport == TransportName.UDP)
         {
-            byte[] udpHeader = new byte[udpHeaderTemplate.length];
             transportHeader = udpHeader;
-            System.arraycopy(udpHeaderTemplate, 0,
-                    udpHeader, 0, udpHeader.length);
 
             writeShort(packet.sourcePort, udpHeader, 0);
             writeShort(packet.destinationPort, udpHeader, 2);
@@ -470,9 +569,7 @@ public class PacketLoggingServiceImpl
         }
         else
         {
-            transportHeader = new byte[tcpHeaderTemplate.length];
-            System.arraycopy(tcpHeaderTemplate, 0, transportHeader,
-                   0, transportHeader.length);
+            transportHeader = tcpHeader;
 
             writeShort(packet.sourcePort, transportHeader, 0);
             writeShort(packet.destinationPort, transportHeader, 2);
@@ -524,6 +621,9 @@ public class PacketLoggingServiceImpl
             else
                 ipHeader[9] = (byte)0x06;
 
+           // the checksum is computed with the checksum field set to 0000
+           ipHeader[10] = 0;
+           ipHeader[11] = 0;
            int chk2 = computeChecksum(ipHeader);
            ipHeader[10] = (byte) (chk2 >> 8);
            ipHeader[11] = (byte) (chk2 & 0xff);
@@ -549,7 +649,7 @@ public class PacketLoggingServiceImpl
         synchronized(this)
         {
             // open files only if needed
-            if(outputStream == null)
+            if(channel == null)
             {
                 getFileNames();
                 rotateFiles();// this one opens the file for write
@@ -560,36 +660,43 @@ public class PacketLoggingServiceImpl
             if((limit > 0) && (written > limit))
                 rotateFiles();
 
-            addInt(tsSec);
-            addInt(tsUsec);
-            addInt(inclLen);
-            addInt(origLen);
-
-            outputStream.write(fakeEthernetHeader);
-            outputStream.write(ipHeader);
-            outputStream.write(transportHeader);
-            outputStream.write(
-                    packet.packetContent,
-                    packet.packetOffset,
-                    packet.packetLength);
-            outputStream.flush();
-
-            written += inclLen + 16;
-        }
-    }
+            if(buffer.remaining() < RECORD_HEADER_LENGTH + inclLen)
+                flushBuffer();
 
-    /**
-     * Writes int to the file. Used for packet headers.
-     * @param d the value to write.
-     * @throws IOException
-     */
-    private void addInt(int d)
-        throws IOException
-    {
-        outputStream.write ((d & 0xff));
-        outputStream.write(((d & 0xff00) >> 8));
-        outputStream.write(((d & 0xff0000) >> 16));
-        outputStream.write(((d & 0xff000000) >> 24));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(tsSec);
+            buffer.putInt(tsUsec);
+            buffer.putInt(inclLen);
+            buffer.putInt(origLen);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+
+            buffer.put(fakeEthernetHeader);
+            buffer.put(ipHeader);
+            buffer.put(transportHeader);
+
+            if(buffer.remaining() < packet.packetLength)
+            {
+                // too big to be buffered, write it directly
+                flushBuffer();
+
+                ByteBuffer content = ByteBuffer.wrap(
+                        packet.packetContent,
+                        packet.packetOffset,
+                        packet.packetLength);
+
+                while(content.hasRemaining())
+                    channel.write(content);
+            }
+            else
+            {
+                buffer.put(
+                        packet.packetContent,
+                        packet.packetOffset,
+                        packet.packetLength);
+            }
+
+            written += inclLen + RECORD_HEADER_LENGTH;
+        }
     }
 
     /**
@@ -648,7 +755,9 @@ public class PacketLoggingServiceImpl
     }
 
     /**
-     * The data we receive and that we will dump in a file.
+     * The data we receive and that we will dump in a file. Instances are
+     * reused for many packets and hold copies of the logged data so that the
+     * callers may reuse their buffers as soon as they have logged them.
      */
     private static class Packet
     {
@@ -703,7 +812,7 @@ public class PacketLoggingServiceImpl
         int packetLength;
 
         /**
-         * Creates a packet with the needed data. 
+         * Copies the data of a packet into this instance.
          * @param protocol the source protocol that logs this packet.
          * @param sourceAddress The source address of the packet.
          * @param sourcePort The source port of the packet.
@@ -717,28 +826,51 @@ public class PacketLoggingServiceImpl
          *  where packet content is.
          * @param packetLength The length of the packet content.
          */
-        private Packet(ProtocolName protocol,
-                       byte[] sourceAddress,
-                       int sourcePort,
-                       byte[] destinationAddress,
-                       int destinationPort,
-                       TransportName transport,
-                       boolean sender,
-                       byte[] packetContent,
-                       int packetOffset,
-                       int packetLength)
+        private void set(ProtocolName protocol,
+                         byte[] sourceAddress,
+                         int sourcePort,
+                         byte[] destinationAddress,
+                         int destinationPort,
+                         TransportName transport,
+                         boolean sender,
+                         byte[] packetContent,
+                         int packetOffset,
+                         int packetLength)
         {
             this.protocol = protocol;
-            this.sourceAddress = sourceAddress;
+            this.sourceAddress = copy(this.sourceAddress, sourceAddress);
             this.sourcePort = sourcePort;
-            this.destinationAddress = destinationAddress;
+            this.destinationAddress
+                = copy(this.destinationAddress, destinationAddress);
             this.destinationPort = destinationPort;
             this.transport = transport;
             this.sender = sender;
-            this.packetContent = packetContent;
-            this.packetOffset = packetOffset;
+
+            if((this.packetContent == null)
+                    || (this.packetContent.length < packetLength))
+                this.packetContent = new byte[packetLength];
+            System.arraycopy(
+                    packetContent, packetOffset,
+                    this.packetContent, 0,
+                    packetLength);
+            this.packetOffset = 0;
             this.packetLength = packetLength;
         }
+
+        /**
+         * Copies an address into an array which is reused if it has the
+         * same length.
+         * @param array the array to reuse or <tt>null</tt>.
+         * @param address the address to copy.
+         * @return the array holding the copy of <tt>address</tt>.
+         */
+        private static byte[] copy(byte[] array, byte[] address)
+        {
+            if((array == null) || (array.length != address.length))
+                array = new byte[address.length];
+            System.arraycopy(address, 0, array, 0, address.length);
+            return array;
+        }
     }
 
     /**
@@ -754,9 +886,27 @@ public class PacketLoggingServiceImpl
         private boolean stopped = true;
 
         /**
-         * List of packets queued to be written in the file.
+         * The ring of packets queued to be written in the file. Allocated
+         * when the first packet is queued, its slots are filled as needed.
          */
-        private final List<Packet> pktsToSave = new ArrayList<Packet>();
+        private Packet[] ring = null;
+
+        /**
+         * The index in {@link #ring} of the oldest queued packet.
+         */
+        private int head = 0;
+
+        /**
+         * The number of packets queued in {@link #ring}.
+         */
+        private int count = 0;
+
+        /**
+         * Counts the packets which arrive while the ring is at least half
+         * full in order to implement
+         * {@link PacketLoggingConfigurationImpl.OverflowPolicy#SAMPLE}.
+         */
+        private int sampleCount = 0;
 
         /**
          * Sends instant messages in separate thread so we don't block
@@ -765,17 +915,25 @@ public class PacketLoggingServiceImpl
         public void run()
         {
             stopped = false;
+            List<Packet> pktsSaving = new ArrayList<Packet>();
+            List<Packet> pktsSaved = new ArrayList<Packet>();
+
             while(!stopped)
             {
-                Packet pktToSave;
+                // write the buffered packets once there are enough of them or
+                // they have waited long enough
+                long wait = flushIfNeeded();
 
                 synchronized(this)
                 {
-                    if(pktsToSave.isEmpty())
+                    if(count == 0)
                     {
                         try
                         {
-                            wait();
+                            if(wait < 0)
+                                wait();
+                            else
+                                wait(wait);
                         }
                         catch (InterruptedException iex)
                         {
@@ -783,10 +941,21 @@ public class PacketLoggingServiceImpl
                         continue;
                     }
 
-                    pktToSave = pktsToSave.remove(0);
+                    // take all queued packets at once and give the ring
+                    // the packets saved last time to fill
+                    while(count > 0)
+                    {
+                        pktsSaving.add(ring[head]);
+                        ring[head]
+                            = pktsSaved.isEmpty()
+                                ? null
+                                : pktsSaved.remove(pktsSaved.size() - 1);
+                        head = (head + 1) % ring.length;
+                        count--;
+                    }
                 }
 
-                if(pktToSave != null)
+                for(Packet pktToSave : pktsSaving)
                 {
                     try
                     {
@@ -804,6 +973,11 @@ public class PacketLoggingServiceImpl
                             logger.error("Error writing packet to file", t);
                     }
                 }
+                List<Packet> pkts = pktsSaved;
+
+                pktsSaved = pktsSaving;
+                pktsSaving = pkts;
+                pktsSaving.clear();
             }
         }
 
@@ -817,12 +991,82 @@ public class PacketLoggingServiceImpl
         }
 
         /**
-         * Schedule new packet for save.
-         * @param packet new packet to save.
+         * Schedule new packet for save. The data of the packet is copied so
+         * the caller may reuse its buffers. If the queue is full the packet
+         * or the oldest queued one is dropped depending on the configured
+         * {@link PacketLoggingConfigurationImpl.OverflowPolicy}.
+         *
+         * @param protocol the source protocol that logs this packet.
+         * @param sourceAddress the source address of the packet.
+         * @param sourcePort the source port of the packet.
+         * @param destinationAddress the destination address.
+         * @param destinationPort the destination port.
+         * @param transport the transport this packet uses.
+         * @param sender are we the sender of the packet or not.
+         * @param packetContent the packet content.
+         * @param packetOffset the packet content offset.
+         * @param packetLength the packet content length.
          */
-        public synchronized void queuePacket(Packet packet)
+        public synchronized void queuePacket(ProtocolName protocol,
+                                             byte[] sourceAddress,
+                                             int sourcePort,
+                                             byte[] destinationAddress,
+                                             int destinationPort,
+                                             TransportName transport,
+                                             boolean sender,
+                                             byte[] packetContent,
+                                             int packetOffset,
+                                             int packetLength)
         {
-            pktsToSave.add(packet);
+            PacketLoggingConfigurationImpl cfg = getConfiguration();
+
+            if(ring == null)
+                ring = new Packet[cfg.getQueueCapacity()];
+
+            PacketLoggingConfigurationImpl.OverflowPolicy policy
+                = cfg.getOverflowPolicy();
+
+            if(count == ring.length)
+            {
+                if(policy
+                        == PacketLoggingConfigurationImpl.OverflowPolicy
+                                .DROP_OLDEST)
+                {
+                    cfg.packetDropped(ring[head].packetLength);
+                    head = (head + 1) % ring.length;
+                    count--;
+                }
+                else
+                {
+                    cfg.packetDropped(packetLength);
+                    return;
+                }
+            }
+            else if((policy
+                        == PacketLoggingConfigurationImpl.OverflowPolicy.SAMPLE)
+                    && (count >= ring.length / 2)
+                    && (sampleCount++ % SAMPLE_RATE != 0))
+            {
+                cfg.packetDropped(packetLength);
+                return;
+            }
+
+            int tail = (head + count) % ring.length;
+            Packet packet = ring[tail];
+
+            if(packet == null)
+                ring[tail] = packet = new Packet();
+            packet.set(protocol,
+                       sourceAddress,
+                       sourcePort,
+                       destinationAddress,
+                       destinationPort,
+                       transport,
+                       sender,
+                       packetContent,
+                       packetOffset,
+                       packetLength);
+            count++;
             notifyAll();
         }
     }
@@ -170,6 +170,7 @@ public class ContactGroupJabberImpl
     void addContact(ContactJabberImpl contact)
     {
         buddies.put(contact.getAddress().toLowerCase(), contact);
+        ssclCallback.indexContact(contact, this);
     }
 
 
@@ -179,7 +180,8 @@ public class ContactGroupJabberImpl
      */
     void removeContact(ContactJabberImpl contact)
     {
-        buddies.remove(contact.getAddress().toLowerCase());
+        if(buddies.remove(contact.getAddress().toLowerCase()) != null)
+            ssclCallback.unindexContact(contact, this);
     }
 
     /**
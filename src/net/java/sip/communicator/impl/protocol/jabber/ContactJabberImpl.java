@@ -30,6 +30,12 @@ public class ContactJabberImpl
      */
     private byte[] image = null;
 
+    /**
+     * The hexadecimal representation of the SHA-1 hash of {@link #image} or
+     * <tt>null</tt> if it has not been computed yet.
+     */
+    private String imageSha1 = null;
+
     /**
      * The status of the contact as per the last status update we've
      * received for it.
@@ -181,8 +187,37 @@ public class ContactJabberImpl
      *  @param imgBytes the bytes of the image that we'd like to set.
      */
     public void setImage(byte[] imgBytes)
+    {
+        setImage(imgBytes, null);
+    }
+
+    /**
+     * Sets the image of the contact along with the hexadecimal representation
+     * of the SHA-1 hash of its bytes so that the hash does not have to be
+     * computed.
+     *
+     * @param imgBytes the bytes of the image that we'd like to set.
+     * @param imgSha1 the hexadecimal representation of the SHA-1 hash of
+     * <tt>imgBytes</tt> or <tt>null</tt> if it is to be computed when needed
+     */
+    public synchronized void setImage(byte[] imgBytes, String imgSha1)
     {
         this.image = imgBytes;
+        this.imageSha1 = imgSha1;
+    }
+
+    /**
+     * Returns the hexadecimal representation of the SHA-1 hash of the image
+     * of this contact. The hash is computed at most once per image.
+     *
+     * @return the hexadecimal representation of the SHA-1 hash of the image
+     * of this contact or <tt>null</tt> if this contact has no image
+     */
+    public synchronized String getImageSha1()
+    {
+        if ((imageSha1 == null) && (image != null))
+            imageSha1 = VCardTempXUpdatePresenceExtension.getImageSha1(image);
+        return imageSha1;
     }
 
     /**
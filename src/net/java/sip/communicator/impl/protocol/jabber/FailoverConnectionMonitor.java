@@ -59,12 +59,6 @@ public class FailoverConnectionMonitor
     private static Hashtable<ProtocolProviderServiceJabberImpl, FailoverConnectionMonitor>
         providerFilovers = new Hashtable<ProtocolProviderServiceJabberImpl, FailoverConnectionMonitor>();
 
-    /**
-     * The timer that periodically will trigger a task to check primary server
-     * if we are in failover state.
-     */
-    private Timer checkTimer;
-
     /**
      * The task to be triggered to check primary server or whether we are now
      * connected to primary one.
@@ -186,16 +180,14 @@ public class FailoverConnectionMonitor
     {
         if(evt.getNewState() == RegistrationState.REGISTERED)
         {
-            if(checkTimer == null)
-                checkTimer = new Timer(
-                    FailoverConnectionMonitor.class.getName(), true);
-
             if(task == null)
+            {
                 task = new CheckPrimaryTask();
 
-            checkTimer.schedule(task,
-                CHECK_FOR_PRIMARY_UP_INTERVAL,
-                CHECK_FOR_PRIMARY_UP_INTERVAL);
+                SharedTimer.getInstance().schedule(task,
+                    CHECK_FOR_PRIMARY_UP_INTERVAL,
+                    CHECK_FOR_PRIMARY_UP_INTERVAL);
+            }
         }
         else if(evt.getNewState() == RegistrationState.UNREGISTERED
              || evt.getNewState() == RegistrationState.AUTHENTICATION_FAILED
@@ -208,12 +200,6 @@ public class FailoverConnectionMonitor
                 parentProvider.removeRegistrationStateChangeListener(this);
             }
 
-            if(checkTimer != null)
-            {
-                checkTimer.cancel();
-                checkTimer = null;
-            }
-            
             if(task != null)
             {
                 task.cancel();
@@ -226,11 +212,30 @@ public class FailoverConnectionMonitor
      * The task that will make the checks.
      */
     private class CheckPrimaryTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
+        /**
+         * The thread which executes the check. The check connects to the
+         * primary server and re-registers the provider so it must not block
+         * the thread of the <tt>SharedTimer</tt>.
+         */
+        private Thread thread = null;
+
         @Override
         public void run()
         {
+            if(thread == null || !Thread.currentThread().equals(thread))
+            {
+                // the previous check has not finished yet
+                if(thread != null && thread.isAlive())
+                    return;
+
+                thread = new Thread(this, getClass().getName());
+                thread.setDaemon(true);
+                thread.start();
+                return;
+            }
+
             try
             {
                 // make srv lookup to check if dns changed and we are
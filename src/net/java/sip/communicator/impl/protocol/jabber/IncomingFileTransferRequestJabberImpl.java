@@ -149,7 +149,7 @@ public class IncomingFileTransferRequestJabberImpl
             jabberTransfer.recieveFile(file);
 
             new OperationSetFileTransferJabberImpl
-                .FileTransferProgressThread(
+                .FileTransferProgressTask(
                 jabberTransfer, incomingTransfer, getFileSize()).start();
         }
         catch (XMPPException e)
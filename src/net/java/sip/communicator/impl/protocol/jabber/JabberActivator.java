@@ -18,6 +18,7 @@ import net.java.sip.communicator.service.resources.*;
 import net.java.sip.communicator.util.*;
 
 import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.packetlogging.*;
 import org.jitsi.service.resources.*;
@@ -112,6 +113,12 @@ public class JabberActivator
      */
     private static VersionService versionService        = null;
 
+    /**
+     * A reference to the currently valid <tt>FileAccessService</tt>
+     * instance.
+     */
+    private static FileAccessService fileAccessService  = null;
+
     /**
      * Called when this bundle is started so the Framework can perform the
      * bundle-specific activities necessary to start this bundle.
@@ -165,6 +172,26 @@ public class JabberActivator
         return configurationService;
     }
 
+    /**
+     * Returns a reference to a FileAccessService implementation currently
+     * registered in the bundle context or null if no such implementation was
+     * found.
+     *
+     * @return a currently valid implementation of the FileAccessService or
+     * null if no such implementation was found.
+     */
+    public static FileAccessService getFileAccessService()
+    {
+        if (fileAccessService == null)
+        {
+            fileAccessService
+                = ServiceUtils.getService(
+                        bundleContext,
+                        FileAccessService.class);
+        }
+        return fileAccessService;
+    }
+
     /**
      * Returns a reference to the bundle context that we were started with.
      * @return a reference to the BundleContext instance that we were started
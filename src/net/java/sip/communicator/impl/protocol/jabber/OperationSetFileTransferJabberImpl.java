@@ -18,6 +18,7 @@ import net.java.sip.communicator.service.protocol.event.FileTransferListener;
 import net.java.sip.communicator.service.protocol.jabberconstants.*;
 import net.java.sip.communicator.util.*;
 
+import org.jitsi.service.configuration.*;
 import org.jivesoftware.smack.*;
 import org.jivesoftware.smack.filter.*;
 import org.jivesoftware.smack.packet.*;
@@ -43,6 +44,27 @@ public class OperationSetFileTransferJabberImpl
     private static final Logger logger =
         Logger.getLogger(OperationSetFileTransferJabberImpl.class);
 
+    /**
+     * The name of the property which holds the interval in milliseconds at
+     * which the status and progress of a file transfer are checked and thus
+     * the maximum rate at which progress events are fired.
+     */
+    public static final String PNAME_PROGRESS_INTERVAL
+        = "net.java.sip.communicator.impl.protocol.jabber."
+            + "FILE_TRANSFER_PROGRESS_INTERVAL";
+
+    /**
+     * The default interval in milliseconds at which the status and progress
+     * of a file transfer are checked.
+     */
+    private static final long DEFAULT_PROGRESS_INTERVAL = 100;
+
+    /**
+     * The minimum interval in milliseconds at which the status and progress
+     * of a file transfer are checked.
+     */
+    private static final long MIN_PROGRESS_INTERVAL = 10;
+
      /**
      * The provider that created us.
      */
@@ -193,8 +215,8 @@ public class OperationSetFileTransferJabberImpl
             // Send the file through the Jabber file transfer.
             transfer.sendFile(file, "Sending file");
 
-            // Start the status and progress thread.
-            new FileTransferProgressThread(
+            // Start updating the status and progress.
+            new FileTransferProgressTask(
                 transfer, outgoingTransfer).start();
         }
         catch(XMPPException e)
@@ -523,9 +545,12 @@ public class OperationSetFileTransferJabberImpl
 
     /**
      * Updates file transfer progress and status while sending or receiving a
-     * file.
+     * file. Samples the Jabber transfer on the <tt>SharedTimer</tt> at the
+     * interval configured by {@link #PNAME_PROGRESS_INTERVAL} and fires
+     * events only when the status or the number of transferred bytes has
+     * changed.
      */
-    protected static class FileTransferProgressThread extends Thread
+    protected static class FileTransferProgressTask extends SharedTimer.Task
     {
         private final org.jivesoftware.smackx.filetransfer.FileTransfer
             jabberTransfer;
@@ -533,7 +558,13 @@ public class OperationSetFileTransferJabberImpl
 
         private long initialFileSize;
 
-        public FileTransferProgressThread(
+        /**
+         * The number of transferred bytes last reported to the listeners of
+         * {@link #fileTransfer} or <tt>-1</tt> if none has been reported yet.
+         */
+        private long lastProgress = -1;
+
+        public FileTransferProgressTask(
             org.jivesoftware.smackx.filetransfer.FileTransfer jabberTransfer,
             AbstractFileTransfer transfer,
             long initialFileSize)
@@ -543,7 +574,7 @@ public class OperationSetFileTransferJabberImpl
             this.initialFileSize = initialFileSize;
         }
 
-        public FileTransferProgressThread(
+        public FileTransferProgressTask(
             org.jivesoftware.smackx.filetransfer.FileTransfer jabberTransfer,
             AbstractFileTransfer transfer)
         {
@@ -552,63 +583,93 @@ public class OperationSetFileTransferJabberImpl
         }
 
         /**
-         * Thread entry point.
+         * Starts updating the progress and status of the file transfer.
          */
-        public void run()
+        public void start()
         {
-            int status;
-            long progress;
-            String statusReason = "";
+            ConfigurationService cfg
+                = JabberActivator.getConfigurationService();
+            long interval = DEFAULT_PROGRESS_INTERVAL;
+
+            if (cfg != null)
+                interval = cfg.getLong(PNAME_PROGRESS_INTERVAL, interval);
+            if (interval < MIN_PROGRESS_INTERVAL)
+                interval = MIN_PROGRESS_INTERVAL;
+
+            SharedTimer.getInstance().schedule(this, interval, interval);
+        }
 
-            while (true)
+        /**
+         * Fires a progress event unless the listeners have already been told
+         * about the given number of transferred bytes.
+         *
+         * @param progress the number of transferred bytes
+         */
+        private void fireProgressChangeEvent(long progress)
+        {
+            if (progress != lastProgress)
             {
-                try
-                {
-                    Thread.sleep(10);
+                lastProgress = progress;
+                fileTransfer.fireProgressChangeEvent(
+                    System.currentTimeMillis(), progress);
+            }
+        }
 
-                    status = parseJabberStatus(jabberTransfer.getStatus());
-                    progress = fileTransfer.getTransferedBytes();
+        /**
+         * Checks the status and progress of the Jabber transfer and fires the
+         * events for whatever has changed since the previous check.
+         */
+        @Override
+        public void run()
+        {
+            int status = parseJabberStatus(jabberTransfer.getStatus());
+            long progress = fileTransfer.getTransferedBytes();
 
-                    if (status == FileTransferStatusChangeEvent.FAILED
-                        || status == FileTransferStatusChangeEvent.COMPLETED
-                        || status == FileTransferStatusChangeEvent.CANCELED
-                        || status == FileTransferStatusChangeEvent.REFUSED)
-                    {
-                        if (fileTransfer instanceof
-                                OutgoingFileTransferJabberImpl)
-                        {
-                            ((OutgoingFileTransferJabberImpl) fileTransfer)
-                                .removeThumbnailRequestListener();
-                        }
+            if (status == FileTransferStatusChangeEvent.FAILED
+                || status == FileTransferStatusChangeEvent.COMPLETED
+                || status == FileTransferStatusChangeEvent.CANCELED
+                || status == FileTransferStatusChangeEvent.REFUSED)
+            {
+                cancel();
+                transferFinished(status, progress);
+                return;
+            }
 
-                        // sometimes a filetransfer can be preparing
-                        // and than completed :
-                        // transfered in one iteration of current thread
-                        // so it won't go through intermediate state - inProgress
-                        // make sure this won't happen
-                        if(status == FileTransferStatusChangeEvent.COMPLETED
-                            && fileTransfer.getStatus()
-                                == FileTransferStatusChangeEvent.PREPARING)
-                        {
-                            fileTransfer.fireStatusChangeEvent(
-                                FileTransferStatusChangeEvent.IN_PROGRESS,
-                                "Status changed");
-                            fileTransfer.fireProgressChangeEvent(
-                                System.currentTimeMillis(), progress);
-                        }
+            // AbstractFileTransfer drops the status events which change
+            // nothing
+            fileTransfer.fireStatusChangeEvent(status, "Status changed");
+            fireProgressChangeEvent(progress);
+        }
 
-                        break;
-                    }
+        /**
+         * Fires the final status and progress events of the file transfer.
+         *
+         * @param status the status the Jabber transfer has finished with
+         * @param progress the number of transferred bytes
+         */
+        private void transferFinished(int status, long progress)
+        {
+            String statusReason = "";
 
-                    fileTransfer.fireStatusChangeEvent(status, "Status changed");
-                    fileTransfer.fireProgressChangeEvent(
-                        System.currentTimeMillis(), progress);
-                }
-                catch (InterruptedException e)
-                {
-                    if (logger.isDebugEnabled())
-                        logger.debug("Unable to sleep thread.", e);
-                }
+            if (fileTransfer instanceof OutgoingFileTransferJabberImpl)
+            {
+                ((OutgoingFileTransferJabberImpl) fileTransfer)
+                    .removeThumbnailRequestListener();
+            }
+
+            // sometimes a filetransfer can be preparing
+            // and than completed :
+            // transfered between two checks of this task
+            // so it won't go through intermediate state - inProgress
+            // make sure this won't happen
+            if(status == FileTransferStatusChangeEvent.COMPLETED
+                && fileTransfer.getStatus()
+                    == FileTransferStatusChangeEvent.PREPARING)
+            {
+                fileTransfer.fireStatusChangeEvent(
+                    FileTransferStatusChangeEvent.IN_PROGRESS,
+                    "Status changed");
+                fireProgressChangeEvent(progress);
             }
 
             if (jabberTransfer.getError() != null)
@@ -644,8 +705,7 @@ public class OperationSetFileTransferJabberImpl
             }
 
             fileTransfer.fireStatusChangeEvent(status, statusReason);
-            fileTransfer.fireProgressChangeEvent(
-                System.currentTimeMillis(), progress);
+            fireProgressChangeEvent(progress);
         }
     }
 
@@ -102,6 +102,12 @@ public class OperationSetPersistentPresenceJabberImpl
     private VCardTempXUpdatePresenceExtension vCardTempXUpdatePresenceExtension
         = null;
 
+    /**
+     * Retrieves the avatars advertised by the contacts in presence packets
+     * away from the thread which processes the packets.
+     */
+    private final VCardAvatarRetriever avatarRetriever;
+
     /**
      * Creates the OperationSet.
      * @param provider the parent provider.
@@ -120,6 +126,8 @@ public class OperationSetPersistentPresenceJabberImpl
         ssContactList = new ServerStoredContactListJabberImpl(
             this , provider, infoRetreiver);
 
+        avatarRetriever = new VCardAvatarRetriever(this, provider);
+
         parentProvider.addRegistrationStateChangeListener(
             new RegistrationStateListener());
     }
@@ -887,6 +895,7 @@ public class OperationSetPersistentPresenceJabberImpl
                 fireProviderStatusChangeEvent(oldStatus, currentStatus);
 
                 ssContactList.cleanup();
+                avatarRetriever.clear();
                 subscribtionPacketListener = null;
 
                 if(parentProvider.getConnection() != null &&
@@ -1438,8 +1447,6 @@ public class OperationSetPersistentPresenceJabberImpl
             return;
         }
 
-        byte[] currentAvatar = sourceContact.getImage(false);
-
         // Get the packet extension which contains the photo tag.
         DefaultPacketExtension defaultPacketExtension =
             (DefaultPacketExtension) packet.getExtension(
@@ -1447,40 +1454,26 @@ public class OperationSetPersistentPresenceJabberImpl
                     VCardTempXUpdatePresenceExtension.NAMESPACE);
         if(defaultPacketExtension != null)
         {
-            try
+            String packetPhotoSHA1 =
+                defaultPacketExtension.getValue("photo");
+
+            if(packetPhotoSHA1 == null)
+                return;
+
+            // If this presence packet has an empty photo tag, then the
+            // contact has removed its avatar from the server.
+            if(packetPhotoSHA1.length() == 0)
             {
-                String packetPhotoSHA1 =
-                    defaultPacketExtension.getValue("photo");
-                // If this presence packet has a photo tag with a SHA-1 hash
-                // which differs from the current avatar SHA-1 hash, then Jitsi
-                // retrieves the new avatar image and updates this contact image
-                // in the contact list.
-                if(packetPhotoSHA1 != null
-                        && !packetPhotoSHA1.equals(
-                            VCardTempXUpdatePresenceExtension.getImageSha1(
-                                currentAvatar))
-                  )
-                {
-                    byte[] newAvatar = null;
+                byte[] currentAvatar = sourceContact.getImage(false);
 
-                    // If there is an avatar image, retrieves it. 
-                    if(packetPhotoSHA1.length() != 0)
-                    {
-                        // Retrieves the new contact avatar image.
-                        VCard vCard = new VCard();
-                        vCard.load(parentProvider.getConnection(), userID);
-                        newAvatar = vCard.getAvatar();
-                    }
-                    // Else removes the current avatar image, since the contact
-                    // has removed it from the server.
-                    else
-                    {
-                        newAvatar = new byte[0];
-                    }
+                if(currentAvatar == null || currentAvatar.length != 0)
+                {
+                    byte[] newAvatar = new byte[0];
 
                     // Sets the new avatar image to the Jitsi contact.
                     sourceContact.setImage(newAvatar);
-                    // Fires a property change event to update the contact list.
+                    // Fires a property change event to update the contact
+                    // list.
                     this.fireContactPropertyChangeEvent(
                         ContactPropertyChangeEvent.PROPERTY_IMAGE,
                         sourceContact,
@@ -1488,11 +1481,15 @@ public class OperationSetPersistentPresenceJabberImpl
                         newAvatar);
                 }
             }
-            catch(XMPPException ex)
+            // If this presence packet has a photo tag with a SHA-1 hash
+            // which differs from the hash of the current avatar (which the
+            // contact keeps so that it is not recomputed), then Jitsi
+            // retrieves the new avatar image asynchronously and updates this
+            // contact image in the contact list.
+            else if(!packetPhotoSHA1.equalsIgnoreCase(
+                        sourceContact.getImageSha1()))
             {
-                logger.info("Cannot retrieve vCard from: " + packet.getFrom());
-                if(logger.isTraceEnabled())
-                    logger.trace("vCard retrieval exception was: ", ex);
+                avatarRetriever.retrieve(sourceContact, packetPhotoSHA1);
             }
         }
     }
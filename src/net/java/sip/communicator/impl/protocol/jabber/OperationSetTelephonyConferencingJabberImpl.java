@@ -54,10 +54,11 @@ public class OperationSetTelephonyConferencingJabberImpl
     private final Object lock = new Object();
 
     /**
-     * The value of the <tt>version</tt> attribute to be specified in the
-     * outgoing <tt>conference-info</tt> root XML elements.
+     * The conference-info last sent to each <tt>CallPeer</tt> so that the
+     * next notifications carry only the changes.
      */
-    private int version = 1;
+    private final Map<CallPeer, ConferenceInfoState> conferenceInfoStates
+        = new HashMap<CallPeer, ConferenceInfoState>();
 
     /**
      * Initializes a new <tt>OperationSetTelephonyConferencingJabberImpl</tt>
@@ -96,12 +97,28 @@ public class OperationSetTelephonyConferencingJabberImpl
                 {
                     notify(i.next());
                 }
-
-                version++;
             }
         }
     }
 
+    /**
+     * Notifies this <tt>CallChangeListener</tt> that a specific
+     * <tt>CallPeer</tt> has been remove from a specific <tt>Call</tt>.
+     *
+     * @param event a <tt>CallPeerEvent</tt> which specifies the
+     * <tt>CallPeer</tt> which has been removed from a <tt>Call</tt>
+     */
+    @Override
+    public void callPeerRemoved(CallPeerEvent event)
+    {
+        synchronized (lock)
+        {
+            conferenceInfoStates.remove(event.getSourceCallPeer());
+        }
+
+        super.callPeerRemoved(event);
+    }
+
     /**
      * Notifies a specific <tt>CallPeer</tt> about changes in the telephony
      * conference-related information.
@@ -134,10 +151,25 @@ public class OperationSetTelephonyConferencingJabberImpl
             logger.warn("Failed to retrieve DiscoverInfo for " + to, xmppe);
         }
 
-        IQ iq = getConferenceInfo((CallPeerJabberImpl) callPeer, version);
+        ConferenceInfoState conferenceInfoState
+            = conferenceInfoStates.get(callPeer);
+
+        if (conferenceInfoState == null)
+        {
+            conferenceInfoState = new ConferenceInfoState();
+            conferenceInfoStates.put(callPeer, conferenceInfoState);
+        }
+
+        IQ iq
+            = getConferenceInfo(
+                    (CallPeerJabberImpl) callPeer,
+                    conferenceInfoState);
 
         if (iq != null)
+        {
             parentProvider.getConnection().sendPacket(iq);
+            conferenceInfoState.commit();
+        }
     }
 
     /**
@@ -268,32 +300,77 @@ public class OperationSetTelephonyConferencingJabberImpl
     /**
      * Generates the conference-info IQ to be sent to a specific
      * <tt>CallPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer.
+     * conference managed by the local peer. Unless nothing has been sent to
+     * the <tt>callPeer</tt> yet, the generated conference-info is a
+     * <tt>state="partial"</tt> one which carries only the users that have
+     * changed since the previous notification.
      *
      * @param callPeer the <tt>CallPeer</tt> to generate conference-info XML for
-     * @param version the value of the version attribute of the
-     * <tt>conference-info</tt> root element of the conference-info XML to be
-     * generated
+     * @param conferenceInfoState the conference-info last sent to
+     * <tt>callPeer</tt> which is to be updated with the generated one
      * @return the conference-info IQ to be sent to the specified
      * <tt>callPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer
+     * conference managed by the local peer or <tt>null</tt> if nothing has
+     * changed since the previous notification
      */
-    private IQ getConferenceInfo(CallPeerJabberImpl callPeer, int version)
+    private IQ getConferenceInfo(
+            CallPeerJabberImpl callPeer,
+            ConferenceInfoState conferenceInfoState)
     {
         String callPeerSID = callPeer.getSID();
 
         if (callPeerSID == null)
             return null;
 
-        CoinIQ iq = new CoinIQ();
         CallJabberImpl call = callPeer.getCall();
+        List<CallPeer> conferenceCallPeers = CallConference.getCallPeers(call);
+        Map<String, UserPacketExtension> users
+            = new LinkedHashMap<String, UserPacketExtension>();
+
+        // user
+        String ourEntity = "xmpp:" + parentProvider.getOurJID();
+        UserPacketExtension user = new UserPacketExtension(ourEntity);
+
+        // endpoint
+        EndpointPacketExtension endpoint
+            = new EndpointPacketExtension(ourEntity);
+        endpoint.setStatus(EndpointStatusType.connected);
+
+        // media
+        List<MediaPacketExtension> medias = getMedia(callPeer, false);
+
+        for(MediaPacketExtension media : medias)
+            endpoint.addChildExtension(media);
+        user.addChildExtension(endpoint);
+        users.put(ourEntity, user);
+
+        // other users
+        for (CallPeer conferenceCallPeer : conferenceCallPeers)
+        {
+            users.put(
+                    conferenceCallPeer.getAddress(),
+                    getUser(conferenceCallPeer));
+        }
+
+        Map<String, String> usersXML = new LinkedHashMap<String, String>();
+
+        for (Map.Entry<String, UserPacketExtension> e : users.entrySet())
+            usersXML.put(e.getKey(), e.getValue().toXML());
+
+        boolean fullState = conferenceInfoState.isFullStateRequired();
+        Map<String, String> changes = conferenceInfoState.update(usersXML);
+
+        if (!fullState && changes.isEmpty())
+            return null;
+
+        CoinIQ iq = new CoinIQ();
 
         iq.setFrom(call.getProtocolProvider().getOurJID());
         iq.setTo(callPeer.getAddress());
         iq.setType(Type.SET);
         iq.setEntity(getBasicTelephony().getProtocolProvider().getOurJID());
-        iq.setVersion(version);
-        iq.setState(StateType.full);
+        iq.setVersion(conferenceInfoState.getVersion());
+        iq.setState(fullState ? StateType.full : StateType.partial);
         iq.setSID(callPeerSID);
 
         // conference-description
@@ -301,37 +378,34 @@ public class OperationSetTelephonyConferencingJabberImpl
 
         // conference-state
         StatePacketExtension state = new StatePacketExtension();
-        List<CallPeer> conferenceCallPeers = CallConference.getCallPeers(call);
 
         state.setUserCount(
                 1 /* the local peer/user */ + conferenceCallPeers.size());
         iq.addExtension(state);
 
         // users
-        UsersPacketExtension users = new UsersPacketExtension();
-
-        // user
-        UserPacketExtension user
-            = new UserPacketExtension("xmpp:" + parentProvider.getOurJID());
+        UsersPacketExtension usersExt = new UsersPacketExtension();
 
-        // endpoint
-        EndpointPacketExtension endpoint = new EndpointPacketExtension(
-            "xmpp:" + parentProvider.getOurJID());
-        endpoint.setStatus(EndpointStatusType.connected);
-
-        // media
-        List<MediaPacketExtension> medias = getMedia(callPeer, false);
-
-        for(MediaPacketExtension media : medias)
-            endpoint.addChildExtension(media);
-        user.addChildExtension(endpoint);
-        users.addChildExtension(user);
+        for (Map.Entry<String, String> change : changes.entrySet())
+        {
+            String entity = change.getKey();
 
-        // other users
-        for (CallPeer conferenceCallPeer : conferenceCallPeers)
-            users.addChildExtension(getUser(conferenceCallPeer));
+            if (change.getValue() != null)
+                usersExt.addChildExtension(users.get(entity));
+            else
+            {
+                // deleted user
+                UserPacketExtension deletedUser
+                    = new UserPacketExtension(entity);
+
+                deletedUser.setAttribute(
+                        UserPacketExtension.STATE_ATTR_NAME,
+                        StateType.deleted);
+                usersExt.addChildExtension(deletedUser);
+            }
+        }
 
-        iq.addExtension(users);
+        iq.addExtension(usersExt);
         return iq;
     }
 
@@ -6,6 +6,7 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber;
 
+import java.io.*;
 import java.math.*;
 import java.net.*;
 import java.security.*;
@@ -222,6 +223,15 @@ public class ProtocolProviderServiceJabberImpl
     private static final String IS_CALLING_DISABLED
         = "net.java.sip.communicator.impl.protocol.jabber.CALLING_DISABLED";
 
+    /**
+     * The name of the property under which the user may specify if the
+     * addresses of the SRV records should be tried one after another instead
+     * of racing connections to them.
+     */
+    private static final String IS_CONNECTION_RACING_DISABLED
+        = "net.java.sip.communicator.impl.protocol.jabber." +
+            "CONNECTION_RACING_DISABLED";
+
     /**
      * Smack packet reply timeout.
      */
@@ -358,6 +368,14 @@ public class ProtocolProviderServiceJabberImpl
      */
     private org.jivesoftware.smack.proxy.ProxyInfo proxy;
 
+    /**
+     * The socket which has won the connection race in
+     * {@link #connectUsingSRVRecords(String, String, boolean[],
+     * JabberLoginStrategy)} and is to be used by the next connection to its
+     * remote address.
+     */
+    private Socket racedSocket;
+
     /**
      * Our provider manager instances.
      */
@@ -844,25 +862,33 @@ public class ProtocolProviderServiceJabberImpl
 
         if(srvRecords != null)
         {
-            for(SRVRecord srv : srvRecords)
+            // resolve the targets of all SRV records at once instead of one
+            // after another
+            Exception[] exceptions = new Exception[srvRecords.length];
+            InetSocketAddress[][] srvAddresses
+                = ConnectionRacer.resolve(
+                        srvRecords,
+                        ConnectionRacer.DNS_RESOLVER,
+                        exceptions);
+            List<InetSocketAddress> candidates
+                = new ArrayList<InetSocketAddress>();
+            Map<InetSocketAddress, SRVRecord> srvByAddress
+                = new HashMap<InetSocketAddress, SRVRecord>();
+
+            for(int i = 0; i < srvRecords.length; i++)
             {
-                InetSocketAddress[] addrs = null;
-                try
-                {
-                    addrs =
-                        NetworkUtils.getAandAAAARecords(
-                            srv.getTarget(),
-                            srv.getPort()
-                        );
-                }
-                catch (ParseException e)
+                SRVRecord srv = srvRecords[i];
+                InetSocketAddress[] addrs = srvAddresses[i];
+
+                if (exceptions[i] instanceof DnssecException)
                 {
-                    logger.error("Invalid SRV record target", e);
+                    logger.error("DNSSEC failure for A/AAAA lookup of SRV",
+                        exceptions[i]);
+                    dnssecState[0] = true;
                 }
-                catch (DnssecException e)
+                else if (exceptions[i] != null)
                 {
-                    logger.error("DNSSEC failure for A/AAAA lookup of SRV", e);
-                    dnssecState[0] = true;
+                    logger.error("Invalid SRV record target", exceptions[i]);
                 }
 
                 if (addrs == null || addrs.length == 0)
@@ -874,6 +900,20 @@ public class ProtocolProviderServiceJabberImpl
 
                 for (InetSocketAddress isa : addrs)
                 {
+                    if (!srvByAddress.containsKey(isa))
+                    {
+                        candidates.add(isa);
+                        srvByAddress.put(isa, srv);
+                    }
+                }
+            }
+
+            try
+            {
+                for (InetSocketAddress isa : raceConnections(candidates))
+                {
+                    SRVRecord srv = srvByAddress.get(isa);
+
                     try
                     {
                         // if failover mechanism is enabled, use it,
@@ -906,6 +946,10 @@ public class ProtocolProviderServiceJabberImpl
                     }
                 }
             }
+            finally
+            {
+                closeRacedSocket();
+            }
         }
         else
             logger.error("No SRV addresses found for _xmpp-client._tcp."
@@ -914,6 +958,68 @@ public class ProtocolProviderServiceJabberImpl
         return ConnectState.CONTINUE_TRYING;
     }
 
+    /**
+     * Races connections to specific addresses unless a proxy is used or
+     * racing has been disabled. The address which has accepted a connection
+     * first is tried first and its connected socket is kept in
+     * {@link #racedSocket} for the connection to it. The addresses which have
+     * refused the connection or have timed out are dropped.
+     *
+     * @param candidates the addresses to connect to in order of preference
+     * @return the addresses to try to connect to in the order to try them
+     */
+    private List<InetSocketAddress> raceConnections(
+        List<InetSocketAddress> candidates)
+    {
+        if(candidates.size() < 2
+            || proxy == null
+            || proxy.getProxyType()
+                != org.jivesoftware.smack.proxy.ProxyInfo.ProxyType.NONE
+            || JabberActivator.getConfigurationService().getBoolean(
+                    IS_CONNECTION_RACING_DISABLED, false))
+            return candidates;
+
+        InetSocketAddress[] addrs
+            = ConnectionRacer.interleave(
+                candidates.toArray(new InetSocketAddress[candidates.size()]));
+        ConnectionRacer racer = new ConnectionRacer();
+        Socket socket = racer.race(addrs);
+
+        if(socket == null)
+        {
+            // let the regular connect fail with the usual error reporting
+            return candidates.subList(0, 1);
+        }
+
+        List<InetSocketAddress> ordered
+            = Arrays.asList(racer.rank(addrs, socket));
+
+        closeRacedSocket();
+        racedSocket = socket;
+        return ordered;
+    }
+
+    /**
+     * Closes {@link #racedSocket} if it has not been used by a connection.
+     */
+    private void closeRacedSocket()
+    {
+        Socket socket = racedSocket;
+
+        racedSocket = null;
+        if(socket != null)
+        {
+            try
+            {
+                socket.close();
+            }
+            catch(IOException ex)
+            {
+                logger.debug("Failed to close unused socket", ex);
+            }
+        }
+    }
+
     /**
      * Tries to login to the XMPP server with the supplied user ID. If the
      * protocol is Google Talk, the user ID including the service name is used.
@@ -1118,6 +1224,15 @@ public class ProtocolProviderServiceJabberImpl
         );
 
         confConn.setReconnectionAllowed(false);
+
+        // reuse the socket which has won the connection race
+        if(racedSocket != null)
+        {
+            confConn.setSocketFactory(
+                ConnectionRacer.createSocketFactory(racedSocket));
+            racedSocket = null;
+        }
+
         boolean tlsRequired = loginStrategy.isTlsRequired();
 
         // user have the possibility to disable TLS but in this case, it will
@@ -38,13 +38,23 @@ public class RootContactGroupJabberImpl
 
     private final ProtocolProviderServiceJabberImpl protocolProvider;
 
+    /**
+     * The contact list this group is the root of.
+     */
+    private final ServerStoredContactListJabberImpl ssclCallback;
+
     /**
      * Creates a ContactGroup instance.
+     *
+     * @param protocolProvider the provider the contact list belongs to.
+     * @param ssclCallback the contact list this group is the root of.
      */
     RootContactGroupJabberImpl(
-        ProtocolProviderServiceJabberImpl protocolProvider)
+        ProtocolProviderServiceJabberImpl protocolProvider,
+        ServerStoredContactListJabberImpl ssclCallback)
     {
         this.protocolProvider = protocolProvider;
+        this.ssclCallback = ssclCallback;
     }
 
     /**
@@ -74,7 +84,8 @@ public class RootContactGroupJabberImpl
      */
     void removeContact(ContactJabberImpl contact)
     {
-        contacts.remove(contact.getAddress().toLowerCase());
+        if(contacts.remove(contact.getAddress().toLowerCase()) != null)
+            ssclCallback.unindexContact(contact, this);
     }
 
 
@@ -84,7 +95,8 @@ public class RootContactGroupJabberImpl
      */
     void addContact(ContactJabberImpl contact)
     {
-        contacts.put(contact.getAddress(), contact);
+        contacts.put(contact.getAddress().toLowerCase(), contact);
+        ssclCallback.indexContact(contact, this);
     }
 
     /**
@@ -94,6 +106,14 @@ public class RootContactGroupJabberImpl
     void addSubGroup(ContactGroupJabberImpl group)
     {
         subGroups.add(group);
+
+        Iterator<Contact> contacts = group.contacts();
+
+        while(contacts.hasNext())
+        {
+            ssclCallback.indexContact(
+                (ContactJabberImpl) contacts.next(), group);
+        }
     }
 
     /**
@@ -111,7 +131,14 @@ public class RootContactGroupJabberImpl
      */
     void removeSubGroup(int index)
     {
-        subGroups.remove(index);
+        ContactGroup group = subGroups.remove(index);
+        Iterator<Contact> contacts = group.contacts();
+
+        while(contacts.hasNext())
+        {
+            ssclCallback.unindexContact(
+                (ContactJabberImpl) contacts.next(), group);
+        }
     }
 
     /**
@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.jabber;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.java.sip.communicator.impl.protocol.jabber.extensions.caps.*;
 import net.java.sip.communicator.service.protocol.*;
@@ -44,6 +45,13 @@ public class ScServiceDiscoveryManager
      */
     private static final boolean CACHE_NON_CAPS = true;
 
+    /**
+     * The maximum number of disco#info requests which are queued by
+     * {@link #discoverInfoNonBlocking(String)} and are awaiting their
+     * responses at the same time.
+     */
+    private static final int MAX_DISCOVERY_REQUESTS_IN_FLIGHT = 4;
+
     /**
      * The cache of non-caps. Used only if {@link #CACHE_NON_CAPS} is
      * <tt>true</tt>.
@@ -640,27 +648,94 @@ public class ScServiceDiscoveryManager
     }
 
     /**
-     * Thread that runs the discovery info.
+     * Returns the number of disco#info requests which are waiting to be sent
+     * to the network.
+     *
+     * @return the number of disco#info requests which are waiting to be sent
+     * to the network
+     */
+    public int getDiscoveryQueueDepth()
+    {
+        return retriever.getQueueDepth();
+    }
+
+    /**
+     * Returns the number of disco#info requests which have been sent to the
+     * network and are awaiting their responses.
+     *
+     * @return the number of disco#info requests which have been sent to the
+     * network and are awaiting their responses
+     */
+    public int getDiscoveryRequestsInFlight()
+    {
+        return retriever.getRequestsInFlight();
+    }
+
+    /**
+     * Returns the average time in milliseconds between the sending of a
+     * disco#info request queued by {@link #discoverInfoNonBlocking(String)}
+     * and the receipt of its response.
+     *
+     * @return the average round-trip time in milliseconds of the disco#info
+     * requests queued by {@link #discoverInfoNonBlocking(String)} or
+     * <tt>0</tt> if none has completed yet
+     */
+    public long getAverageDiscoveryRoundTripTime()
+    {
+        return retriever.getAverageRoundTripTime();
+    }
+
+    /**
+     * Runs the discovery info requests queued by
+     * {@link #discoverInfoNonBlocking(String)} in up to
+     * {@link #MAX_DISCOVERY_REQUESTS_IN_FLIGHT} threads. Entities which
+     * advertise the same caps node#ver are served by a single request.
      */
     private class DiscoveryInfoRetriever
-        implements Runnable
     {
         /**
-         * start/stop.
+         * The number of times this retriever has been stopped. A thread
+         * exits as soon as it notices that the retriever has been stopped
+         * after the thread was started.
+         */
+        private int generation = 0;
+
+        /**
+         * The threads that run this dispatcher.
+         */
+        private final List<Thread> retrieverThreads = new ArrayList<Thread>();
+
+        /**
+         * The number of {@link #retrieverThreads} which are waiting for a
+         * request to be queued.
          */
-        private boolean stopped = true;
+        private int idleThreadCount = 0;
 
         /**
-         * The thread that runs this dispatcher.
+         * The requests which are either queued or in flight keyed by the caps
+         * node#ver they are to retrieve or, if the entity does not advertise a
+         * verifiable caps hash, by the entity.
          */
-        private Thread retrieverThread = null;
+        private final Map<String, DiscoveryRequest> requests
+            = new HashMap<String, DiscoveryRequest>();
 
         /**
-         * Entities to be processed and their caps.
-         * HashMap so we can store null caps.
+         * The requests which are yet to be sent in the order of their
+         * queueing.
          */
-        private Map<String, EntityCapsManager.Caps> entities
-            = new HashMap<String, EntityCapsManager.Caps>();
+        private final LinkedList<DiscoveryRequest> queue
+            = new LinkedList<DiscoveryRequest>();
+
+        /**
+         * The number of requests which have completed.
+         */
+        private final AtomicLong roundTripCount = new AtomicLong();
+
+        /**
+         * The total time in milliseconds of the requests which have
+         * completed.
+         */
+        private final AtomicLong roundTripTime = new AtomicLong();
 
         /**
          * Our capability operation set.
@@ -668,71 +743,88 @@ public class ScServiceDiscoveryManager
         private OperationSetContactCapabilitiesJabberImpl capabilitiesOpSet;
 
         /**
-         * Runs in different thread.
+         * Runs in different threads.
+         * @param threadGeneration the {@link #generation} at the time the
+         * current thread was started.
          */
-        public void run()
+        private void runInThread(int threadGeneration)
         {
             try
             {
-                stopped = false;
-
-                while(!stopped)
+                while(true)
                 {
-                    Map.Entry<String, EntityCapsManager.Caps>
-                        entityToProcess = null;
+                    DiscoveryRequest request;
 
-                    synchronized(entities)
+                    synchronized(requests)
                     {
-                        if(entities.size() == 0)
+                        while((generation == threadGeneration)
+                                && queue.isEmpty())
                         {
+                            idleThreadCount++;
                             try
                             {
-                                entities.wait();
+                                requests.wait();
                             }
                             catch (InterruptedException iex){}
+                            // stop() has reset the count
+                            if(generation != threadGeneration)
+                                break;
+                            idleThreadCount--;
                         }
+                        if(generation != threadGeneration)
+                            break;
 
-                        Iterator<Map.Entry<String, EntityCapsManager.Caps>>
-                            iter = entities.entrySet().iterator();
-                        if(iter.hasNext())
-                        {
-                            entityToProcess = iter.next();
-                            iter.remove();
-                        }
-                    }
-
-                    if(entityToProcess != null)
-                    {
-                        // process
-                        requestDiscoveryInfo(
-                            entityToProcess.getKey(),
-                            entityToProcess.getValue());
+                        request = queue.removeFirst();
                     }
 
-                    entityToProcess = null;
+                    requestDiscoveryInfo(request, threadGeneration);
                 }
             } catch(Throwable t)
             {
                 logger.error("Error requesting discovery info, " +
                     "thread ended unexpectedly", t);
             }
+            finally
+            {
+                synchronized(requests)
+                {
+                    retrieverThreads.remove(Thread.currentThread());
+                }
+            }
         }
 
         /**
-         * Requests the discovery info and fires the event if
-         * retrieved.
-         * @param entityID the entity to request
-         * @param caps and its capability.
+         * Requests the discovery info and fires the event for every entity
+         * waiting for it if retrieved.
+         * @param request the request to send.
+         * @param threadGeneration the {@link #generation} at the time the
+         * current thread was started.
          */
-        private void requestDiscoveryInfo(final String entityID,
-                                          EntityCapsManager.Caps caps)
+        private void requestDiscoveryInfo(DiscoveryRequest request,
+                                          int threadGeneration)
         {
+            EntityCapsManager.Caps caps = request.caps;
+            DiscoverInfo discoverInfo = null;
+            long startTime = System.currentTimeMillis();
+
             try
             {
-                DiscoverInfo discoverInfo = discoverInfo(
-                            entityID,
+                discoverInfo = discoverInfo(
+                            request.entityID,
                             (caps == null ) ? null : caps.getNodeVer());
+            }
+            catch(XMPPException ex)
+            {
+                // print discovery info errors only when trace is enabled
+                if(logger.isTraceEnabled())
+                    logger.error("Error requesting discover info for "
+                        + request.entityID, ex);
+            }
+            roundTripTime.addAndGet(System.currentTimeMillis() - startTime);
+            roundTripCount.incrementAndGet();
 
+            if (discoverInfo != null)
+            {
                 if ((caps != null) && !caps.isValid(discoverInfo))
                 {
                     if(!caps.hash.equals(""))
@@ -743,34 +835,55 @@ public class ScServiceDiscoveryManager
                     caps = null;
                 }
 
-                boolean fireEvent;
-
                 if (caps == null)
                 {
                     if (CACHE_NON_CAPS)
-                    {
-                        nonCapsCache.put(entityID, discoverInfo);
-                        fireEvent = true;
-                    }
+                        nonCapsCache.put(request.entityID, discoverInfo);
                 }
                 else
-                {
                     EntityCapsManager.addDiscoverInfoByCaps(caps, discoverInfo);
-                    fireEvent = true;
-                }
+            }
 
-                // fire event
-                if(fireEvent && capabilitiesOpSet != null)
-                {
-                    capabilitiesOpSet.fireContactCapabilitiesChanged(entityID);
-                }
+            /*
+             * No entities are added to the request once it is removed so they
+             * may be read outside the lock.
+             */
+            synchronized(requests)
+            {
+                // the requests of a stopped retriever have been dropped
+                if(generation != threadGeneration)
+                    return;
+                requests.remove(request.key);
             }
-            catch(XMPPException ex)
+
+            for (String entityID : request.entityIDs)
             {
-                // print discovery info errors only when trace is enabled
-                if(logger.isTraceEnabled())
-                    logger.error("Error requesting discover info for "
-                        + entityID, ex);
+                if (discoverInfo == null)
+                {
+                    /*
+                     * The request has failed or timed out so the other
+                     * entities waiting for it have to be asked one by one.
+                     */
+                    if (!entityID.equals(request.entityID))
+                        addRequest(entityID, entityID, request.caps);
+                }
+                else if ((caps != null) || entityID.equals(request.entityID))
+                {
+                    // fire event
+                    if(capabilitiesOpSet != null)
+                    {
+                        capabilitiesOpSet.fireContactCapabilitiesChanged(
+                                entityID);
+                    }
+                }
+                else
+                {
+                    /*
+                     * The response does not match the caps it was shared for
+                     * so the other entities have to be asked one by one.
+                     */
+                    addRequest(entityID, entityID, request.caps);
+                }
             }
         }
 
@@ -782,39 +895,120 @@ public class ScServiceDiscoveryManager
         public void addEntityForRetrieve(String entityID,
                                          EntityCapsManager.Caps caps)
         {
-            synchronized(entities)
+            // legacy caps without a hash cannot be verified and shared
+            String key
+                = ((caps == null) || caps.hash.equals(""))
+                    ? entityID
+                    : caps.getNodeVer();
+
+            addRequest(key, entityID, caps);
+        }
+
+        /**
+         * Queues a request for the discovery info of an entity unless a
+         * request with the same key is already queued or in flight in which
+         * case the entity will be notified about the result of the latter.
+         * @param key the key of the request.
+         * @param entityID the entity.
+         * @param caps and its capability.
+         */
+        private void addRequest(String key,
+                                String entityID,
+                                EntityCapsManager.Caps caps)
+        {
+            synchronized(requests)
             {
+                DiscoveryRequest request = requests.get(key);
 
-                if(!entities.containsKey(entityID))
+                if(request != null)
                 {
-                    entities.put(entityID, caps);
-                    entities.notifyAll();
+                    if(!request.entityIDs.contains(entityID))
+                        request.entityIDs.add(entityID);
+                    return;
+                }
 
-                    if(retrieverThread == null)
-                    {
-                        start();
-                    }
+                request = new DiscoveryRequest(key, entityID, caps);
+                requests.put(key, request);
+                queue.add(request);
+
+                if(retrieverThreads.isEmpty())
+                    start();
+                if((idleThreadCount == 0)
+                        && (retrieverThreads.size()
+                                < MAX_DISCOVERY_REQUESTS_IN_FLIGHT))
+                {
+                    startThread();
                 }
+                else
+                    requests.notify();
+            }
+        }
+
+        /**
+         * Returns the number of requests which are yet to be sent.
+         * @return the number of requests which are yet to be sent.
+         */
+        int getQueueDepth()
+        {
+            synchronized(requests)
+            {
+                return queue.size();
+            }
+        }
+
+        /**
+         * Returns the number of requests which have been sent and are
+         * awaiting their responses.
+         * @return the number of requests in flight.
+         */
+        int getRequestsInFlight()
+        {
+            synchronized(requests)
+            {
+                return requests.size() - queue.size();
             }
         }
 
         /**
-         * Start thread.
+         * Returns the average round-trip time of the completed requests.
+         * @return the average round-trip time in milliseconds.
+         */
+        long getAverageRoundTripTime()
+        {
+            long count = roundTripCount.get();
+
+            return (count == 0) ? 0 : (roundTripTime.get() / count);
+        }
+
+        /**
+         * Start dispatching.
          */
         private void start()
         {
             capabilitiesOpSet = (OperationSetContactCapabilitiesJabberImpl)
                 parentProvider.getOperationSet(
                     OperationSetContactCapabilities.class);
+        }
 
-            retrieverThread = new Thread(
-                this,
-                ScServiceDiscoveryManager.class.getName());
+        /**
+         * Starts one more thread.
+         */
+        private void startThread()
+        {
+            final int threadGeneration = generation;
+            Thread retrieverThread = new Thread(
+                ScServiceDiscoveryManager.class.getName())
+            {
+                @Override
+                public void run()
+                {
+                    runInThread(threadGeneration);
+                }
+            };
             retrieverThread.setDaemon(true);
 
+            retrieverThreads.add(retrieverThread);
             retrieverThread.start();
-
-
         }
 
         /**
@@ -822,13 +1016,60 @@ public class ScServiceDiscoveryManager
          */
         void stop()
         {
-            synchronized(entities)
+            synchronized(requests)
             {
-                stopped = true;
-                entities.notifyAll();
+                generation++;
+                requests.notifyAll();
 
-                retrieverThread = null;
+                retrieverThreads.clear();
+                idleThreadCount = 0;
+                requests.clear();
+                queue.clear();
             }
         }
     }
+
+    /**
+     * A disco#info request queued by {@link DiscoveryInfoRetriever} together
+     * with the entities which are waiting for its result.
+     */
+    private static class DiscoveryRequest
+    {
+        /**
+         * The key under which this request is deduplicated.
+         */
+        final String key;
+
+        /**
+         * The entity to which the request is to be sent.
+         */
+        final String entityID;
+
+        /**
+         * The capability of {@link #entityID}.
+         */
+        final EntityCapsManager.Caps caps;
+
+        /**
+         * The entities waiting for the result of this request including
+         * {@link #entityID}.
+         */
+        final List<String> entityIDs = new ArrayList<String>();
+
+        /**
+         * Creates a request.
+         * @param key the key under which the request is deduplicated.
+         * @param entityID the entity to which the request is to be sent.
+         * @param caps and its capability.
+         */
+        DiscoveryRequest(String key,
+                         String entityID,
+                         EntityCapsManager.Caps caps)
+        {
+            this.key = key;
+            this.entityID = entityID;
+            this.caps = caps;
+            entityIDs.add(entityID);
+        }
+    }
 }
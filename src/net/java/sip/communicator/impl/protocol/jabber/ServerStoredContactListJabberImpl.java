@@ -7,6 +7,7 @@
 package net.java.sip.communicator.impl.protocol.jabber;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.customavatar.*;
 import net.java.sip.communicator.service.protocol.*;
@@ -80,6 +81,13 @@ public class ServerStoredContactListJabberImpl
      */
     private InfoRetreiver infoRetreiver = null;
 
+    /**
+     * The groups which contain the contacts of this list mapped by the lower
+     * case bare addresses of the contacts.
+     */
+    private final Map<String, ContactGroup> contactIndex
+        = new ConcurrentHashMap<String, ContactGroup>();
+
     /**
      * Creates a ServerStoredContactList wrapper for the specified BuddyList.
      *
@@ -98,7 +106,7 @@ public class ServerStoredContactListJabberImpl
         this.parentOperationSet = parentOperationSet;
 
         this.jabberProvider = provider;
-        this.rootGroup = new RootContactGroupJabberImpl(this.jabberProvider);
+        this.rootGroup = new RootContactGroupJabberImpl(this.jabberProvider, this);
         this.infoRetreiver = infoRetreiver;
     }
 
@@ -358,23 +366,15 @@ public class ServerStoredContactListJabberImpl
      */
     public ContactJabberImpl findContactById(String id)
     {
-        Iterator<ContactGroup> contactGroups = rootGroup.subgroups();
-        ContactJabberImpl result = null;
         String userId = StringUtils.parseBareAddress(id);
+        ContactGroup group = contactIndex.get(userId.toLowerCase());
 
-        while(contactGroups.hasNext())
-        {
-            ContactGroupJabberImpl contactGroup
-                = (ContactGroupJabberImpl)contactGroups.next();
-
-            result = contactGroup.findContact(userId);
-
-            if (result != null)
-                return result;
-        }
-
-        //try the root group now
-        return rootGroup.findContact(userId);
+        if (group instanceof ContactGroupJabberImpl)
+            return ((ContactGroupJabberImpl) group).findContact(userId);
+        else if (group == rootGroup)
+            return rootGroup.findContact(userId);
+        else
+            return null;
     }
 
     /**
@@ -387,9 +387,59 @@ public class ServerStoredContactListJabberImpl
      * exist.
      */
     public ContactGroup findContactGroup(ContactJabberImpl child)
+    {
+        return contactIndex.get(child.getAddress().toLowerCase());
+    }
+
+    /**
+     * Records that a contact has been added to a group of this list so that
+     * {@link #findContactById(String)} and
+     * {@link #findContactGroup(ContactJabberImpl)} find it without searching
+     * the groups.
+     *
+     * @param contact the contact that has been added.
+     * @param group the group the contact has been added to.
+     */
+    void indexContact(ContactJabberImpl contact, ContactGroup group)
+    {
+        contactIndex.put(contact.getAddress().toLowerCase(), group);
+    }
+
+    /**
+     * Records that a contact has been removed from a group of this list. If
+     * the contact is still in another group, which happens while it is being
+     * moved, that group is recorded instead.
+     *
+     * @param contact the contact that has been removed.
+     * @param group the group the contact has been removed from.
+     */
+    void unindexContact(ContactJabberImpl contact, ContactGroup group)
+    {
+        String key = contact.getAddress().toLowerCase();
+
+        if (contactIndex.get(key) != group)
+            return;
+
+        ContactGroup otherGroup = findContactGroupByScan(contact.getAddress());
+
+        if (otherGroup == null)
+            contactIndex.remove(key);
+        else
+            contactIndex.put(key, otherGroup);
+    }
+
+    /**
+     * Returns the ContactGroup containing the contact with the specified
+     * address by searching all groups.
+     *
+     * @param contactAddress the address of the contact whose parent group
+     * we're looking for.
+     * @return the <tt>ContactGroup</tt> containing the contact or
+     * <tt>null</tt> if no such group or contact exist.
+     */
+    private ContactGroup findContactGroupByScan(String contactAddress)
     {
         Iterator<ContactGroup> contactGroups = rootGroup.subgroups();
-        String contactAddress = child.getAddress();
 
         while(contactGroups.hasNext())
         {
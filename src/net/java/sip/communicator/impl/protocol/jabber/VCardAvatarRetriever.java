@@ -0,0 +1,327 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.service.protocol.event.*;
+import net.java.sip.communicator.util.*;
+
+import org.jivesoftware.smack.*;
+import org.jivesoftware.smackx.packet.*;
+
+/**
+ * Retrieves the avatars of contacts advertised by SHA-1 hash in presence
+ * packets with the element name "x" and the namespace "vcard-temp:x:update"
+ * (XEP-0153) away from the thread which processes the packets. The avatars
+ * are looked up by hash in <tt>AvatarCacheUtils</tt> first so that avatars
+ * which are shared by several contacts or which have been retrieved before are
+ * not downloaded again. Concurrent requests for the same hash are merged into
+ * a single vCard retrieval and the number of queued retrievals is bounded.
+ *
+ * @author agent
+ */
+public class VCardAvatarRetriever
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>VCardAvatarRetriever</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(VCardAvatarRetriever.class);
+
+    /**
+     * The maximum number of vCards which are retrieved at the same time.
+     */
+    private static final int MAX_CONCURRENT_RETRIEVALS = 2;
+
+    /**
+     * The maximum number of distinct avatars which wait to be retrieved.
+     */
+    private static final int MAX_QUEUED_RETRIEVALS = 128;
+
+    /**
+     * The pool of threads which retrieve the vCards.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The operation set which fires the <tt>ContactPropertyChangeEvent</tt>s
+     * when the avatars of contacts change.
+     */
+    private final OperationSetPersistentPresenceJabberImpl parentOperationSet;
+
+    /**
+     * The provider which owns the connection the vCards are retrieved
+     * through.
+     */
+    private final ProtocolProviderServiceJabberImpl parentProvider;
+
+    /**
+     * The contacts which wait for an avatar keyed by the lower-case
+     * hexadecimal representation of the SHA-1 hash of the avatar.
+     */
+    private final Map<String, List<ContactJabberImpl>> pending
+        = new HashMap<String, List<ContactJabberImpl>>();
+
+    /**
+     * Initializes a new <tt>VCardAvatarRetriever</tt> instance.
+     *
+     * @param parentOperationSet the operation set which is to fire the
+     * <tt>ContactPropertyChangeEvent</tt>s when the avatars of contacts change
+     * @param parentProvider the provider which owns the connection the vCards
+     * are to be retrieved through
+     */
+    public VCardAvatarRetriever(
+            OperationSetPersistentPresenceJabberImpl parentOperationSet,
+            ProtocolProviderServiceJabberImpl parentProvider)
+    {
+        this.parentOperationSet = parentOperationSet;
+        this.parentProvider = parentProvider;
+
+        executor
+            = new ThreadPoolExecutor(
+                    MAX_CONCURRENT_RETRIEVALS, MAX_CONCURRENT_RETRIEVALS,
+                    30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(MAX_QUEUED_RETRIEVALS),
+                    new ThreadFactory()
+                    {
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread t
+                                = new Thread(
+                                        r,
+                                        VCardAvatarRetriever.class.getName());
+
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Drops the retrievals which have not started yet e.g. because the
+     * connection has been lost. The avatars will be requested again with the
+     * next presence packets.
+     */
+    public void clear()
+    {
+        executor.getQueue().clear();
+        synchronized (pending)
+        {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Sets the avatar of a specific contact and fires the respective
+     * <tt>ContactPropertyChangeEvent</tt>.
+     *
+     * @param contact the contact to set the avatar of
+     * @param avatar the bytes of the avatar
+     * @param sha1 the hexadecimal representation of the SHA-1 hash of
+     * <tt>avatar</tt>
+     */
+    private void setAvatar(
+            ContactJabberImpl contact,
+            byte[] avatar,
+            String sha1)
+    {
+        byte[] oldAvatar = contact.getImage(false);
+
+        contact.setImage(avatar, sha1);
+        parentOperationSet.fireContactPropertyChangeEvent(
+                ContactPropertyChangeEvent.PROPERTY_IMAGE,
+                contact,
+                oldAvatar,
+                avatar);
+    }
+
+    /**
+     * Retrieves the avatar with a specific hash of a specific contact
+     * asynchronously and sets it on the contact.
+     *
+     * @param contact the contact which has advertised the avatar
+     * @param sha1 the hexadecimal representation of the SHA-1 hash of the
+     * avatar advertised by <tt>contact</tt>
+     */
+    public void retrieve(ContactJabberImpl contact, String sha1)
+    {
+        final String key = sha1.toLowerCase();
+
+        synchronized (pending)
+        {
+            List<ContactJabberImpl> contacts = pending.get(key);
+
+            if (contacts != null)
+            {
+                /* The avatar is already being retrieved. */
+                if (!contacts.contains(contact))
+                    contacts.add(contact);
+                return;
+            }
+
+            contacts = new ArrayList<ContactJabberImpl>(1);
+            contacts.add(contact);
+            pending.put(key, contacts);
+        }
+
+        try
+        {
+            executor.execute(
+                    new Runnable()
+                    {
+                        public void run()
+                        {
+                            runInRetrieverThread(key);
+                        }
+                    });
+        }
+        catch (RejectedExecutionException ree)
+        {
+            synchronized (pending)
+            {
+                pending.remove(key);
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(
+                        "Too many avatars queued for retrieval, dropping "
+                            + key);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the vCard of a specific contact and returns its avatar.
+     *
+     * @param contact the contact to retrieve the vCard of
+     * @return the avatar of <tt>contact</tt> or <tt>null</tt> if it could
+     * not be retrieved
+     */
+    private byte[] retrieveVCardAvatar(ContactJabberImpl contact)
+    {
+        XMPPConnection connection = parentProvider.getConnection();
+
+        if ((connection == null) || !connection.isConnected())
+            return null;
+
+        try
+        {
+            VCard vCard = new VCard();
+
+            vCard.load(connection, contact.getAddress());
+
+            byte[] avatar = vCard.getAvatar();
+
+            return (avatar == null) ? new byte[0] : avatar;
+        }
+        catch (XMPPException ex)
+        {
+            logger.info("Cannot retrieve vCard from: " + contact.getAddress());
+            if(logger.isTraceEnabled())
+                logger.trace("vCard retrieval exception was: ", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the avatar with a specific hash and sets it on the contacts
+     * which wait for it.
+     *
+     * @param key the lower-case hexadecimal representation of the SHA-1 hash
+     * of the avatar to retrieve
+     */
+    private void runInRetrieverThread(String key)
+    {
+        List<ContactJabberImpl> contacts;
+
+        synchronized (pending)
+        {
+            contacts = pending.get(key);
+        }
+        if ((contacts == null) || contacts.isEmpty())
+            return;
+
+        byte[] avatar = AvatarCacheUtils.getCachedAvatarByHash(key);
+        String sha1 = key;
+
+        if (avatar == null)
+        {
+            ContactJabberImpl contact;
+
+            synchronized (pending)
+            {
+                contact = contacts.get(0);
+            }
+
+            avatar = retrieveVCardAvatar(contact);
+            if (avatar == null)
+            {
+                synchronized (pending)
+                {
+                    pending.remove(key);
+                }
+                return;
+            }
+
+            sha1 = VCardTempXUpdatePresenceExtension.getImageSha1(avatar);
+            if (avatar.length != 0)
+                avatar = AvatarCacheUtils.cacheAvatarByHash(sha1, avatar);
+
+            /*
+             * The vCard has changed since the presence was sent so it cannot
+             * be shared with the other contacts waiting for the advertised
+             * hash.
+             */
+            if (!key.equalsIgnoreCase(sha1))
+            {
+                List<ContactJabberImpl> others;
+
+                synchronized (pending)
+                {
+                    pending.remove(key);
+                    others = new ArrayList<ContactJabberImpl>(contacts);
+                }
+                others.remove(contact);
+
+                setAvatar(contact, avatar, sha1);
+                for (ContactJabberImpl other : others)
+                {
+                    byte[] otherAvatar = retrieveVCardAvatar(other);
+
+                    if (otherAvatar != null)
+                    {
+                        setAvatar(
+                                other,
+                                otherAvatar,
+                                VCardTempXUpdatePresenceExtension.getImageSha1(
+                                        otherAvatar));
+                    }
+                }
+                return;
+            }
+        }
+
+        /*
+         * Take the contacts only now so that the contacts which have
+         * advertised the same hash during the retrieval get the avatar as
+         * well.
+         */
+        synchronized (pending)
+        {
+            contacts = pending.remove(key);
+        }
+        if (contacts != null)
+        {
+            for (ContactJabberImpl contact : contacts)
+                setAvatar(contact, avatar, sha1);
+        }
+    }
+}
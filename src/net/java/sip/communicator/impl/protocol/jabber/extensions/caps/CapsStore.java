@@ -0,0 +1,446 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber.extensions.caps;
+
+import java.io.*;
+import java.util.*;
+
+import net.java.sip.communicator.impl.protocol.jabber.*;
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
+
+/**
+ * Persists the caps database of <tt>EntityCapsManager</tt> across application
+ * instances in a single file in the private persistent directory of the
+ * <tt>FileAccessService</tt> instead of a <tt>ConfigurationService</tt>
+ * property per node#hash#ver. The file is read on first use and rewritten
+ * as a whole a few seconds after the last change so it never carries removed
+ * entries. The entries which have not been used for
+ * {@link #PNAME_MAX_AGE_DAYS} days and the least recently used ones beyond
+ * {@link #MAX_ENTRIES} are dropped.
+ *
+ * @author agent
+ */
+class CapsStore
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>CapsStore</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(CapsStore.class);
+
+    /**
+     * The name of the property which holds the number of days after which an
+     * entry which has not been used is dropped.
+     */
+    public static final String PNAME_MAX_AGE_DAYS
+        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
+            + "CapsStore.MAX_AGE_DAYS";
+
+    /**
+     * The default number of days after which an entry which has not been
+     * used is dropped.
+     */
+    private static final int DEFAULT_MAX_AGE_DAYS = 30;
+
+    /**
+     * The number of milliseconds in a day.
+     */
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * The maximum number of entries to keep.
+     */
+    private static final int MAX_ENTRIES = 1000;
+
+    /**
+     * The time in milliseconds after the last change at which the file is
+     * written.
+     */
+    private static final long SAVE_DELAY = 5000;
+
+    /**
+     * The name of the file relative to the private persistent directory.
+     */
+    private static final String STORE_FILE = "entitycaps.bin";
+
+    /**
+     * The version of the format of {@link #STORE_FILE}.
+     */
+    private static final int STORE_VERSION = 1;
+
+    /**
+     * The serialized <tt>DiscoverInfo</tt>s keyed by node#hash#ver in least
+     * recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries
+        = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * The prefix of the <tt>ConfigurationService</tt> properties in which
+     * the caps database was persisted before and which are moved into this
+     * store.
+     */
+    private final String legacyPropertyNamePrefix;
+
+    /**
+     * The indicator which determines whether {@link #entries} has been read
+     * from the file.
+     */
+    private boolean loaded = false;
+
+    /**
+     * The task which writes the file or <tt>null</tt> if no write is pending.
+     */
+    private SharedTimer.Task saveTask;
+
+    /**
+     * Initializes a new <tt>CapsStore</tt>.
+     *
+     * @param legacyPropertyNamePrefix the prefix of the
+     * <tt>ConfigurationService</tt> properties in which the caps database was
+     * persisted before
+     */
+    CapsStore(String legacyPropertyNamePrefix)
+    {
+        this.legacyPropertyNamePrefix = legacyPropertyNamePrefix;
+    }
+
+    /**
+     * Drops the entries which have not been used for the configured number of
+     * days and the least recently used ones beyond {@link #MAX_ENTRIES}.
+     *
+     * @param now the current time in milliseconds
+     * @return <tt>true</tt> if any entry was dropped; otherwise,
+     * <tt>false</tt>
+     */
+    private boolean evict(long now)
+    {
+        ConfigurationService cfg = JabberActivator.getConfigurationService();
+        int maxAgeDays = DEFAULT_MAX_AGE_DAYS;
+
+        if (cfg != null)
+            maxAgeDays = cfg.getInt(PNAME_MAX_AGE_DAYS, maxAgeDays);
+
+        long oldest = now - maxAgeDays * DAY;
+        int excess = entries.size() - MAX_ENTRIES;
+        boolean evicted = false;
+
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();)
+        {
+            Entry entry = i.next();
+
+            if ((excess > 0) || (entry.lastUsed < oldest))
+            {
+                i.remove();
+                excess--;
+                evicted = true;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets the serialized <tt>DiscoverInfo</tt> for a specific node#hash#ver.
+     *
+     * @param key the node#hash#ver
+     * @return the serialized <tt>DiscoverInfo</tt> for <tt>key</tt> or
+     * <tt>null</tt> if none is stored
+     */
+    synchronized String get(String key)
+    {
+        load();
+
+        Entry entry = entries.get(key);
+
+        if (entry == null)
+            return null;
+        touch(entry);
+        return entry.xml;
+    }
+
+    /**
+     * Gets the file which stores the entries.
+     *
+     * @return the file which stores the entries or <tt>null</tt> if the
+     * <tt>FileAccessService</tt> is not available
+     */
+    private File getFile()
+    {
+        FileAccessService fileAccessService
+            = JabberActivator.getFileAccessService();
+
+        if (fileAccessService == null)
+            return null;
+        try
+        {
+            return fileAccessService.getPrivatePersistentFile(STORE_FILE);
+        }
+        catch (Exception e)
+        {
+            logger.warn("Cannot access the entity caps store", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entries from the file unless they have been read already and
+     * moves the entries persisted as <tt>ConfigurationService</tt> properties
+     * into this store. Does nothing while the <tt>FileAccessService</tt> is
+     * not available.
+     */
+    private void load()
+    {
+        if (loaded)
+            return;
+
+        File file = getFile();
+
+        if (file == null)
+            return;
+        loaded = true;
+
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+
+        if (file.exists())
+        {
+            try
+            {
+                DataInputStream in
+                    = new DataInputStream(
+                            new BufferedInputStream(
+                                    new FileInputStream(file)));
+
+                try
+                {
+                    if (in.readInt() == STORE_VERSION)
+                    {
+                        for (int i = in.readInt(); i > 0; i--)
+                        {
+                            String key = in.readUTF();
+                            long lastUsed = in.readLong();
+                            byte[] xml = new byte[in.readInt()];
+
+                            in.readFully(xml);
+                            // the entries put before loading are newer
+                            if (!entries.containsKey(key))
+                            {
+                                entries.put(
+                                        key,
+                                        new Entry(
+                                                new String(xml, "UTF-8"),
+                                                Math.min(lastUsed, now)));
+                            }
+                        }
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (IOException e)
+            {
+                // keep what has been read, the file is rewritten anyway
+                logger.warn("Cannot read the entity caps store", e);
+                changed = true;
+            }
+        }
+
+        ConfigurationService cfg = JabberActivator.getConfigurationService();
+
+        if (cfg != null)
+        {
+            for (String name
+                    : cfg.getPropertyNamesByPrefix(
+                            legacyPropertyNamePrefix,
+                            false))
+            {
+                String xml = cfg.getString(name);
+
+                String key = name.substring(legacyPropertyNamePrefix.length());
+
+                if ((xml != null)
+                        && (xml.length() != 0)
+                        && !entries.containsKey(key))
+                {
+                    entries.put(key, new Entry(xml, now));
+                }
+                cfg.removeProperty(name);
+                changed = true;
+            }
+        }
+
+        if (evict(now) || changed)
+            scheduleSave();
+    }
+
+    /**
+     * Stores the serialized <tt>DiscoverInfo</tt> for a specific
+     * node#hash#ver.
+     *
+     * @param key the node#hash#ver
+     * @param xml the serialized <tt>DiscoverInfo</tt> for <tt>key</tt>
+     */
+    synchronized void put(String key, String xml)
+    {
+        load();
+
+        Entry entry = entries.get(key);
+
+        if ((entry == null) || !entry.xml.equals(xml))
+        {
+            entries.put(key, new Entry(xml, System.currentTimeMillis()));
+            scheduleSave();
+        }
+        else
+            touch(entry);
+    }
+
+    /**
+     * Removes the serialized <tt>DiscoverInfo</tt> for a specific
+     * node#hash#ver.
+     *
+     * @param key the node#hash#ver
+     */
+    synchronized void remove(String key)
+    {
+        load();
+        if (entries.remove(key) != null)
+            scheduleSave();
+    }
+
+    /**
+     * Writes the entries into the file.
+     */
+    private synchronized void save()
+    {
+        saveTask = null;
+
+        /*
+         * The file must not be overwritten with the entries put while it could
+         * not be read.
+         */
+        load();
+        if (!loaded)
+            return;
+
+        evict(System.currentTimeMillis());
+
+        File file = getFile();
+
+        if (file == null)
+            return;
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try
+        {
+            DataOutputStream out
+                = new DataOutputStream(
+                        new BufferedOutputStream(
+                                new FileOutputStream(tmpFile)));
+
+            try
+            {
+                out.writeInt(STORE_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet())
+                {
+                    Entry entry = e.getValue();
+                    byte[] xml = entry.xml.getBytes("UTF-8");
+
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.lastUsed);
+                    out.writeInt(xml.length);
+                    out.write(xml);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file))
+                throw new IOException("Failed to replace " + file);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Cannot write the entity caps store", e);
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Schedules the writing of the entries into the file unless it is
+     * scheduled already.
+     */
+    private void scheduleSave()
+    {
+        if (saveTask != null)
+            return;
+
+        saveTask
+            = new SharedTimer.Task()
+            {
+                @Override
+                public void run()
+                {
+                    save();
+                }
+            };
+        SharedTimer.getInstance().schedule(saveTask, SAVE_DELAY);
+    }
+
+    /**
+     * Notes that a specific entry has been used. The time of the use is only
+     * persisted if it is at least a day later than the previous one.
+     *
+     * @param entry the entry which has been used
+     */
+    private void touch(Entry entry)
+    {
+        long now = System.currentTimeMillis();
+
+        if (now - entry.lastUsed > DAY)
+        {
+            entry.lastUsed = now;
+            scheduleSave();
+        }
+    }
+
+    /**
+     * A serialized <tt>DiscoverInfo</tt> and the time it was last used.
+     */
+    private static class Entry
+    {
+        /**
+         * The time in milliseconds at which {@link #xml} was last used.
+         */
+        long lastUsed;
+
+        /**
+         * The serialized <tt>DiscoverInfo</tt>.
+         */
+        final String xml;
+
+        /**
+         * Initializes a new <tt>Entry</tt>.
+         *
+         * @param xml the serialized <tt>DiscoverInfo</tt>
+         * @param lastUsed the time in milliseconds at which <tt>xml</tt> was
+         * last used
+         */
+        Entry(String xml, long lastUsed)
+        {
+            this.xml = xml;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
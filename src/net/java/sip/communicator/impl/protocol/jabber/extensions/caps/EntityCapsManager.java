@@ -16,7 +16,6 @@ import net.java.sip.communicator.impl.protocol.jabber.*;
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.util.*;
 
-import org.jitsi.service.configuration.*;
 import org.jivesoftware.smack.*;
 import org.jivesoftware.smack.filter.*;
 import org.jivesoftware.smack.packet.*;
@@ -46,13 +45,28 @@ public class EntityCapsManager
         = Logger.getLogger(EntityCapsManager.class);
 
     /**
-     * The prefix of the <tt>ConfigurationService</tt> properties which persist
-     * {@link #caps2discoverInfo}.
+     * The prefix of the <tt>ConfigurationService</tt> properties which used to
+     * persist {@link #caps2discoverInfo} and which are moved into
+     * {@link #capsStore}.
      */
     private static final String CAPS_PROPERTY_NAME_PREFIX
         = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
             + "EntityCapsManager.CAPS.";
 
+    /**
+     * The store which persists {@link #caps2discoverInfo} across application
+     * instances.
+     */
+    private static final CapsStore capsStore
+        = new CapsStore(CAPS_PROPERTY_NAME_PREFIX);
+
+    /**
+     * The parser which reads the <tt>DiscoverInfo</tt>s out of
+     * {@link #capsStore}. Reused in order to reduce garbage collection and
+     * accessed only while synchronized on {@link #caps2discoverInfo}.
+     */
+    private static XmlPullParser capsParser;
+
     /**
      * An empty array of <tt>UserCapsNodeListener</tt> elements explicitly
      * defined in order to reduce unnecessary allocations.
@@ -149,29 +163,23 @@ public class EntityCapsManager
                 String xml = info.getChildElementXML();
 
                 if ((xml != null) && (xml.length() != 0))
-                {
-                    JabberActivator
-                        .getConfigurationService()
-                            .setProperty(getCapsPropertyName(caps), xml);
-                }
+                    capsStore.put(getCapsKey(caps), xml);
             }
         }
     }
 
     /**
-     * Gets the name of the property in the <tt>ConfigurationService</tt> which
-     * is or is to be associated with a specific <tt>Caps</tt> value.
+     * Gets the key in {@link #capsStore} which is or is to be associated with
+     * a specific <tt>Caps</tt> value.
      *
-     * @param caps the <tt>Caps</tt> value for which the associated
-     * <tt>ConfigurationService</tt> property name is to be returned
-     * @return the name of the property in the <tt>ConfigurationService</tt>
-     * which is or is to be associated with a specific <tt>Caps</tt> value
+     * @param caps the <tt>Caps</tt> value for which the associated key is to
+     * be returned
+     * @return the key in {@link #capsStore} which is or is to be associated
+     * with a specific <tt>Caps</tt> value
      */
-    private static String getCapsPropertyName(Caps caps)
+    private static String getCapsKey(Caps caps)
     {
-        return
-            CAPS_PROPERTY_NAME_PREFIX
-                + caps.node + '#' + caps.hash + '#' + caps.ver;
+        return caps.node + '#' + caps.hash + '#' + caps.ver;
     }
 
     /**
@@ -419,10 +427,8 @@ public class EntityCapsManager
              */
             if (discoverInfo == null)
             {
-                ConfigurationService configurationService
-                    = JabberActivator.getConfigurationService();
-                String capsPropertyName = getCapsPropertyName(caps);
-                String xml = configurationService.getString(capsPropertyName);
+                String capsKey = getCapsKey(caps);
+                String xml = capsStore.get(capsKey);
 
                 if ((xml != null) && (xml.length() != 0))
                 {
@@ -434,13 +440,19 @@ public class EntityCapsManager
 
                     if (discoverInfoProvider != null)
                     {
-                        XmlPullParser parser = new MXParser();
+                        XmlPullParser parser = capsParser;
 
                         try
                         {
-                            parser.setFeature(
-                                    XmlPullParser.FEATURE_PROCESS_NAMESPACES,
-                                    true);
+                            if (parser == null)
+                            {
+                                parser = new MXParser();
+                                parser.setFeature(
+                                        XmlPullParser
+                                            .FEATURE_PROCESS_NAMESPACES,
+                                        true);
+                                capsParser = parser;
+                            }
                             parser.setInput(new StringReader(xml));
                             // Start the parser.
                             parser.next();
@@ -484,8 +496,7 @@ public class EntityCapsManager
                                      * Delete the invalid information in order
                                      * to not try to validate it again.
                                      */
-                                    configurationService.removeProperty(
-                                            capsPropertyName);
+                                    capsStore.remove(capsKey);
                                 }
                             }
                         }
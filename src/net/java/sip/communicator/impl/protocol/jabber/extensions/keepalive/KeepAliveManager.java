@@ -1,7 +1,5 @@
 package net.java.sip.communicator.impl.protocol.jabber.extensions.keepalive;
 
-import java.util.*;
-
 import net.java.sip.communicator.impl.protocol.jabber.*;
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.service.protocol.event.*;
@@ -32,11 +30,6 @@ public class KeepAliveManager
      */
     private KeepAliveSendTask keepAliveSendTask = null;
 
-    /**
-     * The timer executing tasks on specified intervals
-     */
-    private Timer keepAliveTimer;
-
     /**
      * The last received packet from server.
      */
@@ -104,13 +97,6 @@ public class KeepAliveManager
                 keepAliveSendTask.cancel();
                 keepAliveSendTask = null;
             }
-            if(keepAliveTimer != null)
-            {
-                logger.error("Those timer is not supposed to be available for "
-                    + parentProvider.getAccountID().getDisplayName());
-                keepAliveTimer.cancel();
-                keepAliveTimer = null;
-            }
 
             keepAliveSendTask = new KeepAliveSendTask();
             waitingForPacketWithID = null;
@@ -120,9 +106,7 @@ public class KeepAliveManager
             if(keepAliveCheckInterval == 0)
                 keepAliveCheckInterval = 30000;
             
-            keepAliveTimer = new Timer("Jabber keepalive timer for <"
-                + parentProvider.getAccountID() + ">", true);
-            keepAliveTimer.scheduleAtFixedRate(
+            SharedTimer.getInstance().scheduleAtFixedRate(
                 keepAliveSendTask,
                 keepAliveCheckInterval,
                 keepAliveCheckInterval);
@@ -141,11 +125,6 @@ public class KeepAliveManager
                 keepAliveSendTask.cancel();
                 keepAliveSendTask = null;
             }
-            if(keepAliveTimer != null)
-            {
-                keepAliveTimer.cancel();
-                keepAliveTimer = null;
-            }
         }
     }
 
@@ -179,12 +158,34 @@ public class KeepAliveManager
         }
     }
 
+    /**
+     * Unregisters the provider and notifies that its connection has failed in
+     * a thread of its own so that the <tt>SharedTimer</tt> is not blocked.
+     */
+    private void connectionFailed()
+    {
+        new Thread(getClass().getName())
+        {
+            @Override
+            public void run()
+            {
+                parentProvider.unregister(false);
+
+                parentProvider.fireRegistrationStateChanged(
+                    parentProvider.getRegistrationState(),
+                    RegistrationState.CONNECTION_FAILED,
+                    RegistrationStateChangeEvent.REASON_SERVER_NOT_FOUND,
+                    null);
+            }
+        }.start();
+    }
+
     /**
      * Task sending packets on intervals.
-     * The task is runned on specified intervals by the keepAliveTimer
+     * The task is runned on specified intervals by the <tt>SharedTimer</tt>
      */
     private class KeepAliveSendTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
         /**
          * Sends a single <tt>KeepAliveEvent</tt>.
@@ -199,14 +200,9 @@ public class KeepAliveManager
                         +"won't send keep alive for "
                         + parentProvider.getAccountID().getDisplayName());
 
-                parentProvider.unregister(false);
-
-                parentProvider.fireRegistrationStateChanged(
-                    parentProvider.getRegistrationState(),
-                    RegistrationState.CONNECTION_FAILED,
-                    RegistrationStateChangeEvent.REASON_SERVER_NOT_FOUND,
-                    null);
-
+                // no further checks until registered again
+                cancel();
+                connectionFailed();
                 return;
             }
 
@@ -218,14 +214,8 @@ public class KeepAliveManager
                     logger.error("un-registering not received ping packet " +
                         "for: " + parentProvider.getAccountID().getDisplayName());
 
-                    parentProvider.unregister(false);
-
-                    parentProvider.fireRegistrationStateChanged(
-                        parentProvider.getRegistrationState(),
-                        RegistrationState.CONNECTION_FAILED,
-                        RegistrationStateChangeEvent.REASON_SERVER_NOT_FOUND,
-                        null);
-
+                    cancel();
+                    connectionFailed();
                     return;
                 }
 
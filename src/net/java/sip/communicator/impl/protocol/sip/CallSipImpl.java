@@ -424,7 +424,7 @@ public class CallSipImpl
             if(serverTran instanceof SIPTransaction 
                 && !((SIPTransaction)serverTran).isReliable())
             {
-                final Timer timer = new Timer();
+                final TimerScheduler timer = new TimerScheduler();
                 CallPeerAdapter stateListener = new CallPeerAdapter()
                 {
                     public void peerStateChanged(CallPeerChangeEvent evt)
@@ -542,7 +542,7 @@ public class CallSipImpl
      * Task that will retransmit ringing response
      */
     private class RingingResponseTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
         /**
          * The response that will be sent
@@ -562,7 +562,7 @@ public class CallSipImpl
         /**
          * The timer that starts the task.
          */
-        private final Timer timer;
+        private final TimerScheduler timer;
 
         /**
          * Listener for the state of the peer.
@@ -578,7 +578,8 @@ public class CallSipImpl
          * @param stateListener the state listener.
          */
         RingingResponseTask(Response response, ServerTransaction serverTran, 
-            CallPeerSipImpl peer, Timer timer, CallPeerAdapter stateListener)
+            CallPeerSipImpl peer, TimerScheduler timer,
+            CallPeerAdapter stateListener)
         {
             this.response = response;
             this.serverTran = serverTran;
@@ -44,7 +44,7 @@ public class ClientCapabilities
     /**
      * The timer that runs the keep-alive task
      */
-    private Timer keepAliveTimer = null;
+    private TimerScheduler keepAliveTimer = null;
 
     /**
      * The next long to use as a cseq header value.
@@ -176,7 +176,7 @@ public class ClientCapabilities
      * alive method.
      */
     private class KeepAliveTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
         public void run()
         {
@@ -400,7 +400,7 @@ public class ClientCapabilities
                     && !provider.getRegistrarConnection().isRegistrarless())
                 {
                     if (keepAliveTimer == null)
-                        keepAliveTimer = new Timer();
+                        keepAliveTimer = new TimerScheduler();
 
                     if (logger.isDebugEnabled())
                         logger.debug("Scheduling OPTIONS keep alives");
@@ -7,6 +7,7 @@
 package net.java.sip.communicator.impl.protocol.sip;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.xml.namespace.*;
 
@@ -40,6 +41,21 @@ public class ContactGroupSipImpl
      */
     private Vector<ContactGroup> subGroups = new Vector<ContactGroup>();
 
+    /**
+     * The contacts of this group and of all its subgroups mapped by their
+     * addresses. If there are several contacts with the same address only the
+     * first one added is mapped.
+     */
+    private final ConcurrentMap<String, ContactSipImpl> contactIndex
+        = new ConcurrentHashMap<String, ContactSipImpl>();
+
+    /**
+     * The number of contacts of this group and of all its subgroups which are
+     * not in {@link #contactIndex} because another contact with the same
+     * address already is.
+     */
+    private int unindexedContactCount = 0;
+
     /**
      * The group that this group belongs to (or null if this is the root group).
      */
@@ -175,6 +191,12 @@ public class ContactGroupSipImpl
     {
         this.contacts.add(contactToAdd);
         contactToAdd.setParentGroup(this);
+        for (ContactGroupSipImpl group = this;
+                group != null;
+                group = group.parentGroup)
+        {
+            group.indexContact(contactToAdd);
+        }
         if(contactToAdd.isPersistent())
         {
             this.list.getEntries().add(contactToAdd.getEntry());
@@ -232,6 +254,12 @@ public class ContactGroupSipImpl
     {
         this.subGroups.add(subgroup);
         subgroup.setParentGroup(this);
+        for (ContactGroupSipImpl group = this;
+                group != null;
+                group = group.parentGroup)
+        {
+            group.indexContacts(subgroup);
+        }
         if(subgroup.isPersistent())
         {
             this.list.getLists().add(subgroup.getList());
@@ -244,7 +272,15 @@ public class ContactGroupSipImpl
      */
     public void removeSubGroup(ContactGroupSipImpl subgroup)
     {
-        this.subGroups.remove(subgroup);
+        if (this.subGroups.remove(subgroup))
+        {
+            for (ContactGroupSipImpl group = this;
+                    group != null;
+                    group = group.parentGroup)
+            {
+                group.unindexContacts(subgroup);
+            }
+        }
         subgroup.setParentGroup(null);
         if(subgroup.isPersistent())
         {
@@ -392,7 +428,15 @@ public class ContactGroupSipImpl
      */
     public void removeContact(ContactSipImpl contact)
     {
-        this.contacts.remove(contact);
+        if (this.contacts.remove(contact))
+        {
+            for (ContactGroupSipImpl group = this;
+                    group != null;
+                    group = group.parentGroup)
+            {
+                group.unindexContact(contact);
+            }
+        }
         if(contact.isPersistent())
         {
             this.list.getEntries().remove(contact.getEntry());
@@ -407,30 +451,118 @@ public class ContactGroupSipImpl
      */
     public ContactSipImpl findContactByID(String id)
     {
-        //first go through the contacts that are direct children.
-        Iterator<Contact> contactsIter = contacts();
+        if (id == null)
+            return null;
+        return contactIndex.get(id);
+    }
 
-        while(contactsIter.hasNext())
-        {
-            ContactSipImpl mContact = (ContactSipImpl)contactsIter.next();
+    /**
+     * Adds a contact of this group or of one of its subgroups to
+     * {@link #contactIndex}.
+     *
+     * @param contact the contact to add.
+     */
+    private void indexContact(ContactSipImpl contact)
+    {
+        ContactSipImpl indexedContact
+            = contactIndex.putIfAbsent(contact.getAddress(), contact);
+
+        if (indexedContact != null && indexedContact != contact)
+            unindexedContactCount++;
+    }
+
+    /**
+     * Removes a contact which is no longer in this group or in one of its
+     * subgroups from {@link #contactIndex} and maps another contact with the
+     * same address instead if there is one.
+     *
+     * @param contact the contact to remove.
+     */
+    private void unindexContact(ContactSipImpl contact)
+    {
+        String address = contact.getAddress();
 
-            if( mContact.getAddress().equals(id) )
-                return mContact;
+        if (contactIndex.get(address) != contact)
+        {
+            if (unindexedContactCount > 0)
+                unindexedContactCount--;
+            return;
         }
 
-        //if we didn't find it here, let's try in the subgroups
-        Iterator<ContactGroup> groupsIter = subgroups();
+        ContactSipImpl sameAddressContact
+            = (unindexedContactCount > 0)
+                ? findContactByScan(address, contact)
+                : null;
 
-        while( groupsIter.hasNext() )
+        if (sameAddressContact == null)
+        {
+            contactIndex.remove(address);
+        }
+        else
         {
-            ContactGroupSipImpl mGroup = (ContactGroupSipImpl)groupsIter.next();
+            contactIndex.put(address, sameAddressContact);
+            unindexedContactCount--;
+        }
+    }
 
-            ContactSipImpl mContact = mGroup.findContactByID(id);
+    /**
+     * Adds all contacts of a group and of its subgroups to
+     * {@link #contactIndex}.
+     *
+     * @param group the group whose contacts are to be added.
+     */
+    private void indexContacts(ContactGroupSipImpl group)
+    {
+        for (Contact contact : group.contacts)
+            indexContact((ContactSipImpl) contact);
+        for (ContactGroup subgroup : group.subGroups)
+            indexContacts((ContactGroupSipImpl) subgroup);
+    }
 
-            if (mContact != null)
-                return mContact;
+    /**
+     * Removes all contacts of a group which is no longer a subgroup of this
+     * group and of its subgroups from {@link #contactIndex}.
+     *
+     * @param group the group whose contacts are to be removed.
+     */
+    private void unindexContacts(ContactGroupSipImpl group)
+    {
+        for (Contact contact : group.contacts)
+            unindexContact((ContactSipImpl) contact);
+        for (ContactGroup subgroup : group.subGroups)
+            unindexContacts((ContactGroupSipImpl) subgroup);
+    }
+
+    /**
+     * Returns the first contact with the specified address in this group or
+     * in one of its subgroups without consulting {@link #contactIndex}.
+     *
+     * @param address the address of the contact we're looking for.
+     * @param excluded a contact which is not to be returned.
+     * @return the contact or <tt>null</tt> if no such contact exists.
+     */
+    private ContactSipImpl findContactByScan(
+            String address,
+            ContactSipImpl excluded)
+    {
+        //first go through the contacts that are direct children.
+        for (Contact contact : contacts)
+        {
+            if (contact != excluded && contact.getAddress().equals(address))
+                return (ContactSipImpl) contact;
         }
 
+        //if we didn't find it here, let's try in the subgroups
+        for (ContactGroup subgroup : subGroups)
+        {
+            ContactSipImpl contact
+                = ((ContactGroupSipImpl) subgroup).findContactByScan(
+                        address,
+                        excluded);
+
+            if (contact != null)
+                return contact;
+        }
         return null;
     }
 
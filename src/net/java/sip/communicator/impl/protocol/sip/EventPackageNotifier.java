@@ -379,6 +379,7 @@ public abstract class EventPackageNotifier
                             OperationFailedException.NETWORK_FAILURE,
                             sex);
             }
+            subscription.notifyContentSent();
         }
 
         if (SubscriptionState.TERMINATED.equals(subscriptionState))
@@ -765,6 +766,7 @@ public abstract class EventPackageNotifier
                 logger.error("Can't send the request", e);
                 return false;
             }
+            subscription.notifyContentSent();
         }
 
         // add the timeout task
@@ -952,6 +954,16 @@ public abstract class EventPackageNotifier
         protected abstract byte[] createNotifyContent(
             String subscriptionState,
             String reason);
+
+        /**
+         * Notifies this <tt>Subscription</tt> that the NOTIFY request carrying
+         * the content last created by
+         * {@link #createNotifyContent(String, String)} has been sent to its
+         * target. Does nothing by default.
+         */
+        protected void notifyContentSent()
+        {
+        }
     }
 
     /**
@@ -982,7 +994,7 @@ public abstract class EventPackageNotifier
      * <tt>Subscription</tt> when its subscription duration expires.
      */
     private class SubscriptionTimeoutTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
 
         /**
@@ -1254,7 +1254,7 @@ public class EventPackageSubscriber
      * <tt>Subscription</tt>.
      */
     private class SubscriptionRefreshTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
 
         /**
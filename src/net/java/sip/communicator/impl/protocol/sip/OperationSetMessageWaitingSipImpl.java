@@ -19,6 +19,7 @@ import javax.sip.message.*;
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.service.protocol.event.*;
 import net.java.sip.communicator.util.Logger;
+import net.java.sip.communicator.util.TimerScheduler;
 
 import org.jitsi.util.*;
 
@@ -6,6 +6,7 @@
  */
 package net.java.sip.communicator.impl.protocol.sip;
 
+import java.io.*;
 import java.net.URI;
 import java.text.*;
 import java.util.*;
@@ -21,6 +22,8 @@ import net.java.sip.communicator.util.*;
 
 import org.jitsi.util.xml.XMLUtils;
 import org.w3c.dom.*;
+import org.xmlpull.mxp1.*;
+import org.xmlpull.v1.*;
 
 /**
  * Sip presence implementation (SIMPLE).
@@ -2080,39 +2083,27 @@ public class OperationSetPresenceSipImpl
       */
      public void setPidfPresenceStatus(String presenceDoc)
      {
-         Document doc = convertDocument(presenceDoc);
+         PidfDocument presence;
 
-         if (doc == null)
+         try
+         {
+             presence = PidfDocument.parse(presenceDoc);
+         }
+         catch (Exception e)
+         {
+             logger.error("Can't parse the pidf document", e);
              return;
+         }
 
          if (logger.isDebugEnabled())
              logger.debug("parsing:\n" + presenceDoc);
 
          // <presence>
-         NodeList presList = doc.getElementsByTagNameNS(PIDF_NS_VALUE,
-                 PRESENCE_ELEMENT);
-
-         if (presList.getLength() == 0)
-         {
-             presList = doc.getElementsByTagNameNS(ANY_NS, PRESENCE_ELEMENT);
-
-             if (presList.getLength() == 0)
-             {
-                 logger.error("no presence element in this document");
-                 return;
-             }
-         }
-         if (presList.getLength() > 1)
+         if (presence == null)
          {
-             logger.warn("more than one presence element in this document");
-         }
-         Node presNode = presList.item(0);
-         if (presNode.getNodeType() != Node.ELEMENT_NODE)
-         {
-             logger.error("the presence node is not an element");
+             logger.error("no presence element in this document");
              return;
          }
-         Element presence = (Element) presNode;
 
          // RPID area
 
@@ -2122,143 +2113,62 @@ public class OperationSetPresenceSipImpl
 
          PresenceStatus personStatus = null;
          URI personStatusIcon = null;
-         NodeList personList = presence.getElementsByTagNameNS(ANY_NS,
-                 PERSON_ELEMENT);
 
-         //if (personList.getLength() > 1) {
-         //    logger.error("more than one person in this document");
-         //    return;
-         //}
+         if (AWAY_ELEMENT.equals(presence.activity))
+         {
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.AWAY);
+         }
+         else if (BUSY_ELEMENT.equals(presence.activity))
+         {
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.BUSY);
+         }
+         else if (OTP_ELEMENT.equals(presence.activity))
+         {
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.ON_THE_PHONE);
+         }
 
-         if (personList.getLength() > 0)
+         String content = presence.statusIcon;
+         if (content != null && content.trim().length() != 0)
          {
-             Node personNode = personList.item(0);
-             if (personNode.getNodeType() != Node.ELEMENT_NODE)
+             try
              {
-                 logger.error("the person node is not an element");
-                 return;
+                 personStatusIcon = URI.create(content);
              }
-             Element person = (Element) personNode;
-
-             NodeList activityList =
-                 person.getElementsByTagNameNS(ANY_NS, ACTIVITY_ELEMENT);
-             if (activityList.getLength() > 0)
+             catch (IllegalArgumentException ex)
              {
-                 Element activity = null;
-                 // find the first correct activity
-                 for (int i = 0; i < activityList.getLength(); i++)
-                 {
-                     Node activityNode = activityList.item(i);
-
-                     if (activityNode.getNodeType() != Node.ELEMENT_NODE)
-                         continue;
-
-                     activity = (Element) activityNode;
-
-                     NodeList statusList = activity.getChildNodes();
-                     for (int j = 0; j < statusList.getLength(); j++)
-                     {
-                         Node statusNode = statusList.item(j);
-                         if (statusNode.getNodeType() == Node.ELEMENT_NODE)
-                         {
-                             String statusname = statusNode.getLocalName();
-                             if (statusname.equals(AWAY_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.AWAY);
-                                 break;
-                             }
-                             else if (statusname.equals(BUSY_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.BUSY);
-                                 break;
-                             }
-                             else if (statusname.equals(OTP_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.ON_THE_PHONE);
-                                 break;
-                             }
-                         }
-                     }
-                     if (personStatus != null)
-                         break;
-                 }
-             }
-             NodeList statusIconList = person.getElementsByTagNameNS(ANY_NS,
-                     STATUS_ICON_ELEMENT);
-             if (statusIconList.getLength() > 0)
-             {
-                 Element statusIcon;
-                 Node statusIconNode = statusIconList.item(0);
-                 if (statusIconNode.getNodeType() == Node.ELEMENT_NODE)
-                 {
-                     statusIcon = (Element) statusIconNode;
-                     String content = getTextContent(statusIcon);
-                     if (content != null && content.trim().length() != 0)
-                     {
-                         try
-                         {
-                             personStatusIcon = URI.create(content);
-                         }
-                         catch (IllegalArgumentException ex)
-                         {
-                             logger.error("Person's status icon uri: " +
-                                     content + " is invalid");
-                         }
-                     }
-                 }
+                 logger.error("Person's status icon uri: " +
+                         content + " is invalid");
              }
          }
 
           if(personStatusIcon != null)
           {
-              String contactID =
-                  XMLUtils.getAttribute(presNode, ENTITY_ATTRIBUTE);
-
-              if (contactID.startsWith("pres:"))
-              {
-                  contactID = contactID.substring("pres:".length());
-              }
-              Contact contact = resolveContactID(contactID);
-              updateContactIcon((ContactSipImpl) contact, personStatusIcon);
+              ContactSipImpl contact = resolveContactID(presence.getEntity());
+
+              if (contact != null)
+                  updateContactIcon(contact, personStatusIcon);
          }
 
-         // Vector containing the list of status to set for each contact in
+         // List containing the list of status to set for each contact in
          // the presence document ordered by priority (highest first).
          // <SipContact, Float (priority), SipStatusEnum>
-         List<Object[]> newPresenceStates = new Vector<Object[]>(3, 2);
+         List<Object[]> newPresenceStates = new ArrayList<Object[]>(3);
 
          // <tuple>
-         NodeList tupleList = getPidfChilds(presence, TUPLE_ELEMENT);
-         for (int i = 0; i < tupleList.getLength(); i++)
+         for (PidfTuple tuple : presence.getTuples())
          {
-             Node tupleNode = tupleList.item(i);
-
-             if (tupleNode.getNodeType() != Node.ELEMENT_NODE)
-                 continue;
-
-             Element tuple = (Element) tupleNode;
-
              // <contact>
-             NodeList contactList = getPidfChilds(tuple, CONTACT_ELEMENT);
+             List<String[]> contactList = tuple.getContacts();
 
-             // we use a vector here and not an unique contact to handle an
+             // we use a list here and not an unique contact to handle an
              // error case where many contacts are associated with a status
-             // Vector<ContactSipImpl>
-             List<Object[]> sipcontact = new Vector<Object[]>(1, 3);
+             // List<ContactSipImpl>
+             List<Object[]> sipcontact = new ArrayList<Object[]>(1);
              String contactID = null;
-             if (contactList.getLength() == 0)
+             if (contactList.isEmpty())
              {
                  // use the entity attribute of the presence node
-                 contactID = XMLUtils.getAttribute(
-                         presNode, ENTITY_ATTRIBUTE);
-                 // also accept entity URIs starting with pres: instead of sip:
-                 if (contactID.startsWith("pres:"))
-                 {
-                     contactID = contactID.substring("pres:".length());
-                 }
+                 contactID = presence.getEntity();
                  Contact tmpContact = resolveContactID(contactID);
 
                  if (tmpContact != null)
@@ -2269,16 +2179,9 @@ public class OperationSetPresenceSipImpl
              else
              {
                  // this is normally not permitted by RFC3863
-                 for (int j = 0; j < contactList.getLength(); j++)
+                 for (String[] contact : contactList)
                  {
-                     Node contactNode = contactList.item(j);
-
-                     if (contactNode.getNodeType() != Node.ELEMENT_NODE)
-                         continue;
-
-                     Element contact = (Element) contactNode;
-
-                     contactID = getTextContent(contact);
+                     contactID = contact[0];
                      // also accept entity URIs starting with pres: instead
                      // of sip:
                      if (contactID.startsWith("pres:"))
@@ -2294,7 +2197,7 @@ public class OperationSetPresenceSipImpl
                      Object tab[] = new Object[2];
 
                      // search if the contact has a priority
-                     String prioStr = contact.getAttribute(PRIORITY_ATTRIBUTE);
+                     String prioStr = contact[1];
                      Float prio = null;
                      try
                      {
@@ -2365,82 +2268,25 @@ public class OperationSetPresenceSipImpl
                  continue;
              }
 
-             // <status>
-             NodeList statusList = getPidfChilds(tuple, STATUS_ELEMENT);
-
+             // <status> and <basic>
              // in case of many status, just consider the last one
              // this is normally not permitted by RFC3863
-             int index = statusList.getLength() - 1;
-             Node statusNode = null;
-             do
-             {
-                 Node temp = statusList.item(index);
-                 if (temp.getNodeType() == Node.ELEMENT_NODE)
-                 {
-                     statusNode = temp;
-                     break;
-                 }
-                 index--;
-             }
-             while (index >= 0);
+             String basic = tuple.getBasic();
 
-             Element basic = null;
-
-             if (statusNode == null)
+             if (basic == null)
              {
                  if (logger.isDebugEnabled())
-                     logger.debug("no valid status in this tuple");
-             }
-             else
-             {
-                 Element status = (Element) statusNode;
-
-                 // <basic>
-                 NodeList basicList = getPidfChilds(status, BASIC_ELEMENT);
-
-                 // in case of many basic, just consider the last one
-                 // this is normally not permitted by RFC3863
-                 index = basicList.getLength() - 1;
-                 Node basicNode = null;
-                 do
-                 {
-                     Node temp = basicList.item(index);
-                     if (temp.getNodeType() == Node.ELEMENT_NODE)
-                     {
-                         basicNode = temp;
-                         break;
-                     }
-                     index--;
-                 }
-                 while (index >= 0);
-
-                 if (basicNode == null)
-                 {
-                     if (logger.isDebugEnabled())
-                         logger.debug("no valid <basic> in this status");
-                 }
-                 else
-                 {
-                     basic = (Element) basicNode;
-                 }
+                     logger.debug("no valid <basic> in this tuple");
              }
 
              // search for a <note> that can define a more precise
              // status this is not recommended by RFC3863 but some im
              // clients use this.
-             NodeList noteList = getPidfChilds(tuple, NOTE_ELEMENT);
-
              boolean changed = false;
-             for (int k = 0; k < noteList.getLength() && !changed; k++)
+             for (Iterator<String> notes = tuple.getNotes().iterator();
+                     notes.hasNext() && !changed;)
              {
-                 Node noteNode = noteList.item(k);
-
-                 if (noteNode.getNodeType() != Node.ELEMENT_NODE)
-                     continue;
-
-                 Element note = (Element) noteNode;
-
-                 String state = getTextContent(note);
+                 String state = notes.next();
 
                  Iterator<PresenceStatus> states
                      = sipStatusEnum.getSupportedStatusSet();
@@ -2461,7 +2307,7 @@ public class OperationSetPresenceSipImpl
 
              if (changed == false && basic != null)
              {
-                 if (getTextContent(basic).equalsIgnoreCase(ONLINE_STATUS))
+                 if (basic.equalsIgnoreCase(ONLINE_STATUS))
                  {
                      // if its online(open) we use the person status
                      // if any, otherwise just mark as online
@@ -2480,8 +2326,7 @@ public class OperationSetPresenceSipImpl
                                  newPresenceStates);
                      }
                  }
-                 else if (getTextContent(basic).equalsIgnoreCase(
-                         OFFLINE_STATUS))
+                 else if (basic.equalsIgnoreCase(OFFLINE_STATUS))
                  {
                      // if its offline we ignore person status
                      newPresenceStates = setStatusForContacts(
@@ -2723,31 +2568,6 @@ public class OperationSetPresenceSipImpl
          return res;
      }
 
-     /**
-      * Gets the list of the descendant of an element in the pidf namespace.
-      * If the list is empty, we try to get this list in any namespace.
-      * This method is useful for being able to read pidf document without any
-      * namespace or with a wrong namespace.
-      *
-      * @param element the base element concerned.
-      * @param childName the name of the descendants to match on.
-      *
-      * @return The list of all the descendant node.
-      */
-     private NodeList getPidfChilds(Element element, String childName)
-     {
-         NodeList res;
-
-         res = element.getElementsByTagNameNS(PIDF_NS_VALUE, childName);
-
-         if (res.getLength() == 0)
-         {
-             res = element.getElementsByTagNameNS(ANY_NS, childName);
-         }
-
-         return res;
-     }
-
      /**
       * Associate the provided presence state to the contacts considering the
       * current presence states and priorities.
@@ -2961,7 +2781,7 @@ public class OperationSetPresenceSipImpl
      /**
       * A <tt>TimerTask</tt> handling refresh of PUBLISH requests.
       */
-     private class RePublishTask extends TimerTask
+     private class RePublishTask extends SharedTimer.Task
      {
          /**
           * Send a new PUBLISH request to refresh the publication
@@ -3015,7 +2835,7 @@ public class OperationSetPresenceSipImpl
      /**
       * A task handling polling of offline contacts.
       */
-     private class PollOfflineContactsTask extends TimerTask
+     private class PollOfflineContactsTask extends SharedTimer.Task
      {
          /**
           * Check if we can't subscribe to this contact now
@@ -3706,4 +3526,399 @@ public class OperationSetPresenceSipImpl
             logger.error("Subscription to presence watcher info terminated!");
         }
     }
+
+    /**
+     * The parts of a PIDF document (RFC 3863) and of its RPID extensions
+     * (RFC 4480) which determine the presence status of contacts, read in a
+     * single pass with a pull parser. The PIDF elements are taken from the
+     * PIDF namespace or from any namespace if there are none in it, the RPID
+     * elements are taken from any namespace.
+     */
+    private static class PidfDocument
+    {
+        /**
+         * The <tt>entity</tt> attribute of the presence element.
+         */
+        private String entity;
+
+        /**
+         * The name of the first away, busy or on-the-phone activity of the
+         * first person or <tt>null</tt> if there is none.
+         */
+        private String activity;
+
+        /**
+         * The text of the first status-icon of the first person or
+         * <tt>null</tt> if there is none.
+         */
+        private String statusIcon;
+
+        /**
+         * All tuples of the presence element.
+         */
+        private final List<PidfTuple> anyTuples = new ArrayList<PidfTuple>();
+
+        /**
+         * The tuples of the presence element in the PIDF namespace.
+         */
+        private final List<PidfTuple> pidfTuples = new ArrayList<PidfTuple>();
+
+        /**
+         * Reads a PIDF document.
+         *
+         * @param xml the PIDF document
+         * @return the document or <tt>null</tt> if it has no presence element
+         * @throws XmlPullParserException if the document is not well formed
+         * @throws IOException never since the document is read from a string
+         */
+        static PidfDocument parse(String xml)
+            throws XmlPullParserException,
+                   IOException
+        {
+            XmlPullParser parser = new MXParser();
+
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(new StringReader(xml));
+
+            int eventType;
+
+            while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT)
+            {
+                if (eventType == XmlPullParser.START_TAG
+                        && PRESENCE_ELEMENT.equals(parser.getName()))
+                {
+                    PidfDocument document = new PidfDocument();
+
+                    document.parsePresence(parser);
+                    return document;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the <tt>entity</tt> attribute of the presence element
+         * without a <tt>pres:</tt> scheme.
+         *
+         * @return the entity of the document
+         */
+        String getEntity()
+        {
+            // also accept entity URIs starting with pres: instead of sip:
+            if (entity.startsWith("pres:"))
+                return entity.substring("pres:".length());
+            return entity;
+        }
+
+        /**
+         * Returns the tuples of the document.
+         *
+         * @return the tuples in the PIDF namespace or all tuples if there
+         * are none in it
+         */
+        List<PidfTuple> getTuples()
+        {
+            return pidfTuples.isEmpty() ? anyTuples : pidfTuples;
+        }
+
+        /**
+         * Reads the presence element the parser is positioned on.
+         *
+         * @param parser the parser
+         * @throws XmlPullParserException if the document is not well formed
+         * @throws IOException never since the document is read from a string
+         */
+        private void parsePresence(XmlPullParser parser)
+            throws XmlPullParserException,
+                   IOException
+        {
+            String entity = parser.getAttributeValue("", ENTITY_ATTRIBUTE);
+
+            this.entity = (entity == null) ? "" : entity;
+
+            int depth = parser.getDepth();
+            boolean personFound = false;
+            int eventType;
+
+            while (((eventType = parser.next()) != XmlPullParser.END_TAG)
+                    || (parser.getDepth() != depth))
+            {
+                if (eventType != XmlPullParser.START_TAG)
+                    continue;
+
+                String name = parser.getName();
+
+                if (TUPLE_ELEMENT.equals(name))
+                {
+                    boolean pidf = PIDF_NS_VALUE.equals(parser.getNamespace());
+                    PidfTuple tuple = PidfTuple.parse(parser);
+
+                    anyTuples.add(tuple);
+                    if (pidf)
+                        pidfTuples.add(tuple);
+                }
+                else if (PERSON_ELEMENT.equals(name) && !personFound)
+                {
+                    personFound = true;
+                    parsePerson(parser);
+                }
+            }
+        }
+
+        /**
+         * Reads the person element the parser is positioned on.
+         *
+         * @param parser the parser
+         * @throws XmlPullParserException if the document is not well formed
+         * @throws IOException never since the document is read from a string
+         */
+        private void parsePerson(XmlPullParser parser)
+            throws XmlPullParserException,
+                   IOException
+        {
+            int depth = parser.getDepth();
+            int activitiesDepth = -1;
+            boolean statusIconFound = false;
+            int eventType;
+
+            while (((eventType = parser.next()) != XmlPullParser.END_TAG)
+                    || (parser.getDepth() != depth))
+            {
+                if (eventType == XmlPullParser.END_TAG)
+                {
+                    if (parser.getDepth() == activitiesDepth)
+                        activitiesDepth = -1;
+                    continue;
+                }
+                if (eventType != XmlPullParser.START_TAG)
+                    continue;
+
+                String name = parser.getName();
+
+                if (ACTIVITY_ELEMENT.equals(name))
+                {
+                    if (activitiesDepth == -1)
+                        activitiesDepth = parser.getDepth();
+                }
+                else if (STATUS_ICON_ELEMENT.equals(name))
+                {
+                    if (!statusIconFound)
+                    {
+                        statusIconFound = true;
+                        statusIcon = readText(parser);
+                    }
+                }
+                else if ((activity == null)
+                        && (parser.getDepth() == activitiesDepth + 1)
+                        && (AWAY_ELEMENT.equals(name)
+                            || BUSY_ELEMENT.equals(name)
+                            || OTP_ELEMENT.equals(name)))
+                {
+                    activity = name;
+                }
+            }
+        }
+    }
+
+    /**
+     * A tuple of a <tt>PidfDocument</tt>.
+     */
+    private static class PidfTuple
+    {
+        /**
+         * The contacts of the tuple in any namespace as
+         * <tt>{ text, priority }</tt> pairs.
+         */
+        private final List<String[]> anyContacts = new ArrayList<String[]>();
+
+        /**
+         * The contacts of the tuple in the PIDF namespace as
+         * <tt>{ text, priority }</tt> pairs.
+         */
+        private final List<String[]> pidfContacts = new ArrayList<String[]>();
+
+        /**
+         * The texts of the notes of the tuple in any namespace.
+         */
+        private final List<String> anyNotes = new ArrayList<String>();
+
+        /**
+         * The texts of the notes of the tuple in the PIDF namespace.
+         */
+        private final List<String> pidfNotes = new ArrayList<String>();
+
+        /**
+         * The basic of the last status in any namespace.
+         */
+        private String anyBasic;
+
+        /**
+         * The basic of the last status in the PIDF namespace.
+         */
+        private String pidfBasic;
+
+        /**
+         * Whether the tuple has a status in the PIDF namespace.
+         */
+        private boolean pidfStatusFound = false;
+
+        /**
+         * Reads the tuple element the parser is positioned on.
+         *
+         * @param parser the parser
+         * @return the tuple
+         * @throws XmlPullParserException if the document is not well formed
+         * @throws IOException never since the document is read from a string
+         */
+        static PidfTuple parse(XmlPullParser parser)
+            throws XmlPullParserException,
+                   IOException
+        {
+            PidfTuple tuple = new PidfTuple();
+            int depth = parser.getDepth();
+            int statusDepth = -1;
+            boolean pidfStatus = false;
+            String statusPidfBasic = null;
+            String statusAnyBasic = null;
+            int eventType;
+
+            while (((eventType = parser.next()) != XmlPullParser.END_TAG)
+                    || (parser.getDepth() != depth))
+            {
+                if (eventType == XmlPullParser.END_TAG)
+                {
+                    if (parser.getDepth() == statusDepth)
+                    {
+                        // in case of many basic, just consider the last one
+                        // this is normally not permitted by RFC3863
+                        String basic
+                            = (statusPidfBasic != null)
+                                ? statusPidfBasic
+                                : statusAnyBasic;
+
+                        tuple.anyBasic = basic;
+                        if (pidfStatus)
+                        {
+                            tuple.pidfBasic = basic;
+                            tuple.pidfStatusFound = true;
+                        }
+                        statusDepth = -1;
+                    }
+                    continue;
+                }
+                if (eventType != XmlPullParser.START_TAG)
+                    continue;
+
+                String name = parser.getName();
+                boolean pidf = PIDF_NS_VALUE.equals(parser.getNamespace());
+
+                if (CONTACT_ELEMENT.equals(name))
+                {
+                    String[] contact
+                        = new String[]
+                        {
+                            null,
+                            parser.getAttributeValue("", PRIORITY_ATTRIBUTE)
+                        };
+
+                    contact[0] = readText(parser);
+                    tuple.anyContacts.add(contact);
+                    if (pidf)
+                        tuple.pidfContacts.add(contact);
+                }
+                else if (NOTE_ELEMENT.equals(name))
+                {
+                    String note = readText(parser);
+
+                    tuple.anyNotes.add(note);
+                    if (pidf)
+                        tuple.pidfNotes.add(note);
+                }
+                else if (STATUS_ELEMENT.equals(name))
+                {
+                    if (statusDepth == -1)
+                    {
+                        statusDepth = parser.getDepth();
+                        pidfStatus = pidf;
+                        statusPidfBasic = null;
+                        statusAnyBasic = null;
+                    }
+                }
+                else if (BASIC_ELEMENT.equals(name) && (statusDepth != -1))
+                {
+                    String basic = readText(parser);
+
+                    statusAnyBasic = basic;
+                    if (pidf)
+                        statusPidfBasic = basic;
+                }
+            }
+            return tuple;
+        }
+
+        /**
+         * Returns the contacts of the tuple.
+         *
+         * @return the contacts in the PIDF namespace or all contacts if
+         * there are none in it as <tt>{ text, priority }</tt> pairs
+         */
+        List<String[]> getContacts()
+        {
+            return pidfContacts.isEmpty() ? anyContacts : pidfContacts;
+        }
+
+        /**
+         * Returns the notes of the tuple.
+         *
+         * @return the texts of the notes in the PIDF namespace or of all
+         * notes if there are none in it
+         */
+        List<String> getNotes()
+        {
+            return pidfNotes.isEmpty() ? anyNotes : pidfNotes;
+        }
+
+        /**
+         * Returns the basic status of the tuple.
+         *
+         * @return the text of the basic of the last status in the PIDF
+         * namespace or in any namespace if there is none in it or
+         * <tt>null</tt> if there is no such basic
+         */
+        String getBasic()
+        {
+            return pidfStatusFound ? pidfBasic : anyBasic;
+        }
+    }
+
+    /**
+     * Reads the first text of the element the parser is positioned on and
+     * moves the parser to the end of the element.
+     *
+     * @param parser the parser
+     * @return the first text of the element or an empty string if the element
+     * has no text
+     * @throws XmlPullParserException if the document is not well formed
+     * @throws IOException never since the document is read from a string
+     */
+    private static String readText(XmlPullParser parser)
+        throws XmlPullParserException,
+               IOException
+    {
+        int depth = parser.getDepth();
+        String text = null;
+        int eventType;
+
+        while (((eventType = parser.next()) != XmlPullParser.END_TAG)
+                || (parser.getDepth() != depth))
+        {
+            if ((eventType == XmlPullParser.TEXT)
+                    && (text == null)
+                    && (parser.getDepth() == depth))
+            {
+                text = parser.getText();
+            }
+        }
+        return (text == null) ? "" : text;
+    }
 }
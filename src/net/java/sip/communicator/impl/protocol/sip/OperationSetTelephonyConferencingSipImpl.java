@@ -279,17 +279,25 @@ public class OperationSetTelephonyConferencingSipImpl
     /**
      * Generates the conference-info XML to be sent to a specific
      * <tt>CallPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer.
+     * conference managed by the local peer. Unless nothing has been sent to
+     * the <tt>callPeer</tt> yet, the generated conference-info XML is a
+     * <tt>state="partial"</tt> document which carries only the users that have
+     * changed since the previous notification.
      *
      * @param callPeer the <tt>CallPeer</tt> to generate conference-info XML for
-     * @param version the value of the version attribute of the
-     * <tt>conference-info</tt> root element of the conference-info XML to be
-     * generated
+     * @param conferenceInfoState the conference-info last sent to
+     * <tt>callPeer</tt> which is to be updated with the generated one
+     * @param force <tt>true</tt> to generate conference-info XML even if
+     * nothing has changed since the previous notification
      * @return the conference-info XML to be sent to the specified
      * <tt>callPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer
+     * conference managed by the local peer or <tt>null</tt> if nothing has
+     * changed and <tt>force</tt> is <tt>false</tt>
      */
-    private String getConferenceInfoXML(CallPeerSipImpl callPeer, int version)
+    private String getConferenceInfoXML(
+            CallPeerSipImpl callPeer,
+            ConferenceInfoState conferenceInfoState,
+            boolean force)
     {
         Dialog dialog = callPeer.getDialog();
         String localParty = null;
@@ -304,6 +312,58 @@ public class OperationSetTelephonyConferencingSipImpl
                         localPartyAddress.getURI().toString());
         }
 
+        CallSipImpl call = callPeer.getCall();
+        List<CallPeer> conferenceCallPeers = CallConference.getCallPeers(call);
+        Map<String, String> users = new LinkedHashMap<String, String>();
+        StringBuffer user = new StringBuffer();
+
+        // <user>
+        append(user, "<", ELEMENT_USER);
+        // entity
+        append(user, " entity=\"", domElementWriter.encode(localParty), "\"");
+        // state
+        append(user, " ", ATTRIBUTE_STATE, "=\"", STATE_FULL, "\">");
+
+        String ourDisplayName = parentProvider.getOurDisplayName();
+
+        if (ourDisplayName != null)
+        {
+            // <display-text>
+            append(user, "<", ELEMENT_DISPLAY_TEXT, ">");
+            user.append(domElementWriter.encode(ourDisplayName));
+            // </display-text>
+            append(user, "</", ELEMENT_DISPLAY_TEXT, ">");
+        }
+        // <endpoint>
+        append(user, "<", ELEMENT_ENDPOINT, ">");
+        // <status>
+        append(user, "<", ELEMENT_STATUS, ">");
+        // We are the conference focus so we're connected to the conference.
+        user.append(AbstractConferenceMember.CONNECTED);
+        // </status>
+        append(user, "</", ELEMENT_STATUS, ">");
+        getMediaXML(callPeer, false, user);
+        // </endpoint>
+        append(user, "</", ELEMENT_ENDPOINT, ">");
+        // </user>
+        append(user, "</", ELEMENT_USER, ">");
+        users.put(localParty, user.toString());
+
+        for (CallPeer conferenceCallPeer : conferenceCallPeers)
+        {
+            user.setLength(0);
+            getUserXML(conferenceCallPeer, user);
+            users.put(
+                    stripParametersFromAddress(conferenceCallPeer.getURI()),
+                    user.toString());
+        }
+
+        boolean fullState = conferenceInfoState.isFullStateRequired();
+        Map<String, String> changes = conferenceInfoState.update(users);
+
+        if (!fullState && changes.isEmpty() && !force)
+            return null;
+
         StringBuffer xml = new StringBuffer();
 
         xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
@@ -312,19 +372,23 @@ public class OperationSetTelephonyConferencingSipImpl
         // entity
         append(xml, " entity=\"", domElementWriter.encode(localParty), "\"");
         // state
-        xml.append(" state=\"full\"");
+        append(
+                xml,
+                " ", ATTRIBUTE_STATE, "=\"",
+                fullState ? STATE_FULL : STATE_PARTIAL,
+                "\"");
         // version
-        append(xml, " version=\"", Integer.toString(version), "\">");
+        append(
+                xml,
+                " version=\"",
+                Integer.toString(conferenceInfoState.getVersion()),
+                "\">");
         // <conference-description/>
         append(xml, "<", ELEMENT_CONFERENCE_DESCRIPTION, "/>");
         // <conference-state>
         append(xml, "<", ELEMENT_CONFERENCE_STATE, ">");
         // <user-count>
         append(xml, "<", ELEMENT_USER_COUNT, ">");
-
-        CallSipImpl call = callPeer.getCall();
-        List<CallPeer> conferenceCallPeers = CallConference.getCallPeers(call);
-
         xml.append(1 /* the local peer/user */ + conferenceCallPeers.size());
         // </user-count>
         append(xml, "</", ELEMENT_USER_COUNT, ">");
@@ -333,39 +397,24 @@ public class OperationSetTelephonyConferencingSipImpl
         // <users>
         append(xml, "<", ELEMENT_USERS, ">");
 
-        // <user>
-        append(xml, "<", ELEMENT_USER);
-        // entity
-        append(xml, " entity=\"", domElementWriter.encode(localParty), "\"");
-        // state
-        xml.append(" state=\"full\">");
-
-        String ourDisplayName = parentProvider.getOurDisplayName();
-
-        if (ourDisplayName != null)
+        for (Map.Entry<String, String> change : changes.entrySet())
         {
-            // <display-text>
-            append(xml, "<", ELEMENT_DISPLAY_TEXT, ">");
-            xml.append(domElementWriter.encode(ourDisplayName));
-            // </display-text>
-            append(xml, "</", ELEMENT_DISPLAY_TEXT, ">");
+            if (change.getValue() != null)
+                xml.append(change.getValue());
+            else
+            {
+                // <user/>
+                append(xml, "<", ELEMENT_USER);
+                // entity
+                append(
+                        xml,
+                        " entity=\"",
+                        domElementWriter.encode(change.getKey()),
+                        "\"");
+                // state
+                append(xml, " ", ATTRIBUTE_STATE, "=\"", STATE_DELETED, "\"/>");
+            }
         }
-        // <endpoint>
-        append(xml, "<", ELEMENT_ENDPOINT, ">");
-        // <status>
-        append(xml, "<", ELEMENT_STATUS, ">");
-        // We are the conference focus so we're connected to the conference.
-        xml.append(AbstractConferenceMember.CONNECTED);
-        // </status>
-        append(xml, "</", ELEMENT_STATUS, ">");
-        getMediaXML(callPeer, false, xml);
-        // </endpoint>
-        append(xml, "</", ELEMENT_ENDPOINT, ">");
-        // </user>
-        append(xml, "</", ELEMENT_USER, ">");
-
-        for (CallPeer conferenceCallPeer : conferenceCallPeers)
-            getUserXML(conferenceCallPeer, xml);
 
         // </users>
         append(xml, "</", ELEMENT_USERS, ">");
@@ -509,7 +558,7 @@ public class OperationSetTelephonyConferencingSipImpl
                         stripParametersFromAddress(callPeer.getURI())),
                 "\"");
         // state
-        xml.append(" state=\"full\">");
+        append(xml, " ", ATTRIBUTE_STATE, "=\"", STATE_FULL, "\">");
 
         String displayName = callPeer.getDisplayName();
 
@@ -657,19 +706,26 @@ public class OperationSetTelephonyConferencingSipImpl
             String reason,
             final Call call)
     {
+        /*
+         * The subscriptions which have nothing new to be notified about since
+         * their previous NOTIFY requests are not accepted.
+         */
         EventPackageNotifier.SubscriptionFilter subscriptionFilter
             = new EventPackageNotifier.SubscriptionFilter()
             {
                 public boolean accept(
                         EventPackageNotifier.Subscription subscription)
                 {
+                    if (!(subscription
+                            instanceof ConferenceNotifierSubscription))
+                        return false;
+
+                    ConferenceNotifierSubscription conferenceSubscription
+                        = (ConferenceNotifierSubscription) subscription;
+
                     return
-                        (subscription instanceof ConferenceNotifierSubscription)
-                            && call
-                                    .equals(
-                                        ((ConferenceNotifierSubscription)
-                                                subscription)
-                                            .getCall());
+                        call.equals(conferenceSubscription.getCall())
+                            && conferenceSubscription.prepareNotifyContent();
                 }
             };
 
@@ -781,10 +837,17 @@ public class OperationSetTelephonyConferencingSipImpl
     {
 
         /**
-         * The value of the <tt>version</tt> attribute to be specified in the
-         * outgoing <tt>conference-info</tt> root XML elements.
+         * The conference-info last sent to the target of this
+         * <tt>Subscription</tt>.
          */
-        private int version = 1;
+        private final ConferenceInfoState conferenceInfoState
+            = new ConferenceInfoState();
+
+        /**
+         * The content of the next NOTIFY request prepared by
+         * {@link #prepareNotifyContent()}.
+         */
+        private byte[] preparedNotifyContent;
 
         /**
          * Initializes a new <tt>ConferenceNotifierSubscription</tt> instance
@@ -810,6 +873,12 @@ public class OperationSetTelephonyConferencingSipImpl
          * Creates the content of the NOTIFY request to be sent to the target
          * represented by this <tt>Subscription</tt> and having a specific
          * subscription state and a specific reason for that subscription state.
+         * Unless the content has been prepared by
+         * {@link #prepareNotifyContent()} because the conference has changed,
+         * the NOTIFY request is sent in response to a SUBSCRIBE request and
+         * carries the full state of the conference so that a subscriber which
+         * has missed a notification may resynchronize by refreshing its
+         * subscription.
          *
          * @param subscriptionState the subscription state to be notified about
          * in the NOTIFY request which is to carry the returned content
@@ -822,9 +891,62 @@ public class OperationSetTelephonyConferencingSipImpl
          * @see EventPackageNotifier.Subscription#createNotifyContent(String,
          * String)
          */
-        protected byte[] createNotifyContent(
+        protected synchronized byte[] createNotifyContent(
                 String subscriptionState,
                 String reason)
+        {
+            byte[] notifyContent = preparedNotifyContent;
+
+            if (notifyContent != null)
+            {
+                preparedNotifyContent = null;
+                return notifyContent;
+            }
+            conferenceInfoState.reset();
+            return createNotifyContent(true);
+        }
+
+        /**
+         * Notifies this <tt>Subscription</tt> that the NOTIFY request carrying
+         * the content last created by
+         * {@link #createNotifyContent(String, String)} has been sent so that
+         * the next one carries only the changes since it.
+         *
+         * @see EventPackageNotifier.Subscription#notifyContentSent()
+         */
+        @Override
+        protected synchronized void notifyContentSent()
+        {
+            conferenceInfoState.commit();
+        }
+
+        /**
+         * Creates the content of the next NOTIFY request to be sent to the
+         * target represented by this <tt>Subscription</tt> if the conference
+         * has changed since the previous one.
+         *
+         * @return <tt>true</tt> if the conference has changed since the
+         * previous NOTIFY request and the content of the next one has been
+         * created; otherwise, <tt>false</tt>
+         */
+        public synchronized boolean prepareNotifyContent()
+        {
+            if (preparedNotifyContent == null)
+                preparedNotifyContent = createNotifyContent(false);
+            return (preparedNotifyContent != null);
+        }
+
+        /**
+         * Creates the content of the next NOTIFY request to be sent to the
+         * target represented by this <tt>Subscription</tt>.
+         *
+         * @param force <tt>true</tt> to create the content even if the
+         * conference has not changed since the previous NOTIFY request
+         * @return an array of <tt>byte</tt>s representing the content of the
+         * NOTIFY request to be sent to the target represented by this
+         * <tt>Subscription</tt> or <tt>null</tt>
+         */
+        private byte[] createNotifyContent(boolean force)
         {
             CallPeerSipImpl callPeer = getCallPeer();
 
@@ -837,7 +959,8 @@ public class OperationSetTelephonyConferencingSipImpl
                 return null;
             }
 
-            String conferenceInfoXML = getConferenceInfoXML(callPeer, version);
+            String conferenceInfoXML
+                = getConferenceInfoXML(callPeer, conferenceInfoState, force);
             byte[] notifyContent;
 
             if (conferenceInfoXML == null)
@@ -857,7 +980,6 @@ public class OperationSetTelephonyConferencingSipImpl
                             uee);
                     notifyContent = conferenceInfoXML.getBytes();
                 }
-                ++ version;
             }
             return notifyContent;
         }
@@ -995,7 +1117,27 @@ public class OperationSetTelephonyConferencingSipImpl
                         version,
                         SdpUtils.getContentAsString(requestEvent.getRequest()));
 
-                if (contentVersion >= version)
+                if (contentVersion == VERSION_GAP)
+                {
+                    /*
+                     * A notification has been missed so the partial ones are
+                     * of no use until the full state is received again in
+                     * response to a subscription refresh.
+                     */
+                    try
+                    {
+                        subscriber.subscribe(this);
+                    }
+                    catch (OperationFailedException ofe)
+                    {
+                        logger
+                            .error(
+                                "Failed to refresh the conference subscription "
+                                    + this,
+                                ofe);
+                    }
+                }
+                else if (contentVersion >= version)
                     version = contentVersion;
             }
         }
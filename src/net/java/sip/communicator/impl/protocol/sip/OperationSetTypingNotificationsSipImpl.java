@@ -102,7 +102,7 @@ public class OperationSetTypingNotificationsSipImpl
     /**
      * The global timer managing the tasks.
      */
-    private Timer timer = new Timer();
+    private final TimerScheduler timer = new TimerScheduler();
 
     /**
      * The timer tasks for received events, it timer time is reached this
@@ -557,7 +557,7 @@ public class OperationSetTypingNotificationsSipImpl
      * Task that will fire typing stopped when refresh time expires.
      */
     private class TypingTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
         /**
          * The contact that is typing in case of receiving the event and
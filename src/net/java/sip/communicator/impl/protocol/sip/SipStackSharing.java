@@ -1251,7 +1251,7 @@ public class SipStackSharing
      * to wrong interfaces. So we will replace them.
      */
     private class ResetListeningPoint
-            extends TimerTask
+            extends SharedTimer.Task
             implements RegistrationStateChangeListener
     {
         /**
@@ -1281,7 +1281,9 @@ public class SipStackSharing
         {
             if(evt.getNewState() == RegistrationState.UNREGISTERING)
             {
-                new Timer().schedule(this, TIME_FOR_PP_TO_UNREGISTER);
+                SharedTimer.getInstance().schedule(
+                        this,
+                        TIME_FOR_PP_TO_UNREGISTER);
             }
             else
             {
@@ -12,6 +12,7 @@ import static javax.sip.ListeningPoint.UDP;
 import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.SERVER_ADDRESS;
 import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.USER_ID;
 
+import java.io.*;
 import java.net.*;
 import java.text.*;
 
@@ -83,6 +84,28 @@ public class AutoProxyConnection
         {
             return NetworkUtils.getSRVRecords(domain);
         }
+
+        public InetSocketAddress[] raceConnections(
+            InetSocketAddress[] addresses)
+        {
+            ConnectionRacer racer = new ConnectionRacer();
+            Socket socket = racer.race(addresses);
+
+            if(socket == null)
+                return addresses;
+
+            // the SIP stack opens its own connection, the race only tells
+            // which addresses are reachable
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                logger.debug("Failed to close raced socket", e);
+            }
+            return racer.rank(addresses, socket);
+        }
     }
 
     private final static Logger logger
@@ -103,6 +126,8 @@ public class AutoProxyConnection
     private String[][] naptrRecords;
     private int naptrIndex;
     private SRVRecord[] srvRecords;
+    private InetSocketAddress[][] srvRecordsAddresses;
+    private Exception[] srvRecordsExceptions;
     private int srvRecordsIndex;
     private int srvTransportIndex;
     private InetSocketAddress socketAddresses[];
@@ -228,6 +253,7 @@ public class AutoProxyConnection
                 {
                     srvRecords = nu.getSRVRecords(
                         naptrRecords[naptrIndex][2]);
+                    srvRecordsAddresses = null;
                     if(srvRecords != null && srvRecords.length > 0)
                     {
                         state = State.NaptrSrvHosts;
@@ -249,9 +275,7 @@ public class AutoProxyConnection
             case NaptrSrvHosts:
                 for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
                 {
-                    socketAddresses = nu.getAandAAAARecords(
-                        srvRecords[srvRecordsIndex].getTarget(),
-                        srvRecords[srvRecordsIndex].getPort());
+                    socketAddresses = getSrvTargetAddresses(srvRecordsIndex);
                     if(socketAddresses != null && socketAddresses.length > 0)
                     {
                         state = State.NaptrSrvHostIPs;
@@ -285,6 +309,7 @@ public class AutoProxyConnection
                             ? UDP
                             : TCP),
                         address);
+                    srvRecordsAddresses = null;
                     if(srvRecords != null && srvRecords.length > 0)
                     {
                         hadSrvResults = true;
@@ -313,9 +338,7 @@ public class AutoProxyConnection
                 }
                 for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
                 {
-                    socketAddresses = nu.getAandAAAARecords(
-                        srvRecords[srvRecordsIndex].getTarget(),
-                        srvRecords[srvRecordsIndex].getPort());
+                    socketAddresses = getSrvTargetAddresses(srvRecordsIndex);
                     if(socketAddresses != null && socketAddresses.length > 0)
                     {
                         state = State.SrvHostIPs;
@@ -342,9 +365,10 @@ public class AutoProxyConnection
 
                 if(socketAddresses == null)
                 {
-                    socketAddresses = nu.getAandAAAARecords(
-                        address,
-                        ListeningPoint.PORT_5060);
+                    socketAddresses = orderAddresses(
+                        nu.getAandAAAARecords(
+                            address,
+                            ListeningPoint.PORT_5060));
                 }
 
                 if(socketAddresses != null && socketAddresses.length > 0
@@ -358,6 +382,67 @@ public class AutoProxyConnection
         return false;
     }
 
+    /**
+     * Gets the addresses of the target of an SRV record in the order to try
+     * them. The targets of all current SRV records are resolved concurrently
+     * when the first of them is requested.
+     *
+     * @param index the index of the record in {@link #srvRecords}
+     * @throws DnssecException When a DNSSEC failure occured during the lookup.
+     * @throws ParseException When the target of the record is invalid.
+     */
+    private InetSocketAddress[] getSrvTargetAddresses(int index)
+        throws DnssecException, ParseException
+    {
+        if(srvRecordsAddresses == null)
+        {
+            srvRecordsExceptions = new Exception[srvRecords.length];
+            srvRecordsAddresses = ConnectionRacer.resolve(
+                srvRecords,
+                new ConnectionRacer.Resolver()
+                {
+                    public InetSocketAddress[] resolve(String target, int port)
+                        throws ParseException, DnssecException
+                    {
+                        return nu.getAandAAAARecords(target, port);
+                    }
+                },
+                srvRecordsExceptions);
+        }
+
+        Exception e = srvRecordsExceptions[index];
+        if(e instanceof DnssecException)
+            throw (DnssecException) e;
+        if(e instanceof ParseException)
+            throw (ParseException) e;
+        if(e != null)
+        {
+            logger.error("Unable to resolve <"
+                + srvRecords[index].getTarget() + ">", e);
+            return null;
+        }
+        return orderAddresses(srvRecordsAddresses[index]);
+    }
+
+    /**
+     * Orders the addresses of a host so that the IP families alternate and,
+     * for connection-oriented transports, the first address which accepts a
+     * connection comes first and the unreachable addresses are skipped.
+     *
+     * @param addresses the addresses of a host
+     * @return the addresses in the order to try them
+     */
+    private InetSocketAddress[] orderAddresses(InetSocketAddress[] addresses)
+    {
+        if(addresses == null || addresses.length < 2)
+            return addresses;
+
+        addresses = ConnectionRacer.interleave(addresses);
+        if(UDP.equalsIgnoreCase(transport))
+            return addresses;
+        return nu.raceConnections(addresses);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.sip.net;
 
 import gov.nist.core.net.*;
 
+import java.beans.*;
 import java.io.*;
 import java.net.*;
 import java.security.*;
@@ -46,11 +47,51 @@ public class SslNetworkLayer
      private static final String SIP_DSCP_PROPERTY =
          "net.java.sip.communicator.impl.protocol.SIP_DSCP";
 
+     /**
+      * The prefix of the names of the properties of the
+      * <tt>CertificateService</tt> which invalidate the cached
+      * <tt>SSLContext</tt>s when changed.
+      */
+     private static final String CERTIFICATE_SERVICE_PROPERTY_PREFIX =
+         "net.java.sip.communicator.service.cert";
+
+     /**
+      * The prefix of the names of the properties which store the certificates
+      * trusted by the user.
+      */
+     private static final String CERTIFICATE_TRUST_PROPERTY_PREFIX =
+         "net.java.sip.communicator.impl.certservice";
+
+     /**
+      * The maximum number of TLS sessions kept for resumption per
+      * <tt>SSLContext</tt>.
+      */
+     private static final int SESSION_CACHE_SIZE = 32;
+
+     /**
+      * The time in seconds a TLS session may be resumed for.
+      */
+     private static final int SESSION_TIMEOUT = 24 * 60 * 60;
+
     /**
      * The service we use to interact with user.
      */
     private CertificateService certificateVerification = null;
 
+    /**
+     * The client <tt>SSLContext</tt>s keyed by the unique IDs of the accounts
+     * they have been created for. Reusing them saves reloading the key stores
+     * and allows the TLS sessions to be resumed when reconnecting.
+     */
+    private final Map<String, AccountSSLContext> sslContexts
+        = new HashMap<String, AccountSSLContext>();
+
+    /**
+     * The server <tt>SSLContext</tt> or <tt>null</tt> if it has not been
+     * created yet or has been invalidated.
+     */
+    private SSLContext serverSSLContext = null;
+
     /**
      * Creates the network layer.
      */
@@ -64,6 +105,67 @@ public class SslNetworkLayer
             certificateVerification =
                 (CertificateService) SipActivator.getBundleContext().getService(
                     guiVerifyReference);
+
+        ConfigurationService configService =
+            SipActivator.getConfigurationService();
+
+        if (configService != null)
+            configService.addPropertyChangeListener(
+                new PropertyChangeListener()
+                {
+                    public void propertyChange(PropertyChangeEvent evt)
+                    {
+                        String name = evt.getPropertyName();
+
+                        if (name.startsWith(CERTIFICATE_SERVICE_PROPERTY_PREFIX)
+                            || name.startsWith(
+                                    CERTIFICATE_TRUST_PROPERTY_PREFIX)
+                            || name.equals(
+                                    CertificateService.PNAME_ALWAYS_TRUST))
+                            invalidateSSLContexts();
+                    }
+                });
+    }
+
+    /**
+     * Drops the cached <tt>SSLContext</tt>s (and with them the TLS sessions
+     * which could have been resumed) because the certificate configuration
+     * has changed.
+     */
+    private synchronized void invalidateSSLContexts()
+    {
+        if (logger.isDebugEnabled() && !sslContexts.isEmpty())
+            logger.debug("Certificate configuration changed, dropping "
+                + sslContexts.size() + " cached SSL contexts.");
+
+        sslContexts.clear();
+        serverSSLContext = null;
+    }
+
+    /**
+     * Enables the caching of TLS sessions of a specific <tt>SSLContext</tt>
+     * so that reconnects can use an abbreviated handshake.
+     *
+     * @param sslContext the <tt>SSLContext</tt> to enable session caching of
+     * @return <tt>sslContext</tt>
+     */
+    private static SSLContext enableSessionCaching(SSLContext sslContext)
+    {
+        SSLSessionContext[] sessionContexts = new SSLSessionContext[]
+            {
+                sslContext.getClientSessionContext(),
+                sslContext.getServerSessionContext()
+            };
+
+        for (SSLSessionContext sessionContext : sessionContexts)
+        {
+            if (sessionContext != null)
+            {
+                sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(SESSION_TIMEOUT);
+            }
+        }
+        return sslContext;
     }
 
     /**
@@ -168,8 +270,16 @@ public class SslNetworkLayer
     {
         try
         {
-            return certificateVerification.getSSLContext()
-                .getServerSocketFactory();
+            SSLContext sslContext;
+
+            synchronized (this)
+            {
+                if (serverSSLContext == null)
+                    serverSSLContext = enableSessionCaching(
+                        certificateVerification.getSSLContext());
+                sslContext = serverSSLContext;
+            }
+            return sslContext.getServerSocketFactory();
         }
         catch (GeneralSecurityException e)
         {
@@ -230,14 +340,37 @@ public class SslNetworkLayer
                         + "> to list of valid SIP TLS server identities.");
             }
 
-            return certificateVerification.getSSLContext(
-                (String)id.getAccountProperty(
-                    ProtocolProviderFactory.CLIENT_TLS_CERTIFICATE),
-                certificateVerification.getTrustManager(
-                    identities,
-                    null,
-                    new RFC5922Matcher(provider)
-                )).getSocketFactory();
+            String clientCertConfig = (String)id.getAccountProperty(
+                ProtocolProviderFactory.CLIENT_TLS_CERTIFICATE);
+
+            synchronized (this)
+            {
+                AccountSSLContext accountSSLContext
+                    = sslContexts.get(id.getAccountUniqueID());
+
+                if (accountSSLContext == null
+                    || !accountSSLContext.isValidFor(
+                            provider, clientCertConfig, identities))
+                {
+                    SSLContext sslContext = certificateVerification
+                        .getSSLContext(
+                            clientCertConfig,
+                            certificateVerification.getTrustManager(
+                                identities,
+                                null,
+                                new RFC5922Matcher(provider)
+                            ));
+
+                    accountSSLContext = new AccountSSLContext(
+                        provider,
+                        clientCertConfig,
+                        identities,
+                        enableSessionCaching(sslContext));
+                    sslContexts.put(
+                        id.getAccountUniqueID(), accountSSLContext);
+                }
+                return accountSSLContext.sslContext.getSocketFactory();
+            }
         }
         catch (GeneralSecurityException e)
         {
@@ -409,4 +542,68 @@ public class SslNetworkLayer
 
         return 0;
     }
+
+    /**
+     * An <tt>SSLContext</tt> created for an account together with the
+     * parameters it has been created with.
+     */
+    private static class AccountSSLContext
+    {
+        /**
+         * The provider of the account the <tt>SSLContext</tt> has been created
+         * for.
+         */
+        private final ProtocolProviderServiceSipImpl provider;
+
+        /**
+         * The ID of the client certificate configuration of the account.
+         */
+        private final String clientCertConfig;
+
+        /**
+         * The identities the certificate of the server is verified against.
+         */
+        private final List<String> identities;
+
+        /**
+         * The cached <tt>SSLContext</tt>.
+         */
+        final SSLContext sslContext;
+
+        AccountSSLContext(
+            ProtocolProviderServiceSipImpl provider,
+            String clientCertConfig,
+            List<String> identities,
+            SSLContext sslContext)
+        {
+            this.provider = provider;
+            this.clientCertConfig = clientCertConfig;
+            this.identities = identities;
+            this.sslContext = sslContext;
+        }
+
+        /**
+         * Determines whether the cached <tt>SSLContext</tt> has been created
+         * with specific parameters.
+         *
+         * @param provider the provider of the account
+         * @param clientCertConfig the ID of the client certificate
+         * configuration of the account
+         * @param identities the identities the certificate of the server is to
+         * be verified against
+         * @return <tt>true</tt> if the <tt>SSLContext</tt> can be reused with
+         * the specified parameters
+         */
+        boolean isValidFor(
+            ProtocolProviderServiceSipImpl provider,
+            String clientCertConfig,
+            List<String> identities)
+        {
+            return this.provider == provider
+                && (this.clientCertConfig == null
+                    ? clientCertConfig == null
+                    : this.clientCertConfig.equals(clientCertConfig))
+                && this.identities.equals(identities);
+        }
+    }
 }
@@ -9,8 +9,6 @@ package net.java.sip.communicator.impl.protocol.sip.security;
 import java.util.*;
 import java.util.Map.Entry;
 
-import javax.sip.header.*;
-
 /**
  * The class is used to cache all realms that a certain call has been authorized
  * against and all credentials that have been used for each realm. Note that
@@ -31,12 +29,6 @@ class CredentialsCache
     private Hashtable<String, CredentialsCacheEntry> authenticatedRealms
                             = new Hashtable<String, CredentialsCacheEntry>();
 
-    /**
-     * Contains callid->authorization header mappings
-     */
-    private Hashtable<String, AuthorizationHeader> authenticatedCalls
-                            =  new Hashtable<String, AuthorizationHeader>();
-
     /**
      * Cache credentials for the specified call and realm
      * @param realm the realm that the specify credentials apply to
@@ -61,6 +53,17 @@ class CredentialsCache
         return this.authenticatedRealms.get(realm);
     }
 
+    /**
+     * Returns the realms that we have answered challenges for mapped to the
+     * corresponding credentials.
+     *
+     * @return a copy of the realm->credentials mappings of this cache.
+     */
+    Map<String, CredentialsCacheEntry> getEntries()
+    {
+        return new HashMap<String, CredentialsCacheEntry>(authenticatedRealms);
+    }
+
     /**
      * Returns the list of realms that <tt>branchID</tt> has been used to
      * authenticate against.
@@ -109,31 +112,4 @@ class CredentialsCache
     {
         authenticatedRealms.clear();
     }
-
-    /**
-     * Cache the bindings of call-id and authorization header.
-     *
-     * @param callid the id of the call that the <tt>authorization</tt> header
-     * belongs to.
-     * @param authorization the authorization header that we'd like to cache.
-     */
-    void cacheAuthorizationHeader(String              callid,
-                                  AuthorizationHeader authorization)
-    {
-        authenticatedCalls.put(callid, authorization);
-    }
-
-    /**
-     * Returns an authorization header cached for the specified call id and null
-     * if no authorization header has been previously cached for this call.
-     *
-     * @param callid the call id that we'd like to retrive a cached
-     * authorization header for.
-     *
-     * @return authorization header corresponding to the specified callid
-     */
-    AuthorizationHeader getCachedAuthorizationHeader(String callid)
-    {
-        return this.authenticatedCalls.get(callid);
-    }
 }
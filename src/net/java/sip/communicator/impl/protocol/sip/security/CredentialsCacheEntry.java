@@ -8,6 +8,8 @@ package net.java.sip.communicator.impl.protocol.sip.security;
 
 import java.util.*;
 
+import javax.sip.header.*;
+
 import net.java.sip.communicator.service.protocol.*;
 
 /**
@@ -30,6 +32,29 @@ class CredentialsCacheEntry
      */
     private Vector<String> transactionHistory = new Vector<String>();
 
+    /**
+     * The last challenge that we have answered with the credentials of this
+     * entry or <tt>null</tt> if we haven't answered any yet.
+     */
+    private WWWAuthenticateHeader challenge = null;
+
+    /**
+     * The number of requests that we have sent with the nonce of
+     * <tt>challenge</tt>.
+     */
+    private int nonceCount = 0;
+
+    /**
+     * The client nonce that we use together with the nonce of
+     * <tt>challenge</tt>.
+     */
+    private String cnonce = null;
+
+    /**
+     * Generates the client nonces.
+     */
+    private static final Random cnonceGenerator = new Random();
+
     /**
      * Adds the specified branch id to the transaction history list so that we
      * know that we've seen it and don't try to authenticate with the same
@@ -71,4 +96,58 @@ class CredentialsCacheEntry
     {
         return transactionHistory.contains(branchID);
     }
+
+    /**
+     * Remembers the last challenge that we have answered with the credentials
+     * of this entry so that we could answer it again for new requests before
+     * they get challenged. The nonce count is restarted if the challenge
+     * carries a new nonce.
+     *
+     * @param challenge the challenge that we are answering.
+     */
+    synchronized void setChallenge(WWWAuthenticateHeader challenge)
+    {
+        if (this.challenge == null
+                || this.challenge.getNonce() == null
+                || !this.challenge.getNonce().equals(challenge.getNonce()))
+        {
+            nonceCount = 0;
+            cnonce = Long.toHexString(cnonceGenerator.nextLong());
+        }
+        this.challenge = challenge;
+    }
+
+    /**
+     * Returns the last challenge that we have answered with the credentials of
+     * this entry.
+     *
+     * @return the last challenge that we have answered with the credentials of
+     * this entry or <tt>null</tt> if we haven't answered any yet.
+     */
+    synchronized WWWAuthenticateHeader getChallenge()
+    {
+        return challenge;
+    }
+
+    /**
+     * Returns the nonce count for the next request that we authenticate with
+     * the nonce of the last challenge.
+     *
+     * @return the nonce count for the next request.
+     */
+    synchronized int nextNonceCount()
+    {
+        return ++nonceCount;
+    }
+
+    /**
+     * Returns the client nonce that we use together with the nonce of the
+     * last challenge.
+     *
+     * @return the client nonce for the nonce of the last challenge.
+     */
+    synchronized String getCNonce()
+    {
+        return cnonce;
+    }
 }
@@ -11,6 +11,7 @@ import gov.nist.javax.sip.message.*;
 
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import javax.sip.*;
 import javax.sip.header.*;
@@ -59,6 +60,19 @@ public class SipSecurityManager
      */
     private final AccountID accountID;
 
+    /**
+     * The number of requests that we have authenticated before they were
+     * challenged.
+     */
+    private final AtomicLong preemptiveAuthorizationCount = new AtomicLong();
+
+    /**
+     * The number of requests that we have authenticated before they were
+     * challenged and that were challenged nevertheless.
+     */
+    private final AtomicLong preemptiveAuthorizationFailureCount
+        = new AtomicLong();
+
     /**
      * Default constructor for the security manager.
      *
@@ -171,6 +185,12 @@ public class SipSecurityManager
         ListIterator<WWWAuthenticateHeader> authHeaders
             = extractChallenges(challenge);
 
+        boolean preemptivelyAuthorized
+            = (challengedRequest.getHeader(AuthorizationHeader.NAME) != null)
+                || (challengedRequest.getHeader(ProxyAuthorizationHeader.NAME)
+                        != null);
+        Set<String> challengedRealms = new HashSet<String>();
+
         ClientTransaction retryTran =
             transactionCreator.getNewClientTransaction(reoriginatedRequest);
 
@@ -188,6 +208,8 @@ public class SipSecurityManager
             WWWAuthenticateHeader authHeader = authHeaders.next();
             String realm = authHeader.getRealm();
 
+            challengedRealms.add(realm);
+
             //Check whether we have cached credentials for authHeader's realm.
             //We remove them with the intention to re-add them at the end of the
             //method. If we fail to get to the end then it's best for the cache
@@ -197,8 +219,22 @@ public class SipSecurityManager
             boolean ccEntryHasSeenTran = false;
 
             if (ccEntry != null)
+            {
                 ccEntryHasSeenTran = ccEntry.popBranchID(branchID);
 
+                //we didn't send the request in response to a challenge so
+                //the authorization header that it carried was added by
+                //preAuthenticate()
+                if (!ccEntryHasSeenTran && preemptivelyAuthorized)
+                {
+                    preemptivelyAuthorized = false;
+                    preemptiveAuthorizationFailureCount.incrementAndGet();
+                    if (logger.isDebugEnabled())
+                        logger.debug("Preemptive authorization failed for "
+                            + realm + (authHeader.isStale() ? " (stale)" : ""));
+                }
+            }
+
             // remember when the authentication has started, cause we will
             // need it later to see is the user has waited too long.
             long authenticationDuration = System.currentTimeMillis();
@@ -286,6 +322,10 @@ public class SipSecurityManager
                     (System.currentTimeMillis() - authenticationDuration)
                             > 25*1000;
 
+            //remember the challenge so that we could answer it for new
+            //requests before they get challenged.
+            ccEntry.setChallenge(authHeader);
+
             AuthorizationHeader authorization =
                 this.createAuthorizationHeader(
                     reoriginatedRequest.getMethod(),
@@ -294,7 +334,9 @@ public class SipSecurityManager
                                 ? ""
                                 : reoriginatedRequest.getContent().toString(),
                     authHeader,
-                    ccEntry.userCredentials);
+                    ccEntry.userCredentials,
+                    ccEntry.nextNonceCount(),
+                    ccEntry.getCNonce());
 
             if(!authDurTooLong)
                 ccEntry.pushBranchID(retryTran.getBranchId());
@@ -304,20 +346,14 @@ public class SipSecurityManager
                 logger.debug("Created authorization header: " +
                          authorization.toString());
 
-            // get the unique Call-ID
-            CallIdHeader call = (CallIdHeader)reoriginatedRequest
-                .getHeader(CallIdHeader.NAME);
-
-            if(call != null)
-            {
-                String callid = call.getCallId();
-                cachedCredentials
-                    .cacheAuthorizationHeader (callid, authorization);
-            }
-
             reoriginatedRequest.addHeader(authorization);
         }
 
+        //the authorization headers for the realms that didn't challenge us
+        //have been removed as well since their nonce counts must not be
+        //reused.
+        addPreemptiveAuthorizations(reoriginatedRequest, challengedRealms);
+
         if (logger.isDebugEnabled())
             logger.debug("Returning authorization transaction.");
         return retryTran;
@@ -505,16 +541,10 @@ public class SipSecurityManager
         removeBranchID(reoriginatedRequest);
 
         // Remove all previously added authorization headers from the
-        // request since there was obviously something wrong with them
-        if (challenge.getStatusCode() == Response.UNAUTHORIZED)
-        {
-            reoriginatedRequest.removeHeader(AuthorizationHeader.NAME);
-        }
-        else if (challenge.getStatusCode()
-                 == Response.PROXY_AUTHENTICATION_REQUIRED)
-        {
-            reoriginatedRequest.removeHeader(ProxyAuthorizationHeader.NAME);
-        }
+        // request since there was obviously something wrong with them. The
+        // headers of the other kind are recreated with new nonce counts.
+        reoriginatedRequest.removeHeader(AuthorizationHeader.NAME);
+        reoriginatedRequest.removeHeader(ProxyAuthorizationHeader.NAME);
 
         return reoriginatedRequest;
     }
@@ -558,6 +588,10 @@ public class SipSecurityManager
      * @param requestBody the body of the request.
      * @param authHeader the challenge that we should respond to
      * @param userCredentials username and pass
+     * @param nonceCount the number of requests including this one that we
+     * have authenticated with the nonce of <tt>authHeader</tt>
+     * @param cnonce the client nonce to use with the nonce of
+     * <tt>authHeader</tt>
      *
      * @return an authorization header in response to authHeader.
      *
@@ -568,7 +602,9 @@ public class SipSecurityManager
                 String                uri,
                 String                requestBody,
                 WWWAuthenticateHeader authHeader,
-                UserCredentials       userCredentials)
+                UserCredentials       userCredentials,
+                int                   nonceCount,
+                String                cnonce)
         throws OperationFailedException
     {
         String response = null;
@@ -577,8 +613,7 @@ public class SipSecurityManager
         // (e.g. "auth,auth-int") Client is supposed to pick one
         String qopList = authHeader.getQop();
         String qop = (qopList != null) ? "auth" : null;
-        String nc_value = "00000001";
-        String cnonce = "xyz";
+        String nc_value = String.format("%08x", nonceCount);
 
         try
         {
@@ -637,7 +672,7 @@ public class SipSecurityManager
             {
                 authorization.setQop(qop);
                 authorization.setCNonce(cnonce);
-                authorization.setNonceCount( Integer.parseInt(nc_value) );
+                authorization.setNonceCount(nonceCount);
             }
 
             authorization.setResponse(response);
@@ -775,17 +810,112 @@ public class SipSecurityManager
     }
 
     /**
-     * Returns an authorization header cached against the specified
-     * <tt>callID</tt> or <tt>null</tt> if no auth. header has been previously
-     * cached for this callID.
+     * Attaches authorization headers to a new request for all realms that have
+     * challenged us before so that the request would not have to be sent
+     * twice. The headers answer the last challenge of each realm with a new
+     * nonce count. If a nonce is no longer valid the server challenges the
+     * request (usually with <tt>stale=true</tt>) and
+     * <tt>handleChallenge</tt> answers the new challenge as usual.
+     *
+     * @param request the request that we'd like to authenticate.
+     */
+    public synchronized void preAuthenticate(Request request)
+    {
+        //ACK and CANCEL cannot be challenged
+        String method = request.getMethod();
+
+        if (Request.ACK.equals(method) || Request.CANCEL.equals(method))
+            return;
+
+        //don't add a second header for the realms that the request has
+        //already been authenticated for
+        Set<String> authorizedRealms = new HashSet<String>();
+
+        for (String headerName : new String[] { AuthorizationHeader.NAME,
+                                            ProxyAuthorizationHeader.NAME })
+        {
+            ListIterator<?> headers = request.getHeaders(headerName);
+
+            while (headers.hasNext())
+                authorizedRealms.add(
+                    ((AuthorizationHeader) headers.next()).getRealm());
+        }
+
+        addPreemptiveAuthorizations(request, authorizedRealms);
+    }
+
+    /**
+     * Attaches authorization headers to <tt>request</tt> for all realms with
+     * a remembered challenge except the specified ones.
+     *
+     * @param request the request that we'd like to authenticate.
+     * @param excludedRealms the realms that <tt>request</tt> already carries
+     * authorization headers for.
+     */
+    private void addPreemptiveAuthorizations(Request     request,
+                                             Set<String> excludedRealms)
+    {
+        for (Map.Entry<String, CredentialsCacheEntry> entry
+                : cachedCredentials.getEntries().entrySet())
+        {
+            CredentialsCacheEntry ccEntry = entry.getValue();
+            WWWAuthenticateHeader challenge = ccEntry.getChallenge();
+
+            if (challenge == null
+                    || ccEntry.userCredentials == null
+                    || ccEntry.userCredentials.getPassword() == null
+                    || excludedRealms.contains(entry.getKey()))
+                continue;
+
+            try
+            {
+                AuthorizationHeader authorization =
+                    createAuthorizationHeader(
+                        request.getMethod(),
+                        request.getRequestURI().toString(),
+                        ( request.getContent() == null )
+                                ? ""
+                                : request.getContent().toString(),
+                        challenge,
+                        ccEntry.userCredentials,
+                        ccEntry.nextNonceCount(),
+                        ccEntry.getCNonce());
+
+                request.addHeader(authorization);
+                preemptiveAuthorizationCount.incrementAndGet();
+            }
+            catch (OperationFailedException ex)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Failed to preauthenticate request for "
+                        + entry.getKey(), ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests that we have authenticated before they
+     * were challenged.
+     *
+     * @return the number of requests that we have authenticated before they
+     * were challenged.
+     */
+    public long getPreemptiveAuthorizationCount()
+    {
+        return preemptiveAuthorizationCount.get();
+    }
+
+    /**
+     * Returns the number of challenges that we have avoided by authenticating
+     * requests before they were challenged, i.e. the number of such requests
+     * that were not challenged nevertheless.
      *
-     * @param callID the ID of the call that we'd like to reString
-     * @return the <tt>AuthorizationHeader</tt> cached against the specified
-     * call ID or null if no such header has been cached.
+     * @return the number of challenges that we have avoided.
      */
-    public AuthorizationHeader getCachedAuthorizationHeader(String callID)
+    public long getAvoidedChallengeCount()
     {
-        return this.cachedCredentials.getCachedAuthorizationHeader(callID);
+        return preemptiveAuthorizationCount.get()
+            - preemptiveAuthorizationFailureCount.get();
     }
 
     /**
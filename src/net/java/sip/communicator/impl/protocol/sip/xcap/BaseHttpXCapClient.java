@@ -10,26 +10,21 @@ import java.io.*;
 import java.net.*;
 import java.net.URI;
 
-import javax.net.ssl.*;
 import javax.sip.address.*;
 
 import net.java.sip.communicator.impl.protocol.sip.*;
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.*;
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.xcaperror.*;
 import net.java.sip.communicator.impl.protocol.sip.xcap.utils.*;
-import net.java.sip.communicator.service.certificate.*;
 import net.java.sip.communicator.service.gui.*;
+import net.java.sip.communicator.service.httputil.*;
 import net.java.sip.communicator.util.*;
 
 import org.apache.http.*;
 import org.apache.http.auth.*;
 import org.apache.http.client.methods.*;
-import org.apache.http.conn.*;
-import org.apache.http.conn.scheme.*;
 import org.apache.http.entity.*;
 import org.apache.http.impl.client.*;
-import org.apache.http.params.*;
-import org.osgi.framework.*;
 
 /**
  * Base HTTP XCAP client implementation.
@@ -61,6 +56,11 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
 
+    /**
+     * HTTP If-Match header.
+     */
+    public static final String HEADER_IF_MATCH = "If-Match";
+
     /**
      * XCap-error content type.
      */
@@ -102,26 +102,12 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     private int timeout;
 
-    /**
-     * The service we use to interact with user regarding certificates.
-     */
-    private CertificateService certificateVerification;
-
     /**
      * Creates an instance of this XCAP client.
      */
     public BaseHttpXCapClient()
     {
         timeout = DEFAULT_TIMEOUT;
-
-        ServiceReference guiVerifyReference
-            = SipActivator.getBundleContext().getServiceReference(
-                CertificateService.class.getName());
-
-        if(guiVerifyReference != null)
-            certificateVerification
-                = (CertificateService)SipActivator.getBundleContext()
-                    .getService(guiVerifyReference);
     }
 
     /**
@@ -192,18 +178,37 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     protected XCapHttpResponse get(URI uri)
             throws XCapException
+    {
+        return get(uri, null);
+    }
+
+    /**
+     * Gets resource from the server unless it still has a specific ETag in
+     * which case the server responds with 304 (Not Modified) and no content.
+     *
+     * @param uri the resource uri.
+     * @param eTag the ETag of the locally known version of the resource or
+     * <tt>null</tt> to get the resource unconditionally.
+     * @return the server response.
+     * @throws XCapException if there is error during reading the resource's
+     *                       content.
+     */
+    protected XCapHttpResponse get(URI uri, String eTag)
+            throws XCapException
     {
         DefaultHttpClient httpClient = createHttpClient();
+        HttpResponse response = null;
         try
         {
             HttpGet getMethod = new HttpGet(uri);
-            getMethod.setHeader("Connection", "close");
+            if (eTag != null)
+                getMethod.setHeader(HEADER_IF_NONE_MATCH, eTag);
             Credentials credentials =
                     new UsernamePasswordCredentials(getUserName(), password);
             httpClient.getCredentialsProvider().
                     setCredentials(AuthScope.ANY, credentials);
 
-            HttpResponse response = httpClient.execute(getMethod);
+            response = httpClient.execute(getMethod);
             XCapHttpResponse result = createResponse(response);
             if (logger.isDebugEnabled())
             {
@@ -245,7 +250,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         }
         finally
         {
-            httpClient.getConnectionManager().shutdown();
+            releaseConnection(response);
         }
     }
 
@@ -290,13 +295,33 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     public XCapHttpResponse put(XCapResource resource)
             throws XCapException
+    {
+        return put(resource, null);
+    }
+
+    /**
+     * Puts the resource to the server provided that the version on the
+     * server still has a specific ETag. Otherwise the server responds with
+     * 412 (Precondition Failed) and the resource is not changed.
+     *
+     * @param resource the resource  to be saved on the server.
+     * @param eTag the ETag of the version of the resource on the server which
+     * is to be replaced or <tt>null</tt> to put the resource unconditionally.
+     * @return the server response.
+     * @throws IllegalStateException if the user has not been connected.
+     * @throws XCapException         if there is some error during operation.
+     */
+    protected XCapHttpResponse put(XCapResource resource, String eTag)
+            throws XCapException
     {
         DefaultHttpClient httpClient = createHttpClient();
+        HttpResponse response = null;
         try
         {
             URI resourceUri = getResourceURI(resource.getId());
             HttpPut putMethod = new HttpPut(resourceUri);
-            putMethod.setHeader("Connection", "close");
+            if (eTag != null)
+                putMethod.setHeader(HEADER_IF_MATCH, eTag);
             StringEntity stringEntity = new StringEntity(resource.getContent());
             stringEntity.setContentType(resource.getContentType());
             stringEntity.setContentEncoding("UTF-8");
@@ -314,7 +339,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(putMethod);
+            response = httpClient.execute(putMethod);
             return createResponse(response);
         }
         catch (IOException e)
@@ -326,7 +351,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         }
         finally
         {
-            httpClient.getConnectionManager().shutdown();
+            releaseConnection(response);
         }
     }
 
@@ -343,11 +368,11 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     {
         assertConnected();
         DefaultHttpClient httpClient = createHttpClient();
+        HttpResponse response = null;
         try
         {
             URI resourceUri = getResourceURI(resourceId);
             HttpDelete deleteMethod = new HttpDelete(resourceUri);
-            deleteMethod.setHeader("Connection", "close");
             Credentials credentials =
                     new UsernamePasswordCredentials(getUserName(), password);
             httpClient.getCredentialsProvider().
@@ -360,7 +385,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(deleteMethod);
+            response = httpClient.execute(deleteMethod);
             return createResponse(response);
         }
         catch (IOException e)
@@ -372,7 +397,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         }
         finally
         {
-            httpClient.getConnectionManager().shutdown();
+            releaseConnection(response);
         }
     }
 
@@ -456,31 +481,37 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     private DefaultHttpClient createHttpClient()
     {
-        //TODO: move to HttpUtil
-        DefaultHttpClient httpClient = new DefaultHttpClient();
-        try
-        {
-            // make sure we use Certificate Verification Service if
-            // for some reason the certificate needs to be shown to user
-            // for approval
-            ClientConnectionManager ccm = httpClient.getConnectionManager();
-            SchemeRegistry sr = ccm.getSchemeRegistry();
-            SSLContext ctx =
-                certificateVerification.getSSLContext(
-                    certificateVerification.getTrustManager(uri.getHost()));
-//            org.apache.http.conn.ssl.SSLSocketFactory ssf =
-//                new org.apache.http.conn.ssl.SSLSocketFactory(ctx,
-//                    SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-//            sr.register(new Scheme("https", 443, ssf));
-        }
-        catch(Throwable e)
+        // the connections are kept alive and shared with the other http
+        // users, https connections use the Certificate Verification Service
+        // in case the certificate needs to be shown to user for approval
+        return HttpUtils.getPooledHttpClient(timeout);
+    }
+
+    /**
+     * Reads the remaining content of a response so that its connection is
+     * returned to the pool.
+     *
+     * @param response the HTTP response or <tt>null</tt>.
+     */
+    private static void releaseConnection(HttpResponse response)
+    {
+        if(response == null)
+            return;
+
+        HttpEntity entity = response.getEntity();
+
+        if(entity != null)
         {
-            logger.error("Cannot add our trust manager to httpClient", e);
+            try
+            {
+                entity.consumeContent();
+            }
+            catch (IOException e)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Cannot consume HTTP response", e);
+            }
         }
-        HttpParams httpParams = httpClient.getParams();
-        HttpConnectionParams.setConnectionTimeout(httpParams, timeout);
-        HttpConnectionParams.setSoTimeout(httpParams, timeout);
-        return httpClient;
     }
 
     /**
@@ -504,11 +535,12 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                     HEADER_CONTENT_TYPE);
             byte[] content = StreamUtils.read(
                     response.getEntity().getContent());
-            String eTag = getSingleHeaderValue(response, HEADER_ETAG);
             xcapHttpResponse.setContentType(contentType);
             xcapHttpResponse.setContent(content);
-            xcapHttpResponse.setETag(eTag);
         }
+        // 304 (Not Modified) and the responses to PUT carry the ETag as well
+        String eTag = getSingleHeaderValue(response, HEADER_ETAG);
+        xcapHttpResponse.setETag(eTag);
         xcapHttpResponse.setHttpCode(statusCode);
         return xcapHttpResponse;
     }
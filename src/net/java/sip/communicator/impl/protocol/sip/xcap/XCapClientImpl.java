@@ -52,6 +52,11 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
      */
     private boolean presContentSupported;
 
+    /**
+     * The locally stored versions of the documents of the current user.
+     */
+    private XCapDocumentCache documentCache;
+
     /**
      * Connects user to XCap server. Loads xcap-caps server capabilities and
      * anaylyze if resource-lists, pres-rules, pres-content is supported.
@@ -66,6 +71,8 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
             throws XCapException
     {
         super.connect(uri, userAddress, username, password);
+        documentCache = new XCapDocumentCache(
+                uri, userAddress.getURI().toString());
         try
         {
             xCapCaps = loadXCapCaps();
@@ -100,6 +107,7 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
         super.disconnect();
         xCapCaps = null;
         resourceListsSupported = false;
+        documentCache = null;
     }
 
     /**
@@ -387,7 +395,8 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
         try
         {
             // Load pres-content from the server
-            XCapHttpResponse response = this.get(resourceId);
+            XCapHttpResponse response =
+                    getDocument(getResourceURI(resourceId));
             int httpCode = response.getHttpCode();
             String contentType = response.getContentType();
             byte[] content = response.getContent();
@@ -485,7 +494,7 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
             throws XCapException
     {
         assertConnected();
-        XCapHttpResponse response = this.get(imageUri);
+        XCapHttpResponse response = getDocument(imageUri);
         int httpCode = response.getHttpCode();
         byte[] content = response.getContent();
         // Analyze the responce
@@ -555,8 +564,24 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
     private void putResource(XCapResource resource)
             throws XCapException
     {
-        XCapHttpResponse response = this.put(resource);
+        URI uri = getResourceURI(resource.getId());
+        XCapDocumentCache cache = documentCache;
+        XCapHttpResponse cached = cache == null ? null : cache.get(uri);
+        // Replace only the version we know so that concurrent changes by
+        // other clients are not overwritten
+        XCapHttpResponse response =
+                this.put(resource, cached == null ? null : cached.getETag());
         int httpCode = response.getHttpCode();
+        if (httpCode == HttpStatus.SC_PRECONDITION_FAILED)
+        {
+            // Keep the stale version so that the following puts fail too
+            // instead of overwriting the change of the other client until
+            // the document is got again
+            String errorMessage = String.format(
+                    "%1s has been modified on XCAP server by another client",
+                    resource.getId().toString());
+            throw new XCapException(errorMessage);
+        }
         if (httpCode != HttpStatus.SC_OK && httpCode != HttpStatus.SC_CREATED)
         {
             String errorMessage;
@@ -578,6 +603,26 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
             }
             throw new XCapException(errorMessage);
         }
+        if (cache != null)
+        {
+            try
+            {
+                if (response.getETag() != null)
+                {
+                    cache.put(uri, response.getETag(),
+                            resource.getContentType(),
+                            resource.getContent().getBytes("UTF-8"));
+                }
+                else
+                {
+                    cache.remove(uri);
+                }
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                cache.remove(uri);
+            }
+        }
     }
 
     /**
@@ -595,7 +640,8 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
         try
         {
             // Load resource from the server
-            XCapHttpResponse response = this.get(resourceId);
+            XCapHttpResponse response =
+                    getDocument(getResourceURI(resourceId));
             int httpCode = response.getHttpCode();
             byte[] content = response.getContent();
             // Analyze the response
@@ -663,6 +709,46 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
         }
     }
 
+    /**
+     * Gets a document from the server. If there is a locally stored version
+     * of the document it is requested conditionally and the stored version is
+     * returned with HTTP code 200 (OK) if it has not been modified on the
+     * server so that it is not downloaded again.
+     *
+     * @param uri the document uri.
+     * @return the server response or the stored version of the document.
+     * @throws XCapException if there is some error during operation.
+     */
+    private XCapHttpResponse getDocument(URI uri)
+            throws XCapException
+    {
+        XCapDocumentCache cache = documentCache;
+        XCapHttpResponse cached = cache == null ? null : cache.get(uri);
+        XCapHttpResponse response =
+                this.get(uri, cached == null ? null : cached.getETag());
+        int httpCode = response.getHttpCode();
+        if (httpCode == HttpStatus.SC_NOT_MODIFIED && cached != null)
+        {
+            cached.setHttpCode(HttpStatus.SC_OK);
+            return cached;
+        }
+        if (cache != null)
+        {
+            if (httpCode == HttpStatus.SC_OK && response.getETag() != null
+                    && response.getContent() != null)
+            {
+                cache.put(uri, response.getETag(),
+                        response.getContentType(), response.getContent());
+            }
+            else if (httpCode == HttpStatus.SC_OK
+                    || httpCode == HttpStatus.SC_NOT_FOUND)
+            {
+                cache.remove(uri);
+            }
+        }
+        return response;
+    }
+
     /**
      * Deletes XCAP resources from the server. Analyzes HTTP code and tryes to
      * get xcap-error if possible.
@@ -675,6 +761,10 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
     {
         XCapHttpResponse response = this.delete(resourceId);
         int httpCode = response.getHttpCode();
+        if (documentCache != null)
+        {
+            documentCache.remove(getResourceURI(resourceId));
+        }
         if (httpCode != HttpStatus.SC_OK && httpCode != HttpStatus.SC_NOT_FOUND)
         {
             String errorMessage;
@@ -0,0 +1,188 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip.xcap;
+
+import java.io.*;
+import java.net.URI;
+
+import net.java.sip.communicator.impl.protocol.sip.*;
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.fileaccess.*;
+
+/**
+ * Stores the XCAP documents last retrieved from or put to an XCAP server
+ * together with their ETags in the private persistent directory of the
+ * <tt>FileAccessService</tt> so that they are requested conditionally and
+ * not downloaded again as long as they have not changed on the server.
+ *
+ * @author agent
+ */
+class XCapDocumentCache
+{
+    /**
+     * Class logger.
+     */
+    private static final Logger logger =
+            Logger.getLogger(XCapDocumentCache.class);
+
+    /**
+     * The directory relative to the private persistent directory which holds
+     * the directories of the documents of all XCAP users.
+     */
+    private static final String CACHE_DIR = "xcapcache";
+
+    /**
+     * Identifies the user and the XCAP server the documents of this cache
+     * belong to.
+     */
+    private final String cacheId;
+
+    /**
+     * Creates a cache for the documents of a specific user on a specific
+     * XCAP server.
+     *
+     * @param serverUri the XCAP server location.
+     * @param userUri the URI of the user.
+     */
+    XCapDocumentCache(URI serverUri, String userUri)
+    {
+        cacheId = serverUri.toString() + " " + userUri;
+    }
+
+    /**
+     * Gets the locally stored version of a document.
+     *
+     * @param uri the document uri.
+     * @return the document or null if there is no valid stored version.
+     */
+    XCapHttpResponse get(URI uri)
+    {
+        File file = getFile(uri);
+        if (file == null || !file.exists())
+        {
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                XCapHttpResponse document = new XCapHttpResponse();
+                document.setETag(in.readUTF());
+                String contentType = in.readUTF();
+                document.setContentType(
+                        contentType.length() == 0 ? null : contentType);
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                document.setContent(content);
+                return document;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Cannot read cached XCAP document " + uri, e);
+            remove(uri);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a version of a document.
+     *
+     * @param uri the document uri.
+     * @param eTag the ETag of the version on the server.
+     * @param contentType the content type of the document.
+     * @param content the content of the document.
+     */
+    void put(URI uri, String eTag, String contentType, byte[] content)
+    {
+        File file = getFile(uri);
+        if (file == null)
+        {
+            return;
+        }
+        try
+        {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdirs())
+            {
+                throw new IOException(
+                        "Failed to create directory: "
+                            + dir.getAbsolutePath());
+            }
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+            try
+            {
+                out.writeUTF(eTag);
+                out.writeUTF(contentType == null ? "" : contentType);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Cannot cache XCAP document " + uri, e);
+            remove(uri);
+        }
+    }
+
+    /**
+     * Removes the stored version of a document.
+     *
+     * @param uri the document uri.
+     */
+    void remove(URI uri)
+    {
+        File file = getFile(uri);
+        if (file != null && file.exists() && !file.delete())
+        {
+            logger.warn("Cannot delete cached XCAP document " + uri);
+        }
+    }
+
+    /**
+     * Gets the file which stores a document.
+     *
+     * @param uri the document uri.
+     * @return the file or null if the <tt>FileAccessService</tt> is not
+     *         available.
+     */
+    private File getFile(URI uri)
+    {
+        FileAccessService fileAccessService =
+                SipActivator.getFileAccessService();
+        if (fileAccessService == null)
+        {
+            return null;
+        }
+        try
+        {
+            return fileAccessService.getPrivatePersistentFile(
+                    CACHE_DIR
+                        + File.separator
+                        + Sha1Crypto.encode(cacheId.getBytes("UTF-8"))
+                        + File.separator
+                        + Sha1Crypto.encode(uri.toString().getBytes("UTF-8")));
+        }
+        catch (Exception e)
+        {
+            logger.warn("Cannot access XCAP document cache", e);
+            return null;
+        }
+    }
+}
@@ -6,11 +6,15 @@
  */
 package net.java.sip.communicator.impl.protocol.sip.xcap.model;
 
+import java.io.*;
 import java.util.*;
 
+import javax.xml.*;
 import javax.xml.namespace.*;
 
 import org.w3c.dom.*;
+import org.xmlpull.mxp1.*;
+import org.xmlpull.v1.*;
 
 /**
  * Utility class that helps to convert classes into xml and from xml to the
@@ -56,4 +60,146 @@ public final class XmlUtils
             element.appendChild(importedElement);
         }
     }
+
+    /**
+     * Creates a namespace aware pull parser for the xml and moves it to the
+     * start tag of the root element.
+     *
+     * @param xml the xml to parse.
+     * @return the parser positioned on the root element.
+     * @throws Exception if the xml has no root element or there is some error
+     * during parsing.
+     */
+    public static XmlPullParser createPullParser(String xml)
+            throws Exception
+    {
+        XmlPullParser parser = new MXParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new StringReader(xml));
+        if (parser.nextTag() != XmlPullParser.START_TAG)
+        {
+            throw new Exception("Document doesn't contain root element");
+        }
+        return parser;
+    }
+
+    /**
+     * Gets the namespace of an attribute of the current start tag of the
+     * parser. Attributes without prefix get the namespace of their element
+     * the same way <tt>XMLUtils.getNamespaceUri</tt> resolves them.
+     *
+     * @param parser the parser positioned on a start tag.
+     * @param index  the index of the attribute.
+     * @return the namespace of the attribute.
+     */
+    public static String getAttributeNamespace(XmlPullParser parser, int index)
+    {
+        if (parser.getAttributePrefix(index) == null)
+        {
+            return parser.getNamespace();
+        }
+        return parser.getAttributeNamespace(index);
+    }
+
+    /**
+     * Creates an element with all its content from the current start tag of
+     * the parser. On return the parser is positioned on the end tag of the
+     * element.
+     *
+     * @param document the document which creates the element.
+     * @param parser   the parser positioned on a start tag.
+     * @return the created element.
+     * @throws Exception if there is some error during parsing.
+     */
+    public static Element elementFromParser(
+            Document document, XmlPullParser parser)
+            throws Exception
+    {
+        Element element = document.createElementNS(
+                emptyToNull(parser.getNamespace()),
+                qualifiedName(parser.getPrefix(), parser.getName()));
+        int depth = parser.getDepth();
+        for (int i = parser.getNamespaceCount(depth - 1);
+             i < parser.getNamespaceCount(depth); i++)
+        {
+            String prefix = parser.getNamespacePrefix(i);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix == null ? "xmlns" : "xmlns:" + prefix,
+                    parser.getNamespaceUri(i));
+        }
+        for (int i = 0; i < parser.getAttributeCount(); i++)
+        {
+            element.setAttributeNS(
+                    emptyToNull(parser.getAttributeNamespace(i)),
+                    qualifiedName(parser.getAttributePrefix(i),
+                            parser.getAttributeName(i)),
+                    parser.getAttributeValue(i));
+        }
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
+        {
+            if (eventType == XmlPullParser.START_TAG)
+            {
+                element.appendChild(elementFromParser(document, parser));
+            }
+            else if (eventType == XmlPullParser.TEXT)
+            {
+                element.appendChild(document.createTextNode(parser.getText()));
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Gets the text of the current start tag of the parser. On return the
+     * parser is positioned on the end tag of the element.
+     *
+     * @param parser the parser positioned on a start tag.
+     * @return the text of the element.
+     * @throws Exception if the element has child elements or there is some
+     * error during parsing.
+     */
+    public static String textFromParser(XmlPullParser parser)
+            throws Exception
+    {
+        String localName = parser.getName();
+        StringBuilder value = new StringBuilder();
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
+        {
+            if (eventType == XmlPullParser.START_TAG)
+            {
+                throw new Exception(localName + " element is invalid");
+            }
+            if (eventType == XmlPullParser.TEXT)
+            {
+                value.append(parser.getText());
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Creates the qualified name of an element or an attribute.
+     *
+     * @param prefix    the prefix or null.
+     * @param localName the local name.
+     * @return the qualified name.
+     */
+    private static String qualifiedName(String prefix, String localName)
+    {
+        return prefix == null ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Converts the empty namespace reported by the parser to null which is
+     * the empty namespace of DOM.
+     *
+     * @param namespace the namespace.
+     * @return the namespace or null if it is empty.
+     */
+    private static String emptyToNull(String namespace)
+    {
+        return namespace == null || namespace.length() == 0 ? null : namespace;
+    }
 }
@@ -6,11 +6,14 @@
  */
 package net.java.sip.communicator.impl.protocol.sip.xcap.model.commonpolicy;
 
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.createPullParser;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.elementFromParser;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.getAttributeNamespace;
 import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.processAny;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.textFromParser;
 import static org.jitsi.util.StringUtils.isNullOrEmpty;
 import static org.jitsi.util.xml.XMLUtils.createDocument;
 import static org.jitsi.util.xml.XMLUtils.createXml;
-import static org.jitsi.util.xml.XMLUtils.getNamespaceUri;
 import static org.jitsi.util.xml.XMLUtils.isStandartXmlNamespace;
 
 import java.util.*;
@@ -19,6 +22,7 @@ import net.java.sip.communicator.impl.protocol.sip.xcap.model.*;
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.presrules.*;
 
 import org.w3c.dom.*;
+import org.xmlpull.v1.*;
 
 /**
  * Utility class that helps to converts common-policy xml to the object model
@@ -149,41 +153,31 @@ public final class CommonPolicyParser
         try
         {
             RulesetType ruleset = new RulesetType();
-            Document document = createDocument(xml);
-            Element rulesetElement = document.getDocumentElement();
-            if (!NAMESPACE.equals(getNamespaceUri(rulesetElement))
-                    || !RULESET_ELEMENT.equals(rulesetElement.getLocalName()))
+            XmlPullParser parser = createPullParser(xml);
+            if (!NAMESPACE.equals(parser.getNamespace())
+                    || !RULESET_ELEMENT.equals(parser.getName()))
             {
                 throw new Exception("Document doesn't contain ruleset " +
                         "element");
             }
             // Process attributes
-            NamedNodeMap attributes = rulesetElement.getAttributes();
-            for (int i = 0; i < attributes.getLength(); i++)
+            for (int i = 0; i < parser.getAttributeCount(); i++)
             {
-                Attr attribute = (Attr) attributes.item(i);
-                String namespaceUri = getNamespaceUri(attribute);
-                if (namespaceUri == null)
+                if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
                 {
                     throw new Exception("ruleset element is invalid");
                 }
-                if (isStandartXmlNamespace(namespaceUri))
-                {
-                    continue;
-                }
-                throw new Exception("ruleset element is invalid");
             }
             // Process elements
-            NodeList childNodes = rulesetElement.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++)
+            Document document = createDocument();
+            int eventType;
+            while ((eventType = parser.next()) != XmlPullParser.END_TAG)
             {
-                Node node = childNodes.item(i);
-                if (node.getNodeType() != Node.ELEMENT_NODE)
+                if (eventType != XmlPullParser.START_TAG)
                 {
                     continue;
                 }
-                Element childElement = (Element) node;
-                ruleset.getRules().add(ruleFromElement(childElement));
+                ruleset.getRules().add(ruleFromParser(document, parser));
             }
             return ruleset;
         }
@@ -227,78 +221,71 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates rule object from the element.
+     * Creates rule object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the ruleset object.
-     * @throws ParsingException if there is some error during parsing.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the rule.
+     * @return the rule object.
+     * @throws Exception if there is some error during parsing.
      */
-    private static RuleType ruleFromElement(Element element)
+    private static RuleType ruleFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         RuleType rule = new RuleType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !RULE_ELEMENT.equals(element.getLocalName()))
-
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !RULE_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("rule element is invalid");
         }
         String id = null;
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("rule element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (!NAMESPACE.equals(namespaceUri) ||
-                    !RULE_ID_ATTR.equals(attribute.getLocalName()) ||
+                    !RULE_ID_ATTR.equals(parser.getAttributeName(i)) ||
                     id != null)
             {
                 throw new Exception("rule element is invalid");
             }
-            id = attribute.getValue();
+            id = parser.getAttributeValue(i);
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (!NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (!NAMESPACE.equals(parser.getNamespace()))
             {
                 throw new Exception("rule element is invalid");
             }
             // conditions
             if (CONDITIONS_ELEMENT.equals(localName))
             {
-                rule.setConditions(conditionsFromElement(childElement));
+                rule.setConditions(conditionsFromParser(document, parser));
             }
             // actions
             else if (ACTIONS_ELEMENT.equals(localName))
             {
                 rule.setActions(
-                        PresRulesParser.actionsFromElement(childElement));
+                        PresRulesParser.actionsFromParser(document, parser));
             }
             // transformations
             else if (TRANSFORMATIONS_ELEMENT.equals(localName))
             {
                 rule.setTransformations(
-                        PresRulesParser.transformationsFromElement(
-                                childElement));
+                        PresRulesParser.transformationsFromParser(
+                                document, parser));
             }
             else
             {
@@ -352,68 +339,61 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates conditions object from the element.
+     * Creates conditions object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the ruleset object.
-     * @throws ParsingException if there is some error during parsing.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 conditions.
+     * @return the conditions object.
+     * @throws Exception if there is some error during parsing.
      */
-    private static ConditionsType conditionsFromElement(Element element)
+    private static ConditionsType conditionsFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         ConditionsType conditions = new ConditionsType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !CONDITIONS_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !CONDITIONS_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("conditions element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("conditions element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("conditions element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // identity
                 if (IDENTITY_ELEMENT.equals(localName))
                 {
                     conditions.getIdentities()
-                            .add(identityFromElement(childElement));
+                            .add(identityFromParser(document, parser));
                 }
                 // sphere
                 else if (SPHERE_ELEMENT.equals(localName))
                 {
                     conditions.getSpheres()
-                            .add(sphereFromElement(childElement));
+                            .add(sphereFromParser(parser));
                 }
                 // validity
                 else if (VALIDITY_ELEMENT.equals(localName))
                 {
                     conditions.getValidities()
-                            .add(validityFromElement(childElement));
+                            .add(validityFromParser(parser));
                 }
                 else
                 {
@@ -423,7 +403,7 @@ public final class CommonPolicyParser
             else
             {
                 // any
-                conditions.getAny().add(childElement);
+                conditions.getAny().add(elementFromParser(document, parser));
             }
         }
         return conditions;
@@ -462,65 +442,53 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates validity object from the element.
+     * Creates validity object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param parser the parser positioned on the start tag of the validity.
+     * @return the validity object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ValidityType validityFromElement(Element element)
+    private static ValidityType validityFromParser(XmlPullParser parser)
             throws Exception
     {
         ValidityType validity = new ValidityType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !VALIDITY_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !VALIDITY_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("validity element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
-                throw new Exception("sphere element is invalid");
+                throw new Exception("validity element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-
-            throw new Exception("validity element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (!NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (!NAMESPACE.equals(parser.getNamespace()))
             {
-                throw new Exception("sphere element is invalid");
+                throw new Exception("validity element is invalid");
             }
             if (VALIDITY_FROM_ELEMENT.equals(localName))
             {
-                validity.getFromList().add(childElement.getTextContent());
+                validity.getFromList().add(textFromParser(parser));
             }
             else if (VALIDITY_UNTIL_ELEMENT.equals(localName))
             {
-                validity.getUntilList().add(childElement.getTextContent());
+                validity.getUntilList().add(textFromParser(parser));
             }
             else
             {
-                throw new Exception("sphere element is invalid");
+                throw new Exception("validity element is invalid");
             }
         }
         return validity;
@@ -556,56 +524,40 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates sphere object from the element.
+     * Creates sphere object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param parser the parser positioned on the start tag of the sphere.
+     * @return the sphere object.
      * @throws Exception if there is some error during parsing.
      */
-    private static SphereType sphereFromElement(Element element)
+    private static SphereType sphereFromParser(XmlPullParser parser)
             throws Exception
     {
         SphereType sphere = new SphereType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !SPHERE_ELEMENT.equals(element.getLocalName()))
-
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !SPHERE_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("sphere element is invalid");
         }
         String value = null;
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("sphere element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (!NAMESPACE.equals(namespaceUri) ||
-                    !SPHERE_VALUE_ATTR.equals(attribute.getLocalName()) ||
+                    !SPHERE_VALUE_ATTR.equals(parser.getAttributeName(i)) ||
                     value != null)
             {
                 throw new Exception("sphere element is invalid");
             }
-            value = attribute.getValue();
+            value = parser.getAttributeValue(i);
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
-        {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
-            {
-                continue;
-            }
-            throw new Exception("sphere element is invalid");
-        }
+        textFromParser(parser);
         if (value == null)
         {
             throw new Exception("sphere value attribute is missed");
@@ -635,60 +587,53 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates identity object from the element.
+     * Creates identity object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the identity.
+     * @return the identity object.
      * @throws Exception if there is some error during parsing.
      */
-    private static IdentityType identityFromElement(Element element)
+    private static IdentityType identityFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         IdentityType identity = new IdentityType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !IDENTITY_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !IDENTITY_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("identity element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("identity element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("identity element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // one
                 if (ONE_ELEMENT.equals(localName))
                 {
-                    identity.getOneList().add(oneFromElement(childElement));
+                    identity.getOneList().add(oneFromParser(document, parser));
                 }
                 // many
                 else if (MANY_ELEMENT.equals(localName))
                 {
-                    identity.getManyList().add(manyFromElement(childElement));
+                    identity.getManyList().add(
+                            manyFromParser(document, parser));
                 }
                 else
                 {
@@ -698,7 +643,7 @@ public final class CommonPolicyParser
             else
             {
                 // any
-                identity.getAny().add(childElement);
+                identity.getAny().add(elementFromParser(document, parser));
             }
         }
         return identity;
@@ -731,61 +676,56 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates one object from the element.
+     * Creates one object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param document the document which creates the any element.
+     * @param parser   the parser positioned on the start tag of the one.
+     * @return the one object.
      * @throws Exception if there is some error during parsing.
      */
-    private static OneType oneFromElement(Element element) throws Exception
+    private static OneType oneFromParser(
+            Document document,
+            XmlPullParser parser)
+            throws Exception
     {
         OneType one = new OneType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !ONE_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !ONE_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("one element is invalid");
         }
         String id = null;
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("one element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (!NAMESPACE.equals(namespaceUri) ||
-                    !ONE_ID_ATTR.equals(attribute.getLocalName()) ||
+                    !ONE_ID_ATTR.equals(parser.getAttributeName(i)) ||
                     id != null)
             {
                 throw new Exception("one element is invalid");
             }
-            id = attribute.getValue();
+            id = parser.getAttributeValue(i);
         }
         Element any = null;
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri) ||
+            if (NAMESPACE.equals(parser.getNamespace()) ||
                     any != null)
             {
                 throw new Exception("one element is invalid");
             }
-            any = childElement;
+            any = elementFromParser(document, parser);
         }
         if (id == null)
         {
@@ -823,60 +763,54 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates many object from the element.
+     * Creates many object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the many.
+     * @return the many object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ManyType manyFromElement(Element element) throws Exception
+    private static ManyType manyFromParser(
+            Document document,
+            XmlPullParser parser)
+            throws Exception
     {
         ManyType many = new ManyType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !MANY_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !MANY_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("many element is invalid");
         }
         String domain = null;
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("many element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (!NAMESPACE.equals(namespaceUri) ||
-                    !MANY_DOMAIN_ATTR.equals(attribute.getLocalName()) ||
+                    !MANY_DOMAIN_ATTR.equals(parser.getAttributeName(i)) ||
                     domain != null)
             {
                 throw new Exception("many element is invalid");
             }
-            domain = attribute.getValue();
+            domain = parser.getAttributeValue(i);
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String namespaceUri = getNamespaceUri(childElement);
-            String localName = childElement.getLocalName();
-            if (NAMESPACE.equals(namespaceUri))
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
-                if (EXCEPT_ELEMENT.equals(localName))
+                if (EXCEPT_ELEMENT.equals(parser.getName()))
                 {
-                    many.getExcepts().add(exceptFromElement(childElement));
+                    many.getExcepts().add(exceptFromParser(parser));
                 }
                 else
                 {
@@ -885,7 +819,7 @@ public final class CommonPolicyParser
             }
             else
             {
-                many.getAny().add(childElement);
+                many.getAny().add(elementFromParser(document, parser));
             }
         }
         many.setDomain(domain);
@@ -917,33 +851,27 @@ public final class CommonPolicyParser
     }
 
     /**
-     * Creates except object from the element.
+     * Creates except object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
-     * @return the list object.
+     * @param parser the parser positioned on the start tag of the except.
+     * @return the except object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ExceptType exceptFromElement(Element element)
+    private static ExceptType exceptFromParser(XmlPullParser parser)
             throws Exception
     {
         ExceptType except = new ExceptType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !EXCEPT_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !EXCEPT_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("except element is invalid");
         }
         String id = null;
         String domain = null;
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("except element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
@@ -952,30 +880,21 @@ public final class CommonPolicyParser
             {
                 throw new Exception("except element is invalid");
             }
-            if (EXCEPT_ID_ATTR.equals(attribute.getLocalName()) && id == null)
+            String localName = parser.getAttributeName(i);
+            if (EXCEPT_ID_ATTR.equals(localName) && id == null)
             {
-                id = attribute.getValue();
+                id = parser.getAttributeValue(i);
                 continue;
             }
-            else if (EXCEPT_DOMAIN_ATTR.equals(attribute.getLocalName()) &&
-                    domain == null)
+            else if (EXCEPT_DOMAIN_ATTR.equals(localName) && domain == null)
             {
-                domain = attribute.getValue();
+                domain = parser.getAttributeValue(i);
                 continue;
             }
             throw new Exception("except element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
-        {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
-            {
-                continue;
-            }
-            throw new Exception("except element is invalid");
-        }
+        textFromParser(parser);
         except.setId(id);
         except.setDomain(domain);
         return except;
@@ -6,13 +6,15 @@
  */
 package net.java.sip.communicator.impl.protocol.sip.xcap.model.presrules;
 
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.elementFromParser;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.getAttributeNamespace;
 import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.processAny;
-import static org.jitsi.util.xml.XMLUtils.getNamespaceUri;
-import static org.jitsi.util.xml.XMLUtils.hasChildElements;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.textFromParser;
 import static org.jitsi.util.xml.XMLUtils.isStandartXmlNamespace;
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.commonpolicy.*;
 
 import org.w3c.dom.*;
+import org.xmlpull.v1.*;
 
 /**
  * Utility class that helps to converts pres-rules xml to the object model
@@ -50,52 +52,43 @@ public final class PresRulesParser
     private static String PROVIDE_PERSONS_ALL_ELEMENT = "all-persons";
 
     /**
-     * Creates actions object from the element.
+     * Creates actions object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the actions.
      * @return the actions object.
      * @throws Exception if there is some error during parsing.
      */
-    public static ActionsType actionsFromElement(Element element)
+    public static ActionsType actionsFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         ActionsType actions = new ActionsType();
-        if (!CommonPolicyParser.NAMESPACE
-                .equals(getNamespaceUri(element)) ||
-                !CommonPolicyParser.ACTIONS_ELEMENT
-                        .equals(element.getLocalName()))
+        if (!CommonPolicyParser.NAMESPACE.equals(parser.getNamespace()) ||
+                !CommonPolicyParser.ACTIONS_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("actions element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("actions element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("actions element is invalid");
         }
         SubHandlingType subHandling = null;
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
+            String localName = parser.getName();
+            String namespaceUri = parser.getNamespace();
             if (CommonPolicyParser.NAMESPACE.equals(namespaceUri))
             {
                 throw new Exception("actions element is invalid");
@@ -108,13 +101,12 @@ public final class PresRulesParser
                     throw new Exception("actions element is invalid");
                 }
                 subHandling = SubHandlingType
-                        .fromString(
-                                childElement.getTextContent().toLowerCase());
+                        .fromString(textFromParser(parser).toLowerCase());
             }
             else
             {
                 // any
-                actions.getAny().add(childElement);
+                actions.getAny().add(elementFromParser(document, parser));
             }
         }
         actions.setSubHandling(subHandling);
@@ -147,52 +139,44 @@ public final class PresRulesParser
     }
 
     /**
-     * Creates transfomations object from the element.
+     * Creates transfomations object from the current start tag of the parser.
      *
-     * @param element the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 transfomations.
      * @return the transfomations object.
      * @throws Exception if there is some error during parsing.
      */
-    public static TransformationsType transformationsFromElement(
-            Element element)
+    public static TransformationsType transformationsFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         TransformationsType transfomations = new TransformationsType();
-        if (!CommonPolicyParser.NAMESPACE
-                .equals(getNamespaceUri(element)) ||
+        if (!CommonPolicyParser.NAMESPACE.equals(parser.getNamespace()) ||
                 !CommonPolicyParser.TRANSFORMATIONS_ELEMENT
-                        .equals(element.getLocalName()))
+                        .equals(parser.getName()))
         {
             throw new Exception("transfomations element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("transfomations element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("transfomations element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
+            String localName = parser.getName();
+            String namespaceUri = parser.getNamespace();
             if (CommonPolicyParser.NAMESPACE.equals(namespaceUri))
             {
                 throw new Exception("transfomations element is invalid");
@@ -202,29 +186,31 @@ public final class PresRulesParser
                 if (PROVIDE_DEVICES_ELEMENT.equals(localName))
                 {
                     transfomations.setDevicePermission(
-                            devicePermissionFromElement(childElement));
+                            devicePermissionFromParser(document, parser));
                 }
                 else if (PROVIDE_SERVICES_ELEMENT.equals(localName))
                 {
                     transfomations.setServicePermission(
-                            servicePermissionFromElement(childElement));
+                            servicePermissionFromParser(document, parser));
                 }
                 else if (PROVIDE_PERSONS_ELEMENT.equals(localName))
                 {
                     transfomations.setPersonPermission(
-                            personPermissionFromElement(childElement));
+                            personPermissionFromParser(document, parser));
                 }
                 else
                 {
                     // There are a lot of elements without good examples, so
                     // just put them in any elements as temporary solution.
-                    transfomations.getAny().add(childElement);
+                    transfomations.getAny().add(
+                            elementFromParser(document, parser));
                 }
             }
             else
             {
                 // any
-                transfomations.getAny().add(childElement);
+                transfomations.getAny().add(
+                        elementFromParser(document, parser));
             }
         }
         return transfomations;
@@ -264,106 +250,80 @@ public final class PresRulesParser
     }
 
     /**
-     * Creates servicePermission object from the element.
+     * Creates servicePermission object from the current start tag of the
+     * parser.
      *
-     * @param element the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 provide-services.
      * @return the servicePermission object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ProvideServicePermissionType servicePermissionFromElement(
-            Element element) throws Exception
+    private static ProvideServicePermissionType servicePermissionFromParser(
+            Document document,
+            XmlPullParser parser)
+            throws Exception
     {
         ProvideServicePermissionType servicePermission =
                 new ProvideServicePermissionType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !PROVIDE_SERVICES_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !PROVIDE_SERVICES_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("provide-services element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("provide-services element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("provide-services element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // all-services
                 if (PROVIDE_SERVICES_ALL_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("all-services element is invalid");
-                    }
+                    textFromParser(parser);
                     servicePermission.setAllServices(
                             new ProvideServicePermissionType.AllServicesType());
                 }
                 // service-uri
                 else if (PROVIDE_SERVICES_SERBICE_URI_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("service-uri element is invalid");
-                    }
                     servicePermission.getServiceUriList().add(
                             new ProvideServicePermissionType.ServiceUriType(
-                                    childElement.getTextContent()));
+                                    textFromParser(parser)));
                 }
                 // service-scheme-uri
                 else if (PROVIDE_SERVICES_SERBICE_URI_SCHEME_ELEMENT.
                         equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception(
-                                "service-scheme-uri element is invalid");
-                    }
                     servicePermission.getServiceUriSchemeList()
                             .add(new ProvideServicePermissionType.
                                     ServiceUriSchemeType(
-                                    childElement.getTextContent()));
+                                    textFromParser(parser)));
                 }
                 // occurrence-id
                 else if (OCCURRENCE_ID_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("occurrence-id element is invalid");
-                    }
                     servicePermission.getOccurrences().add(new OccurrenceIdType(
-                            childElement.getTextContent()));
+                            textFromParser(parser)));
                 }
                 // class
                 else if (CLASS_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("class element is invalid");
-                    }
                     servicePermission.getClasses().add(
-                            new ClassType(childElement.getTextContent()));
+                            new ClassType(textFromParser(parser)));
                 }
                 else
                 {
@@ -373,7 +333,8 @@ public final class PresRulesParser
             else
             {
                 // any
-                servicePermission.getAny().add(childElement);
+                servicePermission.getAny().add(
+                        elementFromParser(document, parser));
             }
         }
         return servicePermission;
@@ -438,92 +399,71 @@ public final class PresRulesParser
     }
 
     /**
-     * Creates devicePermission object from the element.
+     * Creates devicePermission object from the current start tag of the
+     * parser.
      *
-     * @param element the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 provide-devices.
      * @return the devicePermission object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ProvideDevicePermissionType devicePermissionFromElement(
-            Element element) throws Exception
+    private static ProvideDevicePermissionType devicePermissionFromParser(
+            Document document,
+            XmlPullParser parser)
+            throws Exception
     {
         ProvideDevicePermissionType devicePermission =
                 new ProvideDevicePermissionType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !PROVIDE_DEVICES_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !PROVIDE_DEVICES_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("provide-devices element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("provide-devices element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("provide-devices element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // all-devices
                 if (PROVIDE_DEVICES_ALL_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("all-devices element is invalid");
-                    }
+                    textFromParser(parser);
                     devicePermission.setAllDevices(
                             new ProvideDevicePermissionType.AllDevicesType());
                 }
                 // deviceID
                 else if (PROVIDE_DEVICES_DEVICEID_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("deviceID element is invalid");
-                    }
                     devicePermission.getDevices().add(
                             new ProvideDevicePermissionType.DeviceIdType(
-                                    childElement.getTextContent()));
+                                    textFromParser(parser)));
                 }
                 // occurrence-id
                 else if (OCCURRENCE_ID_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("occurrence-id element is invalid");
-                    }
                     devicePermission.getOccurrences().add(new OccurrenceIdType(
-                            childElement.getTextContent()));
+                            textFromParser(parser)));
                 }
                 // class
                 else if (CLASS_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("class element is invalid");
-                    }
                     devicePermission.getClasses().add(
-                            new ClassType(childElement.getTextContent()));
+                            new ClassType(textFromParser(parser)));
                 }
                 else
                 {
@@ -533,7 +473,8 @@ public final class PresRulesParser
             else
             {
                 // any
-                devicePermission.getAny().add(childElement);
+                devicePermission.getAny().add(
+                        elementFromParser(document, parser));
             }
         }
         return devicePermission;
@@ -590,81 +531,64 @@ public final class PresRulesParser
     }
 
     /**
-     * Creates personPermission object from the element.
+     * Creates personPermission object from the current start tag of the
+     * parser.
      *
-     * @param element the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 provide-persons.
      * @return the personPermission object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ProvidePersonPermissionType personPermissionFromElement(
-            Element element) throws Exception
+    private static ProvidePersonPermissionType personPermissionFromParser(
+            Document document,
+            XmlPullParser parser)
+            throws Exception
     {
         ProvidePersonPermissionType personPermission =
                 new ProvidePersonPermissionType();
-        if (!NAMESPACE.equals(getNamespaceUri(element)) ||
-                !PROVIDE_PERSONS_ELEMENT.equals(element.getLocalName()))
+        if (!NAMESPACE.equals(parser.getNamespace()) ||
+                !PROVIDE_PERSONS_ELEMENT.equals(parser.getName()))
         {
             throw new Exception("provide-persons element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = element.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
+            if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
             {
                 throw new Exception("provide-persons element is invalid");
             }
-            if (isStandartXmlNamespace(namespaceUri))
-            {
-                continue;
-            }
-            throw new Exception("provide-persons element is invalid");
         }
         // Process elements
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element childElement = (Element) node;
-            String localName = childElement.getLocalName();
-            String namespaceUri = getNamespaceUri(childElement);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
-                // all-devices
+                // all-persons
                 if (PROVIDE_PERSONS_ALL_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("all-persons element is invalid");
-                    }
+                    textFromParser(parser);
                     personPermission.setAllPersons(
                             new ProvidePersonPermissionType.AllPersonsType());
                 }
                 // occurrence-id
                 else if (OCCURRENCE_ID_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("occurrence-id element is invalid");
-                    }
                     personPermission.getOccurrences().add(new OccurrenceIdType(
-                            childElement.getTextContent()));
+                            textFromParser(parser)));
                 }
                 // class
                 else if (CLASS_ELEMENT.equals(localName))
                 {
-                    if (hasChildElements(childElement))
-                    {
-                        throw new Exception("class element is invalid");
-                    }
                     personPermission.getClasses().add(
-                            new ClassType(childElement.getTextContent()));
+                            new ClassType(textFromParser(parser)));
                 }
                 else
                 {
@@ -674,7 +598,8 @@ public final class PresRulesParser
             else
             {
                 // any
-                personPermission.getAny().add(childElement);
+                personPermission.getAny().add(
+                        elementFromParser(document, parser));
             }
         }
         return personPermission;
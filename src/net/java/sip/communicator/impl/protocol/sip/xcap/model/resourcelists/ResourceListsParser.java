@@ -8,12 +8,14 @@ package net.java.sip.communicator.impl.protocol.sip.xcap.model.resourcelists;
 
 import static javax.xml.XMLConstants.XML_NS_PREFIX;
 import static javax.xml.XMLConstants.XML_NS_URI;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.createPullParser;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.elementFromParser;
+import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.getAttributeNamespace;
 import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.processAny;
 import static net.java.sip.communicator.impl.protocol.sip.xcap.model.XmlUtils.processAnyAttributes;
 import static org.jitsi.util.StringUtils.isNullOrEmpty;
 import static org.jitsi.util.xml.XMLUtils.createDocument;
 import static org.jitsi.util.xml.XMLUtils.createXml;
-import static org.jitsi.util.xml.XMLUtils.getNamespaceUri;
 import static org.jitsi.util.xml.XMLUtils.isStandartXmlNamespace;
 
 import javax.xml.namespace.*;
@@ -21,6 +23,7 @@ import javax.xml.namespace.*;
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.*;
 
 import org.w3c.dom.*;
+import org.xmlpull.v1.*;
 
 /**
  * Utility class that helps to converts resource-lists xml to the object model
@@ -75,42 +78,31 @@ public final class ResourceListsParser
         try
         {
             ResourceListsType resourceLists = new ResourceListsType();
-            Document document = createDocument(xml);
-            Element resourceListsElement = document.getDocumentElement();
-            String localName = resourceListsElement.getLocalName();
-            if (!NAMESPACE.equals(resourceListsElement.getNamespaceURI()) ||
-                    !RESOURCE_LISTS_ELEMENT.equals(localName))
+            XmlPullParser parser = createPullParser(xml);
+            if (!NAMESPACE.equals(parser.getNamespace()) ||
+                    !RESOURCE_LISTS_ELEMENT.equals(parser.getName()))
             {
                 throw new Exception("Document doesn't contain resource-lists " +
                         "element");
             }
             // Process attributes
-            NamedNodeMap attributes = resourceListsElement.getAttributes();
-            for (int i = 0; i < attributes.getLength(); i++)
+            for (int i = 0; i < parser.getAttributeCount(); i++)
             {
-                Attr attribute = (Attr) attributes.item(i);
-                String namespaceUri = getNamespaceUri(attribute);
-                if (namespaceUri == null)
+                if (!isStandartXmlNamespace(getAttributeNamespace(parser, i)))
                 {
                     throw new Exception("resource-lists element is invalid");
                 }
-                if (isStandartXmlNamespace(namespaceUri))
-                {
-                    continue;
-                }
-                throw new Exception("resource-lists element is invalid");
             }
             // Process elements
-            NodeList childNodes = resourceListsElement.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++)
+            Document document = createDocument();
+            int eventType;
+            while ((eventType = parser.next()) != XmlPullParser.END_TAG)
             {
-                Node node = childNodes.item(i);
-                if (node.getNodeType() != Node.ELEMENT_NODE)
+                if (eventType != XmlPullParser.START_TAG)
                 {
                     continue;
                 }
-                Element listElement = (Element) node;
-                resourceLists.getList().add(listFromElement(listElement));
+                resourceLists.getList().add(listFromParser(document, parser));
             }
             return resourceLists;
         }
@@ -154,40 +146,37 @@ public final class ResourceListsParser
     }
 
     /**
-     * Creates list object from the element.
+     * Creates list object from the current start tag of the parser.
      *
-     * @param listElement the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the list.
      * @return the list object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ListType listFromElement(Element listElement)
+    private static ListType listFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         ListType list = new ListType();
-        if (!LIST_ELEMENT.equals(listElement.getLocalName()) ||
-                !NAMESPACE.equals(getNamespaceUri(listElement)))
+        if (!LIST_ELEMENT.equals(parser.getName()) ||
+                !NAMESPACE.equals(parser.getNamespace()))
         {
             throw new Exception("list element is invalid");
         }
         // Process attributes
-        NamedNodeMap attributes = listElement.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("list element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (NAMESPACE.equals(namespaceUri))
             {
-                if (LIST_NAME_ATTR.equals(attribute.getLocalName()))
+                if (LIST_NAME_ATTR.equals(parser.getAttributeName(i)))
                 {
-                    list.setName(attribute.getValue());
+                    list.setName(parser.getAttributeValue(i));
                     continue;
                 }
                 else
@@ -195,49 +184,46 @@ public final class ResourceListsParser
                     throw new Exception("list element is invalid");
                 }
             }
-            QName qName = new QName(namespaceUri,
-                    attribute.getLocalName(),
-                    attribute.getPrefix() == null ? "" : attribute.getPrefix());
-            list.getAnyAttributes().put(qName, attribute.getValue());
+            list.getAnyAttributes().put(anyAttributeName(parser, i),
+                    parser.getAttributeValue(i));
         }
         // Process elements
-        NodeList childNodes = listElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element element = (Element) node;
-            String localName = element.getLocalName();
-            String namespaceUri = getNamespaceUri(element);
-            if (NAMESPACE.equals(namespaceUri))
+            String localName = parser.getName();
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // display-name
                 if (DISPALY_NAME_ELEMENT.equals(localName))
                 {
-                    list.setDisplayName(displayNameFromElement(element));
+                    list.setDisplayName(displayNameFromParser(parser));
                 }
                 // entry
                 else if (ENTRY_ELEMENT.equals(localName))
                 {
-                    list.getEntries().add(entryFromElement(element));
+                    list.getEntries().add(entryFromParser(document, parser));
                 }
                 // entry-ref
                 else if (ENTRYREF_ELEMENT.equals(localName))
                 {
-                    list.getEntryRefs().add(entryRefFromElement(element));
+                    list.getEntryRefs().add(
+                            entryRefFromParser(document, parser));
                 }
                 // list
                 else if (LIST_ELEMENT.equals(localName))
                 {
-                    list.getLists().add(listFromElement(element));
+                    list.getLists().add(listFromParser(document, parser));
                 }
                 // extenal
                 else if (EXTERNAL_ELEMENT.equals(localName))
                 {
-                    list.getExternals().add(externalFromElement(element));
+                    list.getExternals().add(
+                            externalFromParser(document, parser));
                 }
                 else
                 {
@@ -247,7 +233,7 @@ public final class ResourceListsParser
             else
             {
                 // any
-                list.getAny().add(element);
+                list.getAny().add(elementFromParser(document, parser));
             }
         }
         return list;
@@ -417,41 +403,33 @@ public final class ResourceListsParser
     }
 
     /**
-     * Creates entry object from the element.
+     * Creates entry object from the current start tag of the parser.
      *
-     * @param entryElement the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the entry.
      * @return the entry object.
      * @throws Exception if there is some error during parsing.
      */
-    private static EntryType entryFromElement(Element entryElement)
+    private static EntryType entryFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         EntryType entry = new EntryType();
-        if (!ENTRY_ELEMENT.equals(entryElement.getNodeName()) ||
-                !NAMESPACE.equals(getNamespaceUri(entryElement)))
-        {
-            throw new Exception("entry element is invalid");
-        }
         String uri = null;
         // Process attributes
-        NamedNodeMap attributes = entryElement.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("entry element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (NAMESPACE.equals(namespaceUri))
             {
-                if (ENTRY_URI_ATTR.equals(attribute.getLocalName()))
+                if (ENTRY_URI_ATTR.equals(parser.getAttributeName(i)))
                 {
-                    uri = attribute.getValue();
+                    uri = parser.getAttributeValue(i);
                     continue;
                 }
                 else
@@ -459,10 +437,8 @@ public final class ResourceListsParser
                     throw new Exception("entry element is invalid");
                 }
             }
-            QName qName = new QName(namespaceUri,
-                    attribute.getLocalName(),
-                    attribute.getPrefix() == null ? "" : attribute.getPrefix());
-            entry.getAnyAttributes().put(qName, attribute.getValue());
+            entry.getAnyAttributes().put(anyAttributeName(parser, i),
+                    parser.getAttributeValue(i));
         }
         if (uri == null)
         {
@@ -470,26 +446,19 @@ public final class ResourceListsParser
         }
         entry.setUri(uri);
         // Process elements
-        NodeList childNodes = entryElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element element = (Element) node;
-            String namespaceUri = getNamespaceUri(element);
-            if (namespaceUri == null)
-            {
-                throw new Exception("entry element is invalid");
-            }
-            if (NAMESPACE.equals(namespaceUri))
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // display-name
-                if (DISPALY_NAME_ELEMENT.equals(element.getLocalName()))
+                if (DISPALY_NAME_ELEMENT.equals(parser.getName()))
                 {
-                    entry.setDisplayName(displayNameFromElement(element));
+                    entry.setDisplayName(displayNameFromParser(parser));
                     continue;
                 }
                 else
@@ -498,47 +467,40 @@ public final class ResourceListsParser
                 }
             }
             // any
-            entry.getAny().add(element);
+            entry.getAny().add(elementFromParser(document, parser));
         }
         return entry;
     }
 
     /**
-     * Creates entry-ref object from the element.
+     * Creates entry-ref object from the current start tag of the parser.
      *
-     * @param entryRefElement the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the
+     *                 entry-ref.
      * @return the entry-ref object.
      * @throws Exception if there is some error during parsing.
      */
-    private static EntryRefType entryRefFromElement(Element entryRefElement)
+    private static EntryRefType entryRefFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         EntryRefType entryRef = new EntryRefType();
-        if (!ENTRYREF_ELEMENT.equals(entryRefElement.getLocalName()) ||
-                !NAMESPACE.equals(getNamespaceUri(entryRefElement)))
-        {
-            throw new Exception("entry-ref element is invalid");
-        }
         String ref = null;
         // Process attributes
-        NamedNodeMap attributes = entryRefElement.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("entry-ref element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (NAMESPACE.equals(namespaceUri))
             {
-                if (ENTRYREF_REF_ATTR.equals(attribute.getLocalName()))
+                if (ENTRYREF_REF_ATTR.equals(parser.getAttributeName(i)))
                 {
-                    ref = attribute.getValue();
+                    ref = parser.getAttributeValue(i);
                     continue;
                 }
                 else
@@ -546,10 +508,8 @@ public final class ResourceListsParser
                     throw new Exception("entry-ref element is invalid");
                 }
             }
-            QName qName = new QName(attribute.getNamespaceURI(),
-                    attribute.getName(),
-                    attribute.getPrefix() == null ? "" : attribute.getPrefix());
-            entryRef.getAnyAttributes().put(qName, attribute.getValue());
+            entryRef.getAnyAttributes().put(anyAttributeName(parser, i),
+                    parser.getAttributeValue(i));
         }
         if (ref == null)
         {
@@ -557,26 +517,19 @@ public final class ResourceListsParser
         }
         entryRef.setRef(ref);
         // Process elements
-        NodeList childNodes = entryRefElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element element = (Element) node;
-            String namespaceUri = getNamespaceUri(element);
-            if (namespaceUri == null)
-            {
-                throw new Exception("entry-ref element is invalid");
-            }
-            if (NAMESPACE.equals(namespaceUri))
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // display-name
-                if (DISPALY_NAME_ELEMENT.equals(element.getLocalName()))
+                if (DISPALY_NAME_ELEMENT.equals(parser.getName()))
                 {
-                    entryRef.setDisplayName(displayNameFromElement(element));
+                    entryRef.setDisplayName(displayNameFromParser(parser));
                     continue;
                 }
                 else
@@ -585,47 +538,38 @@ public final class ResourceListsParser
                 }
             }
             // any
-            entryRef.getAny().add(element);
+            entryRef.getAny().add(elementFromParser(document, parser));
         }
         return entryRef;
     }
 
     /**
-     * Creates external object from the element.
+     * Creates external object from the current start tag of the parser.
      *
-     * @param entryElement the element to analyze.
+     * @param document the document which creates the any elements.
+     * @param parser   the parser positioned on the start tag of the external.
      * @return the external object.
      * @throws Exception if there is some error during parsing.
      */
-    private static ExternalType externalFromElement(Element entryElement)
+    private static ExternalType externalFromParser(
+            Document document,
+            XmlPullParser parser)
             throws Exception
     {
         ExternalType external = new ExternalType();
-        if (!EXTERNAL_ELEMENT.equals(entryElement.getLocalName()) ||
-                !NAMESPACE.equals(getNamespaceUri(entryElement)))
-        {
-            throw new Exception("external element is invalid");
-        }
-
         // Process attributes
-        NamedNodeMap attributes = entryElement.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("external element is invalid");
-            }
+            String namespaceUri = getAttributeNamespace(parser, i);
             if (isStandartXmlNamespace(namespaceUri))
             {
                 continue;
             }
             if (NAMESPACE.equals(namespaceUri))
             {
-                if (EXTERNAL_ANCHOR_ATTR.equals(attribute.getLocalName()))
+                if (EXTERNAL_ANCHOR_ATTR.equals(parser.getAttributeName(i)))
                 {
-                    external.setAnchor(attribute.getValue());
+                    external.setAnchor(parser.getAttributeValue(i));
                     continue;
                 }
                 else
@@ -633,32 +577,23 @@ public final class ResourceListsParser
                     throw new Exception("external element is invalid");
                 }
             }
-            QName qName = new QName(attribute.getNamespaceURI(),
-                    attribute.getName(),
-                    attribute.getPrefix() == null ? "" : attribute.getPrefix());
-            external.getAnyAttributes().put(qName, attribute.getValue());
+            external.getAnyAttributes().put(anyAttributeName(parser, i),
+                    parser.getAttributeValue(i));
         }
         // Process elements
-        NodeList childNodes = entryElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() != Node.ELEMENT_NODE)
+            if (eventType != XmlPullParser.START_TAG)
             {
                 continue;
             }
-            Element element = (Element) node;
-            String namespaceUri = getNamespaceUri(element);
-            if (namespaceUri == null)
-            {
-                throw new Exception("external element is invalid");
-            }
-            if (NAMESPACE.equals(namespaceUri))
+            if (NAMESPACE.equals(parser.getNamespace()))
             {
                 // display-name
-                if (DISPALY_NAME_ELEMENT.equals(element.getLocalName()))
+                if (DISPALY_NAME_ELEMENT.equals(parser.getName()))
                 {
-                    external.setDisplayName(displayNameFromElement(element));
+                    external.setDisplayName(displayNameFromParser(parser));
                     continue;
                 }
                 else
@@ -667,58 +602,68 @@ public final class ResourceListsParser
                 }
             }
             // any
-            external.getAny().add(element);
+            external.getAny().add(elementFromParser(document, parser));
         }
         return external;
     }
 
     /**
-     * Creates display-name object from the element.
+     * Creates display-name object from the current start tag of the parser.
      *
-     * @param displayNameElement the element to analyze.
+     * @param parser the parser positioned on the start tag of the
+     *               display-name.
      * @return the display-name object.
      * @throws Exception if there is some error during parsing.
      */
-    private static DisplayNameType displayNameFromElement(
-            Element displayNameElement) throws Exception
+    private static DisplayNameType displayNameFromParser(XmlPullParser parser)
+            throws Exception
     {
         DisplayNameType displayName = new DisplayNameType();
-        if (!DISPALY_NAME_ELEMENT.equals(displayNameElement.getLocalName()) ||
-                !NAMESPACE.equals(getNamespaceUri(displayNameElement)))
-        {
-            throw new Exception("display-name element is invalid");
-        }
         // Process attributes
-        NamedNodeMap attributes = displayNameElement.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++)
+        for (int i = 0; i < parser.getAttributeCount(); i++)
         {
-            Attr attribute = (Attr) attributes.item(i);
-            String namespaceUri = getNamespaceUri(attribute);
-            if (namespaceUri == null)
-            {
-                throw new Exception("display-name element is invalid");
-            }
-            if (DISPALY_NAME_LANG_ATTR.equals(attribute.getLocalName()) &&
+            String namespaceUri = getAttributeNamespace(parser, i);
+            if (DISPALY_NAME_LANG_ATTR.equals(parser.getAttributeName(i)) &&
                     XML_NS_URI.equals(namespaceUri))
             {
-                displayName.setLang(attribute.getValue());
+                displayName.setLang(parser.getAttributeValue(i));
             }
             else if (!isStandartXmlNamespace(namespaceUri))
             {
                 throw new Exception("display-name element is invalid");
             }
         }
-        // Process elements
-        NodeList childNodes = displayNameElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++)
+        // Process text
+        StringBuilder value = new StringBuilder();
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_TAG)
         {
-            Node node = childNodes.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE)
+            if (eventType == XmlPullParser.START_TAG)
             {
                 throw new Exception("display-name element is invalid");
             }
+            if (eventType == XmlPullParser.TEXT)
+            {
+                value.append(parser.getText());
+            }
         }
-        displayName.setValue(displayNameElement.getTextContent());
+        displayName.setValue(value.toString());
         return displayName;
     }
+
+    /**
+     * Creates the name of an any attribute of the current start tag of the
+     * parser.
+     *
+     * @param parser the parser positioned on a start tag.
+     * @param index  the index of the attribute.
+     * @return the name of the attribute.
+     */
+    private static QName anyAttributeName(XmlPullParser parser, int index)
+    {
+        String prefix = parser.getAttributePrefix(index);
+        return new QName(getAttributeNamespace(parser, index),
+                parser.getAttributeName(index),
+                prefix == null ? "" : prefix);
+    }
 }
@@ -143,7 +143,7 @@ public class ReconnectPluginActivator
     /**
      * Timer for scheduling all reconnect operations.
      */
-    private Timer timer = null;
+    private TimerScheduler timer = null;
 
     /**
      * Start of the delay interval when starting a reconnect.
@@ -196,7 +196,7 @@ public class ReconnectPluginActivator
         bundleContext.addServiceListener(this);
 
         if(timer == null)
-            timer = new Timer("Reconnect timer", true);
+            timer = new TimerScheduler();
 
         this.networkAddressManagerService
             = ServiceUtils.getService(
@@ -876,7 +876,7 @@ public class ReconnectPluginActivator
      * The task executed by the timer when time for reconnect comes.
      */
     private class ReconnectTask
-        extends TimerTask
+        extends SharedTimer.Task
     {
         /**
          * The provider to reconnect.
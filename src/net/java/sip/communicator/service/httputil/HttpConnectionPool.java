@@ -0,0 +1,480 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.httputil;
+
+import java.beans.*;
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.net.ssl.*;
+
+import net.java.sip.communicator.service.certificate.*;
+import net.java.sip.communicator.util.Logger;
+import net.java.sip.communicator.util.SharedTimer;
+
+import org.apache.http.*;
+import org.apache.http.conn.*;
+import org.apache.http.conn.params.*;
+import org.apache.http.conn.scheme.*;
+import org.apache.http.impl.client.*;
+import org.apache.http.impl.conn.tsccm.*;
+import org.apache.http.params.*;
+import org.apache.http.protocol.*;
+import org.jitsi.service.configuration.*;
+
+/**
+ * Keeps the connections of all <tt>HttpClient</tt>s created by
+ * {@link #createHttpClient(HttpParams)} in a single pool so that subsequent
+ * requests to the same host reuse kept-alive connections instead of paying
+ * for TCP and TLS setup every time. TLS connections are created with an
+ * <tt>SSLContext</tt> per host which uses the trust manager of the
+ * <tt>CertificateService</tt> for that host and is kept so that TLS sessions
+ * are resumed for new connections as well.
+ * <p>
+ * The responses of the requests executed by the returned clients must be
+ * consumed or aborted so that their connections are returned to the pool.
+ * </p>
+ *
+ * @author agent
+ */
+public class HttpConnectionPool
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>HttpConnectionPool</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(HttpConnectionPool.class);
+
+    /**
+     * The property which holds the maximum number of connections in the
+     * pool.
+     */
+    public static final String PNAME_MAX_TOTAL_CONNECTIONS
+        = "net.java.sip.communicator.service.httputil.MAX_TOTAL_CONNECTIONS";
+
+    /**
+     * The property which holds the maximum number of connections in the pool
+     * to a single host.
+     */
+    public static final String PNAME_MAX_CONNECTIONS_PER_HOST
+        = "net.java.sip.communicator.service.httputil.MAX_CONNECTIONS_PER_HOST";
+
+    /**
+     * The property which holds the time in milliseconds after which idle
+     * connections are closed.
+     */
+    public static final String PNAME_IDLE_CONNECTION_TIMEOUT
+        = "net.java.sip.communicator.service.httputil.IDLE_CONNECTION_TIMEOUT";
+
+    /**
+     * The prefix of the names of the properties of the
+     * <tt>CertificateService</tt> which invalidate the cached
+     * <tt>SSLContext</tt>s when changed.
+     */
+    private static final String CERTIFICATE_SERVICE_PROPERTY_PREFIX
+        = "net.java.sip.communicator.service.cert";
+
+    /**
+     * The prefix of the names of the properties which store the certificates
+     * trusted by the user.
+     */
+    private static final String CERTIFICATE_TRUST_PROPERTY_PREFIX
+        = "net.java.sip.communicator.impl.certservice";
+
+    /**
+     * The default maximum number of connections in the pool.
+     */
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+
+    /**
+     * The default maximum number of connections in the pool to a single
+     * host.
+     */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    /**
+     * The default time in milliseconds after which idle connections are
+     * closed.
+     */
+    private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60 * 1000;
+
+    /**
+     * The time in milliseconds to wait for a free connection from the pool.
+     */
+    private static final long CONNECTION_REQUEST_TIMEOUT = 30 * 1000;
+
+    /**
+     * The connection manager shared by all clients.
+     */
+    private static ThreadSafeClientConnManager connectionManager = null;
+
+    /**
+     * The task which closes the idle connections.
+     */
+    private static SharedTimer.Task idleConnectionTask = null;
+
+    /**
+     * The number of requests executed through the pool.
+     */
+    private static final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * The number of connections opened by the pool.
+     */
+    private static final AtomicLong connectionCount = new AtomicLong();
+
+    /**
+     * The <tt>SSLContext</tt>s used for the TLS connections keyed by host.
+     */
+    private static final Map<String, SSLContext> sslContexts
+        = new ConcurrentHashMap<String, SSLContext>();
+
+    /**
+     * Drops the cached <tt>SSLContext</tt>s, and with them the TLS sessions
+     * which would skip the verification of the certificates, when the trust
+     * decisions of the user or the certificate configuration change.
+     */
+    private static final PropertyChangeListener certificateListener
+        = new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                String name = evt.getPropertyName();
+
+                if(name.startsWith(CERTIFICATE_SERVICE_PROPERTY_PREFIX)
+                        || name.startsWith(CERTIFICATE_TRUST_PROPERTY_PREFIX)
+                        || name.equals(CertificateService.PNAME_ALWAYS_TRUST))
+                    invalidateSSLContexts();
+            }
+        };
+
+    /**
+     * Counts the requests executed by the clients of the pool.
+     */
+    private static final HttpRequestInterceptor requestCounter
+        = new HttpRequestInterceptor()
+        {
+            public void process(HttpRequest request, HttpContext context)
+            {
+                requestCount.incrementAndGet();
+            }
+        };
+
+    /**
+     * Creates a new client which executes its requests over the connections
+     * of the pool.
+     *
+     * @param params the parameters of the new client
+     * @return the new client
+     */
+    public static DefaultHttpClient createHttpClient(HttpParams params)
+    {
+        DefaultHttpClient httpClient
+            = new DefaultHttpClient(getConnectionManager(), params);
+
+        httpClient.addRequestInterceptor(requestCounter);
+        return httpClient;
+    }
+
+    /**
+     * Returns the connection manager shared by all clients and creates it if
+     * necessary.
+     *
+     * @return the connection manager shared by all clients
+     */
+    private static synchronized ClientConnectionManager getConnectionManager()
+    {
+        if(connectionManager == null)
+        {
+            ConfigurationService cfg
+                = HttpUtilActivator.getConfigurationService();
+            int maxTotal = DEFAULT_MAX_TOTAL_CONNECTIONS;
+            int maxPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+            long idleTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+
+            if(cfg != null)
+            {
+                cfg.addPropertyChangeListener(certificateListener);
+
+                maxTotal = cfg.getInt(PNAME_MAX_TOTAL_CONNECTIONS, maxTotal);
+                maxPerHost
+                    = cfg.getInt(PNAME_MAX_CONNECTIONS_PER_HOST, maxPerHost);
+                idleTimeout
+                    = cfg.getLong(PNAME_IDLE_CONNECTION_TIMEOUT, idleTimeout);
+            }
+
+            HttpParams params = new BasicHttpParams();
+
+            ConnManagerParams.setMaxTotalConnections(params, maxTotal);
+            ConnManagerParams.setMaxConnectionsPerRoute(
+                    params,
+                    new ConnPerRouteBean(maxPerHost));
+            ConnManagerParams.setTimeout(params, CONNECTION_REQUEST_TIMEOUT);
+
+            SchemeRegistry schemeRegistry = new SchemeRegistry();
+
+            schemeRegistry.register(
+                    new Scheme("http", new PlainConnectionSocketFactory(), 80));
+            schemeRegistry.register(
+                    new Scheme("https", new TlsConnectionSocketFactory(), 443));
+
+            connectionManager
+                = new ThreadSafeClientConnManager(params, schemeRegistry);
+
+            if(idleTimeout > 0)
+            {
+                final ClientConnectionManager ccm = connectionManager;
+                final long timeout = idleTimeout;
+
+                idleConnectionTask
+                    = new SharedTimer.Task()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            ccm.closeExpiredConnections();
+                            ccm.closeIdleConnections(
+                                    timeout,
+                                    TimeUnit.MILLISECONDS);
+                        }
+                    };
+                SharedTimer.getInstance().schedule(
+                        idleConnectionTask,
+                        idleTimeout,
+                        idleTimeout);
+            }
+        }
+        return connectionManager;
+    }
+
+    /**
+     * Returns the number of requests executed through the pool.
+     *
+     * @return the number of requests executed through the pool
+     */
+    public static long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of connections opened by the pool. The difference
+     * to {@link #getRequestCount()} is the number of requests which have
+     * reused a connection.
+     *
+     * @return the number of connections opened by the pool
+     */
+    public static long getConnectionCount()
+    {
+        return connectionCount.get();
+    }
+
+    /**
+     * Returns the <tt>SSLContext</tt> to create the TLS connections to a
+     * specific host with.
+     *
+     * @param host the host to connect to
+     * @return the <tt>SSLContext</tt> to connect to <tt>host</tt> with
+     * @throws IOException if the <tt>SSLContext</tt> cannot be created
+     */
+    private static SSLContext getSSLContext(String host)
+        throws IOException
+    {
+        SSLContext sslContext = sslContexts.get(host);
+
+        if(sslContext == null)
+        {
+            CertificateService certificateService
+                = HttpUtilActivator.getCertificateVerificationService();
+
+            try
+            {
+                // Without the certificate service the platform trust
+                // store verifies the server. The default context is not
+                // cached so that the service is used once it is available.
+                if(certificateService == null)
+                    return SSLContext.getDefault();
+
+                sslContext
+                    = certificateService.getSSLContext(
+                            certificateService.getTrustManager(host));
+            }
+            catch(GeneralSecurityException e)
+            {
+                throw new IOException(e.getMessage());
+            }
+            sslContexts.put(host, sslContext);
+        }
+        return sslContext;
+    }
+
+    /**
+     * Drops the cached <tt>SSLContext</tt>s and closes the idle connections
+     * so that new TLS connections are verified with the current trust
+     * decisions and do not resume the sessions established before.
+     */
+    private static synchronized void invalidateSSLContexts()
+    {
+        if(logger.isDebugEnabled() && !sslContexts.isEmpty())
+        {
+            logger.debug(
+                    "Certificate configuration changed, dropping "
+                        + sslContexts.size() + " cached SSL contexts.");
+        }
+        sslContexts.clear();
+        if(connectionManager != null)
+            connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes all connections of the pool and stops the eviction of idle
+     * connections. The pool is created again when a new client is requested.
+     */
+    static synchronized void shutdown()
+    {
+        ConfigurationService cfg = HttpUtilActivator.getConfigurationService();
+
+        if(cfg != null)
+            cfg.removePropertyChangeListener(certificateListener);
+        if(idleConnectionTask != null)
+        {
+            idleConnectionTask.cancel();
+            idleConnectionTask = null;
+        }
+        if(connectionManager != null)
+        {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+        sslContexts.clear();
+    }
+
+    /**
+     * Opens plain TCP connections and counts them.
+     */
+    private static class PlainConnectionSocketFactory
+        implements SocketFactory
+    {
+        public Socket createSocket()
+        {
+            return new Socket();
+        }
+
+        public Socket connectSocket(
+                Socket sock,
+                String host,
+                int port,
+                InetAddress localAddress,
+                int localPort,
+                HttpParams params)
+            throws IOException
+        {
+            if(sock == null)
+                sock = createSocket();
+
+            if((localAddress != null) || (localPort > 0))
+            {
+                sock.bind(
+                        new InetSocketAddress(
+                                localAddress,
+                                (localPort < 0) ? 0 : localPort));
+            }
+
+            sock.connect(
+                    new InetSocketAddress(host, port),
+                    HttpConnectionParams.getConnectionTimeout(params));
+            sock.setSoTimeout(HttpConnectionParams.getSoTimeout(params));
+            connectionCount.incrementAndGet();
+            return sock;
+        }
+
+        public boolean isSecure(Socket sock)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Opens TLS connections with the <tt>SSLContext</tt> of the respective
+     * host and counts them.
+     */
+    private static class TlsConnectionSocketFactory
+        extends PlainConnectionSocketFactory
+        implements LayeredSocketFactory
+    {
+        @Override
+        public Socket connectSocket(
+                Socket sock,
+                String host,
+                int port,
+                InetAddress localAddress,
+                int localPort,
+                HttpParams params)
+            throws IOException
+        {
+            Socket plainSocket
+                = super.connectSocket(
+                        sock,
+                        host, port,
+                        localAddress, localPort,
+                        params);
+
+            try
+            {
+                return createSocket(plainSocket, host, port, true);
+            }
+            catch(IOException e)
+            {
+                try
+                {
+                    plainSocket.close();
+                }
+                catch(IOException ioe)
+                {
+                }
+                throw e;
+            }
+        }
+
+        public Socket createSocket(
+                Socket socket,
+                String host,
+                int port,
+                boolean autoClose)
+            throws IOException
+        {
+            SSLSocket sslSocket
+                = (SSLSocket)
+                    getSSLContext(host).getSocketFactory().createSocket(
+                            socket,
+                            host, port,
+                            autoClose);
+
+            // the host name is verified by the trust manager
+            sslSocket.startHandshake();
+            if(logger.isTraceEnabled())
+            {
+                logger.trace(
+                        "TLS connection to " + host + ":" + port
+                            + " using session "
+                            + Arrays.toString(sslSocket.getSession().getId()));
+            }
+            return sslSocket;
+        }
+
+        @Override
+        public boolean isSecure(Socket sock)
+        {
+            return (sock instanceof SSLSocket);
+        }
+    }
+}
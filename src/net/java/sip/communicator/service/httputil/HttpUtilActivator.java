@@ -46,12 +46,13 @@ public class HttpUtilActivator
 
     /**
      * Return the certificate verification service impl.
-     * @return the CertificateVerification service.
+     * @return the CertificateVerification service or <tt>null</tt> if the
+     * bundle has not been started or no such service is registered.
      */
     public static CertificateService
         getCertificateVerificationService()
     {
-        if(guiCertificateVerification == null)
+        if(guiCertificateVerification == null && bundleContext != null)
         {
             ServiceReference guiVerifyReference
                 = bundleContext.getServiceReference(
@@ -107,6 +108,8 @@ public class HttpUtilActivator
         throws
         Exception
     {
+        HttpConnectionPool.shutdown();
+
         guiCertificateVerification = null;
         credentialsService = null;
         resourceService = null;
@@ -137,7 +140,7 @@ public class HttpUtilActivator
      */
     public static ConfigurationService getConfigurationService()
     {
-        if (configurationService == null)
+        if (configurationService == null && bundleContext != null)
         {
             configurationService
                 = ServiceUtils.getService(
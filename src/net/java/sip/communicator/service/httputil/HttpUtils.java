@@ -8,11 +8,8 @@ package net.java.sip.communicator.service.httputil;
 
 import java.io.*;
 import java.net.*;
-import java.security.*;
 import java.util.*;
 
-import javax.net.ssl.*;
-
 import net.java.sip.communicator.util.Logger;
 
 import org.apache.http.*;
@@ -171,6 +168,7 @@ public class HttpUtils
                     logger.debug("Will retry http connect and " +
                         "credentials input as latest are not correct!");
 
+                consumeContent(response);
                 throw new AuthenticationException("Authorization needed");
             }
             else
@@ -232,9 +230,34 @@ public class HttpUtils
         }
 
         // is user has canceled no result needed.
+        if(response != null)
+            consumeContent(response);
         return null;
     }
 
+    /**
+     * Reads the remaining content of a response so that its connection is
+     * returned to the pool.
+     * @param response the response which will not be used anymore.
+     */
+    private static void consumeContent(HttpResponse response)
+    {
+        HttpEntity entity = response.getEntity();
+
+        if(entity != null)
+        {
+            try
+            {
+                entity.consumeContent();
+            }
+            catch(IOException e)
+            {
+                if(logger.isDebugEnabled())
+                    logger.debug("Cannot consume http response", e);
+            }
+        }
+    }
+
     /**
      * Posts a <tt>file</tt> to the <tt>address</tt>.
      * @param address the address to post the form to.
@@ -530,30 +553,16 @@ public class HttpUtils
         params.setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 10000);
         params.setParameter(ClientPNames.MAX_REDIRECTS, MAX_REDIRECTS);
 
-        DefaultHttpClient httpClient = new DefaultHttpClient(params);
+        DefaultHttpClient httpClient
+            = HttpConnectionPool.createHttpClient(params);
 
         HttpProtocolParams.setUserAgent(httpClient.getParams(),
             System.getProperty("sip-communicator.application.name")
                 + "/"
                 + System.getProperty("sip-communicator.version"));
 
-        SSLContext sslCtx;
-        try
-        {
-            sslCtx = HttpUtilActivator.getCertificateVerificationService()
-                .getSSLContext(
-                    HttpUtilActivator.getCertificateVerificationService()
-                        .getTrustManager(address));
-        }
-        catch (GeneralSecurityException e)
-        {
-            throw new IOException(e.getMessage());
-        }
-
-//        Scheme sch =
-//            new Scheme("https", 443, new SSLSocketFactory(sslCtx,
-//                SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER));
-//        httpClient.getConnectionManager().getSchemeRegistry().register(sch);
+        // the pool creates the https connections with the trust manager of
+        // the CertificateVerificationService for the respective host
         //TODO: wrap the SSLSocketFactory to use our own DNS resolution
         //TODO: register socketfactory for http to use our own DNS resolution
 
@@ -797,8 +806,41 @@ public class HttpUtils
     }
 
     /**
-     * Input stream wrapper which handles closing the httpclient when
-     * everything is retrieved.
+     * Returns a client which uses the connections of the pool shared with
+     * the other users of <tt>HttpUtils</tt>. The client does not ask for
+     * credentials, proxy settings are used from global java settings.
+     * The responses of the requests it executes must be consumed so that
+     * their connections are returned to the pool.
+     *
+     * @param connectionTimeout the connection and read timeout in
+     * milliseconds
+     * @return the new client
+     */
+    public static DefaultHttpClient getPooledHttpClient(int connectionTimeout)
+    {
+        HttpParams params = new BasicHttpParams();
+        params.setParameter(
+                CoreConnectionPNames.SO_TIMEOUT,
+                connectionTimeout);
+        params.setParameter(
+                CoreConnectionPNames.CONNECTION_TIMEOUT,
+                connectionTimeout);
+        params.setParameter(ClientPNames.MAX_REDIRECTS, MAX_REDIRECTS);
+
+        DefaultHttpClient httpClient
+            = HttpConnectionPool.createHttpClient(params);
+
+        ProxySelectorRoutePlanner routePlanner = new ProxySelectorRoutePlanner(
+            httpClient.getConnectionManager().getSchemeRegistry(),
+            ProxySelector.getDefault());
+        httpClient.setRoutePlanner(routePlanner);
+
+        return httpClient;
+    }
+
+    /**
+     * Input stream wrapper which handles returning the connection to the
+     * pool when everything is retrieved.
      */
     private static class HttpClientInputStream
         extends InputStream
@@ -808,20 +850,13 @@ public class HttpUtils
          */
         InputStream in;
 
-        /**
-         * The http client to close.
-         */
-        HttpClient httpClient;
-
         /**
          * Creates HttpClientInputStream.
          * @param in the original input stream.
-         * @param httpClient the http client to close.
          */
-        HttpClientInputStream(InputStream in, HttpClient httpClient)
+        HttpClientInputStream(InputStream in)
         {
             this.in = in;
-            this.httpClient = httpClient;
         }
 
         /**
@@ -839,11 +874,28 @@ public class HttpUtils
         }
 
         /**
-         * Closes this input stream and releases any system resources associated
-         * with the stream. Releases httpclient connections.
+         * Uses parent InputStream read method.
          *
-         * <p> The <code>close</code> method of <code>InputStream</code> does
-         * nothing.
+         * @param b the buffer into which the data is read.
+         * @param off the start offset in array <code>b</code>
+         * at which the data is written.
+         * @param len the maximum number of bytes to read.
+         * @return the total number of bytes read into the buffer, or
+         *         <code>-1</code> if there is no more data because the end of
+         *         the stream has been reached.
+         * @throws java.io.IOException if an I/O error occurs.
+         */
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            return in.read(b, off, len);
+        }
+
+        /**
+         * Closes this input stream and releases any system resources associated
+         * with the stream. Releases the httpclient connection so that it is
+         * returned to the pool.
          *
          * @exception  IOException  if an I/O error occurs.
          */
@@ -852,10 +904,7 @@ public class HttpUtils
         {
             super.close();
 
-            // When HttpClient instance is no longer needed,
-            // shut down the connection manager to ensure
-            // immediate de-allocation of all system resources
-            httpClient.getConnectionManager().shutdown();
+            in.close();
         }
     }
 
@@ -911,7 +960,7 @@ public class HttpUtils
         public InputStream getContent()
             throws IOException, IllegalStateException
         {
-            return new HttpClientInputStream(entity.getContent(), httpClient);
+            return new HttpClientInputStream(entity.getContent());
         }
 
         /**
@@ -930,8 +979,8 @@ public class HttpUtils
             }
             finally
             {
-                if(httpClient != null)
-                    httpClient.getConnectionManager().shutdown();
+                // return the connection to the pool
+                entity.consumeContent();
             }
         }
 
@@ -6,6 +6,7 @@
  */
 package net.java.sip.communicator.service.protocol;
 
+import java.beans.*;
 import java.net.*;
 import java.util.*;
 
@@ -100,6 +101,37 @@ public abstract class AbstractCallPeer<T extends Call,
      */
     private final Object conferenceMembersSyncRoot = new Object();
 
+    /**
+     * The index of {@link #conferenceMembers} by audio SSRC which allows
+     * {@link #findConferenceMember(long)} to look up a
+     * <tt>ConferenceMember</tt> at the rate of the received RTP packets
+     * without iterating or allocating. Replaced as a whole whenever the list
+     * of <tt>ConferenceMember</tt>s or the audio SSRC of one of them changes.
+     */
+    private volatile AudioSsrcIndex conferenceMembersByAudioSsrc
+        = new AudioSsrcIndex(new long[0], NO_CONFERENCE_MEMBERS);
+
+    /**
+     * The <tt>PropertyChangeListener</tt> which updates
+     * {@link #conferenceMembersByAudioSsrc} when the audio SSRC of one of
+     * {@link #conferenceMembers} changes.
+     */
+    private final PropertyChangeListener conferenceMemberPropertyChangeListener
+        = new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent ev)
+            {
+                if (ConferenceMember.AUDIO_SSRC_PROPERTY_NAME.equals(
+                        ev.getPropertyName()))
+                {
+                    synchronized (conferenceMembersSyncRoot)
+                    {
+                        updateConferenceMembersByAudioSsrc();
+                    }
+                }
+            }
+        };
+
     /**
      * The flag that determines whether our audio stream to this call peer is
      * currently muted.
@@ -224,6 +256,9 @@ public abstract class AbstractCallPeer<T extends Call,
                         conferenceMembers = newConferenceMembers;
                         unmodifiableConferenceMembers
                             = Collections.unmodifiableList(conferenceMembers);
+                        conferenceMember.addPropertyChangeListener(
+                                conferenceMemberPropertyChangeListener);
+                        updateConferenceMembersByAudioSsrc();
                     }
                     else
                         return;
@@ -241,8 +276,8 @@ public abstract class AbstractCallPeer<T extends Call,
     /**
      * Finds the first <tt>ConferenceMember</tt> whose <tt>audioSsrc</tt> is
      * equals to a specific value. The method is meant for very frequent use so
-     * it iterates over the <tt>List</tt> of <tt>ConferenceMember</tt>s without
-     * creating an <tt>Iterator</tt>.
+     * it performs a binary search in an index of the
+     * <tt>ConferenceMember</tt>s by audio SSRC without allocating.
      *
      * @param ssrc the SSRC identifier of the audio RTP streams transmitted by
      * the <tt>ConferenceMember</tt> that we are looking for.
@@ -252,16 +287,49 @@ public abstract class AbstractCallPeer<T extends Call,
      */
     protected ConferenceMember findConferenceMember(long ssrc)
     {
-        List<ConferenceMember> members = getConferenceMembers();
+        AudioSsrcIndex index = conferenceMembersByAudioSsrc;
+        long[] ssrcs = index.ssrcs;
+        int i = Arrays.binarySearch(ssrcs, ssrc);
+
+        if (i < 0)
+            return null;
+
+        // The first of the ConferenceMembers with the same SSRC wins.
+        while ((i > 0) && (ssrcs[i - 1] == ssrc))
+            i--;
+        return index.members[i];
+    }
+
+    /**
+     * Rebuilds {@link #conferenceMembersByAudioSsrc} from
+     * {@link #conferenceMembers}. The caller is to synchronize on
+     * {@link #conferenceMembersSyncRoot}.
+     */
+    private void updateConferenceMembersByAudioSsrc()
+    {
+        int memberCount = conferenceMembers.size();
+        long[] ssrcs = new long[memberCount];
+        ConferenceMember[] members = new ConferenceMember[memberCount];
 
-        for (int i = 0, memberCount = members.size(); i < memberCount; i++)
+        /*
+         * Insertion sort which keeps the ConferenceMembers with equal SSRCs in
+         * the order of conferenceMembers.
+         */
+        for (int m = 0; m < memberCount; m++)
         {
-            ConferenceMember member = members.get(i);
+            ConferenceMember member = conferenceMembers.get(m);
+            long ssrc = member.getAudioSsrc();
+            int i = m;
 
-            if (member.getAudioSsrc() == ssrc)
-                return member;
+            for (; (i > 0) && (ssrcs[i - 1] > ssrc); i--)
+            {
+                ssrcs[i] = ssrcs[i - 1];
+                members[i] = members[i - 1];
+            }
+            ssrcs[i] = ssrc;
+            members[i] = member;
         }
-        return null;
+        conferenceMembersByAudioSsrc = new AudioSsrcIndex(ssrcs, members);
     }
 
     /**
@@ -786,6 +854,9 @@ public abstract class AbstractCallPeer<T extends Call,
                         conferenceMembers = newConferenceMembers;
                         unmodifiableConferenceMembers
                             = Collections.unmodifiableList(conferenceMembers);
+                        conferenceMember.removePropertyChangeListener(
+                                conferenceMemberPropertyChangeListener);
+                        updateConferenceMembersByAudioSsrc();
                     }
                     else
                         return;
@@ -903,4 +974,34 @@ public abstract class AbstractCallPeer<T extends Call,
         return getDisplayName() + " <" + getAddress()
             + ">;status=" + getState().getStateString();
     }
+
+    /**
+     * Represents an immutable index of <tt>ConferenceMember</tt>s sorted by
+     * audio SSRC.
+     */
+    private static class AudioSsrcIndex
+    {
+        /**
+         * The <tt>ConferenceMember</tt>s in the order of {@link #ssrcs}.
+         */
+        final ConferenceMember[] members;
+
+        /**
+         * The audio SSRCs of {@link #members} in ascending order.
+         */
+        final long[] ssrcs;
+
+        /**
+         * Initializes a new <tt>AudioSsrcIndex</tt> instance.
+         *
+         * @param ssrcs the audio SSRCs of <tt>members</tt> in ascending order
+         * @param members the <tt>ConferenceMember</tt>s in the order of
+         * <tt>ssrcs</tt>
+         */
+        AudioSsrcIndex(long[] ssrcs, ConferenceMember[] members)
+        {
+            this.ssrcs = ssrcs;
+            this.members = members;
+        }
+    }
 }
@@ -103,6 +103,46 @@ public abstract class AbstractOperationSetTelephonyConferencing<
      */
     protected static final String ELEMENT_USERS = "users";
 
+    /**
+     * The name of the conference-info XML attribute <tt>state</tt>.
+     */
+    protected static final String ATTRIBUTE_STATE = "state";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * indicates that a <tt>user</tt> element has been removed.
+     */
+    protected static final String STATE_DELETED = "deleted";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * indicates that a <tt>conference-info</tt> document carries the full
+     * state of the conference.
+     */
+    protected static final String STATE_FULL = "full";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * indicates that a <tt>conference-info</tt> document carries only the
+     * changes since the previous document.
+     */
+    protected static final String STATE_PARTIAL = "partial";
+
+    /**
+     * The value returned by
+     * {@link #setConferenceInfoXML(MediaAwareCallPeer, int, String)} for a
+     * <tt>state="partial"</tt> document which does not directly follow the
+     * currently represented one and which has therefore not been applied.
+     */
+    protected static final int VERSION_GAP = -2;
+
+    /**
+     * The time in milliseconds during which the changes in a telephony
+     * conference are collected and then sent to the <tt>CallPeer</tt>s in a
+     * single notification.
+     */
+    private static final long NOTIFY_DELAY = 100;
+
     /**
      * The <tt>OperationSetBasicTelephony</tt> implementation which this
      * instance uses to carry out tasks such as establishing <tt>Call</tt>s.
@@ -156,6 +196,20 @@ public abstract class AbstractOperationSetTelephonyConferencing<
      */
     protected final ProtocolProviderServiceT parentProvider;
 
+    /**
+     * The <tt>Call</tt>s which have changed in their telephony
+     * conference-related information since the last notification of their
+     * <tt>CallPeer</tt>s.
+     */
+    private final Set<Call> callsToNotify = new LinkedHashSet<Call>();
+
+    /**
+     * The timer which sends the notifications about the {@link #callsToNotify}
+     * in a thread of this instance so that a slow network does not delay the
+     * tasks of other components.
+     */
+    private final TimerScheduler notifyTimer = new TimerScheduler();
+
     /**
      * Initializes a new <tt>AbstractOperationSetTelephonyConferencing</tt>
      * instance which is to provide telephony conferencing services for the
@@ -599,14 +653,69 @@ public abstract class AbstractOperationSetTelephonyConferencing<
     /**
      * Notifies all <tt>CallPeer</tt>s associated with the telephony conference
      * in which a specific <tt>Call</tt> is participating about changes in the
-     * telephony conference-related information.
+     * telephony conference-related information. The notification is sent
+     * after {@link #NOTIFY_DELAY} so that a burst of changes such as a number
+     * of <tt>CallPeer</tt>s joining at once results in a single notification.
      *
      * @param call the <tt>Call</tt> which specifies the telephony conference
      * the associated <tt>CallPeer</tt>s of which are to be notified about
      * changes in the telephony conference-related information
      */
-    @SuppressWarnings("rawtypes")
     protected void notifyAll(Call call)
+    {
+        synchronized (callsToNotify)
+        {
+            if (!callsToNotify.add(call) || (callsToNotify.size() != 1))
+                return;
+        }
+
+        SharedTimer.Task notifyTask
+            = new SharedTimer.Task()
+            {
+                @Override
+                public void run()
+                {
+                    Call[] calls;
+
+                    synchronized (callsToNotify)
+                    {
+                        calls
+                            = callsToNotify.toArray(
+                                    new Call[callsToNotify.size()]);
+                        callsToNotify.clear();
+                    }
+                    for (Call call : calls)
+                    {
+                        try
+                        {
+                            notifyAllNow(call);
+                        }
+                        catch (Throwable t)
+                        {
+                            if (t instanceof ThreadDeath)
+                                throw (ThreadDeath) t;
+                            logger.error(
+                                    "Failed to notify the CallPeers of " + call,
+                                    t);
+                        }
+                    }
+                }
+            };
+
+        notifyTimer.schedule(notifyTask, NOTIFY_DELAY);
+    }
+
+    /**
+     * Notifies all <tt>CallPeer</tt>s associated with the telephony conference
+     * in which a specific <tt>Call</tt> is participating about changes in the
+     * telephony conference-related information without delay.
+     *
+     * @param call the <tt>Call</tt> which specifies the telephony conference
+     * the associated <tt>CallPeer</tt>s of which are to be notified about
+     * changes in the telephony conference-related information
+     */
+    @SuppressWarnings("rawtypes")
+    private void notifyAllNow(Call call)
     {
         CallConference conference = call.getConference();
 
@@ -768,6 +877,16 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                     AbstractCallPeer.NO_CONFERENCE_MEMBERS);
         int toRemoveCount = toRemove.length;
         boolean changed = false;
+        /*
+         * A partial conference-info document carries only the users which
+         * have changed so the ones which are not in it are to be kept unless
+         * they are explicitly deleted.
+         */
+        boolean partial
+            = STATE_PARTIAL.equals(
+                    conferenceInfoDocument.getDocumentElement().getAttribute(
+                            ATTRIBUTE_STATE));
+        List<ConferenceMember> deleted = new ArrayList<ConferenceMember>();
 
         if (usersList.getLength() > 0)
         {
@@ -812,6 +931,14 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                     }
                 }
 
+                if (STATE_DELETED.equals(
+                        ((Element) user).getAttribute(ATTRIBUTE_STATE)))
+                {
+                    if (conferenceMember != null)
+                        deleted.add(conferenceMember);
+                    continue;
+                }
+
                 // Create the new ones.
                 boolean addConferenceMember;
 
@@ -875,16 +1002,22 @@ public abstract class AbstractOperationSetTelephonyConferencing<
         }
 
         /*
-         * Remove the ConferenceMember instances which are no longer present in
-         * the conference-info XML document.
+         * Remove the ConferenceMember instances which are deleted by or, in
+         * the case of a full conference-info XML document, no longer present
+         * in the conference-info XML document.
          */
-        for (int i = 0; i < toRemoveCount; i++)
+        if (!partial)
         {
-            ConferenceMember conferenceMemberToRemove = toRemove[i];
+            for (int i = 0; i < toRemoveCount; i++)
+            {
+                ConferenceMember conferenceMemberToRemove = toRemove[i];
 
-            if (conferenceMemberToRemove != null)
-                callPeer.removeConferenceMember(conferenceMemberToRemove);
+                if (conferenceMemberToRemove != null)
+                    deleted.add(conferenceMemberToRemove);
+            }
         }
+        for (ConferenceMember conferenceMemberToRemove : deleted)
+            callPeer.removeConferenceMember(conferenceMemberToRemove);
 
         if (changed)
             notifyAll(callPeer.getCall());
@@ -907,7 +1040,10 @@ public abstract class AbstractOperationSetTelephonyConferencing<
      * @return the value of the <tt>version</tt> attribute of the
      * <tt>conference-info</tt> XML element of the specified
      * <tt>conferenceInfoXML</tt> if it was successfully parsed and represented
-     * in the specified <tt>callPeer</tt>
+     * in the specified <tt>callPeer</tt>; {@link #VERSION_GAP} if it is a
+     * <tt>state="partial"</tt> document and one or more documents between
+     * <tt>version</tt> and it have been missed so the full state of the
+     * conference is to be requested again; otherwise, <tt>-1</tt>
      */
     protected int setConferenceInfoXML(
             MediaAwareCallPeerT callPeer,
@@ -964,6 +1100,21 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                 = Integer.parseInt(
                         doc.getDocumentElement().getAttribute("version"));
 
+            /*
+             * A partial document only carries the changes since the previous
+             * one so it cannot be applied if any has been missed.
+             */
+            if ((version != -1)
+                    && (documentVersion > version + 1)
+                    && STATE_PARTIAL.equals(
+                            doc.getDocumentElement().getAttribute(
+                                    ATTRIBUTE_STATE)))
+            {
+                logger.warn(
+                        "Missed conference-info versions between " + version
+                            + " and " + documentVersion);
+                return VERSION_GAP;
+            }
             if ((version == -1) || (documentVersion >= version))
             {
                 setConferenceInfoDocument(callPeer, doc);
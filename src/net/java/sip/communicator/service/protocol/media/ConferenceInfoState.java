@@ -0,0 +1,135 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.protocol.media;
+
+import java.util.*;
+
+/**
+ * Represents the conference-info last sent by a conference focus to one of
+ * its subscribers so that the next notification may carry only the
+ * <tt>user</tt> elements which have changed since as described by RFC 4575
+ * for <tt>state="partial"</tt> documents. A document generated from
+ * {@link #update(Map)} only becomes the base of the next one when it is
+ * reported sent with {@link #commit()} so that the changes carried in a
+ * document which never reaches the subscriber are carried in the next one.
+ * The instances are not thread-safe and are to be accessed by a single
+ * subscription.
+ *
+ * @author agent
+ */
+public class ConferenceInfoState
+{
+    /**
+     * The serialized <tt>user</tt> elements of the document generated from the
+     * last call to {@link #update(Map)} which has not been committed yet or
+     * <tt>null</tt> if there is no such document.
+     */
+    private Map<String, String> pendingUsers = null;
+
+    /**
+     * The serialized <tt>user</tt> elements last sent to the subscriber keyed
+     * by their <tt>entity</tt> or <tt>null</tt> if the next document has to
+     * carry the full state.
+     */
+    private Map<String, String> users = null;
+
+    /**
+     * The value of the <tt>version</tt> attribute of the next
+     * <tt>conference-info</tt> document to be sent to the subscriber.
+     */
+    private int version = 1;
+
+    /**
+     * Notes that the document generated from the last call to
+     * {@link #update(Map)} has been sent to the subscriber so that the next
+     * one carries the changes since it and has the next version.
+     */
+    public void commit()
+    {
+        if (pendingUsers != null)
+        {
+            users = pendingUsers;
+            pendingUsers = null;
+            version++;
+        }
+    }
+
+    /**
+     * Returns the value of the <tt>version</tt> attribute of the next
+     * <tt>conference-info</tt> document to be sent to the subscriber. The
+     * value advances with every {@link #commit()}.
+     *
+     * @return the value of the <tt>version</tt> attribute of the next
+     * <tt>conference-info</tt> document to be sent to the subscriber
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Determines whether the next <tt>conference-info</tt> document to be
+     * sent to the subscriber has to carry the full state of the conference
+     * i.e. whether nothing has been sent to the subscriber yet or
+     * {@link #reset()} has been called since.
+     *
+     * @return <tt>true</tt> if the next <tt>conference-info</tt> document is
+     * to be a <tt>state="full"</tt> one; otherwise, <tt>false</tt>
+     */
+    public boolean isFullStateRequired()
+    {
+        return (users == null);
+    }
+
+    /**
+     * Forgets what has been sent to the subscriber so that the next
+     * <tt>conference-info</tt> document carries the full state of the
+     * conference (e.g. because the subscriber has refreshed its subscription
+     * and may have missed a notification). The version keeps advancing.
+     */
+    public void reset()
+    {
+        users = null;
+        pendingUsers = null;
+    }
+
+    /**
+     * Remembers the current <tt>user</tt> elements of the conference as the
+     * ones of the next document and returns the ones which have changed since
+     * the last committed one.
+     *
+     * @param users the serialized <tt>user</tt> elements of the conference
+     * keyed by their <tt>entity</tt>
+     * @return the <tt>user</tt> elements which are new or have changed keyed by
+     * their <tt>entity</tt> and the entities of the removed <tt>user</tt>
+     * elements mapped to <tt>null</tt>; all of <tt>users</tt> if
+     * {@link #isFullStateRequired()}
+     */
+    public Map<String, String> update(Map<String, String> users)
+    {
+        Map<String, String> changes = new LinkedHashMap<String, String>();
+
+        if (this.users == null)
+            changes.putAll(users);
+        else
+        {
+            for (Map.Entry<String, String> user : users.entrySet())
+            {
+                if (!user.getValue().equals(this.users.get(user.getKey())))
+                    changes.put(user.getKey(), user.getValue());
+            }
+            for (String entity : this.users.keySet())
+            {
+                if (!users.containsKey(entity))
+                    changes.put(entity, null);
+            }
+        }
+
+        pendingUsers = new HashMap<String, String>(users);
+        return changes;
+    }
+}
@@ -51,6 +51,15 @@ public abstract class MediaAwareCallPeer
     private static final Logger logger
         = Logger.getLogger(MediaAwareCallPeer.class);
 
+    /**
+     * The minimum interval in milliseconds between two consecutive
+     * <tt>ConferenceMembersSoundLevelEvent</tt>s fired by a
+     * <tt>MediaAwareCallPeer</tt>. The audio levels of the conference members
+     * are received with every RTP packet but the UI does not need them more
+     * often than 20 times per second.
+     */
+    private static final long CONFERENCE_MEMBERS_SOUND_LEVEL_INTERVAL = 50;
+
     /**
      * The call this peer belongs to.
      */
@@ -65,6 +74,12 @@ public abstract class MediaAwareCallPeer
         conferenceMembersSoundLevelListeners
             = new ArrayList<ConferenceMembersSoundLevelListener>();
 
+    /**
+     * The time in milliseconds at which the last
+     * <tt>ConferenceMembersSoundLevelEvent</tt> was fired.
+     */
+    private long lastConferenceMembersSoundLevelTime;
+
     /**
      * A byte array containing the image/photo representing the call peer.
      */
@@ -334,7 +349,10 @@ public abstract class MediaAwareCallPeer
      * Implements {@link CsrcAudioLevelListener#audioLevelsReceived(long[])}.
      * Delivers the received audio levels to the
      * {@link ConferenceMembersSoundLevelListener}s registered with this
-     * <tt>MediaAwareCallPeer</tt>..
+     * <tt>MediaAwareCallPeer</tt> at most once per
+     * {@link #CONFERENCE_MEMBERS_SOUND_LEVEL_INTERVAL}. The levels received
+     * in between are dropped because each delivery carries the latest levels
+     * of all conference members anyway.
      *
      * @param audioLevels the levels that we need to dispatch to all registered
      * <tt>ConferenceMemberSoundLevelListeners</tt>.
@@ -367,6 +385,20 @@ public abstract class MediaAwareCallPeer
         if (getConferenceMemberCount() == 0)
             return;
 
+        synchronized (conferenceMembersSoundLevelListeners)
+        {
+            if (conferenceMembersSoundLevelListeners.isEmpty())
+                return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if ((now >= lastConferenceMembersSoundLevelTime)
+                && (now - lastConferenceMembersSoundLevelTime
+                        < CONFERENCE_MEMBERS_SOUND_LEVEL_INTERVAL))
+            return;
+        lastConferenceMembersSoundLevelTime = now;
+
         Map<ConferenceMember, Integer> levelsMap
             = new HashMap<ConferenceMember, Integer>();
 
@@ -7,6 +7,8 @@
 package net.java.sip.communicator.util;
 
 import java.io.*;
+import java.lang.ref.*;
+import java.util.*;
 
 import org.jitsi.service.fileaccess.*;
 
@@ -32,6 +34,27 @@ public class AvatarCacheUtils
      */
     private final static String AVATAR_DIR = "avatarcache";
 
+    /**
+     * The name (i.e. not the whole path) of the directory in
+     * {@link #AVATAR_DIR} in which the avatar files are cached by the
+     * hexadecimal representation of the SHA-1 hashes of their contents.
+     */
+    private final static String HASH_DIR = "sha1";
+
+    /**
+     * The number of entries in {@link #avatarsByHash} above which the entries
+     * of the avatars which have been garbage collected are purged.
+     */
+    private final static int AVATARS_BY_HASH_PURGE_THRESHOLD = 256;
+
+    /**
+     * The avatars in memory keyed by the hexadecimal representation of the
+     * SHA-1 hashes of their contents so that contacts with the same avatar
+     * share one and the same array of bytes.
+     */
+    private final static Map<String, SoftReference<byte[]>> avatarsByHash
+        = new HashMap<String, SoftReference<byte[]>>();
+
     /**
      *  Characters and their replacement in created folder names
      */
@@ -49,6 +72,133 @@ public class AvatarCacheUtils
         {"\\|", "&_pp"}     // the char |
     };
 
+    /**
+     * Stores the bytes of an avatar by the hexadecimal representation of the
+     * SHA-1 hash of its contents both in memory and on disk. If the bytes of
+     * an avatar with the same hash are already in memory, they are returned
+     * so that callers can share them.
+     *
+     * @param sha1 the hexadecimal representation of the SHA-1 hash of
+     * <tt>avatarBytes</tt>
+     * @param avatarBytes the bytes of the avatar image
+     * @return the bytes of the avatar with the hash <tt>sha1</tt> to be used
+     * by the caller instead of <tt>avatarBytes</tt>
+     */
+    public static byte[] cacheAvatarByHash(String sha1, byte[] avatarBytes)
+    {
+        if (!isValidHash(sha1) || (avatarBytes == null))
+            return avatarBytes;
+
+        String key = sha1.toLowerCase();
+
+        synchronized (avatarsByHash)
+        {
+            SoftReference<byte[]> ref = avatarsByHash.get(key);
+            byte[] cached = (ref == null) ? null : ref.get();
+
+            if (cached != null)
+                return cached;
+
+            putAvatarByHash(key, avatarBytes);
+        }
+
+        cacheAvatar(AVATAR_DIR + File.separator + HASH_DIR, key, avatarBytes);
+        return avatarBytes;
+    }
+
+    /**
+     * Returns the bytes of the avatar with a specific hexadecimal
+     * representation of the SHA-1 hash of its contents from memory or, if
+     * they are not in memory, from disk.
+     *
+     * @param sha1 the hexadecimal representation of the SHA-1 hash of the
+     * contents of the avatar to be returned
+     * @return the bytes of the avatar with the hash <tt>sha1</tt> or
+     * <tt>null</tt> if no such avatar has been cached
+     */
+    public static byte[] getCachedAvatarByHash(String sha1)
+    {
+        if (!isValidHash(sha1))
+            return null;
+
+        String key = sha1.toLowerCase();
+
+        synchronized (avatarsByHash)
+        {
+            SoftReference<byte[]> ref = avatarsByHash.get(key);
+            byte[] cached = (ref == null) ? null : ref.get();
+
+            if (cached != null)
+                return cached;
+        }
+
+        byte[] avatarBytes
+            = getLocallyStoredAvatar(
+                    AVATAR_DIR + File.separator + HASH_DIR + File.separator
+                        + key);
+
+        if ((avatarBytes == null) || (avatarBytes.length == 0))
+            return null;
+
+        synchronized (avatarsByHash)
+        {
+            SoftReference<byte[]> ref = avatarsByHash.get(key);
+            byte[] cached = (ref == null) ? null : ref.get();
+
+            if (cached != null)
+                return cached;
+
+            putAvatarByHash(key, avatarBytes);
+        }
+        return avatarBytes;
+    }
+
+    /**
+     * Determines whether a specific <tt>String</tt> is a valid hexadecimal
+     * representation of a hash and may therefore be used as a file name.
+     *
+     * @param sha1 the <tt>String</tt> to check
+     * @return <tt>true</tt> if <tt>sha1</tt> is a non-empty string of
+     * hexadecimal digits; otherwise, <tt>false</tt>
+     */
+    private static boolean isValidHash(String sha1)
+    {
+        if ((sha1 == null) || (sha1.length() == 0))
+            return false;
+
+        for (int i = 0, length = sha1.length(); i < length; i++)
+        {
+            if (Character.digit(sha1.charAt(i), 16) == -1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Puts an avatar into {@link #avatarsByHash} and purges the entries of the
+     * avatars which have been garbage collected if necessary. The caller must
+     * hold the lock of <tt>avatarsByHash</tt>.
+     *
+     * @param key the lower-case hexadecimal representation of the SHA-1 hash
+     * of <tt>avatarBytes</tt>
+     * @param avatarBytes the bytes of the avatar
+     */
+    private static void putAvatarByHash(String key, byte[] avatarBytes)
+    {
+        if (avatarsByHash.size() >= AVATARS_BY_HASH_PURGE_THRESHOLD)
+        {
+            Iterator<SoftReference<byte[]>> iter
+                = avatarsByHash.values().iterator();
+
+            while (iter.hasNext())
+            {
+                if (iter.next().get() == null)
+                    iter.remove();
+            }
+        }
+        avatarsByHash.put(key, new SoftReference<byte[]>(avatarBytes));
+    }
+
     /**
      * Returns the bytes of the avatar image stored for the account
      * corresponding to the given protocol provider.
@@ -0,0 +1,595 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.io.*;
+import java.net.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.net.*;
+
+import net.java.sip.communicator.service.dns.*;
+
+/**
+ * Races TCP connections to the addresses a server name resolves to in the
+ * fashion of "Happy Eyeballs" (RFC 6555/8305): the targets of SRV records are
+ * resolved concurrently, the addresses of the two IP families are interleaved
+ * and connection attempts are started one after another with a short delay
+ * without waiting for the previous attempts to time out. The first socket which
+ * connects wins and the other attempts are cancelled. Thus a broken address
+ * family (e.g. IPv6 on mobile networks) or a dead SRV target no longer delays
+ * the connection by a full connect timeout each.
+ *
+ * @author agent
+ */
+public class ConnectionRacer
+{
+    /**
+     * Resolves a host name and a port into the socket addresses to connect
+     * to.
+     */
+    public interface Resolver
+    {
+        /**
+         * Resolves a specific host name into socket addresses with a specific
+         * port.
+         *
+         * @param target the host name to resolve
+         * @param port the port of the returned addresses
+         * @return the resolved addresses or <tt>null</tt>
+         * @throws ParseException if <tt>target</tt> is not a valid domain name
+         * @throws DnssecException when a DNSSEC validation failure occurred
+         */
+        public InetSocketAddress[] resolve(String target, int port)
+            throws ParseException, DnssecException;
+    }
+
+    /**
+     * The default delay in milliseconds between the starts of two subsequent
+     * connection attempts as recommended by RFC 8305.
+     */
+    public static final long DEFAULT_ATTEMPT_DELAY = 250;
+
+    /**
+     * The default timeout in milliseconds of a single connection attempt.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * The <tt>Resolver</tt> which queries the A and AAAA records through
+     * {@link NetworkUtils#getAandAAAARecords(String, int)}.
+     */
+    public static final Resolver DNS_RESOLVER
+        = new Resolver()
+        {
+            public InetSocketAddress[] resolve(String target, int port)
+                throws ParseException, DnssecException
+            {
+                return NetworkUtils.getAandAAAARecords(target, port);
+            }
+        };
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>ConnectionRacer</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(ConnectionRacer.class);
+
+    /**
+     * The pool of threads which resolve the names and run the connection
+     * attempts of all <tt>ConnectionRacer</tt>s. Idle threads die so that the
+     * pool does not hold any threads in between connects.
+     */
+    private static final ExecutorService executor
+        = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE,
+                30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t
+                            = new Thread(r, ConnectionRacer.class.getName());
+
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+    /**
+     * The delay in milliseconds between the starts of two subsequent
+     * connection attempts.
+     */
+    private final long attemptDelay;
+
+    /**
+     * The timeout in milliseconds of a single connection attempt.
+     */
+    private final int connectTimeout;
+
+    /**
+     * The addresses which have refused the connection or have timed out
+     * during the last race.
+     */
+    private final List<InetSocketAddress> failedAddresses
+        = new ArrayList<InetSocketAddress>();
+
+    /**
+     * Initializes a new <tt>ConnectionRacer</tt> instance with the default
+     * attempt delay and connect timeout.
+     */
+    public ConnectionRacer()
+    {
+        this(DEFAULT_ATTEMPT_DELAY, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Initializes a new <tt>ConnectionRacer</tt> instance.
+     *
+     * @param attemptDelay the delay in milliseconds between the starts of two
+     * subsequent connection attempts
+     * @param connectTimeout the timeout in milliseconds of a single connection
+     * attempt
+     */
+    public ConnectionRacer(long attemptDelay, int connectTimeout)
+    {
+        this.attemptDelay = attemptDelay;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Creates a <tt>SocketFactory</tt> which hands out a specific connected
+     * <tt>Socket</tt> to the first request for its remote address and creates
+     * new <tt>Socket</tt>s for any other request.
+     *
+     * @param socket the connected <tt>Socket</tt> to hand out
+     * @return a <tt>SocketFactory</tt> which hands out <tt>socket</tt>
+     */
+    public static SocketFactory createSocketFactory(final Socket socket)
+    {
+        return
+            new SocketFactory()
+            {
+                private Socket connected = socket;
+
+                public synchronized Socket createSocket(String host, int port)
+                    throws IOException
+                {
+                    Socket connected = this.connected;
+
+                    if ((connected != null)
+                            && (connected.getPort() == port)
+                            && host.equals(
+                                    connected.getInetAddress()
+                                        .getHostAddress()))
+                    {
+                        this.connected = null;
+                        if (!connected.isClosed())
+                            return connected;
+                    }
+                    return new Socket(host, port);
+                }
+
+                public Socket createSocket(
+                        String host, int port,
+                        InetAddress localHost, int localPort)
+                    throws IOException
+                {
+                    return new Socket(host, port, localHost, localPort);
+                }
+
+                public Socket createSocket(InetAddress host, int port)
+                    throws IOException
+                {
+                    return createSocket(host.getHostAddress(), port);
+                }
+
+                public Socket createSocket(
+                        InetAddress address, int port,
+                        InetAddress localAddress, int localPort)
+                    throws IOException
+                {
+                    return new Socket(address, port, localAddress, localPort);
+                }
+            };
+    }
+
+    /**
+     * Gets the addresses which have refused the connection or have timed out
+     * during the last race.
+     *
+     * @return the addresses which have failed during the last race
+     */
+    public List<InetSocketAddress> getFailedAddresses()
+    {
+        synchronized (failedAddresses)
+        {
+            return new ArrayList<InetSocketAddress>(failedAddresses);
+        }
+    }
+
+    /**
+     * Orders specific addresses so that the two IP families alternate,
+     * starting with the family of the first address. The order of the
+     * addresses within a family is preserved.
+     *
+     * @param addresses the addresses to order
+     * @return the interleaved addresses
+     */
+    public static InetSocketAddress[] interleave(InetSocketAddress[] addresses)
+    {
+        if (addresses.length < 2)
+            return addresses;
+
+        List<InetSocketAddress> first = new ArrayList<InetSocketAddress>();
+        List<InetSocketAddress> second = new ArrayList<InetSocketAddress>();
+        boolean firstIsIPv6
+            = addresses[0].getAddress() instanceof Inet6Address;
+
+        for (InetSocketAddress address : addresses)
+        {
+            if ((address.getAddress() instanceof Inet6Address) == firstIsIPv6)
+                first.add(address);
+            else
+                second.add(address);
+        }
+
+        InetSocketAddress[] interleaved
+            = new InetSocketAddress[addresses.length];
+        int i = 0;
+
+        for (int f = 0, s = 0; i < interleaved.length;)
+        {
+            if (f < first.size())
+                interleaved[i++] = first.get(f++);
+            if (s < second.size())
+                interleaved[i++] = second.get(s++);
+        }
+        return interleaved;
+    }
+
+    /**
+     * Orders specific addresses by the outcome of the last race: the address
+     * of the winning <tt>Socket</tt> comes first followed by the addresses
+     * which have neither won nor failed in their original order.
+     *
+     * @param addresses the addresses which have been raced
+     * @param winner the <tt>Socket</tt> returned by the last race or
+     * <tt>null</tt>
+     * @return the addresses worth trying in the order to try them or
+     * <tt>addresses</tt> if none of them has won the last race
+     */
+    public InetSocketAddress[] rank(InetSocketAddress[] addresses, Socket winner)
+    {
+        if (winner == null)
+            return addresses;
+
+        SocketAddress winnerAddress = winner.getRemoteSocketAddress();
+        List<InetSocketAddress> failed = getFailedAddresses();
+        List<InetSocketAddress> ranked
+            = new ArrayList<InetSocketAddress>(addresses.length);
+
+        for (InetSocketAddress address : addresses)
+        {
+            if (address.equals(winnerAddress))
+                ranked.add(0, address);
+            else if (!failed.contains(address))
+                ranked.add(address);
+        }
+        return ranked.toArray(new InetSocketAddress[ranked.size()]);
+    }
+
+    /**
+     * Resolves the targets of specific SRV records concurrently.
+     *
+     * @param srvRecords the SRV records to resolve the targets of
+     * @param resolver the <tt>Resolver</tt> to resolve the targets with
+     * @param exceptions an array with the length of <tt>srvRecords</tt> which
+     * receives the exceptions thrown by <tt>resolver</tt> for the respective
+     * SRV records
+     * @return an array with the length of <tt>srvRecords</tt> which contains
+     * the addresses of the respective SRV records or <tt>null</tt> where they
+     * could not be resolved
+     */
+    public static InetSocketAddress[][] resolve(
+            SRVRecord[] srvRecords,
+            final Resolver resolver,
+            Exception[] exceptions)
+    {
+        int count = srvRecords.length;
+        InetSocketAddress[][] addresses = new InetSocketAddress[count][];
+        List<Future<InetSocketAddress[]>> futures
+            = new ArrayList<Future<InetSocketAddress[]>>(count);
+
+        /*
+         * The first target is resolved in the calling thread because it has to
+         * wait anyway.
+         */
+        for (int i = 1; i < count; i++)
+        {
+            final SRVRecord srv = srvRecords[i];
+            Future<InetSocketAddress[]> future;
+
+            try
+            {
+                future
+                    = executor.submit(
+                            new Callable<InetSocketAddress[]>()
+                            {
+                                public InetSocketAddress[] call()
+                                    throws Exception
+                                {
+                                    return
+                                        resolver.resolve(
+                                                srv.getTarget(),
+                                                srv.getPort());
+                                }
+                            });
+            }
+            catch (RejectedExecutionException ree)
+            {
+                future = null;
+            }
+            futures.add(future);
+        }
+
+        boolean interrupted = false;
+
+        for (int i = 0; i < count; i++)
+        {
+            Future<InetSocketAddress[]> future
+                = (i == 0) ? null : futures.get(i - 1);
+
+            try
+            {
+                if (future == null)
+                {
+                    addresses[i]
+                        = resolver.resolve(
+                                srvRecords[i].getTarget(),
+                                srvRecords[i].getPort());
+                }
+                else
+                {
+                    while (true)
+                    {
+                        try
+                        {
+                            addresses[i] = future.get();
+                            break;
+                        }
+                        catch (InterruptedException ie)
+                        {
+                            interrupted = true;
+                        }
+                    }
+                }
+            }
+            catch (ExecutionException ee)
+            {
+                Throwable cause = ee.getCause();
+
+                exceptions[i]
+                    = (cause instanceof Exception)
+                        ? (Exception) cause
+                        : new Exception(cause);
+            }
+            catch (Exception e)
+            {
+                exceptions[i] = e;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return addresses;
+    }
+
+    /**
+     * Races TCP connections to specific addresses. The attempts are started in
+     * the order of the addresses, each <tt>attemptDelay</tt> milliseconds after
+     * the previous one or immediately after the previous one has failed. The
+     * first attempt which succeeds wins and the other attempts are cancelled.
+     *
+     * @param addresses the addresses to connect to in order of preference
+     * @return the connected <tt>Socket</tt> of the winning attempt or
+     * <tt>null</tt> if none of <tt>addresses</tt> accepted a connection
+     */
+    public Socket race(InetSocketAddress[] addresses)
+    {
+        synchronized (failedAddresses)
+        {
+            failedAddresses.clear();
+        }
+        if (addresses.length == 0)
+            return null;
+
+        BlockingQueue<Attempt> completed = new LinkedBlockingQueue<Attempt>();
+        List<Attempt> attempts = new ArrayList<Attempt>(addresses.length);
+        Attempt winner = null;
+        int next = 0;
+        int running = 0;
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            while ((winner == null)
+                    && ((next < addresses.length) || (running > 0)))
+            {
+                if (next < addresses.length)
+                {
+                    Attempt attempt
+                        = new Attempt(addresses[next++], completed);
+
+                    attempts.add(attempt);
+                    try
+                    {
+                        executor.execute(attempt);
+                        running++;
+                    }
+                    catch (RejectedExecutionException ree)
+                    {
+                        logger.error("Failed to start connect attempt", ree);
+                        continue;
+                    }
+                }
+
+                Attempt attempt
+                    = (next < addresses.length)
+                        ? completed.poll(attemptDelay, TimeUnit.MILLISECONDS)
+                        : completed.take();
+
+                /*
+                 * A failure starts the next attempt immediately so drain all
+                 * completions which have piled up.
+                 */
+                while (attempt != null)
+                {
+                    running--;
+                    if (attempt.socket == null)
+                    {
+                        synchronized (failedAddresses)
+                        {
+                            failedAddresses.add(attempt.address);
+                        }
+                    }
+                    else if (winner == null)
+                        winner = attempt;
+                    attempt = completed.poll();
+                }
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            for (Attempt attempt : attempts)
+            {
+                if (attempt != winner)
+                    attempt.cancel();
+            }
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    ((winner == null)
+                        ? "No address accepted a connection"
+                        : ("Connected to " + winner.address))
+                        + " after " + (System.currentTimeMillis() - startTime)
+                        + " ms and " + attempts.size() + " attempts");
+        }
+        return (winner == null) ? null : winner.socket;
+    }
+
+    /**
+     * Represents a single attempt to connect to a specific address.
+     */
+    private class Attempt
+        implements Runnable
+    {
+        /**
+         * The address to connect to.
+         */
+        final InetSocketAddress address;
+
+        /**
+         * Whether {@link #cancel()} has been invoked.
+         */
+        private boolean cancelled = false;
+
+        /**
+         * The queue to put this <tt>Attempt</tt> into upon completion.
+         */
+        private final BlockingQueue<Attempt> completed;
+
+        /**
+         * The connected <tt>Socket</tt> or <tt>null</tt> if this
+         * <tt>Attempt</tt> has failed or has not completed yet.
+         */
+        Socket socket;
+
+        /**
+         * The <tt>Socket</tt> which is being connected.
+         */
+        private Socket connecting;
+
+        Attempt(InetSocketAddress address, BlockingQueue<Attempt> completed)
+        {
+            this.address = address;
+            this.completed = completed;
+        }
+
+        /**
+         * Cancels this <tt>Attempt</tt> and closes its <tt>Socket</tt>
+         * whether it is still connecting or has already connected.
+         */
+        synchronized void cancel()
+        {
+            cancelled = true;
+            if (connecting != null)
+                closeSocket(connecting);
+        }
+
+        private void closeSocket(Socket socket)
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ioe)
+            {
+                // The attempt is being abandoned anyway.
+            }
+        }
+
+        public void run()
+        {
+            Socket socket = new Socket();
+            boolean connected = false;
+
+            synchronized (this)
+            {
+                if (cancelled)
+                    return;
+                connecting = socket;
+            }
+            try
+            {
+                socket.connect(address, connectTimeout);
+                connected = true;
+            }
+            catch (IOException ioe)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Failed to connect to " + address, ioe);
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    if (connected && cancelled)
+                    {
+                        closeSocket(socket);
+                        connected = false;
+                    }
+                    if (connected)
+                        this.socket = socket;
+                    else
+                        closeSocket(socket);
+                }
+                completed.add(this);
+            }
+        }
+    }
+}
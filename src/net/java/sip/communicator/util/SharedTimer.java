@@ -0,0 +1,579 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Executes the delayed and periodic tasks of all components in a single
+ * daemon thread instead of a <tt>java.util.Timer</tt> thread per component.
+ * <p>
+ * The execution time of every task is rounded up to a multiple of a window
+ * which grows with the delay of the task (up to {@link #MAX_WINDOW}) so that
+ * tasks with similar deadlines are executed together and the device is woken
+ * up less often. A task is therefore never executed earlier than requested
+ * and late by less than a sixteenth of its delay. The thread sleeps until the
+ * next deadline and does not tick while there is nothing to execute.
+ * </p>
+ * <p>
+ * The tasks are executed one after another in the thread of the timer so
+ * they should return quickly and hand lengthy work over to other threads.
+ * Tasks which may block, for example on the network, may instead be
+ * scheduled with an <tt>Executor</tt> which the timer hands them over to
+ * when they are due.
+ * </p>
+ *
+ * @author agent
+ */
+public class SharedTimer
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>SharedTimer</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(SharedTimer.class);
+
+    /**
+     * The maximum window in milliseconds to the multiples of which the
+     * execution times of the tasks are rounded up.
+     */
+    private static final long MAX_WINDOW = 1024;
+
+    /**
+     * The single instance of <tt>SharedTimer</tt>.
+     */
+    private static final SharedTimer instance = new SharedTimer();
+
+    /**
+     * Gets the single instance of <tt>SharedTimer</tt>.
+     *
+     * @return the single instance of <tt>SharedTimer</tt>
+     */
+    public static SharedTimer getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * The time in milliseconds by which the last executed task was late
+     * beyond its (rounded) execution time.
+     */
+    private long lastSchedulingLag;
+
+    /**
+     * The maximum time in milliseconds by which a task was late beyond its
+     * (rounded) execution time.
+     */
+    private long maxSchedulingLag;
+
+    /**
+     * The scheduled tasks ordered by their next execution time. Also
+     * synchronizes the state of the tasks.
+     */
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+
+    /**
+     * The number which orders the tasks with equal execution times in the
+     * order of their scheduling.
+     */
+    private long sequence;
+
+    /**
+     * The thread which executes the tasks or <tt>null</tt> if it has not been
+     * started yet.
+     */
+    private Thread thread;
+
+    /**
+     * Prevents the initialization of <tt>SharedTimer</tt> instances other
+     * than {@link #instance}.
+     */
+    private SharedTimer()
+    {
+    }
+
+    /**
+     * Rounds up a specific execution time to a multiple of the window which
+     * corresponds to a specific delay.
+     *
+     * @param time the execution time to round up
+     * @param delay the delay in milliseconds after which <tt>time</tt> comes
+     * @return <tt>time</tt> rounded up to a multiple of the window of
+     * <tt>delay</tt>
+     */
+    private static long align(long time, long delay)
+    {
+        long window = Math.min(Long.highestOneBit(delay / 16), MAX_WINDOW);
+
+        if (window <= 1)
+            return time;
+        return ((time + window - 1) / window) * window;
+    }
+
+    /**
+     * Gets the maximum time in milliseconds by which a task was executed
+     * later than its (rounded) execution time.
+     *
+     * @return the maximum time in milliseconds by which a task was executed
+     * later than its (rounded) execution time
+     */
+    public long getMaxSchedulingLag()
+    {
+        synchronized (queue)
+        {
+            return maxSchedulingLag;
+        }
+    }
+
+    /**
+     * Gets the number of tasks which are scheduled for execution.
+     *
+     * @return the number of tasks which are scheduled for execution
+     */
+    public int getPendingTaskCount()
+    {
+        synchronized (queue)
+        {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Gets the time in milliseconds by which the last executed task was
+     * executed later than its (rounded) execution time.
+     *
+     * @return the time in milliseconds by which the last executed task was
+     * executed later than its (rounded) execution time
+     */
+    public long getSchedulingLag()
+    {
+        synchronized (queue)
+        {
+            return lastSchedulingLag;
+        }
+    }
+
+    /**
+     * Executes the tasks when their execution times come.
+     */
+    private void runInThread()
+    {
+        while (true)
+        {
+            Task task;
+
+            synchronized (queue)
+            {
+                task = queue.peek();
+
+                long now = System.currentTimeMillis();
+
+                if (task == null)
+                {
+                    try
+                    {
+                        queue.wait();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                    }
+                    continue;
+                }
+                else if (task.executionTime > now)
+                {
+                    try
+                    {
+                        queue.wait(task.executionTime - now);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                    }
+                    continue;
+                }
+
+                queue.poll();
+                lastSchedulingLag = now - task.executionTime;
+                if (maxSchedulingLag < lastSchedulingLag)
+                    maxSchedulingLag = lastSchedulingLag;
+                task.lastExecutionTime = task.executionTime;
+
+                if (task.period == 0)
+                    task.state = Task.EXECUTED;
+                else
+                {
+                    long period = Math.abs(task.period);
+
+                    /*
+                     * A fixed-rate task keeps to its original times whereas
+                     * a fixed-delay task is rescheduled relative to now.
+                     */
+                    if (task.period < 0)
+                        task.time += period;
+                    else
+                        task.time = now + period;
+                    task.executionTime = align(task.time, period);
+                    task.sequence = sequence++;
+                    queue.add(task);
+                }
+            }
+
+            if (task.executor == null)
+                task.execute();
+            else
+            {
+                try
+                {
+                    task.executor.execute(task.command);
+                }
+                catch (Throwable t)
+                {
+                    if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                    logger.error(
+                            "Failed to hand timer task " + task + " over to "
+                                + task.executor,
+                            t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules a specific <tt>Task</tt> for execution after a specific
+     * delay.
+     *
+     * @param task the <tt>Task</tt> to be executed
+     * @param delay the delay in milliseconds before <tt>task</tt> is executed
+     */
+    public void schedule(Task task, long delay)
+    {
+        schedule(task, delay, 0);
+    }
+
+    /**
+     * Schedules a specific <tt>Task</tt> for repeated fixed-delay execution
+     * beginning after a specific delay.
+     *
+     * @param task the <tt>Task</tt> to be executed
+     * @param delay the delay in milliseconds before <tt>task</tt> is executed
+     * for the first time
+     * @param period the time in milliseconds from the start of an execution
+     * of <tt>task</tt> to the start of the next one so a late execution
+     * delays the following ones; <tt>0</tt> to execute <tt>task</tt> once
+     */
+    public void schedule(Task task, long delay, long period)
+    {
+        if (delay < 0)
+            throw new IllegalArgumentException("delay");
+        if (period < 0)
+            throw new IllegalArgumentException("period");
+
+        schedule(task, System.currentTimeMillis() + delay, delay, period, null);
+    }
+
+    /**
+     * Schedules a specific <tt>Task</tt> for one-time or repeated fixed-delay
+     * execution by a specific <tt>Executor</tt> beginning after a specific
+     * delay. The timer only hands <tt>task</tt> over to <tt>executor</tt>
+     * when it is due so <tt>task</tt> may block without delaying the tasks
+     * of other components.
+     *
+     * @param task the <tt>Task</tt> to be executed
+     * @param delay the delay in milliseconds before <tt>task</tt> is executed
+     * for the first time
+     * @param period the time in milliseconds from a hand-over of
+     * <tt>task</tt> to the next one; <tt>0</tt> to execute <tt>task</tt> once
+     * @param executor the <tt>Executor</tt> which is to execute <tt>task</tt>
+     */
+    public void schedule(
+            Task task,
+            long delay,
+            long period,
+            Executor executor)
+    {
+        if (delay < 0)
+            throw new IllegalArgumentException("delay");
+        if (period < 0)
+            throw new IllegalArgumentException("period");
+        if (executor == null)
+            throw new NullPointerException("executor");
+
+        schedule(
+                task,
+                System.currentTimeMillis() + delay,
+                delay,
+                period,
+                executor);
+    }
+
+    /**
+     * Schedules a specific <tt>Task</tt> for repeated fixed-rate execution
+     * beginning after a specific delay.
+     *
+     * @param task the <tt>Task</tt> to be executed
+     * @param delay the delay in milliseconds before <tt>task</tt> is executed
+     * for the first time
+     * @param period the time in milliseconds between the starts of
+     * subsequent executions of <tt>task</tt>
+     */
+    public void scheduleAtFixedRate(Task task, long delay, long period)
+    {
+        if (delay < 0)
+            throw new IllegalArgumentException("delay");
+        if (period <= 0)
+            throw new IllegalArgumentException("period");
+
+        schedule(
+                task,
+                System.currentTimeMillis() + delay,
+                delay,
+                -period,
+                null);
+    }
+
+    /**
+     * Schedules a specific <tt>Task</tt> for execution at a specific time.
+     *
+     * @param task the <tt>Task</tt> to be executed
+     * @param time the time in milliseconds at which <tt>task</tt> is to be
+     * executed for the first time
+     * @param delay the delay in milliseconds after which <tt>time</tt> comes
+     * @param period <tt>0</tt> to execute <tt>task</tt> once, a positive
+     * value for fixed-delay or a negative value for fixed-rate execution
+     * @param executor the <tt>Executor</tt> which is to execute <tt>task</tt>
+     * or <tt>null</tt> to execute it in the thread of the timer
+     */
+    private void schedule(
+            final Task task,
+            long time,
+            long delay,
+            long period,
+            Executor executor)
+    {
+        synchronized (queue)
+        {
+            if (task.state != Task.VIRGIN)
+            {
+                throw new IllegalStateException(
+                        "Task already scheduled or cancelled");
+            }
+
+            task.state = Task.SCHEDULED;
+            task.time = time;
+            task.executionTime = align(time, delay);
+            task.period = period;
+            task.sequence = sequence++;
+            task.executor = executor;
+            if (executor != null)
+            {
+                task.command
+                    = new Runnable()
+                    {
+                        public void run()
+                        {
+                            task.execute();
+                        }
+                    };
+            }
+            queue.add(task);
+
+            if (thread == null)
+            {
+                thread
+                    = new Thread(getClass().getName())
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInThread();
+                        }
+                    };
+                thread.setDaemon(true);
+                thread.start();
+            }
+            else if (queue.peek() == task)
+                queue.notify();
+        }
+    }
+
+    /**
+     * Represents a task which may be scheduled for one-time or repeated
+     * execution by the <tt>SharedTimer</tt>. It extends <tt>TimerTask</tt> so
+     * that it can be handled in place of one but it cannot be scheduled by a
+     * <tt>java.util.Timer</tt> and by the <tt>SharedTimer</tt> at the same
+     * time.
+     */
+    public abstract static class Task
+        extends TimerTask
+        implements Comparable<Task>
+    {
+        /**
+         * The <tt>Runnable</tt> which {@link #executor} is given to execute
+         * this <tt>Task</tt>. It is the same for all executions so that an
+         * <tt>Executor</tt> may recognize an execution which is still pending.
+         */
+        private Runnable command;
+
+        /**
+         * The <tt>Executor</tt> which executes this <tt>Task</tt> or
+         * <tt>null</tt> if it is executed in the thread of the timer.
+         */
+        private Executor executor;
+
+        /**
+         * The state of a <tt>Task</tt> which has not been scheduled yet.
+         */
+        private static final int VIRGIN = 0;
+
+        /**
+         * The state of a <tt>Task</tt> which is scheduled for execution.
+         */
+        private static final int SCHEDULED = 1;
+
+        /**
+         * The state of a one-time <tt>Task</tt> which has been executed.
+         */
+        private static final int EXECUTED = 2;
+
+        /**
+         * The state of a <tt>Task</tt> which has been cancelled.
+         */
+        private static final int CANCELLED = 3;
+
+        /**
+         * The (rounded) time in milliseconds at which this <tt>Task</tt> is
+         * to be executed next.
+         */
+        private long executionTime;
+
+        /**
+         * The (rounded) time in milliseconds at which the most recent
+         * execution of this <tt>Task</tt> was scheduled to occur.
+         */
+        private long lastExecutionTime;
+
+        /**
+         * <tt>0</tt> for a one-time <tt>Task</tt>, the period in
+         * milliseconds of a fixed-delay <tt>Task</tt> or the negated period
+         * of a fixed-rate <tt>Task</tt>.
+         */
+        private long period;
+
+        /**
+         * The number which orders this <tt>Task</tt> among the ones with the
+         * same {@link #executionTime}.
+         */
+        private long sequence;
+
+        /**
+         * The state of this <tt>Task</tt>.
+         */
+        private int state = VIRGIN;
+
+        /**
+         * The (not rounded) time in milliseconds at which this <tt>Task</tt>
+         * is to be executed next.
+         */
+        private long time;
+
+        /**
+         * Cancels this <tt>Task</tt>. If it is executing at the time, the
+         * execution is completed but there will be no further ones.
+         *
+         * @return <tt>true</tt> if this prevented one or more executions of
+         * this <tt>Task</tt>; otherwise, <tt>false</tt>
+         */
+        @Override
+        public boolean cancel()
+        {
+            SharedTimer timer = getInstance();
+
+            synchronized (timer.queue)
+            {
+                boolean scheduled = (state == SCHEDULED);
+
+                state = CANCELLED;
+                if (scheduled)
+                    timer.queue.remove(this);
+                return scheduled;
+            }
+        }
+
+        /**
+         * Runs this <tt>Task</tt> unless it has been cancelled since it was
+         * found due and logs what it throws.
+         */
+        private void execute()
+        {
+            synchronized (getInstance().queue)
+            {
+                if (state == CANCELLED)
+                    return;
+            }
+
+            try
+            {
+                run();
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                logger.error("Failed to execute timer task " + this, t);
+            }
+        }
+
+        /**
+         * Orders <tt>Task</tt>s by their next execution time.
+         *
+         * @param other the <tt>Task</tt> to compare this one to
+         * @return a negative integer, zero, or a positive integer as this
+         * <tt>Task</tt> is to be executed before, at the same time or after
+         * <tt>other</tt>
+         */
+        public int compareTo(Task other)
+        {
+            if (executionTime != other.executionTime)
+                return (executionTime < other.executionTime) ? -1 : 1;
+            if (sequence != other.sequence)
+                return (sequence < other.sequence) ? -1 : 1;
+            return 0;
+        }
+
+        /**
+         * Determines whether this <tt>Task</tt> is scheduled for (further)
+         * execution.
+         *
+         * @return <tt>true</tt> if this <tt>Task</tt> is scheduled for
+         * (further) execution; otherwise, <tt>false</tt>
+         */
+        public boolean isScheduled()
+        {
+            synchronized (getInstance().queue)
+            {
+                return (state == SCHEDULED);
+            }
+        }
+
+        /**
+         * Returns the time in milliseconds at which the most recent execution
+         * of this <tt>Task</tt> was scheduled to occur.
+         *
+         * @return the time in milliseconds at which the most recent execution
+         * of this <tt>Task</tt> was scheduled to occur
+         */
+        @Override
+        public long scheduledExecutionTime()
+        {
+            synchronized (getInstance().queue)
+            {
+                return lastExecutionTime;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Represents an analogy of <code>Timer</code> which schedules its tasks on the
+ * <code>SharedTimer</code> instead of creating a thread of its own. It also
+ * allows the currently scheduled tasks to be canceled while still being able
+ * to schedule new tasks later on.
+ * <p>
+ * The <code>SharedTimer</code> only decides when the tasks are due. They are
+ * executed one after another in a thread of this instance which exists while
+ * there are due tasks so that a task which blocks, for example on the
+ * network, delays the other tasks of this instance only.
+ * </p>
+ * 
+ * @author Lubomir Marinov
+ */
+public class TimerScheduler
+{
+    /**
+     * The tasks scheduled by this instance which may still be executed.
+     */
+    private final List<SharedTimer.Task> tasks
+        = new LinkedList<SharedTimer.Task>();
+
+    /**
+     * The executions of tasks which are due and wait for {@link #worker}.
+     */
+    private final LinkedList<Runnable> dueTasks = new LinkedList<Runnable>();
+
+    /**
+     * The <code>Executor</code> which the <code>SharedTimer</code> hands the
+     * due tasks of this instance over to.
+     */
+    private final Executor executor
+        = new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                executeInWorker(command);
+            }
+        };
+
+    /**
+     * The thread which executes {@link #dueTasks} or <code>null</code> if
+     * there are none.
+     */
+    private Thread worker;
+
+    /**
+     * Discarding any currently scheduled <code>SharedTimer.Task</code>s.
+     */
+    public synchronized void cancel()
+    {
+        for (SharedTimer.Task task : tasks)
+            task.cancel();
+        tasks.clear();
+    }
+
+    /**
+     * Queues the execution of a due task for {@link #worker} and starts it if
+     * necessary. An execution of a periodic task which is still waiting for
+     * the previous one is not queued again.
+     *
+     * @param command the execution of a due task
+     */
+    private void executeInWorker(Runnable command)
+    {
+        synchronized (dueTasks)
+        {
+            if (dueTasks.contains(command))
+                return;
+            dueTasks.add(command);
+
+            if (worker == null)
+            {
+                worker
+                    = new Thread(getClass().getName())
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInWorker();
+                        }
+                    };
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Executes {@link #dueTasks} one after another and lets {@link #worker}
+     * end when there are no more.
+     */
+    private void runInWorker()
+    {
+        while (true)
+        {
+            Runnable command;
+
+            synchronized (dueTasks)
+            {
+                command = dueTasks.poll();
+                if (command == null)
+                {
+                    worker = null;
+                    return;
+                }
+            }
+
+            command.run();
+        }
+    }
+
+    /**
+     * Remembers a specific task so that it can be canceled by
+     * {@link #cancel()} and forgets the ones which will not be executed
+     * anymore.
+     *
+     * @param task the task which has just been scheduled
+     */
+    private void add(SharedTimer.Task task)
+    {
+        for (Iterator<SharedTimer.Task> i = tasks.iterator(); i.hasNext();)
+        {
+            if (!i.next().isScheduled())
+                i.remove();
+        }
+        tasks.add(task);
+    }
+
+    /**
+     * Schedules the specified <code>SharedTimer.Task</code> for execution
+     * after the specified delay.
+     * 
+     * @param task
+     *            the <code>SharedTimer.Task</code> to be executed after the
+     *            specified delay
+     * @param delay
+     *            the delay in milliseconds before the specified
+     *            <code>SharedTimer.Task</code> is executed
+     */
+    public synchronized void schedule(SharedTimer.Task task, long delay)
+    {
+        SharedTimer.getInstance().schedule(task, delay, 0, executor);
+        add(task);
+    }
+
+    /**
+     * Schedules the specified <code>SharedTimer.Task</code> for repeated
+     * fixed-delay execution, beginning after the specified delay. Subsequent
+     * executions take place at approximately regular intervals separated by
+     * the specified period.
+     * 
+     * @param task
+     *            the <code>SharedTimer.Task</code> to be scheduled
+     * @param delay
+     *            the delay in milliseconds before the specified
+     *            <code>SharedTimer.Task</code> is executed
+     * @param period
+     *            the time in milliseconds between successive executions of the
+     *            specified <code>SharedTimer.Task</code>
+     */
+    public synchronized void schedule(
+            SharedTimer.Task task,
+            long delay,
+            long period)
+    {
+        SharedTimer.getInstance().schedule(task, delay, period, executor);
+        add(task);
+    }
+}
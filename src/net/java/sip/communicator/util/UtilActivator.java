@@ -55,7 +55,8 @@ public class UtilActivator
     private static AlertUIService alertUIService;
 
     /**
-     * Calls <tt>Thread.setUncaughtExceptionHandler()</tt>
+     * Calls <tt>Thread.setUncaughtExceptionHandler()</tt> and registers the
+     * <tt>SharedTimer</tt> so that its state may be inspected.
      *
      * @param context The execution context of the bundle being started
      * (unused).
@@ -74,6 +75,11 @@ public class UtilActivator
             logger.trace("Setting default uncaught exception handler.");
 
         Thread.setDefaultUncaughtExceptionHandler(this);
+
+        context.registerService(
+                SharedTimer.class.getName(),
+                SharedTimer.getInstance(),
+                null);
     }
 
     /**
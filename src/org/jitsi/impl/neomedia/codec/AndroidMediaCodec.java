@@ -477,12 +477,13 @@ public class AndroidMediaCodec
     private AVFrame avFrame;
 
     /**
-     * A <tt>byte</tt> in the form of an array which is used to copy the bytes
-     * of a <tt>java.nio.ByteBuffer</tt> into native memory (because the
-     * <tt>memcpy</tt> implementation requires an array. Allocated once to
-     * reduce garbage collection.
+     * The array which is used to copy the bytes of a
+     * <tt>java.nio.ByteBuffer</tt> into native memory in a single
+     * <tt>memcpy</tt> call (because the <tt>memcpy</tt> implementation
+     * requires an array). Grown as necessary and reused in order to reduce
+     * garbage collection.
      */
-    private final byte[] b = new byte[1];
+    private byte[] b = new byte[0];
 
     private final ByteBufferPool byteBufferPool = new ByteBufferPool();
 
@@ -697,16 +698,15 @@ public class AndroidMediaCodec
                     }
                     if (processed != BUFFER_PROCESSED_FAILED)
                     {
-                        long ptr = avFrameData.getPtr();
+                        if (b.length < outputLength)
+                            b = new byte[outputLength];
 
-                        for (int i = info.offset, end = i + outputLength;
-                                i < end;
-                                i++)
-                        {
-                            b[0] = byteBuffer.get(i);
-                            FFmpeg.memcpy(ptr, b, 0, b.length);
-                            ptr++;
-                        }
+                        byteBuffer.limit(info.offset + outputLength);
+                        byteBuffer.position(info.offset);
+                        byteBuffer.get(b, 0, outputLength);
+                        FFmpeg.memcpy(
+                                avFrameData.getPtr(),
+                                b, 0, outputLength);
 
                         outputBuffer.setData(avFrame);
                         outputBuffer.setFormat(outputFormat);
@@ -755,12 +755,8 @@ public class AndroidMediaCodec
                 byte[] bytes = (byte[]) inputBuffer.getData();
                 int fmjOffset = inputBuffer.getOffset();
 
-                for (int dst = 0, src = fmjOffset;
-                        dst < mediaCodecInputLength;
-                        dst++, src++)
-                {
-                    byteBuffer.put(dst, bytes[src]);
-                }
+                byteBuffer.clear();
+                byteBuffer.put(bytes, fmjOffset, mediaCodecInputLength);
 
                 if (mediaCodecInputLength == fmjLength)
                     processed &= ~INPUT_BUFFER_NOT_CONSUMED;
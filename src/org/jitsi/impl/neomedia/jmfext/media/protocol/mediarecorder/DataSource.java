@@ -63,6 +63,15 @@ public class DataSource
 
     private static final long FILE_TYPE_BOX_TYPE = stringToBoxType("ftyp");
 
+    /**
+     * The size in bytes of the buffer through which the bytes written by the
+     * <tt>MediaRecorder</tt> into a <tt>LocalSocket</tt> are read. The box
+     * headers and NAL unit lengths are parsed out of the buffer without a
+     * system call per byte while NAL units larger than it are read directly
+     * into {@link #nal}.
+     */
+    private static final int INPUT_BUFFER_SIZE = 8 * 1024;
+
     private static final String INTEGEROVERFLOW_IOEXCEPTION_MESSAGE
         = "INTEGER_OVERFLOW";
 
@@ -135,6 +144,13 @@ public class DataSource
      */
     private long accessUnitTimeStamp;
 
+    /**
+     * The NAL unit which has been read from the associated
+     * <tt>MediaRecorder</tt> and which is to be written after the sequence and
+     * picture parameter sets. Reused in order to reduce garbage collection.
+     */
+    private byte[] delayedNAL;
+
     private Camera camera;
 
     private final String dataSourceKey;
@@ -355,9 +371,17 @@ public class DataSource
     private void discard(InputStream inputStream, long byteCount)
         throws IOException
     {
-        while (byteCount-- > 0)
-            if (-1 == inputStream.read())
+        while (byteCount > 0)
+        {
+            long skipped = inputStream.skip(byteCount);
+
+            if (skipped > 0)
+                byteCount -= skipped;
+            else if (-1 == inputStream.read())
                 throw new IOException(ENDOFSTREAM_IOEXCEPTION_MESSAGE);
+            else
+                byteCount--;
+        }
     }
 
     /**
@@ -1201,7 +1225,7 @@ public class DataSource
             InputStream inputStream, int nalLength)
         throws IOException
     {
-        byte[] delayed = null;
+        int delayedLength = 0;
 
         synchronized (this)
         {
@@ -1246,15 +1270,21 @@ public class DataSource
                         if ((now - lastWrittenParameterSetTime)
                                 > PARAMETER_SET_INTERVAL)
                         {
-                            delayed = new byte[this.nalLength];
-                            System.arraycopy(nal, 0, delayed, 0, this.nalLength);
+                            delayedLength = this.nalLength;
+                            if ((delayedNAL == null)
+                                    || (delayedNAL.length < delayedLength))
+                                delayedNAL = new byte[delayedLength];
+                            System.arraycopy(
+                                    nal, 0,
+                                    delayedNAL, 0,
+                                    delayedLength);
                             this.nalLength = 0;
                         }
                         break;
                     }
                 }
 
-                if (delayed == null)
+                if (delayedLength == 0)
                 {
                     /*
                      * Notify this DataSource that a NAL unit has just been read
@@ -1265,7 +1295,7 @@ public class DataSource
             }
         }
 
-        if (delayed == null)
+        if (delayedLength == 0)
         {
             writeNAL();
         }
@@ -1279,7 +1309,7 @@ public class DataSource
                     localSocketKey,
                     pic_parameter_set_rbsp,
                     pic_parameter_set_rbsp.length);
-            readNAL(localSocketKey, delayed, delayed.length);
+            readNAL(localSocketKey, delayedNAL, delayedLength);
         }
     }
 
@@ -1403,7 +1433,10 @@ public class DataSource
 
         try
         {
-            inputStream = localSocket.getInputStream();
+            inputStream
+                = new BufferedInputStream(
+                        localSocket.getInputStream(),
+                        INPUT_BUFFER_SIZE);
             dataSourceKey = readLine(inputStream, maxDataSourceKeySize);
         }
         catch (IOException ioe)
@@ -33,6 +33,15 @@ import org.osgi.framework.startlevel.*;
  */
 public class OSGiServiceImpl
 {
+    /**
+     * The prefix of the names of the properties of the bundles configuration
+     * which are passed to the framework (implementation) as part of its
+     * configuration e.g.
+     * {@link BundleActivationScheduler#PNAME_ACTIVATION_THREADS}.
+     */
+    private static final String FRAMEWORK_PROPERTY_PREFIX
+        = "org.jitsi.impl.osgi.framework.";
+
     private final OSGiServiceBundleContextHolder bundleContextHolder
         = new OSGiServiceBundleContextHolder();
 
@@ -227,7 +236,8 @@ public class OSGiServiceImpl
             FrameworkFactory frameworkFactory = new FrameworkFactoryImpl();
             Map<String, String> configuration = new HashMap<String, String>();
 
-            TreeMap<Integer, List<String>> BUNDLES = getBundlesConfig(service);
+            TreeMap<Integer, List<String>> BUNDLES
+                = getBundlesConfig(service, configuration);
 
             configuration.put(
                     Constants.FRAMEWORK_BEGINNING_STARTLEVEL,
@@ -286,12 +296,17 @@ public class OSGiServiceImpl
          * location.
          *
          * @param context the context to use
+         * @param configuration the framework configuration to put the
+         * properties of the bundles configuration which are to be interpreted
+         * by the framework (implementation) into
          * @return the locations of the OSGi bundles (or rather of the class
          * files of their <tt>BundleActivator</tt> implementations) comprising
          * the Jitsi core/library and the application which is currently using
          * it. And the corresponding start levels.
          */
-        private TreeMap<Integer, List<String>> getBundlesConfig(Context context)
+        private TreeMap<Integer, List<String>> getBundlesConfig(
+                Context context,
+                Map<String, String> configuration)
         {
             String fileName = System.getProperty("osgi.config.properties");
 
@@ -343,7 +358,12 @@ public class OSGiServiceImpl
                 String prop = e.getKey().toString().trim();
                 Object value;
 
-                if(prop.contains("auto.start.")
+                if (prop.startsWith(FRAMEWORK_PROPERTY_PREFIX)
+                        && ((value = e.getValue()) != null))
+                {
+                    configuration.put(prop, value.toString().trim());
+                }
+                else if(prop.contains("auto.start.")
                         && ((value = e.getValue()) != null))
                 {
                     String startLevelStr
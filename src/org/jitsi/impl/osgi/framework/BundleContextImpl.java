@@ -64,7 +64,7 @@ public class BundleContextImpl
     public Filter createFilter(String filter)
         throws InvalidSyntaxException
     {
-        return FrameworkUtil.createFilter(filter);
+        return framework.createFilter(filter);
     }
 
     public ServiceReference<?>[] getAllServiceReferences(
@@ -82,6 +82,18 @@ public class ServiceRegistrationImpl
         }
     }
 
+    /**
+     * Gets the names of the classes under which this service has been
+     * registered.
+     *
+     * @return the names of the classes under which this service has been
+     * registered. The returned array must not be modified.
+     */
+    public String[] getClassNames()
+    {
+        return classNames;
+    }
+
     public ServiceReferenceImpl getReference()
     {
         return serviceReference;
@@ -0,0 +1,694 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.impl.osgi.framework.*;
+import org.osgi.framework.*;
+import org.osgi.framework.startlevel.*;
+
+/**
+ * Starts the bundles of a single start level of a <tt>FrameworkImpl</tt>.
+ * Bundles which do not depend on each other are started concurrently on a
+ * bounded pool of threads. The method {@link #startBundles(int, List)} does
+ * not return before all bundles of the start level have been started so the
+ * start level remains a barrier for the bundles of the higher start levels.
+ * <p>
+ * The number of threads is specified by the framework configuration property
+ * {@link #PNAME_ACTIVATION_THREADS} and defaults to <tt>1</tt> i.e. the
+ * bundles are started one after another in the order in which they have been
+ * installed. The dependencies of a bundle on other bundles of the same start
+ * level are specified by the framework configuration property
+ * {@link #PNAME_DEPENDENCIES_PREFIX} followed by the location of the bundle and
+ * have the form of a space-separated list of bundle locations.
+ * </p>
+ *
+ * @author agent
+ */
+public class BundleActivationScheduler
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>BundleActivationScheduler</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(BundleActivationScheduler.class);
+
+    /**
+     * The name of the framework configuration property which specifies the
+     * maximum number of threads to start the bundles of a single start level
+     * on.
+     */
+    public static final String PNAME_ACTIVATION_THREADS
+        = "org.jitsi.impl.osgi.framework.ACTIVATION_THREADS";
+
+    /**
+     * The prefix of the names of the framework configuration properties which
+     * specify the locations of the bundles which have to be started before the
+     * bundle with the location which follows the prefix.
+     */
+    public static final String PNAME_DEPENDENCIES_PREFIX
+        = "org.jitsi.impl.osgi.framework.DEPENDENCIES.";
+
+    /**
+     * The number of milliseconds each bundle has taken to start in the order
+     * in which the bundles have been started keyed by bundle location.
+     */
+    private final Map<String, Long> activationTimes
+        = new LinkedHashMap<String, Long>();
+
+    /**
+     * The locations of the bundles each bundle depends on keyed by bundle
+     * location.
+     */
+    private final Map<String, Set<String>> dependencies
+        = new HashMap<String, Set<String>>();
+
+    /**
+     * The pool of threads on which the bundles are started or <tt>null</tt>
+     * if they are to be started on the thread which changes the start level.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Initializes a new <tt>BundleActivationScheduler</tt> instance from a
+     * specific framework configuration.
+     *
+     * @param configuration the framework configuration to read
+     * {@link #PNAME_ACTIVATION_THREADS} and {@link #PNAME_DEPENDENCIES_PREFIX}
+     * from or <tt>null</tt>
+     */
+    public BundleActivationScheduler(Map<String, String> configuration)
+    {
+        int threads = 1;
+
+        if (configuration != null)
+        {
+            for (Map.Entry<String, String> e : configuration.entrySet())
+            {
+                String key = e.getKey();
+                String value = e.getValue();
+
+                if (value == null)
+                    continue;
+                else if (PNAME_ACTIVATION_THREADS.equals(key))
+                {
+                    try
+                    {
+                        threads = Integer.parseInt(value.trim());
+                    }
+                    catch (NumberFormatException nfe)
+                    {
+                        logger.warn(
+                                "Invalid " + PNAME_ACTIVATION_THREADS + ": "
+                                    + value);
+                    }
+                }
+                else if (key.startsWith(PNAME_DEPENDENCIES_PREFIX))
+                {
+                    Set<String> locations = new HashSet<String>();
+                    StringTokenizer st = new StringTokenizer(value, " ");
+
+                    while (st.hasMoreTokens())
+                    {
+                        String location = st.nextToken().trim();
+
+                        if (location.length() != 0)
+                            locations.add(location);
+                    }
+                    if (!locations.isEmpty())
+                    {
+                        dependencies.put(
+                                key.substring(
+                                        PNAME_DEPENDENCIES_PREFIX.length()),
+                                locations);
+                    }
+                }
+            }
+        }
+
+        if (threads > 1)
+        {
+            executor
+                = new ThreadPoolExecutor(
+                        threads, threads,
+                        30, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory()
+                        {
+                            private int index = 0;
+
+                            public synchronized Thread newThread(Runnable r)
+                            {
+                                Thread t
+                                    = new Thread(
+                                            r,
+                                            BundleActivationScheduler.class
+                                                    .getName()
+                                                + "-"
+                                                + (index++));
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+            /*
+             * The bundles are started once so do not keep the threads around
+             * after the framework has started.
+             */
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Gets the number of milliseconds each bundle has taken to start.
+     *
+     * @return the number of milliseconds each bundle has taken to start keyed
+     * by bundle location in the order in which the bundles have been started
+     */
+    public Map<String, Long> getActivationTimes()
+    {
+        synchronized (activationTimes)
+        {
+            return new LinkedHashMap<String, Long>(activationTimes);
+        }
+    }
+
+    /**
+     * Logs the number of milliseconds each bundle of a specific start level has
+     * taken to start, the slowest first.
+     *
+     * @param startLevel the start level to log the activation times of
+     * @param bundles the bundles of <tt>startLevel</tt>
+     * @param wallTime the number of milliseconds it has taken to start all
+     * <tt>bundles</tt>
+     */
+    private void logActivationTimes(
+            int startLevel,
+            List<BundleImpl> bundles,
+            long wallTime)
+    {
+        if (!logger.isInfoEnabled())
+            return;
+
+        List<Map.Entry<String, Long>> times
+            = new ArrayList<Map.Entry<String, Long>>(bundles.size());
+        long sum = 0;
+
+        synchronized (activationTimes)
+        {
+            for (BundleImpl bundle : bundles)
+            {
+                String location = bundle.getLocation();
+                Long time = activationTimes.get(location);
+
+                if (time != null)
+                {
+                    times.add(
+                            new AbstractMap.SimpleEntry<String, Long>(
+                                    location,
+                                    time));
+                    sum += time;
+                }
+            }
+        }
+        Collections.sort(
+                times,
+                new Comparator<Map.Entry<String, Long>>()
+                {
+                    public int compare(
+                            Map.Entry<String, Long> e1,
+                            Map.Entry<String, Long> e2)
+                    {
+                        return e2.getValue().compareTo(e1.getValue());
+                    }
+                });
+
+        StringBuilder msg = new StringBuilder();
+
+        msg.append("Started ").append(times.size())
+            .append(" bundle(s) of start level ").append(startLevel)
+            .append(" in ").append(wallTime).append(" ms (")
+            .append(sum).append(" ms in activators):");
+        for (Map.Entry<String, Long> e : times)
+        {
+            msg.append("\n    ").append(e.getValue()).append(" ms ")
+                .append(e.getKey());
+        }
+        logger.info(msg);
+    }
+
+    /**
+     * Stops the threads of this instance.
+     */
+    public synchronized void stop()
+    {
+        if (executor != null)
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts a specific bundle and records the time it has taken.
+     *
+     * @param bundle the bundle to start
+     */
+    private void startBundle(BundleImpl bundle)
+    {
+        long startTime = System.nanoTime();
+
+        try
+        {
+            BundleStartLevel bundleStartLevel
+                = bundle.adapt(BundleStartLevel.class);
+            int options = Bundle.START_TRANSIENT;
+
+            if (bundleStartLevel.isActivationPolicyUsed())
+                options |= Bundle.START_ACTIVATION_POLICY;
+            bundle.start(options);
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+            // BundleImpl has already logged the failure.
+        }
+        finally
+        {
+            long time
+                = TimeUnit.NANOSECONDS.toMillis(
+                        System.nanoTime() - startTime);
+
+            synchronized (activationTimes)
+            {
+                activationTimes.put(bundle.getLocation(), time);
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(
+                        "Started " + bundle.getLocation() + " in " + time
+                            + " ms");
+            }
+        }
+    }
+
+    /**
+     * Starts a specific list of bundles of a specific start level. Does not
+     * return before all bundles have been started (or have failed to start).
+     *
+     * @param startLevel the start level of <tt>bundles</tt>
+     * @param bundles the bundles to start in the order in which they have
+     * been installed
+     */
+    public void startBundles(int startLevel, List<BundleImpl> bundles)
+    {
+        long startTime = System.currentTimeMillis();
+        ThreadPoolExecutor executor;
+
+        synchronized (this)
+        {
+            executor = this.executor;
+        }
+
+        if ((executor == null) || (bundles.size() < 2))
+        {
+            for (BundleImpl bundle : bundles)
+                startBundle(bundle);
+        }
+        else
+            startBundlesConcurrently(executor, bundles);
+
+        logActivationTimes(
+                startLevel,
+                bundles,
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Starts a specific list of bundles on a specific pool of threads,
+     * respecting the dependencies between them.
+     *
+     * @param executor the pool of threads to start <tt>bundles</tt> on
+     * @param bundles the bundles to start
+     */
+    private void startBundlesConcurrently(
+            final ThreadPoolExecutor executor,
+            List<BundleImpl> bundles)
+    {
+        Map<String, BundleImpl> bundlesByLocation
+            = new HashMap<String, BundleImpl>();
+
+        for (BundleImpl bundle : bundles)
+            bundlesByLocation.put(bundle.getLocation(), bundle);
+
+        /*
+         * Count the dependencies of each bundle within the start level.
+         * Dependencies on bundles of lower start levels have already been
+         * satisfied by the start level barrier.
+         */
+        final Map<BundleImpl, AtomicInteger> pending
+            = new HashMap<BundleImpl, AtomicInteger>();
+        final Map<BundleImpl, List<BundleImpl>> dependents
+            = new HashMap<BundleImpl, List<BundleImpl>>();
+
+        for (BundleImpl bundle : bundles)
+        {
+            int count = 0;
+            Set<String> locations = dependencies.get(bundle.getLocation());
+
+            if (locations != null)
+            {
+                for (String location : locations)
+                {
+                    BundleImpl dependency = bundlesByLocation.get(location);
+
+                    if ((dependency != null) && (dependency != bundle))
+                    {
+                        List<BundleImpl> list = dependents.get(dependency);
+
+                        if (list == null)
+                        {
+                            list = new ArrayList<BundleImpl>();
+                            dependents.put(dependency, list);
+                        }
+                        list.add(bundle);
+                        count++;
+                    }
+                }
+            }
+            pending.put(bundle, new AtomicInteger(count));
+        }
+
+        /*
+         * Bundles in dependency cycles would never start so ignore their
+         * dependencies on the other bundles of the same cycle. Their
+         * dependencies outside the cycle and the bundles which depend on them
+         * are still respected.
+         */
+        Map<BundleImpl, Integer> cycles
+            = findCycles(bundles, pending, dependents);
+
+        for (Map.Entry<BundleImpl, Integer> e : cycles.entrySet())
+        {
+            BundleImpl bundle = e.getKey();
+
+            logger.warn(
+                    "Ignoring cyclic dependencies of " + bundle.getLocation());
+
+            for (Iterator<BundleImpl> i = dependents.get(bundle).iterator();
+                    i.hasNext();)
+            {
+                BundleImpl dependent = i.next();
+
+                if (e.getValue().equals(cycles.get(dependent)))
+                {
+                    i.remove();
+                    pending.get(dependent).decrementAndGet();
+                }
+            }
+        }
+
+        List<BundleImpl> ready = new ArrayList<BundleImpl>();
+
+        for (BundleImpl bundle : bundles)
+        {
+            if (pending.get(bundle).get() == 0)
+                ready.add(bundle);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(bundles.size());
+
+        class StartCommand
+            implements Runnable
+        {
+            private final BundleImpl bundle;
+
+            public StartCommand(BundleImpl bundle)
+            {
+                this.bundle = bundle;
+            }
+
+            public void run()
+            {
+                try
+                {
+                    startBundle(bundle);
+                }
+                finally
+                {
+                    latch.countDown();
+
+                    List<BundleImpl> list = dependents.get(bundle);
+
+                    if (list != null)
+                    {
+                        for (BundleImpl dependent : list)
+                        {
+                            if (pending.get(dependent).decrementAndGet() == 0)
+                                submit(executor, new StartCommand(dependent));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (BundleImpl bundle : ready)
+            submit(executor, new StartCommand(bundle));
+
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException ie)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Executes a specific command on a specific pool of threads or, if the
+     * pool has been shut down, on the current thread.
+     *
+     * @param executor the pool of threads to execute <tt>command</tt> on
+     * @param command the command to execute
+     */
+    private static void submit(Executor executor, Runnable command)
+    {
+        try
+        {
+            executor.execute(command);
+        }
+        catch (RejectedExecutionException ree)
+        {
+            /*
+             * The framework is being stopped. Do not leave the start level
+             * half way through.
+             */
+            command.run();
+        }
+    }
+
+    /**
+     * Finds the bundles which are on dependency cycles and which therefore
+     * cannot be started. The bundles which merely depend on such bundles are
+     * not reported.
+     *
+     * @param bundles the bundles to be started
+     * @param pending the number of dependencies of each bundle
+     * @param dependents the bundles which depend on each bundle
+     * @return the bundles which are on dependency cycles mapped to the index
+     * of their cycle (i.e. strongly connected component); the bundles with
+     * equal indices are on the same cycle
+     */
+    private static Map<BundleImpl, Integer> findCycles(
+            List<BundleImpl> bundles,
+            Map<BundleImpl, AtomicInteger> pending,
+            Map<BundleImpl, List<BundleImpl>> dependents)
+    {
+        /*
+         * Remove the bundles which are not on cycles and do not depend on
+         * bundles on cycles (i.e. Kahn's algorithm) so that the rest of the
+         * work concerns (the very rare) cycles only.
+         */
+        Map<BundleImpl, Integer> counts = new HashMap<BundleImpl, Integer>();
+        LinkedList<BundleImpl> queue = new LinkedList<BundleImpl>();
+
+        for (BundleImpl bundle : bundles)
+        {
+            int count = pending.get(bundle).get();
+
+            counts.put(bundle, count);
+            if (count == 0)
+                queue.add(bundle);
+        }
+        while (!queue.isEmpty())
+        {
+            BundleImpl bundle = queue.removeFirst();
+            List<BundleImpl> list = dependents.get(bundle);
+
+            counts.remove(bundle);
+            if (list != null)
+            {
+                for (BundleImpl dependent : list)
+                {
+                    int count = counts.get(dependent) - 1;
+
+                    counts.put(dependent, count);
+                    if (count == 0)
+                        queue.add(dependent);
+                }
+            }
+        }
+
+        Map<BundleImpl, Integer> cycles = new HashMap<BundleImpl, Integer>();
+
+        if (!counts.isEmpty())
+        {
+            CycleFinder finder = new CycleFinder(dependents, cycles);
+
+            for (BundleImpl bundle : counts.keySet())
+            {
+                if (!finder.indices.containsKey(bundle))
+                    finder.visit(bundle);
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Finds the strongly connected components of the dependency graph of
+     * bundles with more than one bundle i.e. the dependency cycles (Tarjan's
+     * algorithm). A bundle never depends on itself.
+     */
+    private static class CycleFinder
+    {
+        /**
+         * The bundles on cycles mapped to the index of their cycle.
+         */
+        private final Map<BundleImpl, Integer> cycles;
+
+        /**
+         * The bundles which depend on each bundle.
+         */
+        private final Map<BundleImpl, List<BundleImpl>> dependents;
+
+        /**
+         * The visited bundles mapped to the order of their visit.
+         */
+        private final Map<BundleImpl, Integer> indices
+            = new HashMap<BundleImpl, Integer>();
+
+        /**
+         * The visited bundles mapped to the smallest order of a visit of a
+         * bundle on the stack reachable from them.
+         */
+        private final Map<BundleImpl, Integer> lowLinks
+            = new HashMap<BundleImpl, Integer>();
+
+        /**
+         * The visited bundles which have not been assigned to a strongly
+         * connected component yet.
+         */
+        private final LinkedList<BundleImpl> stack
+            = new LinkedList<BundleImpl>();
+
+        /**
+         * The index of the next cycle.
+         */
+        private int cycleCount = 0;
+
+        /**
+         * Initializes a new <tt>CycleFinder</tt>.
+         *
+         * @param dependents the bundles which depend on each bundle
+         * @param cycles the <tt>Map</tt> to put the bundles on cycles into
+         */
+        CycleFinder(
+                Map<BundleImpl, List<BundleImpl>> dependents,
+                Map<BundleImpl, Integer> cycles)
+        {
+            this.dependents = dependents;
+            this.cycles = cycles;
+        }
+
+        /**
+         * Visits a specific bundle and the bundles which depend on it.
+         *
+         * @param bundle the bundle to visit
+         */
+        void visit(BundleImpl bundle)
+        {
+            int index = indices.size();
+
+            indices.put(bundle, index);
+            lowLinks.put(bundle, index);
+            stack.addFirst(bundle);
+
+            List<BundleImpl> list = dependents.get(bundle);
+
+            if (list != null)
+            {
+                for (BundleImpl dependent : list)
+                {
+                    if (!indices.containsKey(dependent))
+                    {
+                        visit(dependent);
+                        lowLinks.put(
+                                bundle,
+                                Math.min(
+                                        lowLinks.get(bundle),
+                                        lowLinks.get(dependent)));
+                    }
+                    else if (stack.contains(dependent))
+                    {
+                        lowLinks.put(
+                                bundle,
+                                Math.min(
+                                        lowLinks.get(bundle),
+                                        indices.get(dependent)));
+                    }
+                }
+            }
+
+            if (lowLinks.get(bundle) == index)
+            {
+                if (stack.getFirst() == bundle)
+                {
+                    // a single bundle is not a cycle
+                    stack.removeFirst();
+                }
+                else
+                {
+                    BundleImpl member;
+
+                    do
+                    {
+                        member = stack.removeFirst();
+                        cycles.put(member, cycleCount);
+                    }
+                    while (member != bundle);
+                    cycleCount++;
+                }
+            }
+        }
+    }
+}
@@ -9,21 +9,119 @@ package org.jitsi.impl.osgi.framework.launch;
 import java.util.*;
 import java.util.concurrent.*;
 
-import org.jitsi.impl.osgi.framework.*;
+import net.java.sip.communicator.util.Logger;
 
 import org.osgi.framework.*;
 
 /**
+ * Delivers <tt>BundleEvent</tt>s and <tt>ServiceEvent</tt>s to the listeners
+ * registered with a <tt>FrameworkImpl</tt>. The delivery is sharded across a
+ * number of lanes, each with its own thread, by listener so that a slow
+ * listener does not delay the delivery to the listeners of the other lanes
+ * while each listener still receives the events in the order in which they
+ * have been fired.
  *
  * @author Lyubomir Marinov
  */
 public class EventDispatcher
 {
-    private final AsyncExecutor<Command> executor
-        = new AsyncExecutor<Command>();
+    /**
+     * The <tt>Logger</tt> used by the <tt>EventDispatcher</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(EventDispatcher.class);
+
+    /**
+     * The default number of lanes.
+     */
+    private static final int DEFAULT_LANE_COUNT = 4;
+
+    /**
+     * The number of milliseconds for which the thread of an idle lane is kept
+     * alive.
+     */
+    private static final long LANE_KEEP_ALIVE_TIME = 60 * 1000;
+
+    /**
+     * The name of the framework configuration property which specifies the
+     * number of lanes across which the delivery of events is sharded.
+     */
+    public static final String PNAME_LANE_COUNT
+        = "org.jitsi.impl.osgi.framework.EVENT_DISPATCH_LANES";
+
+    /**
+     * The name of the framework configuration property which specifies whether
+     * <tt>ServiceEvent.UNREGISTERING</tt> is delivered synchronously i.e.
+     * whether unregistering a service waits for all <tt>ServiceListener</tt>s
+     * to be notified. A service unregistered by a listener does not wait for
+     * the listeners which receive their events in another lane.
+     */
+    public static final String PNAME_SYNCHRONOUS_UNREGISTERING
+        = "org.jitsi.impl.osgi.framework.SYNCHRONOUS_UNREGISTERING";
+
+    private final Lane[] lanes;
 
     private final EventListenerList listeners = new EventListenerList();
 
+    /**
+     * The indicator which determines whether
+     * <tt>ServiceEvent.UNREGISTERING</tt> is delivered synchronously.
+     */
+    private final boolean synchronousUnregistering;
+
+    /**
+     * Initializes a new <tt>EventDispatcher</tt> instance with the default
+     * configuration.
+     */
+    public EventDispatcher()
+    {
+        this(null);
+    }
+
+    /**
+     * Initializes a new <tt>EventDispatcher</tt> instance with a specific
+     * framework configuration.
+     *
+     * @param configuration the framework configuration to read
+     * {@link #PNAME_LANE_COUNT} and {@link #PNAME_SYNCHRONOUS_UNREGISTERING}
+     * from or <tt>null</tt>
+     */
+    public EventDispatcher(Map<String, String> configuration)
+    {
+        int laneCount = DEFAULT_LANE_COUNT;
+        boolean synchronousUnregistering = false;
+
+        if (configuration != null)
+        {
+            String s = configuration.get(PNAME_LANE_COUNT);
+
+            if (s != null)
+            {
+                try
+                {
+                    laneCount = Integer.parseInt(s.trim());
+                }
+                catch (NumberFormatException nfe)
+                {
+                    logger.warn("Invalid " + PNAME_LANE_COUNT + ": " + s);
+                }
+            }
+
+            s = configuration.get(PNAME_SYNCHRONOUS_UNREGISTERING);
+            if (s != null)
+                synchronousUnregistering = Boolean.parseBoolean(s.trim());
+        }
+
+        if (laneCount < 1)
+            laneCount = 1;
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++)
+            lanes[i] = new Lane(i);
+
+        this.synchronousUnregistering = synchronousUnregistering;
+    }
+
     public <T extends EventListener> boolean addListener(
             Bundle bundle,
             Class<T> clazz,
@@ -32,30 +130,166 @@ public class EventDispatcher
         return listeners.add(bundle, clazz, listener);
     }
 
+    /**
+     * Delivers a specific event to a specific listener on the current thread.
+     *
+     * @param clazz the class of <tt>listener</tt>
+     * @param listener the listener to deliver <tt>event</tt> to
+     * @param event the event to deliver to <tt>listener</tt>
+     */
+    private static void deliver(
+            Class<? extends EventListener> clazz,
+            EventListener listener,
+            EventObject event)
+    {
+        try
+        {
+            if (BundleListener.class.equals(clazz))
+            {
+                ((BundleListener) listener).bundleChanged(
+                        (BundleEvent) event);
+            }
+            else if (ServiceListener.class.equals(clazz))
+            {
+                ((ServiceListener) listener).serviceChanged(
+                        (ServiceEvent) event);
+            }
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+            if (FrameworkListener.class.equals(clazz)
+                    && ((FrameworkEvent) event).getType()
+                            != FrameworkEvent.ERROR)
+            {
+                // TODO Auto-generated method stub
+            }
+        }
+    }
+
     void fireBundleEvent(BundleEvent event)
     {
-        fireEvent(BundleListener.class, event);
+        fireEvent(BundleListener.class, event, false);
     }
 
     private <T extends EventListener> void fireEvent(
             Class<T> clazz,
-            EventObject event)
+            EventObject event,
+            boolean synchronous)
     {
         T[] listeners = this.listeners.getListeners(clazz);
 
-        if (listeners.length != 0)
-            try
+        if (listeners.length == 0)
+            return;
+
+        /*
+         * A lane thread cannot wait for the lanes (including its own) without
+         * risking a deadlock. It delivers a synchronous event inline to the
+         * listeners of its own lane after the events which are already queued
+         * for them so that they still receive the events in order. The
+         * listeners of the other lanes receive the event asynchronously after
+         * the events already queued for them.
+         */
+        Lane currentLane = synchronous ? Lane.current() : null;
+
+        if (currentLane != null)
+        {
+            boolean queuedDelivered = false;
+
+            for (T listener : listeners)
             {
-                executor.execute(new Command(clazz, listeners, event));
+                Lane lane = getLane(listener);
+
+                if (lane == currentLane)
+                {
+                    if (!queuedDelivered)
+                    {
+                        currentLane.deliverQueued();
+                        queuedDelivered = true;
+                    }
+                    deliver(clazz, listener, event);
+                }
+                else
+                    lane.enqueue(new Delivery(clazz, listener, event, null));
             }
-            catch (RejectedExecutionException ree)
+            return;
+        }
+
+        CountDownLatch latch
+            = synchronous ? new CountDownLatch(listeners.length) : null;
+
+        for (T listener : listeners)
+        {
+            Delivery delivery = new Delivery(clazz, listener, event, latch);
+
+            if (!getLane(listener).enqueue(delivery) && (latch != null))
+                latch.countDown();
+        }
+
+        if (latch != null)
+        {
+            boolean interrupted = false;
+
+            while (true)
             {
+                try
+                {
+                    latch.await();
+                    break;
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
             }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
     }
 
     void fireServiceEvent(ServiceEvent event)
     {
-        fireEvent(ServiceListener.class, event);
+        fireEvent(
+                ServiceListener.class,
+                event,
+                synchronousUnregistering
+                    && (event.getType() == ServiceEvent.UNREGISTERING));
+    }
+
+    /**
+     * Gets the lane which delivers the events to a specific listener. A
+     * listener is always delivered events by one and the same lane.
+     *
+     * @param listener the listener to get the lane of
+     * @return the lane which delivers the events to <tt>listener</tt>
+     */
+    private Lane getLane(EventListener listener)
+    {
+        int hash = System.identityHashCode(listener);
+
+        /*
+         * Spread the bits of the identity hash code because its low bits are
+         * not necessarily well distributed.
+         */
+        hash = (hash ^ (hash >>> 16)) * 0x9e3779b9;
+        return lanes[(hash >>> 1) % lanes.length];
+    }
+
+    /**
+     * Gets the statistics of the delivery of events by the lanes of this
+     * <tt>EventDispatcher</tt>.
+     *
+     * @return the statistics of the delivery of events by the lanes of this
+     * <tt>EventDispatcher</tt>
+     */
+    public LaneStatistics[] getLaneStatistics()
+    {
+        LaneStatistics[] statistics = new LaneStatistics[lanes.length];
+
+        for (int i = 0; i < lanes.length; i++)
+            statistics[i] = lanes[i].getStatistics();
+        return statistics;
     }
 
     public <T extends EventListener> boolean removeListener(
@@ -73,55 +307,396 @@ public class EventDispatcher
 
     public void stop()
     {
-        executor.shutdownNow();
+        for (Lane lane : lanes)
+            lane.stop();
     }
 
-    private class Command
-        implements Runnable
+    /**
+     * Represents the delivery of an event to a listener.
+     */
+    private static class Delivery
     {
         private final Class<? extends EventListener> clazz;
 
+        /**
+         * The time in nanoseconds at which this <tt>Delivery</tt> has been
+         * enqueued.
+         */
+        private long enqueueTime;
+
         private final EventObject event;
 
-        private final EventListener[] listeners;
+        /**
+         * The <tt>CountDownLatch</tt> to count down once {@link #event} has
+         * been delivered to {@link #listener} or <tt>null</tt> if the delivery
+         * is asynchronous.
+         */
+        private final CountDownLatch latch;
+
+        private final EventListener listener;
 
-        public <T extends EventListener> Command(
-                Class<T> clazz,
-                T[] listeners,
-                EventObject event)
+        public Delivery(
+                Class<? extends EventListener> clazz,
+                EventListener listener,
+                EventObject event,
+                CountDownLatch latch)
         {
             this.clazz = clazz;
-            this.listeners = listeners;
+            this.listener = listener;
             this.event = event;
+            this.latch = latch;
         }
+    }
+
+    /**
+     * Delivers events to a subset of the listeners in the order in which they
+     * have been enqueued.
+     */
+    private static class Lane
+    {
+        /**
+         * The <tt>Lane</tt> which the current thread delivers the events of.
+         */
+        private static final ThreadLocal<Lane> CURRENT
+            = new ThreadLocal<Lane>();
+
+        private long deliveredCount;
+
+        private final int index;
+
+        private long maxLatency;
+
+        private int maxQueueDepth;
+
+        private final Queue<Delivery> queue = new LinkedList<Delivery>();
 
-        public void run()
+        private boolean stopped;
+
+        private Thread thread;
+
+        /**
+         * The sum of the numbers of nanoseconds each delivered event has
+         * waited in {@link #queue}.
+         */
+        private long totalLatency;
+
+        public Lane(int index)
         {
-            for (EventListener listener : listeners)
+            this.index = index;
+        }
+
+        /**
+         * Gets the <tt>Lane</tt> which the current thread delivers the events
+         * of.
+         *
+         * @return the <tt>Lane</tt> which the current thread delivers the
+         * events of or <tt>null</tt> if the current thread is not the thread of
+         * a <tt>Lane</tt>
+         */
+        public static Lane current()
+        {
+            return CURRENT.get();
+        }
+
+        /**
+         * Enqueues a specific <tt>Delivery</tt> for execution by this
+         * <tt>Lane</tt>.
+         *
+         * @param delivery the <tt>Delivery</tt> to enqueue
+         * @return <tt>true</tt> if <tt>delivery</tt> was enqueued or
+         * <tt>false</tt> if this <tt>Lane</tt> has been stopped
+         */
+        public synchronized boolean enqueue(Delivery delivery)
+        {
+            if (stopped)
+                return false;
+
+            delivery.enqueueTime = System.nanoTime();
+            queue.add(delivery);
+
+            int queueDepth = queue.size();
+
+            if (maxQueueDepth < queueDepth)
+                maxQueueDepth = queueDepth;
+
+            if (thread == null)
             {
-                try
-                {
-                    if (BundleListener.class.equals(clazz))
-                    {
-                        ((BundleListener) listener).bundleChanged(
-                                (BundleEvent) event);
-                    }
-                    else if (ServiceListener.class.equals(clazz))
+                thread
+                    = new Thread(
+                            EventDispatcher.class.getName() + ".Lane-" + index)
                     {
-                        ((ServiceListener) listener).serviceChanged(
-                                (ServiceEvent) event);
-                    }
-                }
-                catch (Throwable t)
+                        @Override
+                        public void run()
+                        {
+                            CURRENT.set(Lane.this);
+                            try
+                            {
+                                runInThread();
+                            }
+                            finally
+                            {
+                                synchronized (Lane.this)
+                                {
+                                    if (Thread.currentThread().equals(thread))
+                                        thread = null;
+                                }
+                            }
+                        }
+                    };
+                thread.setDaemon(true);
+                thread.start();
+            }
+            else
+                notifyAll();
+            return true;
+        }
+
+        /**
+         * Delivers a specific <tt>Delivery</tt> taken from {@link #queue} on
+         * the current thread.
+         *
+         * @param delivery the <tt>Delivery</tt> to deliver
+         */
+        private void deliver(Delivery delivery)
+        {
+            try
+            {
+                EventDispatcher.deliver(
+                        delivery.clazz,
+                        delivery.listener,
+                        delivery.event);
+            }
+            finally
+            {
+                if (delivery.latch != null)
+                    delivery.latch.countDown();
+            }
+        }
+
+        /**
+         * Delivers the <tt>Delivery</tt>s which are currently queued on the
+         * current thread which is expected to be the thread of this
+         * <tt>Lane</tt>.
+         */
+        public void deliverQueued()
+        {
+            while (true)
+            {
+                Delivery delivery = poll();
+
+                if (delivery == null)
+                    break;
+                deliver(delivery);
+            }
+        }
+
+        public synchronized LaneStatistics getStatistics()
+        {
+            return
+                new LaneStatistics(
+                        queue.size(),
+                        maxQueueDepth,
+                        deliveredCount,
+                        TimeUnit.NANOSECONDS.toMillis(totalLatency),
+                        TimeUnit.NANOSECONDS.toMillis(maxLatency));
+        }
+
+        /**
+         * Takes the next <tt>Delivery</tt> from {@link #queue} and accounts
+         * for it in the statistics.
+         *
+         * @return the next <tt>Delivery</tt> from {@link #queue} or
+         * <tt>null</tt> if it is empty or this <tt>Lane</tt> has been stopped
+         */
+        private synchronized Delivery poll()
+        {
+            if (stopped)
+                return null;
+
+            Delivery delivery = queue.poll();
+
+            if (delivery != null)
+            {
+                long latency = System.nanoTime() - delivery.enqueueTime;
+
+                totalLatency += latency;
+                if (maxLatency < latency)
+                    maxLatency = latency;
+                deliveredCount++;
+            }
+            return delivery;
+        }
+
+        private void runInThread()
+        {
+            /*
+             * An interrupt does not stop the delivery of the queued events. It
+             * is remembered and asserted again once the thread leaves so that
+             * waiting does not fail over and over again in the meantime.
+             */
+            boolean interrupted = false;
+
+            try
+            {
+                while (true)
                 {
-                    if (FrameworkListener.class.equals(clazz)
-                            && ((FrameworkEvent) event).getType()
-                                    != FrameworkEvent.ERROR)
+                    Delivery delivery = poll();
+
+                    if (delivery == null)
                     {
-                        // TODO Auto-generated method stub
+                        synchronized (this)
+                        {
+                            if (stopped)
+                                return;
+                            if (!queue.isEmpty())
+                                continue;
+
+                            long idleTime = System.currentTimeMillis();
+
+                            try
+                            {
+                                wait(LANE_KEEP_ALIVE_TIME);
+                            }
+                            catch (InterruptedException ie)
+                            {
+                                interrupted = true;
+                            }
+
+                            if (queue.isEmpty()
+                                    && ((System.currentTimeMillis() - idleTime)
+                                            >= LANE_KEEP_ALIVE_TIME))
+                            {
+                                thread = null;
+                                return;
+                            }
+                        }
+                        continue;
                     }
+
+                    deliver(delivery);
                 }
             }
+            finally
+            {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+
+        public void stop()
+        {
+            List<Delivery> awaiting;
+
+            synchronized (this)
+            {
+                stopped = true;
+                awaiting = new ArrayList<Delivery>(queue);
+                queue.clear();
+                notifyAll();
+            }
+
+            /* Do not leave anyone waiting for a synchronous delivery. */
+            for (Delivery delivery : awaiting)
+                if (delivery.latch != null)
+                    delivery.latch.countDown();
+        }
+    }
+
+    /**
+     * Represents a snapshot of the statistics of the delivery of events by a
+     * lane of an <tt>EventDispatcher</tt>.
+     */
+    public static class LaneStatistics
+    {
+        private final long deliveredCount;
+
+        private final long maxLatency;
+
+        private final int maxQueueDepth;
+
+        private final int queueDepth;
+
+        private final long totalLatency;
+
+        LaneStatistics(
+                int queueDepth,
+                int maxQueueDepth,
+                long deliveredCount,
+                long totalLatency,
+                long maxLatency)
+        {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.deliveredCount = deliveredCount;
+            this.totalLatency = totalLatency;
+            this.maxLatency = maxLatency;
+        }
+
+        /**
+         * Gets the number of events the lane has delivered.
+         *
+         * @return the number of events the lane has delivered
+         */
+        public long getDeliveredCount()
+        {
+            return deliveredCount;
+        }
+
+        /**
+         * Gets the maximum number of milliseconds an event has waited in the
+         * queue of the lane.
+         *
+         * @return the maximum number of milliseconds an event has waited in
+         * the queue of the lane
+         */
+        public long getMaxLatency()
+        {
+            return maxLatency;
+        }
+
+        /**
+         * Gets the maximum number of events which have waited in the queue of
+         * the lane at the same time.
+         *
+         * @return the maximum number of events which have waited in the queue
+         * of the lane at the same time
+         */
+        public int getMaxQueueDepth()
+        {
+            return maxQueueDepth;
+        }
+
+        /**
+         * Gets the number of events waiting in the queue of the lane.
+         *
+         * @return the number of events waiting in the queue of the lane
+         */
+        public int getQueueDepth()
+        {
+            return queueDepth;
+        }
+
+        /**
+         * Gets the total number of milliseconds the delivered events have
+         * waited in the queue of the lane.
+         *
+         * @return the total number of milliseconds the delivered events have
+         * waited in the queue of the lane
+         */
+        public long getTotalLatency()
+        {
+            return totalLatency;
+        }
+
+        @Override
+        public String toString()
+        {
+            return
+                "queueDepth=" + queueDepth
+                    + ", maxQueueDepth=" + maxQueueDepth
+                    + ", deliveredCount=" + deliveredCount
+                    + ", totalLatency=" + totalLatency + "ms"
+                    + ", maxLatency=" + maxLatency + "ms";
         }
     }
 }
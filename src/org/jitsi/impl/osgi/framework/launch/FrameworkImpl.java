@@ -24,6 +24,12 @@ public class FrameworkImpl
     extends BundleImpl
     implements Framework
 {
+    /**
+     * The <tt>BundleActivationScheduler</tt> which starts the bundles of each
+     * start level.
+     */
+    private BundleActivationScheduler activationScheduler;
+
     private final List<BundleImpl> bundles = new LinkedList<BundleImpl>();
 
     private final Map<String, String> configuration;
@@ -36,8 +42,11 @@ public class FrameworkImpl
 
     private long nextServiceId = 1;
 
-    private final List<ServiceRegistrationImpl> serviceRegistrations
-        = new LinkedList<ServiceRegistrationImpl>();
+    /**
+     * The registered services indexed by the names of the classes under which
+     * they have been registered.
+     */
+    private final ServiceRegistry serviceRegistry = new ServiceRegistry();
 
     public FrameworkImpl(Map<String, String> configuration)
     {
@@ -142,6 +151,40 @@ public class FrameworkImpl
     	}
     }
 
+    /**
+     * Gets the number of milliseconds the <tt>BundleActivator</tt> of each
+     * bundle has taken to start.
+     *
+     * @return the number of milliseconds the <tt>BundleActivator</tt> of each
+     * bundle has taken to start keyed by bundle location in the order in which
+     * the bundles have been started
+     */
+    public synchronized Map<String, Long> getBundleActivationTimes()
+    {
+        return
+            (activationScheduler == null)
+                ? new LinkedHashMap<String, Long>()
+                : activationScheduler.getActivationTimes();
+    }
+
+    /**
+     * Gets the statistics of the delivery of events by each lane of the
+     * <tt>EventDispatcher</tt> of this <tt>Framework</tt>.
+     *
+     * @return the statistics of the delivery of events by each lane of the
+     * <tt>EventDispatcher</tt> of this <tt>Framework</tt>; an empty array if
+     * the <tt>Framework</tt> has not been initialized
+     */
+    public EventDispatcher.LaneStatistics[] getLaneStatistics()
+    {
+        EventDispatcher eventDispatcher = this.eventDispatcher;
+
+        return
+            (eventDispatcher == null)
+                ? new EventDispatcher.LaneStatistics[0]
+                : eventDispatcher.getLaneStatistics();
+    }
+
     private List<BundleImpl> getBundlesByStartLevel(int startLevel)
     {
         List<BundleImpl> bundles = new LinkedList<BundleImpl>();
@@ -161,6 +204,23 @@ public class FrameworkImpl
         return bundles;
     }
 
+    /**
+     * Parses a specific <tt>String</tt> representation of a <tt>Filter</tt>.
+     * Since <tt>Filter</tt>s are immutable, previously parsed instances are
+     * reused.
+     *
+     * @param filter the <tt>String</tt> representation of the <tt>Filter</tt>
+     * to parse
+     * @return the <tt>Filter</tt> represented by <tt>filter</tt>
+     * @throws InvalidSyntaxException if <tt>filter</tt> contains an invalid
+     * filter string
+     */
+    public Filter createFilter(String filter)
+        throws InvalidSyntaxException
+    {
+        return serviceRegistry.createFilter(filter);
+    }
+
     public Collection<ServiceReference> getServiceReferences(
             BundleImpl origin,
             Class<?> clazz,
@@ -169,34 +229,26 @@ public class FrameworkImpl
             boolean checkAssignable)
         throws InvalidSyntaxException
     {
-        Filter classNameFilter
-            = FrameworkUtil.createFilter(
-                    '('
-                        + Constants.OBJECTCLASS
-                        + '='
-                        + ((className == null) ? '*' : className)
-                        + ')');
+        /*
+         * The serviceRegistry is indexed by objectClass so there is no need to
+         * match (objectClass=className).
+         */
+        ServiceRegistrationImpl[] serviceRegistrations
+            = serviceRegistry.get(className);
         List<ServiceReference> serviceReferences
-            = new LinkedList<ServiceReference>();
+            = new ArrayList<ServiceReference>(serviceRegistrations.length);
 
-        synchronized (serviceRegistrations)
+        for (ServiceRegistrationImpl serviceRegistration
+                : serviceRegistrations)
         {
-            for (ServiceRegistrationImpl serviceRegistration
-                    : serviceRegistrations)
+            if ((filter == null)
+                    || filter.match(serviceRegistration.getReference()))
             {
-                ServiceReference<?> serviceReference
-                    = serviceRegistration.getReference();
-
-                if (classNameFilter.match(serviceReference)
-                        && ((filter == null)
-                                || (filter.match(serviceReference))))
-                {
-                    ServiceReference serviceReferenceS
-                        = serviceRegistration.getReference(clazz);
+                ServiceReference serviceReferenceS
+                    = serviceRegistration.getReference(clazz);
 
-                    if (serviceReferenceS != null)
-                        serviceReferences.add(serviceReferenceS);
-                }
+                if (serviceReferenceS != null)
+                    serviceReferences.add(serviceReferenceS);
             }
         }
 
@@ -316,7 +368,7 @@ public class FrameworkImpl
 
         long serviceId;
 
-        synchronized (serviceRegistrations)
+        synchronized (serviceRegistry)
         {
             serviceId = nextServiceId++;
         }
@@ -327,10 +379,7 @@ public class FrameworkImpl
                     serviceId,
                     classNames, service, properties);
 
-        synchronized (serviceRegistrations)
-        {
-            serviceRegistrations.add(serviceRegistration);
-        }
+        serviceRegistry.add(serviceRegistration);
         fireServiceEvent(
                 ServiceEvent.REGISTERED,
                 serviceRegistration.getReference());
@@ -433,25 +482,20 @@ public class FrameworkImpl
     {
         if (oldStartLevel < newStartLevel)
         {
-            for (BundleImpl bundle : getBundlesByStartLevel(newStartLevel))
-            {
-                try
-                {
-                    BundleStartLevel bundleStartLevel
-                        = bundle.adapt(BundleStartLevel.class);
-                    int options = START_TRANSIENT;
+            BundleActivationScheduler activationScheduler;
 
-                    if (bundleStartLevel.isActivationPolicyUsed())
-                        options |= START_ACTIVATION_POLICY;
-                    bundle.start(options);
-                }
-                catch (Throwable t)
+            synchronized (this)
+            {
+                if (this.activationScheduler == null)
                 {
-                    if (t instanceof ThreadDeath)
-                        throw (ThreadDeath) t;
-                    // TODO Auto-generated method stub
+                    this.activationScheduler
+                        = new BundleActivationScheduler(configuration);
                 }
+                activationScheduler = this.activationScheduler;
             }
+            activationScheduler.startBundles(
+                    newStartLevel,
+                    getBundlesByStartLevel(newStartLevel));
         }
 
         fireFrameworkEvent(FrameworkEvent.STARTLEVEL_CHANGED, listeners);
@@ -497,10 +541,15 @@ public class FrameworkImpl
                     frameworkStartLevel.stop();
                     frameworkStartLevel = null;
                 }
+                if (activationScheduler != null)
+                {
+                    activationScheduler.stop();
+                    activationScheduler = null;
+                }
             }
             break;
         case STARTING:
-            eventDispatcher = new EventDispatcher();
+            eventDispatcher = new EventDispatcher(configuration);
             break;
         }
 
@@ -563,14 +612,7 @@ public class FrameworkImpl
             BundleImpl origin,
             ServiceRegistration<?> serviceRegistration)
     {
-        boolean removed;
-
-        synchronized (serviceRegistrations)
-        {
-            removed = serviceRegistrations.remove(serviceRegistration);
-        }
-
-        if (removed)
+        if (serviceRegistry.remove(serviceRegistration))
         {
             fireServiceEvent(
                     ServiceEvent.UNREGISTERING,
@@ -0,0 +1,192 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.osgi.framework.launch;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.osgi.framework.*;
+
+import org.osgi.framework.*;
+
+/**
+ * Keeps the <tt>ServiceRegistrationImpl</tt>s of a <tt>FrameworkImpl</tt>
+ * indexed by the names of the classes under which they have been registered.
+ * Modifications are serialized and publish new immutable snapshots (in
+ * registration order) so that lookups do not acquire any lock.
+ *
+ * @author agent
+ */
+class ServiceRegistry
+{
+    /**
+     * The maximum number of parsed <tt>Filter</tt>s kept by
+     * {@link #createFilter(String)}.
+     */
+    private static final int MAX_FILTER_CACHE_SIZE = 256;
+
+    private static final ServiceRegistrationImpl[] NO_REGISTRATIONS
+        = new ServiceRegistrationImpl[0];
+
+    /**
+     * The parsed <tt>Filter</tt>s keyed by their <tt>String</tt>
+     * representations. <tt>Filter</tt>s are immutable and thus are shared.
+     */
+    private final Map<String, Filter> filters
+        = new ConcurrentHashMap<String, Filter>();
+
+    /**
+     * The snapshot of all registrations, in registration order.
+     */
+    private volatile ServiceRegistrationImpl[] registrations
+        = NO_REGISTRATIONS;
+
+    /**
+     * The snapshots of the registrations per class name, in registration
+     * order.
+     */
+    private final Map<String, ServiceRegistrationImpl[]>
+        registrationsByClassName
+            = new ConcurrentHashMap<String, ServiceRegistrationImpl[]>();
+
+    public synchronized void add(ServiceRegistrationImpl registration)
+    {
+        registrations = append(registrations, registration);
+
+        for (String className : registration.getClassNames())
+        {
+            ServiceRegistrationImpl[] registrationsForClassName
+                = registrationsByClassName.get(className);
+
+            registrationsByClassName.put(
+                    className,
+                    append(
+                            (registrationsForClassName == null)
+                                ? NO_REGISTRATIONS
+                                : registrationsForClassName,
+                            registration));
+        }
+    }
+
+    private static ServiceRegistrationImpl[] append(
+            ServiceRegistrationImpl[] array,
+            ServiceRegistrationImpl element)
+    {
+        int length = array.length;
+        ServiceRegistrationImpl[] newArray
+            = new ServiceRegistrationImpl[length + 1];
+
+        System.arraycopy(array, 0, newArray, 0, length);
+        newArray[length] = element;
+        return newArray;
+    }
+
+    /**
+     * Parses a specific <tt>String</tt> representation of a <tt>Filter</tt>
+     * or returns a previously parsed instance of it.
+     *
+     * @param filter the <tt>String</tt> representation of the <tt>Filter</tt>
+     * to parse
+     * @return the <tt>Filter</tt> represented by <tt>filter</tt>
+     * @throws InvalidSyntaxException if <tt>filter</tt> contains an invalid
+     * filter string
+     */
+    public Filter createFilter(String filter)
+        throws InvalidSyntaxException
+    {
+        Filter f = filters.get(filter);
+
+        if (f == null)
+        {
+            f = FrameworkUtil.createFilter(filter);
+            /*
+             * The filters are usually literals in the source code so there are
+             * not that many of them. Anyway, do not let a misbehaving caller
+             * grow the cache indefinitely.
+             */
+            if (filters.size() >= MAX_FILTER_CACHE_SIZE)
+                filters.clear();
+            filters.put(filter, f);
+        }
+        return f;
+    }
+
+    /**
+     * Gets the registrations made under a specific class name.
+     *
+     * @param className the class name to get the registrations of or
+     * <tt>null</tt> to get all registrations
+     * @return a snapshot of the registrations made under <tt>className</tt>
+     * in registration order. The returned array must not be modified.
+     */
+    public ServiceRegistrationImpl[] get(String className)
+    {
+        ServiceRegistrationImpl[] registrations;
+
+        if (className == null)
+            registrations = this.registrations;
+        else
+        {
+            registrations = registrationsByClassName.get(className);
+            if (registrations == null)
+                registrations = NO_REGISTRATIONS;
+        }
+        return registrations;
+    }
+
+    private static ServiceRegistrationImpl[] remove(
+            ServiceRegistrationImpl[] array,
+            Object element)
+    {
+        for (int i = 0, length = array.length; i < length; i++)
+        {
+            if (array[i] == element)
+            {
+                ServiceRegistrationImpl[] newArray
+                    = new ServiceRegistrationImpl[length - 1];
+
+                System.arraycopy(array, 0, newArray, 0, i);
+                System.arraycopy(array, i + 1, newArray, i, length - i - 1);
+                return newArray;
+            }
+        }
+        return array;
+    }
+
+    public synchronized boolean remove(ServiceRegistration<?> registration)
+    {
+        ServiceRegistrationImpl[] newRegistrations
+            = remove(registrations, registration);
+
+        if (newRegistrations == registrations)
+            return false;
+
+        registrations = newRegistrations;
+
+        for (String className
+                : ((ServiceRegistrationImpl) registration).getClassNames())
+        {
+            ServiceRegistrationImpl[] registrationsForClassName
+                = registrationsByClassName.get(className);
+
+            if (registrationsForClassName != null)
+            {
+                registrationsForClassName
+                    = remove(registrationsForClassName, registration);
+                if (registrationsForClassName.length == 0)
+                    registrationsByClassName.remove(className);
+                else
+                {
+                    registrationsByClassName.put(
+                            className,
+                            registrationsForClassName);
+                }
+            }
+        }
+        return true;
+    }
+}